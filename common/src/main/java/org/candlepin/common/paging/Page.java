@@ -25,6 +25,7 @@ public class Page<T> {
     private T pageData;
     private Integer maxRecords;
     private PageRequest pageRequest;
+    private String nextPageToken;
 
     public T getPageData() {
         return pageData;
@@ -50,4 +51,19 @@ public class Page<T> {
         this.pageRequest = pageRequest;
     }
 
+    /**
+     * Fetches the continuation token to use to request the page following this one when keyset
+     * paging. Null if this is the last page.
+     *
+     * @return
+     *  the continuation token for the next page, or null if there are no more pages
+     */
+    public String getNextPageToken() {
+        return nextPageToken;
+    }
+
+    public void setNextPageToken(String nextPageToken) {
+        this.nextPageToken = nextPageToken;
+    }
+
 }
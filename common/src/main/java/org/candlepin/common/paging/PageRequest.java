@@ -30,6 +30,8 @@ public class PageRequest {
     public static final String SORT_BY_PARAM = "sort_by";
     public static final String PAGE_PARAM = "page";
     public static final String PER_PAGE_PARAM = "per_page";
+    public static final String PAGE_TOKEN_PARAM = "page_token";
+    public static final String SKIP_COUNT_PARAM = "skip_count";
 
     public static final Integer DEFAULT_PAGE = Integer.valueOf(1);
     public static final Integer DEFAULT_PER_PAGE = Integer.valueOf(10);
@@ -39,6 +41,8 @@ public class PageRequest {
     private Integer perPage;
     private String sortBy;
     private Order order;
+    private String pageToken;
+    private boolean skipCount;
 
     public Integer getPage() {
         return page;
@@ -72,6 +76,50 @@ public class PageRequest {
         this.order = order;
     }
 
+    /**
+     * Fetches the continuation token identifying the position after which the requested page
+     * starts. An empty token requests the first page.
+     *
+     * @return
+     *  the continuation token for this request, or null if this request is not using keyset paging
+     */
+    public String getPageToken() {
+        return pageToken;
+    }
+
+    public void setPageToken(String pageToken) {
+        this.pageToken = pageToken;
+    }
+
+    /**
+     * Checks whether this request pages by seeking past the position identified by a continuation
+     * token, rather than by page number. Keyset paging never counts the total number of records.
+     *
+     * @return
+     *  true if this request is using keyset paging; false otherwise
+     */
+    public boolean isKeyset() {
+        return pageToken != null;
+    }
+
+    public boolean isSkipCount() {
+        return skipCount;
+    }
+
+    public void setSkipCount(boolean skipCount) {
+        this.skipCount = skipCount;
+    }
+
+    /**
+     * Checks whether the total number of records should be counted for this request.
+     *
+     * @return
+     *  true if the total number of records should be counted; false otherwise
+     */
+    public boolean isCounting() {
+        return !skipCount && !isKeyset();
+    }
+
     public boolean isPaging() {
         return perPage != null && page != null;
     }
@@ -43,6 +43,10 @@ import javax.ws.rs.ext.Provider;
  * LinkHeaderResponseFilter inserts a Link header into the HTTP response to a request that asked for paging.
  * The Link header is defined in RFC 5988 and is used to communicated to the client the URLs for the next
  * page, previous page, first page, and last page.
+ *
+ * When the total number of records was not counted, as is always the case for keyset paging, the last
+ * page is unknown and only the next, previous and first page links are provided. For keyset paging,
+ * the next page link carries the continuation token of the page, and no previous page link is given.
  */
 @Provider
 @Priority(Priorities.HEADER_DECORATOR)
@@ -90,6 +94,12 @@ public class LinkHeaderResponseFilter implements ContainerResponseFilter {
 
         LinkHeader header = new LinkHeader();
 
+        if (page.getMaxRecords() == null) {
+            addUncountedLinks(header, builder, page);
+            respContext.getHeaders().add(LINK_HEADER, header.toString());
+            return;
+        }
+
         Integer next = getNextPage(page);
         if (next != null) {
             header.addLink(null, "next", buildPageLink(builder, next), null);
@@ -106,6 +116,38 @@ public class LinkHeaderResponseFilter implements ContainerResponseFilter {
         respContext.getHeaders().add(TOTAL_RECORDS_COUNT, page.getMaxRecords());
     }
 
+    /**
+     * Adds the links for a page for which the total number of records is not known.
+     */
+    protected void addUncountedLinks(LinkHeader header, UriBuilder builder, Page<?> page) {
+        PageRequest pageRequest = page.getPageRequest();
+
+        if (pageRequest.isKeyset()) {
+            if (page.getNextPageToken() != null) {
+                header.addLink(null, "next", buildTokenLink(builder, page.getNextPageToken()), null);
+            }
+
+            header.addLink(null, "first", buildTokenLink(builder, ""), null);
+        }
+        else {
+            // Without a count we cannot tell whether this is the last page, so a next link is
+            // always provided; clients stop once they receive a short or empty page.
+            header.addLink(null, "next", buildPageLink(builder, pageRequest.getPage() + 1), null);
+
+            if (pageRequest.getPage() > 1) {
+                header.addLink(null, "prev", buildPageLink(builder, pageRequest.getPage() - 1), null);
+            }
+
+            header.addLink(null, "first", buildPageLink(builder, 1), null);
+        }
+    }
+
+    protected String buildTokenLink(UriBuilder b, String token) {
+        UriBuilder builder = b.clone();
+        builder.replaceQueryParam(PageRequest.PAGE_TOKEN_PARAM, token);
+        return builder.build().toString();
+    }
+
     protected String buildPageLink(UriBuilder b, int value) {
         // Copy so we can use the same builder for building each link.
         UriBuilder builder = b.clone();
@@ -180,7 +222,8 @@ public class LinkHeaderResponseFilter implements ContainerResponseFilter {
         // parameters provided too.
         if (params != null) {
             for (Entry<String, List<String>> e : params.entrySet()) {
-                if (!e.getKey().equals(PageRequest.PAGE_PARAM)) {
+                if (!e.getKey().equals(PageRequest.PAGE_PARAM) &&
+                    !e.getKey().equals(PageRequest.PAGE_TOKEN_PARAM)) {
                     for (String v : e.getValue()) {
                         builder = builder.queryParam(e.getKey(), v);
                     }
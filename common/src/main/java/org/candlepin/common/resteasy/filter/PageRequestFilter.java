@@ -55,8 +55,12 @@ public class PageRequestFilter implements ContainerRequestFilter {
         String perPage = params.getFirst(PageRequest.PER_PAGE_PARAM);
         String order = params.getFirst(PageRequest.ORDER_PARAM);
         String sortBy = params.getFirst(PageRequest.SORT_BY_PARAM);
+        String pageToken = params.getFirst(PageRequest.PAGE_TOKEN_PARAM);
+        String skipCount = params.getFirst(PageRequest.SKIP_COUNT_PARAM);
+
+        if (page != null || perPage != null || order != null || sortBy != null || pageToken != null ||
+            skipCount != null) {
 
-        if (page != null || perPage != null || order != null || sortBy != null) {
             p = new PageRequest();
 
             if (order == null) {
@@ -69,6 +73,24 @@ public class PageRequestFilter implements ContainerRequestFilter {
             /* We'll leave it to the curator layer to figure out what to sort by if
              * sortBy is null. */
             p.setSortBy(sortBy);
+            p.setSkipCount(Boolean.parseBoolean(skipCount));
+
+            if (pageToken != null) {
+                if (page != null) {
+                    I18n i18n = this.i18nProvider.get();
+                    throw new BadRequestException(i18n.tr("the page and page_token parameters cannot " +
+                        "be used together"));
+                }
+
+                // Keyset paging always starts from the position in the token; the page number is
+                // only kept so the request is treated as a paging request.
+                p.setPageToken(pageToken);
+                page = PageRequest.DEFAULT_PAGE.toString();
+
+                if (perPage == null) {
+                    perPage = PageRequest.DEFAULT_PER_PAGE.toString();
+                }
+            }
 
             try {
                 if (page == null && perPage != null) {
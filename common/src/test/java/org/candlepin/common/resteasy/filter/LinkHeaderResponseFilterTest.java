@@ -355,4 +355,92 @@ public class LinkHeaderResponseFilterTest {
         assertTrue(header.contains("rel=\"next\""));
         assertTrue(header.contains("rel=\"prev\""));
     }
+
+    @Test
+    public void testDoesNotAddPageTokenQueryParameter() {
+        MultivaluedMap<String, String> map = new MultivaluedMapImpl<>();
+        map.add("page_token", "abc");
+        UriBuilder bu = UriBuilder.fromUri("https://localhost:8443/candlepin/resource");
+        URI returned = interceptor.addUnchangingQueryParams(bu, map).build();
+        assertEquals(URI.create("https://localhost:8443/candlepin/resource"), returned);
+    }
+
+    @Test
+    public void testPostProcessWithKeysetPaging() throws Exception {
+        PageRequest keysetRequest = new PageRequest();
+        keysetRequest.setPage(1);
+        keysetRequest.setPerPage(10);
+        keysetRequest.setPageToken("abc");
+
+        Page<Object> keysetPage = new Page<>();
+        keysetPage.setPageRequest(keysetRequest);
+        keysetPage.setNextPageToken("def");
+
+        MultivaluedMap<String, Object> map = this.filterUncountedPage(keysetPage,
+            "/candlepin/resource?per_page=10&page_token=abc");
+        String header = (String) map.getFirst(LinkHeaderResponseFilter.LINK_HEADER);
+
+        assertTrue(header.contains("page_token=def"));
+        assertTrue(header.contains("rel=\"next\""));
+        assertTrue(header.contains("rel=\"first\""));
+        assertFalse(header.contains("page_token=abc"));
+        assertFalse(header.contains("rel=\"last\""));
+        assertFalse(header.contains("rel=\"prev\""));
+        assertNull(map.getFirst(LinkHeaderResponseFilter.TOTAL_RECORDS_COUNT));
+    }
+
+    @Test
+    public void testPostProcessWithKeysetPagingOnLastPage() throws Exception {
+        PageRequest keysetRequest = new PageRequest();
+        keysetRequest.setPage(1);
+        keysetRequest.setPerPage(10);
+        keysetRequest.setPageToken("abc");
+
+        Page<Object> keysetPage = new Page<>();
+        keysetPage.setPageRequest(keysetRequest);
+
+        MultivaluedMap<String, Object> map = this.filterUncountedPage(keysetPage,
+            "/candlepin/resource?per_page=10&page_token=abc");
+        String header = (String) map.getFirst(LinkHeaderResponseFilter.LINK_HEADER);
+
+        assertFalse(header.contains("rel=\"next\""));
+        assertTrue(header.contains("rel=\"first\""));
+    }
+
+    @Test
+    public void testPostProcessWithoutCount() throws Exception {
+        PageRequest uncountedRequest = new PageRequest();
+        uncountedRequest.setPage(2);
+        uncountedRequest.setPerPage(10);
+        uncountedRequest.setSkipCount(true);
+
+        Page<Object> uncountedPage = new Page<>();
+        uncountedPage.setPageRequest(uncountedRequest);
+
+        MultivaluedMap<String, Object> map = this.filterUncountedPage(uncountedPage,
+            "/candlepin/resource?page=2&per_page=10&skip_count=true");
+        String header = (String) map.getFirst(LinkHeaderResponseFilter.LINK_HEADER);
+
+        assertTrue(header.contains("rel=\"first\""));
+        assertTrue(header.contains("rel=\"next\""));
+        assertTrue(header.contains("rel=\"prev\""));
+        assertFalse(header.contains("rel=\"last\""));
+        assertNull(map.getFirst(LinkHeaderResponseFilter.TOTAL_RECORDS_COUNT));
+    }
+
+    private MultivaluedMap<String, Object> filterUncountedPage(Page<Object> uncountedPage, String uri)
+        throws Exception {
+
+        when(config.containsKey(eq(this.apiUrlPrefixKey))).thenReturn(false);
+        ResteasyProviderFactory.pushContext(Page.class, uncountedPage);
+
+        mockReq = MockHttpRequest.create("GET", new URI(uri), new URI("https://example.com"));
+        when(mockRequestContext.getUriInfo()).thenReturn(mockReq.getUri());
+
+        MultivaluedMap<String, Object> map = new MultivaluedMapImpl<>();
+        when(mockResponseContext.getHeaders()).thenReturn(map);
+
+        interceptor.filter(mockRequestContext, mockResponseContext);
+        return map;
+    }
 }
@@ -174,4 +174,59 @@ public class PageRequestFilterTest {
         assertEquals(PageRequest.Order.DESCENDING, p.getOrder());
         assertEquals("id", p.getSortBy());
     }
+
+    @Test
+    public void testPageToken() throws Exception {
+        mockReq = MockHttpRequest.create("GET",
+            "http://localhost/candlepin/status?page_token=abc&per_page=20");
+        when(mockRequestContext.getUriInfo()).thenReturn(mockReq.getUri());
+
+        interceptor.filter(mockRequestContext);
+
+        PageRequest p = ResteasyProviderFactory.getContextData(PageRequest.class);
+        assertTrue(p.isPaging());
+        assertTrue(p.isKeyset());
+        assertFalse(p.isCounting());
+        assertEquals("abc", p.getPageToken());
+        assertEquals(Integer.valueOf(20), p.getPerPage());
+        assertEquals(PageRequest.DEFAULT_PAGE, p.getPage());
+    }
+
+    @Test
+    public void testEmptyPageTokenRequestsFirstPage() throws Exception {
+        mockReq = MockHttpRequest.create("GET",
+            "http://localhost/candlepin/status?page_token=");
+        when(mockRequestContext.getUriInfo()).thenReturn(mockReq.getUri());
+
+        interceptor.filter(mockRequestContext);
+
+        PageRequest p = ResteasyProviderFactory.getContextData(PageRequest.class);
+        assertTrue(p.isKeyset());
+        assertEquals("", p.getPageToken());
+        assertEquals(PageRequest.DEFAULT_PER_PAGE, p.getPerPage());
+    }
+
+    @Test(expected = BadRequestException.class)
+    public void testPageTokenWithPage() throws Exception {
+        mockReq = MockHttpRequest.create("GET",
+            "http://localhost/candlepin/status?page_token=abc&page=2");
+        when(mockRequestContext.getUriInfo()).thenReturn(mockReq.getUri());
+
+        interceptor.filter(mockRequestContext);
+    }
+
+    @Test
+    public void testSkipCount() throws Exception {
+        mockReq = MockHttpRequest.create("GET",
+            "http://localhost/candlepin/status?page=2&skip_count=true");
+        when(mockRequestContext.getUriInfo()).thenReturn(mockReq.getUri());
+
+        interceptor.filter(mockRequestContext);
+
+        PageRequest p = ResteasyProviderFactory.getContextData(PageRequest.class);
+        assertTrue(p.isPaging());
+        assertFalse(p.isKeyset());
+        assertTrue(p.isSkipCount());
+        assertFalse(p.isCounting());
+    }
 }
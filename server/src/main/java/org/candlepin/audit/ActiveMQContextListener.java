@@ -57,9 +57,15 @@ public class ActiveMQContextListener {
 
     private EmbeddedActiveMQ activeMQServer;
     private EventSource eventSource;
+    private EventSink eventSink;
 
     public void contextDestroyed() {
         if (activeMQServer != null) {
+            // Publish any events still waiting in the sink before the server goes away.
+            if (eventSink != null) {
+                eventSink.shutdown();
+            }
+
             eventSource.shutDown();
             try {
                 activeMQServer.stop();
@@ -173,6 +179,7 @@ public class ActiveMQContextListener {
         EventSink sink = injector.getInstance(EventSink.class);
         try {
             sink.initialize();
+            eventSink = sink;
         }
         catch (Exception e) {
             log.error("Failed to initialize EventSink:", e);
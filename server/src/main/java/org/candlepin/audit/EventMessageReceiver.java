@@ -45,13 +45,26 @@ public class EventMessageReceiver extends MessageReceiver {
             msg.acknowledge();
             log.debug("ActiveMQ message {} acknowledged for listener: {}", msg.getMessageID(), listener);
 
+            // Events requeued for another listener are not ours to process.
+            if (!isAddressedToQueue(msg)) {
+                session.commit();
+                return;
+            }
+
             // Process the message via our EventListener framework.
             body = msg.getBodyBuffer().readString();
             log.debug("Got event: {}", body);
-            Event event = mapper.readValue(body, Event.class);
-            listener.onEvent(event);
+            // If an event of a batched message fails, the remaining events are requeued as
+            // individual messages, and the batch itself is committed below.
+            if (deliverEvents(msg, body)) {
+                log.debug("Message listener {} processed message: {}: SUCCESS", listener,
+                    msg.getMessageID());
+            }
+            else {
+                log.debug("Message listener {} processed message: {}: REQUEUED", listener,
+                    msg.getMessageID());
+            }
 
-            log.debug("Message listener {} processed message: {}: SUCCESS", listener, msg.getMessageID());
             // Finally commit the session so that the message is taken out of the queue.
             session.commit();
         }
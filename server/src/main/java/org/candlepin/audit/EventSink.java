@@ -31,6 +31,8 @@ public interface EventSink {
 
     void initialize() throws Exception;
 
+    void shutdown();
+
     void queueEvent(Event event);
 
     void sendEvents();
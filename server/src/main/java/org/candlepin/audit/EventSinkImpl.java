@@ -41,18 +41,45 @@ import org.apache.activemq.artemis.core.remoting.impl.invm.InVMConnectorFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.inject.Inject;
 
 /**
  * EventSink - Queues events to be sent after request/job completes, and handles actual
  * sending of events on successful job or API request, as well as rollback if either fails.
+ *
+ * When event batching is enabled, queued events are held in memory until the request or job
+ * completes, and are then serialized and sent by a background publisher as messages carrying
+ * multiple events each. Such messages are flagged with the BATCH_SIZE_PROPERTY, and contain a
+ * JSON array of events rather than a single event.
  */
 @Singleton
 public class EventSinkImpl implements EventSink {
     private static Logger log = LoggerFactory.getLogger(EventSinkImpl.class);
+
+    /**
+     * The message property holding the number of events carried by a batched event message.
+     * Messages without this property carry a single event.
+     */
+    public static final String BATCH_SIZE_PROPERTY = "cp_event_batch_size";
+
+    private static final long PUBLISHER_SHUTDOWN_TIMEOUT = 30;
+    private static final long PUBLISHER_STATS_INTERVAL = TimeUnit.MINUTES.toNanos(1);
+
+    /**
+     * The name under which the events waiting to be published by the batching publisher are
+     * reported in the queue info
+     */
+    public static final String PUBLISHER_QUEUE_NAME = "event.publisher";
+
     private EventFactory eventFactory;
     private ClientSessionFactory factory;
     private Configuration config;
@@ -61,6 +88,19 @@ public class EventSinkImpl implements EventSink {
     private int largeMsgSize;
     private ModeManager modeManager;
 
+    private boolean batchingEnabled;
+    private int batchSize;
+    private int batchQueueSize;
+    private volatile ThreadPoolExecutor publisher;
+
+    private final AtomicInteger queuedEvents = new AtomicInteger();
+    private final AtomicLong publishedEvents = new AtomicLong();
+    private final AtomicLong publishedBatches = new AtomicLong();
+    private final AtomicLong publishes = new AtomicLong();
+    private final AtomicLong publishTime = new AtomicLong();
+    private volatile long lastPublishLatency;
+    private volatile long lastStatsLogged = System.nanoTime();
+
     /*
      * Important use of ThreadLocal here, each Tomcat/Quartz thread gets it's own session
      * which is reused across invocations. Sessions must have commit or rollback called
@@ -70,6 +110,12 @@ public class EventSinkImpl implements EventSink {
     private ThreadLocal<ClientSession> sessions = new ThreadLocal<>();
     private ThreadLocal<ClientProducer> producers = new ThreadLocal<>();
 
+    /*
+     * Events queued by the current thread while batching is enabled. These are handed off to the
+     * publisher when sendEvents() is called, and discarded on rollback().
+     */
+    private ThreadLocal<List<Event>> pendingEvents = ThreadLocal.withInitial(ArrayList::new);
+
     @Inject
     public EventSinkImpl(EventFilter eventFilter, EventFactory eventFactory,
         ObjectMapper mapper, Configuration config, ModeManager modeManager) {
@@ -79,6 +125,20 @@ public class EventSinkImpl implements EventSink {
         this.eventFilter = eventFilter;
         this.modeManager = modeManager;
         largeMsgSize = config.getInt(ConfigProperties.ACTIVEMQ_LARGE_MSG_SIZE);
+
+        batchingEnabled = config.getBoolean(ConfigProperties.EVENT_BATCH_ENABLED, false);
+        batchSize = config.getInt(ConfigProperties.EVENT_BATCH_SIZE, 100);
+        batchQueueSize = config.getInt(ConfigProperties.EVENT_BATCH_QUEUE_SIZE, 1000);
+
+        if (batchingEnabled) {
+            if (batchSize < 1) {
+                throw new IllegalArgumentException("Event batch size must be a positive integer");
+            }
+
+            if (batchQueueSize < 1) {
+                throw new IllegalArgumentException("Event batch queue size must be a positive integer");
+            }
+        }
     }
 
     /**
@@ -88,6 +148,45 @@ public class EventSinkImpl implements EventSink {
     @Override
     public void initialize() throws Exception {
         factory = createClientSessionFactory();
+
+        if (batchingEnabled) {
+            log.info("Event batching enabled; publishing up to {} events per message", batchSize);
+
+            // When the publisher falls behind, the completing request or job publishes its own
+            // events rather than letting an unbounded backlog build up in memory.
+            publisher = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(batchQueueSize),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "event-publisher");
+                    thread.setDaemon(true);
+
+                    return thread;
+                },
+                new ThreadPoolExecutor.CallerRunsPolicy());
+        }
+    }
+
+    /**
+     * Stops the background publisher, waiting for any events already handed off to it to be
+     * published. Events sent after this point are published on the calling thread.
+     */
+    @Override
+    public void shutdown() {
+        ThreadPoolExecutor executor = publisher;
+        publisher = null;
+
+        if (executor != null) {
+            executor.shutdown();
+
+            try {
+                if (!executor.awaitTermination(PUBLISHER_SHUTDOWN_TIMEOUT, TimeUnit.SECONDS)) {
+                    log.warn("Timed out waiting for {} queued events to be published", queuedEvents.get());
+                }
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
     }
 
     protected ClientSessionFactory createClientSessionFactory() throws Exception {
@@ -150,6 +249,12 @@ public class EventSinkImpl implements EventSink {
         catch (Exception e) {
             log.error("Error looking up ActiveMQ queue info: ", e);
         }
+
+        // Events held by the batching publisher have not reached any ActiveMQ queue yet
+        if (batchingEnabled) {
+            results.add(new QueueStatus(PUBLISHER_QUEUE_NAME, getQueuedEventCount()));
+        }
+
         return results;
     }
 
@@ -162,7 +267,9 @@ public class EventSinkImpl implements EventSink {
      * Events are filtered, meaning that some of them might not even get into ActiveMQ.
      * Details about the filtering are documented in EventFilter class
      *
-     * ActiveMQ transaction actually manages the queue of events to be sent.
+     * ActiveMQ transaction actually manages the queue of events to be sent, unless event batching
+     * is enabled, in which case events are held by the current thread until sendEvents() is
+     * called.
      */
     @Override
     public void queueEvent(Event event) {
@@ -174,6 +281,11 @@ public class EventSinkImpl implements EventSink {
         modeManager.throwRestEasyExceptionIfInSuspendMode();
         log.debug("Queuing event: {}", event);
 
+        if (batchingEnabled) {
+            pendingEvents.get().add(event);
+            return;
+        }
+
         try {
             ClientSession session = getClientSession();
             ClientMessage message = session.createMessage(true);
@@ -195,6 +307,27 @@ public class EventSinkImpl implements EventSink {
      */
     @Override
     public void sendEvents() {
+        if (batchingEnabled) {
+            List<Event> events = pendingEvents.get();
+            if (events.isEmpty()) {
+                return;
+            }
+
+            pendingEvents.set(new ArrayList<>());
+            queuedEvents.addAndGet(events.size());
+
+            long queuedAt = System.nanoTime();
+            ThreadPoolExecutor executor = publisher;
+            if (executor != null && !executor.isShutdown()) {
+                executor.execute(() -> publish(events, queuedAt));
+            }
+            else {
+                publish(events, queuedAt);
+            }
+
+            return;
+        }
+
         try {
             log.debug("Committing ActiveMQ transaction.");
             getClientSession().commit();
@@ -206,8 +339,109 @@ public class EventSinkImpl implements EventSink {
         }
     }
 
+    /**
+     * Serializes and sends the given events in one ActiveMQ transaction, using messages carrying
+     * up to the configured batch size each. Events which cannot be serialized are logged and
+     * dropped, as they would be when sent individually.
+     *
+     * @param events
+     *  the events to publish
+     *
+     * @param queuedAt
+     *  the time, in nanoseconds, at which the events were handed off for publication
+     */
+    protected void publish(List<Event> events, long queuedAt) {
+        int sent = 0;
+        int batches = 0;
+
+        try {
+            ClientSession session = getClientSession();
+            ClientProducer producer = getClientProducer();
+
+            try {
+                for (int offset = 0; offset < events.size(); offset += batchSize) {
+                    List<Event> batch = events.subList(offset, Math.min(offset + batchSize, events.size()));
+                    StringBuilder body = new StringBuilder("[");
+                    int count = 0;
+
+                    for (Event event : batch) {
+                        try {
+                            String eventString = mapper.writeValueAsString(event);
+
+                            body.append(count++ > 0 ? "," : "").append(eventString);
+                        }
+                        catch (Exception e) {
+                            log.error("Error while trying to serialize event: {}", event, e);
+                        }
+                    }
+
+                    if (count > 0) {
+                        ClientMessage message = session.createMessage(true);
+                        message.putIntProperty(BATCH_SIZE_PROPERTY, count);
+                        message.getBodyBuffer().writeString(body.append(']').toString());
+
+                        producer.send(message);
+                        sent += count;
+                        ++batches;
+                    }
+                }
+
+                session.commit();
+            }
+            catch (Exception e) {
+                log.error("Error publishing {} events; rolling back ActiveMQ transaction", events.size(), e);
+                sent = 0;
+                batches = 0;
+
+                session.rollback();
+            }
+        }
+        catch (Exception e) {
+            log.error("Error publishing {} events", events.size(), e);
+        }
+        finally {
+            long latency = System.nanoTime() - queuedAt;
+
+            queuedEvents.addAndGet(-events.size());
+            publishedEvents.addAndGet(sent);
+            publishedBatches.addAndGet(batches);
+            publishes.incrementAndGet();
+            publishTime.addAndGet(latency);
+            lastPublishLatency = latency;
+
+            log.debug("Published {} events in {} messages in {}ms; {} events waiting to be published",
+                sent, batches, TimeUnit.NANOSECONDS.toMillis(latency), queuedEvents.get());
+
+            logPublishStats();
+        }
+    }
+
+    /**
+     * Logs the publisher statistics, at most once per PUBLISHER_STATS_INTERVAL.
+     */
+    private void logPublishStats() {
+        long now = System.nanoTime();
+
+        if (now - lastStatsLogged >= PUBLISHER_STATS_INTERVAL) {
+            lastStatsLogged = now;
+
+            log.info("Event publisher: {} events published in {} messages (average batch size: {}); " +
+                "publish latency: {}ms last, {}ms average; {} events waiting to be published",
+                getPublishedEventCount(), getPublishedBatchCount(),
+                String.format("%.1f", getAverageBatchSize()),
+                TimeUnit.NANOSECONDS.toMillis(getLastPublishLatency()),
+                TimeUnit.NANOSECONDS.toMillis(getAveragePublishLatency()), getQueuedEventCount());
+        }
+    }
+
     @Override
     public void rollback() {
+        if (batchingEnabled) {
+            log.debug("Discarding {} queued events.", pendingEvents.get().size());
+            pendingEvents.remove();
+            return;
+        }
+
         log.warn("Rolling back ActiveMQ transaction.");
         try {
             ClientSession session = getClientSession();
@@ -218,6 +452,66 @@ public class EventSinkImpl implements EventSink {
         }
     }
 
+    public boolean isBatchingEnabled() {
+        return batchingEnabled;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * @return
+     *  the number of events handed off for publication which have not yet been published
+     */
+    public int getQueuedEventCount() {
+        return queuedEvents.get();
+    }
+
+    /**
+     * @return
+     *  the number of events published in batched messages
+     */
+    public long getPublishedEventCount() {
+        return publishedEvents.get();
+    }
+
+    /**
+     * @return
+     *  the number of batched messages published
+     */
+    public long getPublishedBatchCount() {
+        return publishedBatches.get();
+    }
+
+    /**
+     * @return
+     *  the average number of events carried by each batched message
+     */
+    public double getAverageBatchSize() {
+        long batches = publishedBatches.get();
+        return batches > 0 ? (double) publishedEvents.get() / batches : 0;
+    }
+
+    /**
+     * @return
+     *  the time, in nanoseconds, between the most recent set of events being handed off for
+     *  publication and their being committed to the message broker
+     */
+    public long getLastPublishLatency() {
+        return lastPublishLatency;
+    }
+
+    /**
+     * @return
+     *  the average time, in nanoseconds, between a set of events being handed off for publication
+     *  and their being committed to the message broker
+     */
+    public long getAveragePublishLatency() {
+        long count = publishes.get();
+        return count > 0 ? publishTime.get() / count : 0;
+    }
+
     public void emitConsumerCreated(Consumer newConsumer) {
         Event e = eventFactory.consumerCreated(newConsumer);
         queueEvent(e);
@@ -19,12 +19,19 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import org.apache.activemq.artemis.api.core.ActiveMQException;
 import org.apache.activemq.artemis.api.core.ActiveMQExceptionType;
 import org.apache.activemq.artemis.api.core.client.ClientConsumer;
+import org.apache.activemq.artemis.api.core.client.ClientMessage;
+import org.apache.activemq.artemis.api.core.client.ClientProducer;
 import org.apache.activemq.artemis.api.core.client.ClientSession;
 import org.apache.activemq.artemis.api.core.client.ClientSessionFactory;
 import org.apache.activemq.artemis.api.core.client.MessageHandler;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
 
 /**
  * A base implementation of Candlepin's ActiveMQ MessageHandler.
@@ -33,6 +40,12 @@ public abstract class MessageReceiver implements MessageHandler {
 
     private static Logger log = LoggerFactory.getLogger(MessageReceiver.class);
 
+    /**
+     * The property naming the only queue which should process a message. Set on events requeued
+     * from a failed batch, which are sent to an address that other queues may also be bound to.
+     */
+    public static final String TARGET_QUEUE_PROPERTY = "cp_event_target_queue";
+
     protected ClientSession session;
     protected ObjectMapper mapper;
     protected EventListener listener;
@@ -75,6 +88,106 @@ public abstract class MessageReceiver implements MessageHandler {
         session.start();
     }
 
+    /**
+     * Reads the events carried by the given message body. Messages published by a batching event
+     * sink carry a JSON array of events, while all others carry a single event.
+     *
+     * @param msg
+     *  the message that was received
+     *
+     * @param body
+     *  the body of the message
+     *
+     * @throws IOException
+     *  if the message body cannot be deserialized
+     *
+     * @return
+     *  the events carried by the message
+     */
+    protected List<Event> readEvents(ClientMessage msg, String body) throws IOException {
+        if (msg.containsProperty(EventSinkImpl.BATCH_SIZE_PROPERTY)) {
+            return Arrays.asList(mapper.readValue(body, Event[].class));
+        }
+
+        return Collections.singletonList(mapper.readValue(body, Event.class));
+    }
+
+    /**
+     * Checks whether or not the given message should be processed by this receiver. Messages
+     * requeued for another listener's queue are not.
+     *
+     * @param msg
+     *  the message that was received
+     *
+     * @return
+     *  true if this receiver should process the message; false otherwise
+     */
+    protected boolean isAddressedToQueue(ClientMessage msg) {
+        return !msg.containsProperty(TARGET_QUEUE_PROPERTY) ||
+            queueName.equals(msg.getStringProperty(TARGET_QUEUE_PROPERTY));
+    }
+
+    /**
+     * Delivers the events carried by the given message to the listener, in order. If an event of a
+     * batched message fails, it and the events after it are requeued to this receiver's queue as
+     * individual messages within the current session, so only they are retried, and with the
+     * usual per-message redelivery limits. The caller should then commit the session to remove
+     * the batch from the queue.
+     *
+     * @param msg
+     *  the message that was received
+     *
+     * @param body
+     *  the body of the message
+     *
+     * @throws Exception
+     *  if the message cannot be read, a single-event message fails, or the undelivered events of
+     *  a batch cannot be requeued
+     *
+     * @return
+     *  true if every event was delivered; false if some events of a batch were requeued
+     */
+    protected boolean deliverEvents(ClientMessage msg, String body) throws Exception {
+        List<Event> events = readEvents(msg, body);
+
+        for (int i = 0; i < events.size(); ++i) {
+            try {
+                listener.onEvent(events.get(i));
+            }
+            catch (Exception e) {
+                if (!msg.containsProperty(EventSinkImpl.BATCH_SIZE_PROPERTY)) {
+                    throw e;
+                }
+
+                String reason = (e.getCause() == null) ? e.getMessage() : e.getCause().getMessage();
+                log.warn("Listener {} failed on event {} of {} in message {}: {}; requeuing {} event(s)",
+                    listener, i + 1, events.size(), msg.getMessageID(), reason, events.size() - i);
+
+                this.requeue(events.subList(i, events.size()));
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private void requeue(List<Event> events) throws Exception {
+        ClientProducer producer = session.createProducer(getQueueAddress());
+
+        try {
+            for (Event event : events) {
+                ClientMessage message = session.createMessage(true);
+                message.putStringProperty(TARGET_QUEUE_PROPERTY, queueName);
+                message.getBodyBuffer().writeString(mapper.writeValueAsString(event));
+
+                producer.send(message);
+            }
+        }
+        finally {
+            producer.close();
+        }
+    }
+
     public boolean requiresQpid() {
         return this.listener.requiresQpid();
     }
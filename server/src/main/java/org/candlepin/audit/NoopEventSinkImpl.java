@@ -117,6 +117,10 @@ public class NoopEventSinkImpl implements EventSink {
 
     }
 
+    @Override
+    public void shutdown() {
+    }
+
     @Override
     public List<QueueStatus> getQueueInfo() {
         return null;
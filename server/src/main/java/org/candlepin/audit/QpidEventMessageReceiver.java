@@ -56,12 +56,26 @@ public class QpidEventMessageReceiver extends MessageReceiver {
                     msg.getStringProperty(AMQ_ORIG_ADDRESS), origMsgId, msg.getAddress(), msg.getMessageID());
             }
 
-            // Process the message via our EventListener framework.
+            // Events requeued for another listener are not ours to process.
+            if (!isAddressedToQueue(msg)) {
+                msg.acknowledge();
+                session.commit();
+                return;
+            }
+
+            // Process the message via our EventListener framework. If an event of a batched
+            // message fails, the remaining events are requeued as individual messages, and the
+            // batch itself is committed below.
             body = msg.getBodyBuffer().readString();
             log.debug("Got event: {}", body);
-            Event event = mapper.readValue(body, Event.class);
-            listener.onEvent(event);
-            log.debug("Message listener {} processed message: {} [{}]: SUCCESS", listener, msgId, origMsgId);
+            if (deliverEvents(msg, body)) {
+                log.debug("Message listener {} processed message: {} [{}]: SUCCESS", listener, msgId,
+                    origMsgId);
+            }
+            else {
+                log.debug("Message listener {} processed message: {} [{}]: REQUEUED", listener, msgId,
+                    origMsgId);
+            }
 
             // Acknowledge the message so that the server knows that it was received.
             msg.acknowledge();
@@ -37,9 +37,12 @@ public class BasicAuth extends UserAuth {
 
     private static Logger log = LoggerFactory.getLogger(BasicAuth.class);
 
+    private PrincipalCache principalCache;
+
     @Inject
-    BasicAuth(UserServiceAdapter userServiceAdapter, Provider<I18n> i18n) {
+    BasicAuth(UserServiceAdapter userServiceAdapter, PrincipalCache principalCache, Provider<I18n> i18n) {
         super(userServiceAdapter, i18n);
+        this.principalCache = principalCache;
     }
 
     @Override
@@ -62,8 +65,16 @@ public class BasicAuth extends UserAuth {
                     log.debug("check for: {} - password of length {}", username, length);
                 }
 
-                if (userServiceAdapter.validateUser(username, password)) {
+                String key = principalCache.getCredentialKey(username, password);
+
+                if (username.equals(principalCache.getUsername(key))) {
+                    // The credentials were verified recently; only the principal needs rebuilding
+                    log.debug("cached credentials found for user '{}'", username);
+                    return createPrincipal(username);
+                }
+                else if (userServiceAdapter.validateUser(username, password)) {
                     Principal principal = createPrincipal(username);
+                    principalCache.put(key, principal);
                     log.debug("principal created for user '{}'", username);
                     return principal;
                 }
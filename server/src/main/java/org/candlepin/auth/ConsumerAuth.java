@@ -39,15 +39,17 @@ public abstract class ConsumerAuth implements AuthProvider {
     protected ConsumerCurator consumerCurator;
     protected OwnerCurator ownerCurator;
     protected DeletedConsumerCurator deletedConsumerCurator;
+    protected PrincipalCache principalCache;
     private Provider<I18n> i18nProvider;
 
     @Inject
     ConsumerAuth(ConsumerCurator consumerCurator, OwnerCurator ownerCurator,
-        DeletedConsumerCurator deletedConsumerCurator,
+        DeletedConsumerCurator deletedConsumerCurator, PrincipalCache principalCache,
         Provider<I18n> i18nProvider) {
         this.consumerCurator = consumerCurator;
         this.ownerCurator = ownerCurator;
         this.deletedConsumerCurator = deletedConsumerCurator;
+        this.principalCache = principalCache;
         this.i18nProvider = i18nProvider;
     }
 
@@ -77,4 +79,34 @@ public abstract class ConsumerAuth implements AuthProvider {
         return principal;
     }
 
+    /**
+     * Rebuilds the principal of the consumer cached for the given key, loading the consumer and its
+     * owner by their IDs. If the consumer has since been deleted, or its identity certificate has
+     * been regenerated, the cached entry is discarded.
+     *
+     * @param key
+     *  the cache key of the verified credentials; may be null
+     *
+     * @return
+     *  the principal of the cached consumer, or null if no usable consumer is cached for the key
+     */
+    protected ConsumerPrincipal getCachedPrincipal(String key) {
+        PrincipalCache.CachedConsumer cached = this.principalCache.getConsumer(key);
+        if (cached == null) {
+            return null;
+        }
+
+        Consumer consumer = this.consumerCurator.get(cached.getConsumerId());
+        if (!cached.matches(consumer)) {
+            log.debug("Cached consumer for key {} is no longer valid", key);
+            this.principalCache.invalidate(key);
+            return null;
+        }
+
+        Owner owner = this.ownerCurator.findOwnerById(consumer.getOwnerId());
+        log.debug("principal created for cached consumer {}", consumer.getUuid());
+
+        return new ConsumerPrincipal(consumer, owner);
+    }
+
 }
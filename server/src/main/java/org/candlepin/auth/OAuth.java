@@ -61,14 +61,17 @@ public class OAuth implements AuthProvider {
     private TrustedUserAuth userAuth;
     private TrustedConsumerAuth consumerAuth;
     private TrustedExternalSystemAuth systemAuth;
+    private PrincipalCache principalCache;
     private Map<String, OAuthAccessor> accessors = new HashMap<>();
 
     protected Provider<I18n> i18nProvider;
 
     @Inject
     OAuth(TrustedConsumerAuth consumerAuth, TrustedUserAuth userAuth,
-        TrustedExternalSystemAuth systemAuth, Provider<I18n> i18nProvider, Configuration config) {
+        TrustedExternalSystemAuth systemAuth, PrincipalCache principalCache,
+        Provider<I18n> i18nProvider, Configuration config) {
         this.config = config;
+        this.principalCache = principalCache;
         this.userAuth = userAuth;
         this.consumerAuth = consumerAuth;
         this.systemAuth = systemAuth;
@@ -94,8 +97,21 @@ public class OAuth implements AuthProvider {
                 VALIDATOR.validateMessage(requestMessage, accessor);
 
                 // If we got here, it is a valid oauth message.
-                // Figure out which kind of principal we should create, based on header
                 log.debug("Using OAuth");
+
+                // The principal only depends on the signer and the trusted headers of the message
+                String key = this.principalCache.getOAuthKey(requestMessage.getConsumerKey(),
+                    AuthUtil.getHeader(httpRequest, TrustedUserAuth.USER_HEADER),
+                    AuthUtil.getHeader(httpRequest, TrustedUserAuth.LOOKUP_PERMISSIONS_HEADER),
+                    AuthUtil.getHeader(httpRequest, TrustedConsumerAuth.CONSUMER_HEADER));
+
+                principal = consumerAuth.getCachedPrincipal(key);
+                if (principal != null) {
+                    log.debug("Using cached principal");
+                    return principal;
+                }
+
+                // Figure out which kind of principal we should create, based on header
                 if (!AuthUtil.getHeader(httpRequest, TrustedUserAuth.USER_HEADER).equals("")) {
                     principal = userAuth.getPrincipal(httpRequest);
                 }
@@ -106,6 +122,12 @@ public class OAuth implements AuthProvider {
                     // The external system is acting on behalf of itself
                     principal = systemAuth.getPrincipal(httpRequest);
                 }
+
+                // User principals are looked up from the trusted headers alone, so only consumers
+                // are worth caching here
+                if (principal instanceof ConsumerPrincipal) {
+                    this.principalCache.put(key, principal);
+                }
             }
         }
         catch (OAuthProblemException e) {
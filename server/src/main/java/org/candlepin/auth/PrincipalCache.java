@@ -0,0 +1,367 @@
+/**
+ * Copyright (c) 2009 - 2018 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.auth;
+
+import org.candlepin.common.config.Configuration;
+import org.candlepin.config.ConfigProperties;
+import org.candlepin.model.Consumer;
+import org.candlepin.model.IdentityCertificate;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+
+import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.security.cert.CertificateEncodingException;
+import java.security.cert.X509Certificate;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+
+
+/**
+ * Retains recently verified principals for a short time, so that clients making several requests
+ * in a row are not authenticated from scratch for each of them.
+ *
+ * Principals are keyed by the credentials which were verified to establish them: the fingerprint of
+ * a client certificate, the OAuth consumer key along with the trusted headers of the request, or a
+ * keyed hash of a basic auth username and password. Credentials themselves are never retained.
+ *
+ * Principals are never shared between requests, as they carry entities bound to the session which
+ * loaded them. For users, only the username whose credentials were verified is cached, and the
+ * principal and its permissions are looked up again for each request. For consumers, only the
+ * identity of the consumer is cached; the principal is rebuilt from it with primary key lookups.
+ *
+ * Entries expire after the configured TTL. They are discarded earlier when the consumer is deleted,
+ * the roles or permissions of a user change, or, for consumers, when the identity certificate is
+ * found to have been regenerated. Changes made through other nodes are only reflected once the
+ * entries expire.
+ */
+@Singleton
+public class PrincipalCache {
+    private static Logger log = LoggerFactory.getLogger(PrincipalCache.class);
+
+    private static final String HMAC_ALGORITHM = "HmacSHA256";
+
+    /**
+     * The identity of a verified consumer
+     */
+    public static class CachedConsumer {
+        private final String uuid;
+        private final String consumerId;
+        private final String idCertId;
+
+        private CachedConsumer(Consumer consumer) {
+            this.uuid = consumer.getUuid();
+            this.consumerId = consumer.getId();
+            this.idCertId = getIdCertId(consumer);
+        }
+
+        /**
+         * @return
+         *  the ID of the consumer
+         */
+        public String getConsumerId() {
+            return this.consumerId;
+        }
+
+        /**
+         * Checks that the given consumer is still the consumer that was verified, with the same
+         * identity certificate.
+         *
+         * @param consumer
+         *  the consumer to check
+         *
+         * @return
+         *  true if the consumer matches this identity; false otherwise
+         */
+        public boolean matches(Consumer consumer) {
+            return consumer != null && this.uuid.equals(consumer.getUuid()) &&
+                Objects.equals(this.idCertId, getIdCertId(consumer));
+        }
+
+        private static String getIdCertId(Consumer consumer) {
+            IdentityCertificate idCert = consumer.getIdCert();
+            return idCert != null ? idCert.getId() : null;
+        }
+    }
+
+    /**
+     * A cached user or consumer identity, along with what it was established for.
+     */
+    private static class Entry {
+        private final Object value;
+        private final String consumerUuid;
+        private final String username;
+        private final long expiration;
+
+        public Entry(Object value, String consumerUuid, String username, long expiration) {
+            this.value = value;
+            this.consumerUuid = consumerUuid;
+            this.username = username;
+            this.expiration = expiration;
+        }
+    }
+
+    private final boolean enabled;
+    private final long ttl;
+    private final Map<String, Entry> entries;
+    private final SecretKeySpec credentialKey;
+
+    @Inject
+    public PrincipalCache(Configuration config) {
+        this(config.getBoolean(ConfigProperties.PRINCIPAL_CACHE_ENABLED, true),
+            config.getInt(ConfigProperties.PRINCIPAL_CACHE_SIZE, 10000),
+            TimeUnit.SECONDS.toMillis(config.getInt(ConfigProperties.PRINCIPAL_CACHE_TTL, 30)));
+    }
+
+    public PrincipalCache(boolean enabled, final int maxSize, long ttl) {
+        if (enabled && maxSize < 1) {
+            throw new IllegalArgumentException("maxSize must be a positive integer");
+        }
+
+        this.enabled = enabled && ttl > 0;
+        this.ttl = ttl;
+        this.entries = Collections.synchronizedMap(new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return this.size() > maxSize;
+            }
+        });
+
+        // Basic auth credentials are hashed with a key which never leaves this instance
+        byte[] secret = new byte[32];
+        new SecureRandom().nextBytes(secret);
+        this.credentialKey = new SecretKeySpec(secret, HMAC_ALGORITHM);
+    }
+
+    /**
+     * Builds the cache key for a client certificate.
+     *
+     * @param cert
+     *  the certificate presented by the client
+     *
+     * @return
+     *  the cache key for the certificate, or null if principals are not cached
+     */
+    public String getCertificateKey(X509Certificate cert) {
+        if (!this.enabled) {
+            return null;
+        }
+
+        try {
+            byte[] encoded = cert.getEncoded();
+            return encoded != null ? "ssl:" + DigestUtils.sha256Hex(encoded) : null;
+        }
+        catch (CertificateEncodingException e) {
+            log.debug("Unable to encode client certificate; not caching its principal", e);
+            return null;
+        }
+    }
+
+    /**
+     * Builds the cache key for an OAuth signed request.
+     *
+     * @param consumerKey
+     *  the OAuth consumer key which signed the request
+     *
+     * @param headers
+     *  the values of the headers which determine the principal of the request
+     *
+     * @return
+     *  the cache key for the request, or null if principals are not cached
+     */
+    public String getOAuthKey(String consumerKey, String... headers) {
+        if (!this.enabled) {
+            return null;
+        }
+
+        StringBuilder key = new StringBuilder("oauth:").append(consumerKey);
+        for (String header : headers) {
+            key.append('\n').append(header);
+        }
+
+        return key.toString();
+    }
+
+    /**
+     * Builds the cache key for a basic auth username and password.
+     *
+     * @param username
+     *  the username provided by the client
+     *
+     * @param password
+     *  the password provided by the client
+     *
+     * @return
+     *  the cache key for the credentials, or null if principals are not cached
+     */
+    public String getCredentialKey(String username, String password) {
+        if (!this.enabled || username == null || password == null) {
+            return null;
+        }
+
+        try {
+            Mac mac = Mac.getInstance(HMAC_ALGORITHM);
+            mac.init(this.credentialKey);
+            mac.update(username.getBytes(StandardCharsets.UTF_8));
+            mac.update((byte) 0);
+
+            return "basic:" + Hex.encodeHexString(mac.doFinal(password.getBytes(StandardCharsets.UTF_8)));
+        }
+        catch (GeneralSecurityException e) {
+            log.debug("Unable to hash credentials; not caching their principal", e);
+            return null;
+        }
+    }
+
+    /**
+     * Fetches the username cached for the given key. The user principal should be rebuilt from it
+     * before it is used.
+     *
+     * @param key
+     *  the cache key of the verified credentials; may be null
+     *
+     * @return
+     *  the username whose credentials were verified, or null if no user is cached for the key
+     */
+    public String getUsername(String key) {
+        Object value = this.getValue(key);
+        return value instanceof String ? (String) value : null;
+    }
+
+    /**
+     * Fetches the cached consumer identity for the given key. The consumer should be reloaded and
+     * checked against the identity before it is used.
+     *
+     * @param key
+     *  the cache key of the verified credentials; may be null
+     *
+     * @return
+     *  the cached consumer identity, or null if no consumer is cached for the key
+     */
+    public CachedConsumer getConsumer(String key) {
+        Object value = this.getValue(key);
+        return value instanceof CachedConsumer ? (CachedConsumer) value : null;
+    }
+
+    /**
+     * Caches the identity of the principal established for the given key. Only user and consumer
+     * principals are cached.
+     *
+     * @param key
+     *  the cache key of the verified credentials; may be null
+     *
+     * @param principal
+     *  the principal established for the credentials; may be null
+     */
+    public void put(String key, Principal principal) {
+        if (!this.enabled || key == null) {
+            return;
+        }
+
+        long expiration = System.currentTimeMillis() + this.ttl;
+
+        if (principal instanceof ConsumerPrincipal) {
+            Consumer consumer = ((ConsumerPrincipal) principal).getConsumer();
+
+            if (consumer != null && consumer.getId() != null) {
+                this.entries.put(key,
+                    new Entry(new CachedConsumer(consumer), consumer.getUuid(), null, expiration));
+            }
+        }
+        else if (principal instanceof UserPrincipal) {
+            String username = ((UserPrincipal) principal).getUsername();
+
+            if (username != null) {
+                this.entries.put(key, new Entry(username, null, username, expiration));
+            }
+        }
+    }
+
+    /**
+     * Discards the entry cached for the given key.
+     *
+     * @param key
+     *  the cache key to discard; may be null
+     */
+    public void invalidate(String key) {
+        if (key != null) {
+            this.entries.remove(key);
+        }
+    }
+
+    /**
+     * Discards all entries cached for the given consumer.
+     *
+     * @param consumerUuid
+     *  the UUID of the consumer
+     */
+    public void invalidateConsumer(String consumerUuid) {
+        if (consumerUuid != null) {
+            this.entries.values().removeIf(entry -> consumerUuid.equals(entry.consumerUuid));
+        }
+    }
+
+    /**
+     * Discards all entries cached for the given user.
+     *
+     * @param username
+     *  the username of the user
+     */
+    public void invalidateUser(String username) {
+        if (username != null) {
+            this.entries.values().removeIf(entry -> username.equals(entry.username));
+        }
+    }
+
+    /**
+     * Discards all cached users. This should be called whenever a role or permission
+     * changes, as any number of users may be affected.
+     */
+    public void invalidateUsers() {
+        this.entries.values().removeIf(entry -> entry.username != null);
+    }
+
+    private Object getValue(String key) {
+        if (!this.enabled || key == null) {
+            return null;
+        }
+
+        Entry entry = this.entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+
+        if (entry.expiration < System.currentTimeMillis()) {
+            this.entries.remove(key);
+            return null;
+        }
+
+        return entry.value;
+    }
+}
@@ -44,9 +44,9 @@ public class SSLAuth extends ConsumerAuth {
 
     @Inject
     SSLAuth(ConsumerCurator consumerCurator, OwnerCurator ownerCurator,
-        DeletedConsumerCurator deletedConsumerCurator,
+        DeletedConsumerCurator deletedConsumerCurator, PrincipalCache principalCache,
         Provider<I18n> i18nProvider) {
-        super(consumerCurator, ownerCurator, deletedConsumerCurator, i18nProvider);
+        super(consumerCurator, ownerCurator, deletedConsumerCurator, principalCache, i18nProvider);
     }
 
     public Principal getPrincipal(HttpRequest httpRequest) {
@@ -65,7 +65,15 @@ public class SSLAuth extends ConsumerAuth {
         // itself.
         X509Certificate identityCert = certs[0];
 
-        return createPrincipal(parseUuid(identityCert));
+        String key = this.principalCache.getCertificateKey(identityCert);
+        ConsumerPrincipal principal = this.getCachedPrincipal(key);
+
+        if (principal == null) {
+            principal = createPrincipal(parseUuid(identityCert));
+            this.principalCache.put(key, principal);
+        }
+
+        return principal;
     }
 
     // Pulls the consumer uuid off of the x509 cert.
@@ -37,9 +37,9 @@ public class TrustedConsumerAuth extends ConsumerAuth {
 
     @Inject
     TrustedConsumerAuth(ConsumerCurator consumerCurator, OwnerCurator ownerCurator,
-        DeletedConsumerCurator deletedConsumerCurator,
+        DeletedConsumerCurator deletedConsumerCurator, PrincipalCache principalCache,
         Provider<I18n> i18nProvider) {
-        super(consumerCurator, ownerCurator, deletedConsumerCurator, i18nProvider);
+        super(consumerCurator, ownerCurator, deletedConsumerCurator, principalCache, i18nProvider);
     }
 
     public Principal getPrincipal(HttpRequest httpRequest) {
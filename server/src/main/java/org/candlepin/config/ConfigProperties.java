@@ -134,6 +134,17 @@ public class ConfigProperties {
     public static final String ACTIVEMQ_MAX_DELIVERY_ATTEMPTS =
         "candlepin.audit.hornetq.max_delivery_attempts";
 
+    /**
+     * When enabled, events queued during a request or job are collected in memory and handed to a
+     * background publisher once the request or job completes successfully. The publisher
+     * serializes them and sends them to the message broker in messages carrying up to
+     * EVENT_BATCH_SIZE events each. Up to EVENT_BATCH_QUEUE_SIZE completed transactions may be
+     * waiting for publication; beyond that, events are published on the completing thread.
+     */
+    public static final String EVENT_BATCH_ENABLED = "candlepin.audit.batch.enabled";
+    public static final String EVENT_BATCH_SIZE = "candlepin.audit.batch.size";
+    public static final String EVENT_BATCH_QUEUE_SIZE = "candlepin.audit.batch.queue_size";
+
     public static final String AUDIT_LISTENERS = "candlepin.audit.listeners";
     public static final String AUDIT_LOG_FILE = "candlepin.audit.log_file";
     /**
@@ -261,6 +272,182 @@ public class ConfigProperties {
 
     public static final String PRODUCT_CACHE_MAX = "candlepin.cache.product_cache_max";
 
+    /**
+     * Enables reuse of per-thread rules execution scopes. When enabled, the rules version is
+     * checked against an in-memory timestamp refreshed every RULES_VERSION_POLL_INTERVAL
+     * seconds, rather than against the database on every request.
+     */
+    public static final String RULES_SCOPE_POOL_ENABLED = "candlepin.rules.scope_pool.enabled";
+    public static final String RULES_SCOPE_POOL_SIZE = "candlepin.rules.scope_pool.size";
+    public static final String RULES_VERSION_POLL_INTERVAL = "candlepin.rules.version_poll_interval";
+
+    /**
+     * Enables caching of the JSON generated for the pool, consumer and owner data passed to the
+     * rules. Cached JSON is only reused for identical data, and expires after
+     * RULES_SERIALIZATION_CACHE_TTL seconds; at most RULES_SERIALIZATION_CACHE_SIZE fragments are
+     * retained.
+     */
+    public static final String RULES_SERIALIZATION_CACHE_ENABLED =
+        "candlepin.rules.serialization_cache.enabled";
+    public static final String RULES_SERIALIZATION_CACHE_SIZE = "candlepin.rules.serialization_cache.size";
+    public static final String RULES_SERIALIZATION_CACHE_TTL = "candlepin.rules.serialization_cache.ttl";
+
+    /**
+     * Selects the engine used to calculate consumer compliance: "js" to run the compliance
+     * namespace of the rules, or "native" to use the equivalent Java implementation.
+     */
+    public static final String COMPLIANCE_ENGINE = "candlepin.compliance.engine";
+
+    /**
+     * Enables retaining the per-stack and per-entitlement results of the native compliance engine,
+     * so only the stacks and entitlements which changed are re-evaluated on the next compliance
+     * check of a consumer. COMPLIANCE_INCREMENTAL_CACHE_SIZE limits the number of consumers for
+     * which results are retained.
+     */
+    public static final String COMPLIANCE_INCREMENTAL_ENABLED = "candlepin.compliance.incremental.enabled";
+    public static final String COMPLIANCE_INCREMENTAL_CACHE_SIZE =
+        "candlepin.compliance.incremental.cache_size";
+
+    /**
+     * Controls batch compliance calculations for many consumers at once. Consumers are loaded,
+     * evaluated and written back in chunks of COMPLIANCE_BATCH_CHUNK_SIZE consumers; when the
+     * native compliance engine is in use, each chunk is evaluated by up to COMPLIANCE_BATCH_THREADS
+     * threads of the shared worker pool.
+     */
+    public static final String COMPLIANCE_BATCH_CHUNK_SIZE = "candlepin.compliance.batch.chunk_size";
+    public static final String COMPLIANCE_BATCH_THREADS = "candlepin.compliance.batch.threads";
+
+    /**
+     * The size of the worker pool shared by all requests and jobs which parallelize their work.
+     * At most WORKER_POOL_THREADS threads are run at once; work which does not fit in a queue of
+     * WORKER_POOL_QUEUE_SIZE tasks is run on the calling thread instead.
+     */
+    public static final String WORKER_POOL_THREADS = "candlepin.worker_pool.threads";
+    public static final String WORKER_POOL_QUEUE_SIZE = "candlepin.worker_pool.queue_size";
+
+    /**
+     * The maximum number of threads used to sign entitlement certificates when generating several
+     * of them at once, drawn from the shared worker pool. A value of 1 signs all certificates on
+     * the calling thread.
+     */
+    public static final String ENTITLEMENT_CERT_GENERATION_THREADS =
+        "candlepin.entitlement_cert.generation_threads";
+
+    /**
+     * Enables caching of the compressed content-set data embedded in v3 entitlement certificates.
+     * At most CONTENT_SET_CACHE_SIZE distinct content sets are retained.
+     */
+    public static final String CONTENT_SET_CACHE_ENABLED =
+        "candlepin.entitlement_cert.content_set_cache.enabled";
+    public static final String CONTENT_SET_CACHE_SIZE = "candlepin.entitlement_cert.content_set_cache.size";
+
+    /**
+     * Enables background generation of RSA key pairs for consumers. Up to KEY_PAIR_POOL_THREADS
+     * threads refill the pool to KEY_PAIR_POOL_HIGH_WATERMARK key pairs whenever it drops below
+     * KEY_PAIR_POOL_LOW_WATERMARK.
+     */
+    public static final String KEY_PAIR_POOL_ENABLED = "candlepin.crypto.keypair_pool.enabled";
+    public static final String KEY_PAIR_POOL_LOW_WATERMARK = "candlepin.crypto.keypair_pool.low_watermark";
+    public static final String KEY_PAIR_POOL_HIGH_WATERMARK = "candlepin.crypto.keypair_pool.high_watermark";
+    public static final String KEY_PAIR_POOL_THREADS = "candlepin.crypto.keypair_pool.threads";
+
+    /**
+     * Selects the UniqueIdGenerator used for generated product, content and subscription IDs. By
+     * default, IDs are the current time in milliseconds plus a counter kept under a lock, which is
+     * only unique within a single node. When enabled, the lock-free SnowflakeUniqueIdGenerator is
+     * used instead; its IDs embed a node ID and are unique across a cluster. Requires
+     * candlepin.unique_id.node_id to be set; startup fails otherwise.
+     */
+    public static final String UNIQUE_ID_SNOWFLAKE_ENABLED = "candlepin.unique_id.snowflake.enabled";
+
+    /**
+     * The ID of this node, between 0 and 1023, used by the numeric unique ID generator. Each node
+     * in a cluster must be given a distinct value.
+     */
+    public static final String UNIQUE_ID_NODE_ID = "candlepin.unique_id.node_id";
+
+    /**
+     * Enables buffering of consumer check-ins. Buffered check-ins are written in a single batch
+     * every CONSUMER_CHECKIN_BUFFER_FLUSH_INTERVAL seconds, or as soon as check-ins from
+     * CONSUMER_CHECKIN_BUFFER_SIZE distinct consumers are waiting to be written. While a check-in
+     * is buffered, the consumer's last check-in time reads back as its previous value.
+     */
+    public static final String CONSUMER_CHECKIN_BUFFER_ENABLED = "candlepin.consumer.checkin_buffer.enabled";
+    public static final String CONSUMER_CHECKIN_BUFFER_FLUSH_INTERVAL =
+        "candlepin.consumer.checkin_buffer.flush_interval";
+    public static final String CONSUMER_CHECKIN_BUFFER_SIZE = "candlepin.consumer.checkin_buffer.size";
+
+    /**
+     * Enables streaming of hypervisor reports. When enabled, the hypervisors in a report are read
+     * incrementally and processed HYPERVISOR_UPDATE_CHUNK_SIZE hosts at a time, rather than loading
+     * the whole report into memory at once.
+     */
+    public static final String HYPERVISOR_UPDATE_STREAMING_ENABLED =
+        "candlepin.hypervisor_update.streaming.enabled";
+    public static final String HYPERVISOR_UPDATE_CHUNK_SIZE = "candlepin.hypervisor_update.chunk_size";
+
+    /**
+     * Enables change detection for hypervisor reports. Hosts reported exactly as they were last
+     * time only have their check-in time updated, and an entire report identical to the last one
+     * from the same reporter is skipped without being parsed. The last report is remembered for
+     * up to HYPERVISOR_REPORT_CACHE_SIZE reporters.
+     */
+    public static final String HYPERVISOR_UPDATE_DIGEST_ENABLED =
+        "candlepin.hypervisor_update.digest.enabled";
+    public static final String HYPERVISOR_REPORT_CACHE_SIZE = "candlepin.hypervisor_update.report_cache.size";
+
+    /**
+     * Enables caching of the row counts reported by paged listings. Cached counts expire after
+     * ROW_COUNT_CACHE_TTL seconds, or as soon as rows are added to, updated in or removed from any
+     * of the counted tables; at most ROW_COUNT_CACHE_SIZE counts are retained. When
+     * ROW_COUNT_APPROXIMATE is enabled, counts are estimated from the database statistics instead,
+     * and only counted exactly when the estimate is below ROW_COUNT_APPROXIMATE_THRESHOLD rows.
+     */
+    public static final String ROW_COUNT_CACHE_ENABLED = "candlepin.db.row_count_cache.enabled";
+    public static final String ROW_COUNT_CACHE_SIZE = "candlepin.db.row_count_cache.size";
+    public static final String ROW_COUNT_CACHE_TTL = "candlepin.db.row_count_cache.ttl";
+    public static final String ROW_COUNT_APPROXIMATE = "candlepin.db.row_count.approximate";
+    public static final String ROW_COUNT_APPROXIMATE_THRESHOLD =
+        "candlepin.db.row_count.approximate_threshold";
+
+    /**
+     * When enabled, content access payloads are regenerated in the background after content or
+     * environment changes, rather than being discarded and rebuilt on the next request. Clients
+     * continue to receive the previous payload until its replacement is ready.
+     */
+    public static final String CONTENT_ACCESS_BACKGROUND_REFRESH =
+        "candlepin.content_access.background_refresh";
+
+    /**
+     * Enables the in-memory pool index, which answers availability queries for an owner's pools
+     * without running the full filtering query against the database. The pools of at most
+     * POOL_INDEX_SIZE owners are indexed at once. Indexed pools are reloaded after POOL_INDEX_TTL
+     * seconds, which bounds how long changes made by other nodes in a cluster go unnoticed.
+     */
+    public static final String POOL_INDEX_ENABLED = "candlepin.pool_index.enabled";
+    public static final String POOL_INDEX_SIZE = "candlepin.pool_index.size";
+    public static final String POOL_INDEX_TTL = "candlepin.pool_index.ttl";
+
+    /**
+     * Enables the cross-request cache of guest-to-host mappings used when resolving the host of a
+     * guest. At most GUEST_HOST_CACHE_SIZE mappings are cached at once. Cached mappings expire after
+     * GUEST_HOST_CACHE_TTL seconds, which bounds how long guest migrations reported to other nodes
+     * in a cluster go unnoticed.
+     */
+    public static final String GUEST_HOST_CACHE_ENABLED = "candlepin.guest_host_cache.enabled";
+    public static final String GUEST_HOST_CACHE_SIZE = "candlepin.guest_host_cache.size";
+    public static final String GUEST_HOST_CACHE_TTL = "candlepin.guest_host_cache.ttl";
+
+    /**
+     * Enables the cache of verified consumer and user identities used by the SSL, OAuth and basic
+     * authentication providers. Principals are rebuilt from the cached identities for each request.
+     * Cached identities expire after PRINCIPAL_CACHE_TTL seconds; at most PRINCIPAL_CACHE_SIZE
+     * identities are retained.
+     */
+    public static final String PRINCIPAL_CACHE_ENABLED = "candlepin.auth.principal_cache.enabled";
+    public static final String PRINCIPAL_CACHE_SIZE = "candlepin.auth.principal_cache.size";
+    public static final String PRINCIPAL_CACHE_TTL = "candlepin.auth.principal_cache.ttl";
+
     public static final String INTEGER_FACTS = "candlepin.integer_facts";
     private static final String INTEGER_FACT_LIST = "";
 
@@ -303,6 +490,13 @@ public class ConfigProperties {
     public static final String CRL_NEXT_UPDATE_DELTA = "candlepin.crl.nextupdate.delta_days";
     public static final String CRL_FILE_PATH = "candlepin.crl.file";
 
+    /**
+     * Whether requests for the CRL should be served from the last generated CRL file rather than
+     * first syncing the file with the database. When enabled, the CRL is only refreshed by the
+     * CRL job and by unrevoke requests.
+     */
+    public static final String CRL_SERVE_CACHED = "candlepin.crl.serve_cached";
+
     public static final String IDENTITY_CERT_YEAR_ADDENDUM = "candlepin.identityCert.yr.addendum";
     /**
      * Identity certificate expiry threshold in days
@@ -341,6 +535,10 @@ public class ConfigProperties {
             // By default, never stop delivery attempts.
             this.put(ACTIVEMQ_MAX_DELIVERY_ATTEMPTS, "0");
 
+            this.put(EVENT_BATCH_ENABLED, "false");
+            this.put(EVENT_BATCH_SIZE, "100");
+            this.put(EVENT_BATCH_QUEUE_SIZE, "1000");
+
             this.put(AUDIT_LISTENERS,
                 "org.candlepin.audit.DatabaseListener," +
                 "org.candlepin.audit.LoggingListener," +
@@ -368,6 +566,7 @@ public class ConfigProperties {
             this.put(PRETTY_PRINT, "false");
             this.put(CRL_FILE_PATH, "/var/lib/candlepin/candlepin-crl.crl");
             this.put(CRL_NEXT_UPDATE_DELTA, "1");
+            this.put(CRL_SERVE_CACHED, "false");
 
             this.put(SYNC_WORK_DIR, "/var/cache/candlepin/sync");
             this.put(CONSUMER_FACTS_MATCHER, ".*");
@@ -437,6 +636,51 @@ public class ConfigProperties {
              */
             this.put(PRODUCT_CACHE_MAX, "100");
 
+            this.put(RULES_SCOPE_POOL_ENABLED, "false");
+            this.put(RULES_SCOPE_POOL_SIZE, "64");
+            this.put(RULES_VERSION_POLL_INTERVAL, "10");
+            this.put(RULES_SERIALIZATION_CACHE_ENABLED, "true");
+            this.put(RULES_SERIALIZATION_CACHE_SIZE, "20000");
+            this.put(RULES_SERIALIZATION_CACHE_TTL, "60");
+            this.put(COMPLIANCE_ENGINE, "js");
+            this.put(COMPLIANCE_INCREMENTAL_ENABLED, "false");
+            this.put(COMPLIANCE_INCREMENTAL_CACHE_SIZE, "10000");
+            this.put(COMPLIANCE_BATCH_CHUNK_SIZE, "500");
+            this.put(COMPLIANCE_BATCH_THREADS, "4");
+            this.put(WORKER_POOL_THREADS, "4");
+            this.put(WORKER_POOL_QUEUE_SIZE, "1000");
+            this.put(ENTITLEMENT_CERT_GENERATION_THREADS, "4");
+            this.put(CONTENT_SET_CACHE_ENABLED, "true");
+            this.put(CONTENT_SET_CACHE_SIZE, "1000");
+            this.put(KEY_PAIR_POOL_ENABLED, "true");
+            this.put(KEY_PAIR_POOL_LOW_WATERMARK, "16");
+            this.put(KEY_PAIR_POOL_HIGH_WATERMARK, "64");
+            this.put(KEY_PAIR_POOL_THREADS, "1");
+            this.put(UNIQUE_ID_SNOWFLAKE_ENABLED, "false");
+            this.put(UNIQUE_ID_NODE_ID, "-1");
+            this.put(CONSUMER_CHECKIN_BUFFER_ENABLED, "false");
+            this.put(CONSUMER_CHECKIN_BUFFER_FLUSH_INTERVAL, "5");
+            this.put(CONSUMER_CHECKIN_BUFFER_SIZE, "10000");
+            this.put(HYPERVISOR_UPDATE_STREAMING_ENABLED, "true");
+            this.put(HYPERVISOR_UPDATE_CHUNK_SIZE, "250");
+            this.put(HYPERVISOR_UPDATE_DIGEST_ENABLED, "true");
+            this.put(HYPERVISOR_REPORT_CACHE_SIZE, "100");
+            this.put(ROW_COUNT_CACHE_ENABLED, "true");
+            this.put(ROW_COUNT_CACHE_SIZE, "1000");
+            this.put(ROW_COUNT_CACHE_TTL, "10");
+            this.put(ROW_COUNT_APPROXIMATE, "false");
+            this.put(ROW_COUNT_APPROXIMATE_THRESHOLD, "10000");
+            this.put(CONTENT_ACCESS_BACKGROUND_REFRESH, "true");
+            this.put(POOL_INDEX_ENABLED, "false");
+            this.put(POOL_INDEX_SIZE, "100");
+            this.put(POOL_INDEX_TTL, "30");
+            this.put(GUEST_HOST_CACHE_ENABLED, "true");
+            this.put(GUEST_HOST_CACHE_SIZE, "10000");
+            this.put(GUEST_HOST_CACHE_TTL, "10");
+            this.put(PRINCIPAL_CACHE_ENABLED, "true");
+            this.put(PRINCIPAL_CACHE_SIZE, "10000");
+            this.put(PRINCIPAL_CACHE_TTL, "30");
+
             /**
              * As we do math on some facts and attributes, we need to constrain
              * some values
@@ -1306,6 +1306,7 @@ public class CandlepinPoolManager implements PoolManager {
         Map<String, Set<String>> derivedProvidedProductIds = this.poolCurator
             .getDerivedProvidedProductIds(allOwnerPools);
 
+        List<Pool> candidatePools = new ArrayList<>();
         for (Pool pool : allOwnerPools) {
             boolean providesProduct = false;
             // Would parse the int here, but it can be 'unlimited'
@@ -1352,21 +1353,27 @@ public class CandlepinPoolManager implements PoolManager {
             }
 
             if (providesProduct) {
-                ValidationResult result = enforcer.preEntitlement(host, pool, 1, CallerType.BEST_POOLS);
-
-                if (result.hasErrors() || result.hasWarnings()) {
-                    // Just keep the last one around, if we need it
-                    failedResults.put(pool.getId(), result);
-                    if (log.isDebugEnabled()) {
-                        log.debug("Pool filtered from candidates due to failed rule(s): {}", pool);
-                        log.debug("  warnings: {}", Util.collectionToString(result.getWarnings()));
-                        log.debug("  errors: {}", Util.collectionToString(result.getErrors()));
-                    }
-                }
-                else {
-                    filteredPools.add(pool);
+                candidatePools.add(pool);
+            }
+        }
+
+        Map<String, ValidationResult> results = this.validateBestPoolCandidates(host, candidatePools);
+
+        for (Pool pool : candidatePools) {
+            ValidationResult result = results.get(pool.getId());
+
+            if (result.hasErrors() || result.hasWarnings()) {
+                // Just keep the last one around, if we need it
+                failedResults.put(pool.getId(), result);
+                if (log.isDebugEnabled()) {
+                    log.debug("Pool filtered from candidates due to failed rule(s): {}", pool);
+                    log.debug("  warnings: {}", Util.collectionToString(result.getWarnings()));
+                    log.debug("  errors: {}", Util.collectionToString(result.getErrors()));
                 }
             }
+            else {
+                filteredPools.add(pool);
+            }
         }
 
         // Only throw refused exception if we actually hit the rules:
@@ -1441,6 +1448,41 @@ public class CandlepinPoolManager implements PoolManager {
         return productsToRemove;
     }
 
+    /**
+     * Runs the pre-entitlement rules for all of the given candidate pools in a single rules
+     * invocation, so the consumer and its entitlements only need to be serialized once.
+     *
+     * @param consumer
+     *  the consumer for which to validate the pools
+     *
+     * @param pools
+     *  the candidate pools to validate
+     *
+     * @return
+     *  a mapping of pool IDs to the validation result for each pool
+     */
+    private Map<String, ValidationResult> validateBestPoolCandidates(Consumer consumer, List<Pool> pools) {
+        if (pools.isEmpty()) {
+            return Collections.emptyMap();
+        }
+
+        List<PoolQuantity> poolQuantities = new ArrayList<>(pools.size());
+        for (Pool pool : pools) {
+            poolQuantities.add(new PoolQuantity(pool, 1));
+        }
+
+        Map<String, ValidationResult> results = new HashMap<>(
+            enforcer.preEntitlement(consumer, poolQuantities, CallerType.BEST_POOLS));
+
+        // The rules return a result for every pool; treat any pool they skipped as valid, as the
+        // rules themselves do
+        for (Pool pool : pools) {
+            results.putIfAbsent(pool.getId(), new ValidationResult());
+        }
+
+        return results;
+    }
+
     private void logPools(Collection<Pool> pools) {
         if (log.isDebugEnabled()) {
             for (Pool p : pools) {
@@ -1492,6 +1534,7 @@ public class CandlepinPoolManager implements PoolManager {
         // for this lookup.
         Map<String, Set<String>> providedProductIds = this.poolCurator.getProvidedProductIds(allOwnerPools);
 
+        List<Pool> candidatePools = new ArrayList<>();
         for (Pool pool : allOwnerPools) {
             boolean providesProduct = false;
             // We want to complete partial stacks if possible, even if they do not provide any products
@@ -1526,15 +1569,21 @@ public class CandlepinPoolManager implements PoolManager {
             }
 
             if (providesProduct) {
-                ValidationResult result = enforcer.preEntitlement(consumer, pool, 1, CallerType.BEST_POOLS);
+                candidatePools.add(pool);
+            }
+        }
 
-                if (result.hasErrors() || result.hasWarnings()) {
-                    failedResults.put(pool.getId(), result);
-                    log.debug("Pool filtered from candidates due to rules failure: {}", pool.getId());
-                }
-                else {
-                    filteredPools.add(pool);
-                }
+        Map<String, ValidationResult> results = this.validateBestPoolCandidates(consumer, candidatePools);
+
+        for (Pool pool : candidatePools) {
+            ValidationResult result = results.get(pool.getId());
+
+            if (result.hasErrors() || result.hasWarnings()) {
+                failedResults.put(pool.getId(), result);
+                log.debug("Pool filtered from candidates due to rules failure: {}", pool.getId());
+            }
+            else {
+                filteredPools.add(pool);
             }
         }
 
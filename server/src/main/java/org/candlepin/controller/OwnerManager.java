@@ -25,7 +25,6 @@ import org.candlepin.model.ImportRecordCurator;
 import org.candlepin.model.Owner;
 import org.candlepin.model.OwnerContentCurator;
 import org.candlepin.model.OwnerCurator;
-import org.candlepin.model.OwnerEnvContentAccessCurator;
 import org.candlepin.model.OwnerProductCurator;
 import org.candlepin.model.PermissionBlueprint;
 import org.candlepin.model.PermissionBlueprintCurator;
@@ -35,6 +34,7 @@ import org.candlepin.model.activationkeys.ActivationKey;
 import org.candlepin.model.activationkeys.ActivationKeyCurator;
 import org.candlepin.service.ContentAccessCertServiceAdapter;
 import org.candlepin.service.OwnerServiceAdapter;
+import org.candlepin.service.impl.ContentAccessPayloadRefresher;
 
 import com.google.inject.Inject;
 import com.google.inject.persist.Transactional;
@@ -74,7 +74,7 @@ public class OwnerManager {
     private OwnerCurator ownerCurator;
     private ContentAccessCertServiceAdapter contentAccessCertService;
     private ContentAccessCertificateCurator contentAccessCertCurator;
-    private OwnerEnvContentAccessCurator ownerEnvContentAccessCurator;
+    private ContentAccessPayloadRefresher payloadRefresher;
     private UeberCertificateCurator uberCertificateCurator;
     private OwnerServiceAdapter ownerServiceAdapter;
 
@@ -87,7 +87,7 @@ public class OwnerManager {
         ContentManager contentManager, OwnerCurator ownerCurator,
         ContentAccessCertServiceAdapter contentAccessCertService,
         ContentAccessCertificateCurator contentAccessCertCurator,
-        OwnerEnvContentAccessCurator ownerEnvContentAccessCurator,
+        ContentAccessPayloadRefresher payloadRefresher,
         UeberCertificateCurator uberCertificateCurator, OwnerServiceAdapter ownerServiceAdapter) {
 
         this.consumerCurator = consumerCurator;
@@ -103,7 +103,7 @@ public class OwnerManager {
         this.ownerCurator = ownerCurator;
         this.contentAccessCertService = contentAccessCertService;
         this.contentAccessCertCurator = contentAccessCertCurator;
-        this.ownerEnvContentAccessCurator = ownerEnvContentAccessCurator;
+        this.payloadRefresher = payloadRefresher;
         this.uberCertificateCurator = uberCertificateCurator;
         this.ownerServiceAdapter = ownerServiceAdapter;
     }
@@ -296,8 +296,8 @@ public class OwnerManager {
             contentAccessCertCurator.deleteForOwner(owner);
         }
 
-        // removed cached versions of content access cert data
-        ownerEnvContentAccessCurator.removeAllForOwner(owner.getId());
+        // refresh cached versions of content access cert data
+        this.payloadRefresher.refreshOwner(owner);
         ownerCurator.flush();
     }
 
@@ -25,6 +25,7 @@ import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 
 
@@ -39,12 +40,24 @@ public class SimpleModelTranslator implements ModelTranslator {
     // output => input => translator
     protected Map<Class, Map<Class, ObjectTranslator>> translators;
 
+    // output => input => translator, as resolved by findTranslatorByClass. Replaced whenever the
+    // registered translators change.
+    private volatile Map<Class, Map<Class, ObjectTranslator>> resolved;
 
     /**
      * Initializes a new ModelTranslator instance.
      */
     public SimpleModelTranslator() {
         this.translators = new HashMap<>();
+        this.resolved = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Discards all translator resolutions performed by findTranslatorByClass. Must be called
+     * whenever the registered translators change.
+     */
+    protected void clearResolvedTranslators() {
+        this.resolved = new ConcurrentHashMap<>();
     }
 
     /**
@@ -74,6 +87,7 @@ public class SimpleModelTranslator implements ModelTranslator {
 
         ObjectTranslator<I, O> existing = (ObjectTranslator<I, O>) inputMappings.get(inputClass);
         inputMappings.put(inputClass, translator);
+        this.clearResolvedTranslators();
 
         return existing;
     }
@@ -92,7 +106,15 @@ public class SimpleModelTranslator implements ModelTranslator {
         }
 
         Map<Class, ObjectTranslator> inputMappings = this.translators.get(outputClass);
-        return inputMappings != null ? (ObjectTranslator<I, O>) inputMappings.remove(inputClass) : null;
+        ObjectTranslator<I, O> existing = inputMappings != null ?
+            (ObjectTranslator<I, O>) inputMappings.remove(inputClass) :
+            null;
+
+        if (existing != null) {
+            this.clearResolvedTranslators();
+        }
+
+        return existing;
     }
 
     /**
@@ -118,6 +140,10 @@ public class SimpleModelTranslator implements ModelTranslator {
             }
         }
 
+        if (mappings > 0) {
+            this.clearResolvedTranslators();
+        }
+
         return mappings;
     }
 
@@ -214,6 +240,9 @@ public class SimpleModelTranslator implements ModelTranslator {
      * 7. If C is not null, go to step 2
      * 8. Return T
      * </pre>
+     * The result of this lookup is retained for each pair of input and output classes until the
+     * registered translators change, so subsequent lookups for the same classes, such as those for
+     * every element of a collection, avoid walking the class hierarchy again.
      *
      * @param inputClass
      *  The input class for which to find a translator
@@ -240,7 +269,18 @@ public class SimpleModelTranslator implements ModelTranslator {
             throw new IllegalArgumentException("outputClass is null");
         }
 
-        ObjectTranslator<I, O> translator = null;
+        // Fetch the resolutions first, so a resolution performed concurrently with a change to the
+        // registered translators is never retained
+        Map<Class, Map<Class, ObjectTranslator>> resolved = this.resolved;
+        Map<Class, ObjectTranslator> inputResolutions = resolved.get(outputClass);
+
+        ObjectTranslator<I, O> translator = inputResolutions != null ?
+            (ObjectTranslator<I, O>) inputResolutions.get(inputClass) :
+            null;
+
+        if (translator != null) {
+            return translator;
+        }
 
         Class outputKey = this.findNearestMappedClass(outputClass, this.translators.keySet());
         if (outputKey != null) {
@@ -259,6 +299,9 @@ public class SimpleModelTranslator implements ModelTranslator {
             throw new TranslationException(msg);
         }
 
+        resolved.computeIfAbsent(outputClass, key -> new ConcurrentHashMap<>())
+            .put(inputClass, translator);
+
         return translator;
     }
 
@@ -352,8 +395,9 @@ public class SimpleModelTranslator implements ModelTranslator {
             private ModelTranslator modelTranslator;
             private Class<O> outputClass;
 
-            // This should be fine for now, but if we ever have queries that return multiple
-            // entity types, this will need to be changed.
+            // The translator for the most recently translated element class. Queries will almost
+            // always return a single class of entity, so this spares us a lookup per element.
+            private Class sourceClass;
             private ObjectTranslator<I, O> translator;
 
             public ElementTransformer<I, O> init(ModelTranslator modelTranslator, Class<O> outputClass) {
@@ -367,10 +411,12 @@ public class SimpleModelTranslator implements ModelTranslator {
                 O output = null;
 
                 if (source != null) {
-                    // Look up our translator if we haven't already
-                    if (this.translator == null) {
+                    // Look up our translator if the element class differs from the previous one
+                    // (Hibernate proxies, for instance, have their own classes)
+                    if (source.getClass() != this.sourceClass) {
                         this.translator = this.modelTranslator
                             .findTranslatorByClass((Class<I>) source.getClass(), this.outputClass);
+                        this.sourceClass = source.getClass();
                     }
 
                     // Translate our output
@@ -477,6 +477,12 @@ public class ConsumerDTO extends TimestampedCandlepinDTO<ConsumerDTO> {
         ConsumerTypeDTO ctype = this.getType();
         copy.setType(ctype != null ? ctype.clone() : null);
 
+        // The shallow copy shares our collections; detach them so the setters below copy their
+        // contents rather than clearing them
+        copy.facts = null;
+        copy.installedProducts = null;
+        copy.capabilities = null;
+
         copy.setFacts(this.getFacts());
         copy.setInstalledProducts(this.getInstalledProducts());
         copy.setCapabilities(this.getCapabilities());
@@ -722,6 +722,13 @@ public class PoolDTO extends CandlepinDTO<PoolDTO> {
     public PoolDTO clone() {
         PoolDTO copy = super.clone();
 
+        // The shallow copy shares our collections; detach them so the setters below copy their
+        // contents rather than clearing them
+        copy.attributes = null;
+        copy.productAttributes = null;
+        copy.providedProducts = null;
+        copy.derivedProvidedProducts = null;
+
         copy.setAttributes(this.getAttributes());
         copy.setProductAttributes(this.getProductAttributes());
         copy.setProvidedProducts(this.getProvidedProducts());
@@ -32,12 +32,21 @@ import org.candlepin.config.ConfigProperties;
 import org.candlepin.config.DatabaseConfigFactory;
 import org.candlepin.controller.QpidStatusMonitor;
 import org.candlepin.controller.SuspendModeTransitioner;
+import org.candlepin.hibernate.TableModificationTracker;
 import org.candlepin.logging.LoggerContextListener;
+import org.candlepin.model.ConsumerCheckInBuffer;
+import org.candlepin.model.GuestModificationTracker;
+import org.candlepin.model.PoolModificationTracker;
 import org.candlepin.pinsetter.core.PinsetterContextListener;
+import org.candlepin.pki.KeyPairPool;
 import org.candlepin.pki.impl.BouncyCastleProviderLoader;
+import org.candlepin.policy.js.JsRunnerProvider;
+import org.candlepin.policy.js.RulesVersionPoller;
 import org.candlepin.resteasy.ResourceLocatorMap;
+import org.candlepin.service.impl.ContentAccessPayloadRefresher;
 import org.candlepin.swagger.CandlepinSwaggerModelConverter;
 import org.candlepin.util.Util;
+import org.candlepin.util.WorkerPool;
 
 import com.google.inject.AbstractModule;
 import com.google.inject.Injector;
@@ -91,6 +100,11 @@ public class CandlepinContextListener extends GuiceResteasyBootstrapServletConte
     private ActiveMQContextListener activeMQContextListener;
     private PinsetterContextListener pinsetterListener;
     private LoggerContextListener loggerListener;
+    private RulesVersionPoller rulesVersionPoller;
+    private KeyPairPool keyPairPool;
+    private ConsumerCheckInBuffer checkInBuffer;
+    private ContentAccessPayloadRefresher payloadRefresher;
+    private WorkerPool workerPool;
 
     // a bit of application-initialization code. Not sure if this is the
     // best spot for it.
@@ -189,6 +203,22 @@ public class CandlepinContextListener extends GuiceResteasyBootstrapServletConte
                 true, true, true, true);
         }
 
+        if (injector.getInstance(JsRunnerProvider.class).isPoolingEnabled()) {
+            rulesVersionPoller = injector.getInstance(RulesVersionPoller.class);
+            rulesVersionPoller.schedule();
+        }
+
+        keyPairPool = injector.getInstance(KeyPairPool.class);
+        keyPairPool.start();
+
+        checkInBuffer = injector.getInstance(ConsumerCheckInBuffer.class);
+        checkInBuffer.start();
+
+        payloadRefresher = injector.getInstance(ContentAccessPayloadRefresher.class);
+        payloadRefresher.start();
+
+        workerPool = injector.getInstance(WorkerPool.class);
+
         pinsetterListener = injector.getInstance(PinsetterContextListener.class);
         pinsetterListener.contextInitialized();
 
@@ -212,6 +242,26 @@ public class CandlepinContextListener extends GuiceResteasyBootstrapServletConte
         pinsetterListener.contextDestroyed();
         loggerListener.contextDestroyed();
 
+        if (rulesVersionPoller != null) {
+            rulesVersionPoller.shutdown();
+        }
+
+        if (keyPairPool != null) {
+            keyPairPool.shutdown();
+        }
+
+        if (checkInBuffer != null) {
+            checkInBuffer.shutdown();
+        }
+
+        if (payloadRefresher != null) {
+            payloadRefresher.shutdown();
+        }
+
+        if (workerPool != null) {
+            workerPool.shutdown();
+        }
+
         // if amqp is enabled, close all connections.
         if (config.getBoolean(ConfigProperties.AMQP_INTEGRATION_ENABLED)) {
             Util.closeSafely(injector.getInstance(AMQPBusPublisher.class), "AMQPBusPublisher");
@@ -327,5 +377,10 @@ public class CandlepinContextListener extends GuiceResteasyBootstrapServletConte
         registry.getEventListenerGroup(EventType.PRE_INSERT).appendListener(listenerProvider.get());
         registry.getEventListenerGroup(EventType.PRE_UPDATE).appendListener(listenerProvider.get());
         registry.getEventListenerGroup(EventType.PRE_DELETE).appendListener(listenerProvider.get());
+
+        // Keep track of table modifications for the row count cache
+        injector.getInstance(TableModificationTracker.class).register(registry);
+        injector.getInstance(PoolModificationTracker.class).register(registry);
+        injector.getInstance(GuestModificationTracker.class).register(registry);
     }
 }
@@ -136,6 +136,7 @@ import org.candlepin.resteasy.filter.VerifyAuthorizationFilter;
 import org.candlepin.resteasy.filter.VersionResponseFilter;
 import org.candlepin.service.UniqueIdGenerator;
 import org.candlepin.service.impl.DefaultUniqueIdGenerator;
+import org.candlepin.service.impl.SnowflakeUniqueIdGenerator;
 import org.candlepin.swagger.CandlepinSwaggerModelConverter;
 import org.candlepin.sync.ConsumerExporter;
 import org.candlepin.sync.ConsumerTypeExporter;
@@ -270,7 +271,7 @@ public class CandlepinModule extends AbstractModule {
         bind(JsRunner.class).toProvider(JsRunnerProvider.class);
         bind(RulesObjectMapper.class).asEagerSingleton();
         bind(UserResource.class);
-        bind(UniqueIdGenerator.class).to(DefaultUniqueIdGenerator.class);
+        configureUniqueIdGenerator();
         bind(DistributorVersionResource.class);
         bind(DeletedConsumerResource.class);
         bind(CdnResource.class);
@@ -426,6 +427,17 @@ public class CandlepinModule extends AbstractModule {
         }
     }
 
+    private void configureUniqueIdGenerator() {
+        if (config.getBoolean(ConfigProperties.UNIQUE_ID_SNOWFLAKE_ENABLED, false)) {
+            // Created eagerly so a missing node ID fails startup rather than the first request
+            bind(SnowflakeUniqueIdGenerator.class).asEagerSingleton();
+            bind(UniqueIdGenerator.class).to(SnowflakeUniqueIdGenerator.class);
+        }
+        else {
+            bind(UniqueIdGenerator.class).to(DefaultUniqueIdGenerator.class);
+        }
+    }
+
     protected void configureModelTranslator() {
         bind(ModelTranslator.class).to(StandardTranslator.class).asEagerSingleton();
     }
@@ -0,0 +1,143 @@
+/**
+ * Copyright (c) 2009 - 2018 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.hibernate;
+
+import com.google.inject.Singleton;
+
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostDeleteEventListener;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.event.spi.PostInsertEventListener;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.event.spi.PostUpdateEventListener;
+import org.hibernate.persister.entity.EntityPersister;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+
+/**
+ * Tracks when rows were last added to, updated in or removed from each table, so that values
+ * derived from the contents of a table can be checked for staleness without querying the table
+ * again.
+ *
+ * Modifications are recorded against a version counter which increases with every modification.
+ * A value computed from a set of tables remains valid so long as none of those tables have been
+ * modified since the version in effect when the value was computed. Entity inserts, updates and
+ * deletes are recorded automatically once this tracker has been registered with Hibernate, as an
+ * update may move a row into or out of a filtered set; each is recorded again after the
+ * transaction commits, so values computed while the change was still pending are also
+ * invalidated. Bulk statements are not tracked.
+ */
+@Singleton
+public class TableModificationTracker implements PostInsertEventListener, PostUpdateEventListener,
+    PostDeleteEventListener {
+
+    private final AtomicLong clock = new AtomicLong();
+    private final Map<String, Long> modified = new ConcurrentHashMap<>();
+
+    /**
+     * Registers this tracker to be notified of entity inserts, updates and deletes.
+     *
+     * @param registry
+     *  the event listener registry of the session factory to track
+     */
+    public void register(EventListenerRegistry registry) {
+        registry.getEventListenerGroup(EventType.POST_INSERT).appendListener(this);
+        registry.getEventListenerGroup(EventType.POST_UPDATE).appendListener(this);
+        registry.getEventListenerGroup(EventType.POST_DELETE).appendListener(this);
+        registry.getEventListenerGroup(EventType.POST_COMMIT_INSERT).appendListener(this);
+        registry.getEventListenerGroup(EventType.POST_COMMIT_UPDATE).appendListener(this);
+        registry.getEventListenerGroup(EventType.POST_COMMIT_DELETE).appendListener(this);
+    }
+
+    /**
+     * @return
+     *  the current modification version
+     */
+    public long getVersion() {
+        return this.clock.get();
+    }
+
+    /**
+     * Records a modification of the given tables.
+     *
+     * @param tables
+     *  the names of the modified tables
+     */
+    public void markModified(Collection<? extends Serializable> tables) {
+        long version = this.clock.incrementAndGet();
+
+        for (Serializable table : tables) {
+            this.modified.merge(normalize(table), version, Math::max);
+        }
+    }
+
+    /**
+     * Checks whether or not any of the given tables have been modified since the given version.
+     *
+     * @param tables
+     *  the names of the tables to check
+     *
+     * @param version
+     *  the modification version to check against, as returned by getVersion
+     *
+     * @return
+     *  true if any of the tables have been modified since the given version; false otherwise
+     */
+    public boolean isModifiedSince(Collection<? extends Serializable> tables, long version) {
+        for (Serializable table : tables) {
+            Long tableVersion = this.modified.get(normalize(table));
+
+            if (tableVersion != null && tableVersion > version) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private static String normalize(Serializable table) {
+        return String.valueOf(table).toLowerCase(Locale.ROOT);
+    }
+
+    @Override
+    public void onPostInsert(PostInsertEvent event) {
+        this.markModified(Arrays.asList(event.getPersister().getQuerySpaces()));
+    }
+
+    @Override
+    public void onPostUpdate(PostUpdateEvent event) {
+        this.markModified(Arrays.asList(event.getPersister().getQuerySpaces()));
+    }
+
+    @Override
+    public void onPostDelete(PostDeleteEvent event) {
+        this.markModified(Arrays.asList(event.getPersister().getQuerySpaces()));
+    }
+
+    @Override
+    public boolean requiresPostCommitHanding(EntityPersister persister) {
+        return true;
+    }
+}
@@ -0,0 +1,142 @@
+/**
+ * Copyright (c) 2009 - 2018 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.jackson;
+
+import org.candlepin.dto.CandlepinDTO;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.ObjectCodec;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.ser.impl.BeanAsArraySerializer;
+import com.fasterxml.jackson.databind.ser.impl.ObjectIdWriter;
+import com.fasterxml.jackson.databind.ser.std.BeanSerializerBase;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.Set;
+
+
+
+/**
+ * Jackson JsonSerializer which serializes a DTO as a regular bean, retaining the generated JSON
+ * in a {@link SerializedFragmentCache}. When an equal DTO is serialized again, the cached JSON is
+ * written out as-is instead of serializing the DTO once more.
+ */
+public class CachedFragmentSerializer extends BeanSerializerBase {
+    private static final JsonFactory FACTORY = new JsonFactory();
+
+    private SerializedFragmentCache cache;
+
+    protected CachedFragmentSerializer(BeanSerializerBase src, SerializedFragmentCache cache) {
+        super(src);
+
+        this.cache = cache;
+    }
+
+    protected CachedFragmentSerializer(CachedFragmentSerializer src, ObjectIdWriter objectIdWriter,
+        Object filterId) {
+
+        super(src, objectIdWriter, filterId);
+        this.cache = src.cache;
+    }
+
+    protected CachedFragmentSerializer(CachedFragmentSerializer src, Set<String> toIgnore) {
+        super(src, toIgnore);
+        this.cache = src.cache;
+    }
+
+    @Override
+    public final void serialize(Object bean, JsonGenerator jgen, SerializerProvider provider)
+        throws IOException {
+
+        if (this._objectIdWriter != null || !(bean instanceof CandlepinDTO)) {
+            this.serializeBean(bean, jgen, provider);
+            return;
+        }
+
+        CandlepinDTO<?> dto = (CandlepinDTO<?>) bean;
+        String json = this.cache.get(dto);
+
+        if (json == null) {
+            StringWriter writer = new StringWriter();
+
+            // Use the factory of the mapper performing the serialization, if any, so the fragment is
+            // generated with the same generator features
+            ObjectCodec codec = jgen.getCodec();
+            JsonFactory factory = codec != null ? codec.getFactory() : FACTORY;
+
+            try (JsonGenerator fragmentGenerator = factory.createGenerator(writer)) {
+                fragmentGenerator.setCodec(codec);
+                this.serializeBean(bean, fragmentGenerator, provider);
+            }
+
+            json = writer.toString();
+            this.cache.put(dto, json);
+        }
+
+        jgen.writeRawValue(json);
+    }
+
+    /**
+     * Serializes the given bean in the same manner as a standard bean serializer.
+     */
+    private void serializeBean(Object bean, JsonGenerator jgen, SerializerProvider provider)
+        throws IOException {
+
+        jgen.setCurrentValue(bean);
+
+        if (this._objectIdWriter != null) {
+            this._serializeWithObjectId(bean, jgen, provider, true);
+            return;
+        }
+
+        jgen.writeStartObject();
+
+        if (this._propertyFilterId != null) {
+            this.serializeFieldsFiltered(bean, jgen, provider);
+        }
+        else {
+            this.serializeFields(bean, jgen, provider);
+        }
+
+        jgen.writeEndObject();
+    }
+
+    @Override
+    public BeanSerializerBase withObjectIdWriter(ObjectIdWriter objectIdWriter) {
+        return new CachedFragmentSerializer(this, objectIdWriter, _propertyFilterId);
+    }
+
+    @Override
+    public BeanSerializerBase withFilterId(Object filterId) {
+        return new CachedFragmentSerializer(this, _objectIdWriter, filterId);
+    }
+
+    @Override
+    protected BeanSerializerBase withIgnorals(Set<String> toIgnore) {
+        return new CachedFragmentSerializer(this, toIgnore);
+    }
+
+    @Override
+    protected BeanSerializerBase asArraySerializer() {
+        if ((_objectIdWriter == null) && (_anyGetterWriter == null) && (_propertyFilterId == null)) {
+            return new BeanAsArraySerializer(this);
+        }
+
+        // already is one, so:
+        return this;
+    }
+}
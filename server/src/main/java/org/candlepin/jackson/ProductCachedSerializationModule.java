@@ -15,6 +15,9 @@
 package org.candlepin.jackson;
 
 import com.fasterxml.jackson.databind.ser.std.BeanSerializerBase;
+import org.candlepin.dto.rules.v1.ConsumerDTO;
+import org.candlepin.dto.rules.v1.OwnerDTO;
+import org.candlepin.dto.rules.v1.PoolDTO;
 import org.candlepin.model.Pool;
 import org.candlepin.model.ProductCurator;
 
@@ -25,17 +28,37 @@ import com.fasterxml.jackson.databind.module.SimpleModule;
 import com.fasterxml.jackson.databind.ser.BeanSerializerModifier;
 import com.google.inject.Inject;
 
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
 /**
  * Serialization module that allows us to run code before
  * serialization of Pool takes place and serializes provided
- * products
+ * products.
+ *
+ * When given an enabled SerializedFragmentCache, the JSON generated
+ * for the pool, consumer and owner DTOs passed to the rules is also
+ * cached and reused for subsequent, identical DTOs.
  * @author fnguyen
  *
  */
 public class ProductCachedSerializationModule extends SimpleModule {
 
-    @Inject
+    /** The rules DTOs for which generated JSON is cached */
+    private static final Set<Class<?>> CACHED_DTO_CLASSES = new HashSet<>(Arrays.asList(
+        PoolDTO.class, ConsumerDTO.class, OwnerDTO.class));
+
     public ProductCachedSerializationModule(final ProductCurator productCurator) {
+        this(productCurator, null);
+    }
+
+    @Inject
+    public ProductCachedSerializationModule(final ProductCurator productCurator,
+        final SerializedFragmentCache fragmentCache) {
+
+        final boolean cacheFragments = fragmentCache != null && fragmentCache.isEnabled();
+
         setSerializerModifier(new BeanSerializerModifier() {
             @Override
             public JsonSerializer<?> modifySerializer(SerializationConfig config,
@@ -43,6 +66,12 @@ public class ProductCachedSerializationModule extends SimpleModule {
                 if (beanDesc.getBeanClass() == Pool.class) {
                     return new PoolSerializer((BeanSerializerBase) serializer, productCurator);
                 }
+
+                if (cacheFragments && CACHED_DTO_CLASSES.contains(beanDesc.getBeanClass()) &&
+                    serializer instanceof BeanSerializerBase) {
+                    return new CachedFragmentSerializer((BeanSerializerBase) serializer, fragmentCache);
+                }
+
                 return serializer;
             }
         });
@@ -0,0 +1,173 @@
+/**
+ * Copyright (c) 2009 - 2018 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.jackson;
+
+import org.candlepin.common.config.Configuration;
+import org.candlepin.config.ConfigProperties;
+import org.candlepin.dto.CandlepinDTO;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+
+/**
+ * Retains the JSON generated for DTOs passed to the rules, so that DTOs which are serialized
+ * repeatedly -- such as the pools considered by every autobind or the consumer and owner passed
+ * to every rules call -- are only serialized once.
+ *
+ * Fragments are keyed by a copy of the DTO they were generated from, so a fragment is only reused
+ * for a DTO which is equal, field for field, to the original; any change to the entity backing the
+ * DTO yields a different key. Fragments expire a short, configurable time after being generated,
+ * and the number of fragments retained is bounded, with the least recently used evicted first.
+ */
+@Singleton
+public class SerializedFragmentCache {
+
+    /**
+     * A generated JSON fragment and the time at which it expires.
+     */
+    private static class Fragment {
+        private final String json;
+        private final long expiration;
+
+        public Fragment(String json, long expiration) {
+            this.json = json;
+            this.expiration = expiration;
+        }
+    }
+
+    private final boolean enabled;
+    private final long ttl;
+    private final Map<CandlepinDTO<?>, Fragment> fragments;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    @Inject
+    public SerializedFragmentCache(Configuration config) {
+        this(config.getBoolean(ConfigProperties.RULES_SERIALIZATION_CACHE_ENABLED, true),
+            config.getInt(ConfigProperties.RULES_SERIALIZATION_CACHE_SIZE, 20000),
+            TimeUnit.SECONDS.toMillis(config.getInt(ConfigProperties.RULES_SERIALIZATION_CACHE_TTL, 60)));
+    }
+
+    public SerializedFragmentCache(boolean enabled, final int maxSize, long ttl) {
+        if (enabled && maxSize < 1) {
+            throw new IllegalArgumentException("maxSize must be a positive integer");
+        }
+
+        this.enabled = enabled && ttl > 0;
+        this.ttl = ttl;
+        this.fragments = Collections.synchronizedMap(
+            new LinkedHashMap<CandlepinDTO<?>, Fragment>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<CandlepinDTO<?>, Fragment> eldest) {
+                    return this.size() > maxSize;
+                }
+            });
+    }
+
+    /**
+     * Checks whether or not fragments are cached. When disabled, this cache does not retain any
+     * fragments.
+     *
+     * @return
+     *  true if fragments are cached; false otherwise
+     */
+    public boolean isEnabled() {
+        return this.enabled;
+    }
+
+    /**
+     * Fetches the JSON previously generated for a DTO equal to the given DTO.
+     *
+     * @param dto
+     *  the DTO for which to fetch the JSON
+     *
+     * @return
+     *  the previously generated JSON, or null if no unexpired fragment is present
+     */
+    public String get(CandlepinDTO<?> dto) {
+        if (!this.enabled || dto == null) {
+            return null;
+        }
+
+        Fragment fragment = this.fragments.get(dto);
+
+        if (fragment != null && fragment.expiration < System.currentTimeMillis()) {
+            this.fragments.remove(dto);
+            fragment = null;
+        }
+
+        (fragment != null ? this.hits : this.misses).incrementAndGet();
+        return fragment != null ? fragment.json : null;
+    }
+
+    /**
+     * Stores the JSON generated for the given DTO. The DTO is copied, so later changes to it do
+     * not affect the stored fragment.
+     *
+     * @param dto
+     *  the DTO from which the JSON was generated
+     *
+     * @param json
+     *  the generated JSON
+     */
+    public void put(CandlepinDTO<?> dto, String json) {
+        if (!this.enabled || dto == null || json == null) {
+            return;
+        }
+
+        long expiration = System.currentTimeMillis() + this.ttl;
+        this.fragments.put(dto.clone(), new Fragment(json, expiration));
+    }
+
+    /**
+     * Discards all retained fragments.
+     */
+    public void clear() {
+        this.fragments.clear();
+    }
+
+    /**
+     * @return
+     *  the number of fragments currently retained
+     */
+    public int getSize() {
+        return this.fragments.size();
+    }
+
+    /**
+     * @return
+     *  the number of lookups which returned a previously generated fragment
+     */
+    public long getHits() {
+        return this.hits.get();
+    }
+
+    /**
+     * @return
+     *  the number of lookups which did not find an unexpired fragment
+     */
+    public long getMisses() {
+        return this.misses.get();
+    }
+}
@@ -12,19 +12,19 @@
  * granted to use or replicate Red Hat trademarks that are incorporated
  * in this software or its documentation.
  */
-package org.candlepin.model;
+package org.candlepin.liquibase;
 
-import org.candlepin.guice.CandlepinRequestScoped;
 
-import org.apache.commons.lang3.tuple.Pair;
-
-import java.util.HashMap;
 
 /**
- * Cache for host consumers (see https://github.com/candlepin/candlepin/pull/1334 for original rationale)
- *
- * Key is a Pair of Strings, with the first being the guest ID and the second is the org ID.
+ * Liquibase wrapper class for the canonical guest UUID task
  */
-@CandlepinRequestScoped
-public class HostCache extends HashMap<Pair<String, String>, Consumer> {
+public class CanonicalGuestUuidLiquibaseWrapper
+    extends LiquibaseCustomTaskWrapper<CanonicalGuestUuidTask> {
+
+    public CanonicalGuestUuidLiquibaseWrapper() {
+        super(CanonicalGuestUuidTask.class);
+    }
+
+    // Nothing else to do
 }
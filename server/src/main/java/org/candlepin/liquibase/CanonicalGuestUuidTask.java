@@ -0,0 +1,131 @@
+/**
+ * Copyright (c) 2009 - 2018 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.liquibase;
+
+import org.candlepin.util.Util;
+
+import liquibase.database.Database;
+import liquibase.exception.DatabaseException;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+
+
+/**
+ * The CanonicalGuestUuidTask populates the canonical guest UUID columns of existing guest IDs and
+ * guest consumers, from which guests are looked up regardless of the case or byte order of their
+ * UUIDs.
+ */
+public class CanonicalGuestUuidTask extends LiquibaseCustomTask {
+
+    public static final int UPDATE_BATCH_SIZE = 1024;
+
+    public CanonicalGuestUuidTask(Database database, CustomTaskLogger logger) {
+        super(database, logger);
+    }
+
+    /**
+     * Repeatedly fetches a batch of rows which have yet to be canonicalized, and stores the canonical
+     * form of their UUIDs, until no such rows remain.
+     *
+     * @param querySQL
+     *  The SQL to execute to retrieve the rows to update. Must select the row IDs as the first
+     *  column, and the UUIDs to canonicalize as the second.
+     *
+     * @param updateSQL
+     *  The SQL to execute to update a single row. Must have two parameters: the canonical UUID, and
+     *  the ID of the row to update.
+     *
+     * @return
+     *  the total number of rows updated
+     */
+    protected int canonicalize(String querySQL, String updateSQL) throws DatabaseException, SQLException {
+        int rows = 0;
+        Map<String, String> batch = new LinkedHashMap<>();
+
+        PreparedStatement queryStatement = this.prepareStatement(querySQL);
+        queryStatement.setMaxRows(UPDATE_BATCH_SIZE);
+
+        do {
+            batch.clear();
+            ResultSet results = queryStatement.executeQuery();
+
+            while (results.next()) {
+                batch.put(results.getString(1), results.getString(2));
+            }
+
+            results.close();
+
+            if (!batch.isEmpty()) {
+                PreparedStatement updateStatement = this.prepareStatement(updateSQL);
+
+                for (Map.Entry<String, String> entry : batch.entrySet()) {
+                    this.fillStatementParameters(updateStatement, Util.getCanonicalUuid(entry.getValue()),
+                        entry.getKey());
+                    updateStatement.addBatch();
+                }
+
+                updateStatement.executeBatch();
+                this.connection.commit();
+
+                rows += batch.size();
+                this.logger.info(String.format("%d rows updated", batch.size()));
+            }
+        } while (!batch.isEmpty());
+
+        this.logger.info(String.format("%d total rows updated", rows));
+
+        return rows;
+    }
+
+    /**
+     * Executes the canonical guest UUID task.
+     *
+     * @throws DatabaseException
+     *  if an error occurs while performing a database operation
+     *
+     * @throws SQLException
+     *  if an error occurs while executing an SQL statement
+     */
+    public void execute() throws DatabaseException, SQLException {
+        // Store the connection's auto commit setting, so we may temporarily clobber it.
+        boolean autocommit = this.connection.getAutoCommit();
+        this.connection.setAutoCommit(false);
+
+        this.logger.info("Canonicalizing guest IDs...");
+        this.canonicalize(
+            "SELECT id, guest_id FROM cp_consumer_guests WHERE guest_id_canonical IS NULL",
+            "UPDATE cp_consumer_guests SET guest_id_canonical = ? WHERE id = ?"
+        );
+
+        this.logger.info("Canonicalizing guest consumer UUIDs...");
+        this.canonicalize(
+            "SELECT C.id, F.element " +
+            "FROM cp_consumer C " +
+            "  INNER JOIN cp_consumer_facts F " +
+            "    ON (C.id = F.cp_consumer_id AND F.mapkey = 'virt.uuid') " +
+            "WHERE C.virt_uuid_canonical IS NULL AND F.element IS NOT NULL",
+            "UPDATE cp_consumer SET virt_uuid_canonical = ? WHERE id = ?"
+        );
+
+        // Restore original autocommit state
+        this.connection.setAutoCommit(autocommit);
+    }
+
+}
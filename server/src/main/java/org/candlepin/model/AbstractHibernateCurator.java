@@ -17,6 +17,7 @@ package org.candlepin.model;
 import org.candlepin.auth.Principal;
 import org.candlepin.auth.permissions.Permission;
 import org.candlepin.common.config.Configuration;
+import org.candlepin.common.exceptions.BadRequestException;
 import org.candlepin.common.exceptions.ConcurrentModificationException;
 import org.candlepin.common.paging.Page;
 import org.candlepin.common.paging.PageRequest;
@@ -97,6 +98,7 @@ public abstract class AbstractHibernateCurator<E extends Persisted> {
     @Inject protected Provider<I18n> i18nProvider;
     @Inject protected Configuration config;
     @Inject private PrincipalProvider principalProvider;
+    @Inject private RowCountCache rowCountCache;
 
     private final Class<E> entityType;
     private NaturalIdLoadAccess<E> natIdLoader;
@@ -230,6 +232,8 @@ public abstract class AbstractHibernateCurator<E extends Persisted> {
     public Page<List<E>> listAll(PageRequest pageRequest, boolean postFilter) {
         Page<List<E>> resultsPage;
         if (postFilter) {
+            this.checkKeysetNotPostFiltered(pageRequest);
+
             // Create a copy of the page request with just the order and sort by values.
             // Since we are filtering after the results are returned, we don't want
             // to send the page or page size values in.
@@ -251,14 +255,31 @@ public abstract class AbstractHibernateCurator<E extends Persisted> {
         return resultsPage;
     }
 
+    /**
+     * Keyset paging needs to seek in the database, which cannot be done for results that are
+     * filtered after they are fetched.
+     */
+    private void checkKeysetNotPostFiltered(PageRequest pageRequest) {
+        if (pageRequest != null && pageRequest.isKeyset()) {
+            throw new BadRequestException(this.i18nProvider.get()
+                .tr("Paging by page token is not supported for this request"));
+        }
+    }
+
     @SuppressWarnings("unchecked")
     @Transactional
     public Page<List<E>> listAll(PageRequest pageRequest) {
         Page<List<E>> page = new Page<>();
 
-        if (pageRequest != null) {
-            Criteria count = createSecureCriteria();
-            page.setMaxRecords(findRowCount(count));
+        if (pageRequest != null && pageRequest.isKeyset()) {
+            page.setPageData(loadKeysetPageData(createSecureCriteria(), pageRequest, page));
+            page.setPageRequest(pageRequest);
+        }
+        else if (pageRequest != null) {
+            if (pageRequest.isCounting()) {
+                Criteria count = createSecureCriteria();
+                page.setMaxRecords(findRowCount(count));
+            }
 
             Criteria c = createSecureCriteria();
             page.setPageData(loadPageData(c, pageRequest));
@@ -299,17 +320,100 @@ public abstract class AbstractHibernateCurator<E extends Persisted> {
         }
     }
 
+    /**
+     * Creates the keyset paging configuration for the given page request.
+     *
+     * @throws BadRequestException
+     *  if the requested sort field cannot be used for keyset paging
+     */
+    private KeysetPaging createKeysetPaging(String entityName, PageRequest p) {
+        String sortBy = (p.getSortBy() == null) ? AbstractHibernateObject.DEFAULT_SORT_FIELD : p.getSortBy();
+        PageRequest.Order order = (p.getOrder() == null) ? PageRequest.DEFAULT_ORDER : p.getOrder();
+
+        try {
+            return new KeysetPaging(this.currentSession().getSessionFactory(), entityName, sortBy,
+                order == PageRequest.Order.DESCENDING);
+        }
+        catch (IllegalArgumentException e) {
+            throw new BadRequestException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Loads a page of results for a keyset page request, storing the continuation token for the
+     * following page on the given page object.
+     */
+    @SuppressWarnings("unchecked")
+    private List<E> loadKeysetPageData(Criteria c, PageRequest pageRequest, Page<?> page) {
+        CriteriaImpl cImpl = (CriteriaImpl) c;
+        KeysetPaging keyset = this.createKeysetPaging(cImpl.getEntityOrClassName(), pageRequest);
+
+        try {
+            Criterion restriction = keyset.getRestriction(pageRequest.getPageToken());
+            if (restriction != null) {
+                c.add(restriction);
+            }
+        }
+        catch (IllegalArgumentException e) {
+            throw new BadRequestException(e.getMessage(), e);
+        }
+
+        for (Order order : keyset.getOrders()) {
+            c.addOrder(order);
+        }
+
+        // Fetch the last row of this page and the one following it to build the next page's token
+        Projection origProjection = cImpl.getProjection();
+        ResultTransformer origRt = cImpl.getResultTransformer();
+
+        c.setProjection(keyset.getProjection());
+        c.setFirstResult(pageRequest.getPerPage() - 1);
+        c.setMaxResults(2);
+
+        List<Object[]> rows = c.list();
+        page.setNextPageToken(rows.size() > 1 ? keyset.getToken(rows.get(0)) : null);
+
+        c.setProjection(origProjection);
+        c.setResultTransformer(origRt);
+        c.setFirstResult(0);
+        c.setMaxResults(pageRequest.getPerPage());
+
+        return c.list();
+    }
+
     private Integer findRowCount(Criteria c) {
-        c.setProjection(Projections.rowCount());
-        return ((Long) c.uniqueResult()).intValue();
+        return this.rowCountCache.getRowCount(this.currentSession(), c, () -> {
+            c.setProjection(Projections.rowCount());
+            return ((Long) c.uniqueResult()).intValue();
+        });
     }
 
     @SuppressWarnings("unchecked")
     public Page<ResultIterator<E>> paginateResults(CandlepinQuery<E> query, PageRequest pageRequest) {
         Page<ResultIterator<E>> page = new Page<>();
 
-        if (pageRequest != null) {
-            page.setMaxRecords(query.getRowCount());
+        if (pageRequest != null && pageRequest.isKeyset()) {
+            String sortBy = (pageRequest.getSortBy() == null) ?
+                AbstractHibernateObject.DEFAULT_SORT_FIELD :
+                pageRequest.getSortBy();
+
+            try {
+                query.seek(sortBy, pageRequest.getOrder() != PageRequest.Order.ASCENDING,
+                    pageRequest.getPageToken());
+            }
+            catch (IllegalArgumentException e) {
+                throw new BadRequestException(e.getMessage(), e);
+            }
+
+            query.setMaxResults(pageRequest.getPerPage());
+
+            page.setNextPageToken(query.getNextSeekToken(pageRequest.getPerPage()));
+            page.setPageRequest(pageRequest);
+        }
+        else if (pageRequest != null) {
+            if (pageRequest.isCounting()) {
+                page.setMaxRecords(query.getRowCount());
+            }
 
             query.addOrder(this.createPagingOrder(pageRequest));
             if (pageRequest.isPaging()) {
@@ -335,6 +439,8 @@ public abstract class AbstractHibernateCurator<E extends Persisted> {
     public Page<List<E>> listByCriteria(Criteria query, PageRequest pageRequest, boolean postFilter) {
         Page<List<E>> resultsPage;
         if (postFilter) {
+            this.checkKeysetNotPostFiltered(pageRequest);
+
             // Create a copy of the page request with just the order and sort by values.
             // Since we are filtering after the results are returned, we don't want
             // to send the page or page size values in.
@@ -503,20 +609,26 @@ public abstract class AbstractHibernateCurator<E extends Persisted> {
     public Page<List<E>> listByCriteria(Criteria c, PageRequest pageRequest) {
         Page<List<E>> page = new Page<>();
 
-        if (pageRequest != null) {
-            // see https://forum.hibernate.org/viewtopic.php?t=974802
+        if (pageRequest != null && pageRequest.isKeyset()) {
+            page.setPageData(loadKeysetPageData(c, pageRequest, page));
+            page.setPageRequest(pageRequest);
+        }
+        else if (pageRequest != null) {
+            if (pageRequest.isCounting()) {
+                // see https://forum.hibernate.org/viewtopic.php?t=974802
 
-            // Save original Projection and ResultTransformer
-            CriteriaImpl cImpl = (CriteriaImpl) c;
-            Projection origProjection = cImpl.getProjection();
-            ResultTransformer origRt = cImpl.getResultTransformer();
+                // Save original Projection and ResultTransformer
+                CriteriaImpl cImpl = (CriteriaImpl) c;
+                Projection origProjection = cImpl.getProjection();
+                ResultTransformer origRt = cImpl.getResultTransformer();
 
-            // Get total number of records by setting a rowCount projection
-            page.setMaxRecords(findRowCount(c));
+                // Get total number of records by setting a rowCount projection
+                page.setMaxRecords(findRowCount(c));
 
-            // Restore original Projection and ResultTransformer
-            c.setProjection(origProjection);
-            c.setResultTransformer(origRt);
+                // Restore original Projection and ResultTransformer
+                c.setProjection(origProjection);
+                c.setResultTransformer(origRt);
+            }
 
             page.setPageData(loadPageData(c, pageRequest));
             page.setPageRequest(pageRequest);
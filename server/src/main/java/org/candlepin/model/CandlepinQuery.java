@@ -88,6 +88,47 @@ public interface CandlepinQuery<T> extends Iterable<T> {
      */
     CandlepinQuery<T> addOrder(Order order);
 
+    /**
+     * Configures this query for keyset paging, ordering the results on the specified field, with
+     * ties broken by identifier, and restricting them to those following the position encoded by
+     * the given continuation token. This should be used in place of addOrder and setFirstResult
+     * when paging through large result sets.
+     *
+     * @param sortField
+     *  The name of the field on which to order the results
+     *
+     * @param descending
+     *  Whether or not to order the results in descending order
+     *
+     * @param token
+     *  A continuation token previously returned by getNextSeekToken, or null or an empty string to
+     *  start from the first result
+     *
+     * @throws IllegalArgumentException
+     *  if the sort field cannot be used for keyset paging, or the token is malformed
+     *
+     * @return
+     *  this query instance
+     */
+    CandlepinQuery<T> seek(String sortField, boolean descending, String token);
+
+    /**
+     * Fetches the continuation token positioned after the first pageSize results of this query,
+     * which can be passed to seek to fetch the results that follow. This only reads the values
+     * needed to build the token, and does not require counting the results.
+     *
+     * @param pageSize
+     *  The number of results in the current page
+     *
+     * @throws IllegalStateException
+     *  if this query has not been configured for keyset paging
+     *
+     * @return
+     *  the continuation token for the next page, or null if there are no results beyond the
+     *  current page
+     */
+    String getNextSeekToken(int pageSize);
+
     /**
      * Sets the locking mode for the query. The lock mode will be applied to the database rows
      * representing the entities returned by this query.
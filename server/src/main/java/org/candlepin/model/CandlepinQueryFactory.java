@@ -17,6 +17,7 @@ package org.candlepin.model;
 import org.hibernate.Session;
 import org.hibernate.criterion.DetachedCriteria;
 
+import javax.inject.Inject;
 import javax.inject.Singleton;
 
 
@@ -27,6 +28,13 @@ import javax.inject.Singleton;
 @Singleton
 public class CandlepinQueryFactory {
 
+    private final RowCountCache rowCountCache;
+
+    @Inject
+    public CandlepinQueryFactory(RowCountCache rowCountCache) {
+        this.rowCountCache = rowCountCache;
+    }
+
     /**
      * Builds an empty CandlepinQuery
      *
@@ -50,7 +58,7 @@ public class CandlepinQueryFactory {
      *  a CandlepinQuery built from the given session and criteria
      */
     public <T> CandlepinQuery<T> buildQuery(Session session, DetachedCriteria criteria) {
-        return new DetachedCandlepinQuery<>(session, criteria);
+        return new DetachedCandlepinQuery<>(session, criteria, this.rowCountCache);
     }
 
     // Add more implementations here as necessary
@@ -25,9 +25,11 @@ import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
 
 import org.apache.commons.lang.StringUtils;
+import org.hibernate.Hibernate;
 import org.hibernate.annotations.BatchSize;
 import org.hibernate.annotations.Cascade;
 import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Index;
 import org.hibernate.annotations.Type;
 
 import java.util.ArrayList;
@@ -52,6 +54,8 @@ import javax.persistence.JoinColumn;
 import javax.persistence.MapKeyColumn;
 import javax.persistence.OneToMany;
 import javax.persistence.OneToOne;
+import javax.persistence.PrePersist;
+import javax.persistence.PreUpdate;
 import javax.persistence.Table;
 import javax.persistence.Transient;
 import javax.validation.Valid;
@@ -180,6 +184,13 @@ public class Consumer extends AbstractHibernateObject implements Linkable, Owned
     @JsonDeserialize(contentConverter = StringTrimmingConverter.class)
     private Map<String, String> facts;
 
+    // The canonical form of the virt.uuid fact, so guests can be found with a single indexed lookup
+    // regardless of the case or byte order in which their UUID is reported
+    @Column(name = "virt_uuid_canonical")
+    @Index(name = "cp_consumer_virt_uuid_idx")
+    @Size(max = 255)
+    private String canonicalVirtUuid;
+
     @OneToOne(cascade = CascadeType.ALL, fetch = FetchType.LAZY)
     private KeyPair keyPair;
 
@@ -436,6 +447,20 @@ public class Consumer extends AbstractHibernateObject implements Linkable, Owned
      */
     public void setFacts(Map<String, String> factsIn) {
         facts = factsIn;
+        this.updateCanonicalVirtUuid();
+    }
+
+    /**
+     * Updates the canonical virt.uuid from the facts of this consumer. Changes made only to the
+     * facts collection don't trigger entity callbacks, so this is also done whenever facts are set.
+     */
+    @PrePersist
+    @PreUpdate
+    protected void updateCanonicalVirtUuid() {
+        // Facts which were never loaded can't have changed, and must not be loaded during a flush
+        if (Hibernate.isInitialized(this.facts)) {
+            this.canonicalVirtUuid = Util.getCanonicalUuid(this.getFact("virt.uuid"));
+        }
     }
 
     /**
@@ -485,6 +510,10 @@ public class Consumer extends AbstractHibernateObject implements Linkable, Owned
             facts = new HashMap<>();
         }
         this.facts.put(name, value);
+
+        if ("virt.uuid".equals(name)) {
+            this.updateCanonicalVirtUuid();
+        }
     }
 
     public long getEntitlementCount() {
@@ -0,0 +1,333 @@
+/**
+ * Copyright (c) 2009 - 2018 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.model;
+
+import org.candlepin.common.config.Configuration;
+import org.candlepin.config.ConfigProperties;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import com.google.inject.persist.UnitOfWork;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+
+
+/**
+ * A write-behind buffer for consumer check-ins.
+ *
+ * Rather than updating a consumer's check-in time on every request, check-ins are collected in
+ * memory, keeping only the most recent time for each consumer, and written periodically using a
+ * single batched update. The buffer is flushed early whenever it reaches its maximum size, and
+ * once more when it is shut down.
+ *
+ * When the buffer is disabled or not started, or is full and the consumer does not already have
+ * a pending check-in, the check-in is written immediately instead. The buffer is disabled by
+ * default, as a buffered check-in is not visible to clients until it has been written.
+ */
+@Singleton
+public class ConsumerCheckInBuffer {
+    private static Logger log = LoggerFactory.getLogger(ConsumerCheckInBuffer.class);
+
+    private final ConsumerCurator consumerCurator;
+    private final UnitOfWork unitOfWork;
+    private final boolean enabled;
+    private final int flushInterval;
+    private final int maxSize;
+
+    private final Map<String, Date> pending = new ConcurrentHashMap<>();
+    private final ReadWriteLock runLock = new ReentrantReadWriteLock();
+    private final AtomicBoolean flushQueued = new AtomicBoolean();
+    private volatile boolean running;
+    private ScheduledExecutorService executor;
+
+    private final AtomicLong received = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong direct = new AtomicLong();
+    private final AtomicLong flushes = new AtomicLong();
+
+    @Inject
+    public ConsumerCheckInBuffer(ConsumerCurator consumerCurator, UnitOfWork unitOfWork,
+        Configuration config) {
+
+        this(consumerCurator, unitOfWork,
+            config.getBoolean(ConfigProperties.CONSUMER_CHECKIN_BUFFER_ENABLED, false),
+            config.getInt(ConfigProperties.CONSUMER_CHECKIN_BUFFER_FLUSH_INTERVAL, 5),
+            config.getInt(ConfigProperties.CONSUMER_CHECKIN_BUFFER_SIZE, 10000));
+    }
+
+    public ConsumerCheckInBuffer(ConsumerCurator consumerCurator, UnitOfWork unitOfWork,
+        boolean enabled, int flushInterval, int maxSize) {
+
+        if (enabled) {
+            if (flushInterval < 1) {
+                throw new IllegalArgumentException("flushInterval must be a positive integer");
+            }
+
+            if (maxSize < 1) {
+                throw new IllegalArgumentException("maxSize must be a positive integer");
+            }
+        }
+
+        this.consumerCurator = consumerCurator;
+        this.unitOfWork = unitOfWork;
+        this.enabled = enabled;
+        this.flushInterval = flushInterval;
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Checks whether or not check-ins are buffered. When disabled, every check-in is written
+     * immediately.
+     *
+     * @return
+     *  true if check-ins are buffered; false otherwise
+     */
+    public boolean isEnabled() {
+        return this.enabled;
+    }
+
+    /**
+     * Starts periodically flushing buffered check-ins. Does nothing if the buffer is disabled or
+     * already started.
+     */
+    public void start() {
+        this.runLock.writeLock().lock();
+        try {
+            if (!this.enabled || this.running) {
+                return;
+            }
+
+            log.info("Starting consumer check-in buffer. Check-ins will be written every {} seconds.",
+                this.flushInterval);
+
+            this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "consumer-checkin-buffer");
+                thread.setDaemon(true);
+
+                return thread;
+            });
+
+            this.executor.scheduleWithFixedDelay(this::flush, this.flushInterval, this.flushInterval,
+                TimeUnit.SECONDS);
+
+            this.running = true;
+        }
+        finally {
+            this.runLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Stops the periodic flush and writes any check-ins still buffered. Check-ins received after
+     * this point are written immediately.
+     */
+    public void shutdown() {
+        this.runLock.writeLock().lock();
+        try {
+            if (!this.running) {
+                return;
+            }
+
+            this.running = false;
+        }
+        finally {
+            this.runLock.writeLock().unlock();
+        }
+
+        this.executor.shutdown();
+        try {
+            if (!this.executor.awaitTermination(this.flushInterval, TimeUnit.SECONDS)) {
+                log.warn("Timed out waiting for a pending consumer check-in flush to complete");
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        this.flush();
+    }
+
+    /**
+     * Records a check-in for the given consumer. If the consumer already has a buffered check-in,
+     * the later of the two times is kept.
+     *
+     * @param consumer
+     *  the consumer checking in
+     *
+     * @param checkinDate
+     *  the time at which the consumer checked in
+     */
+    public void checkIn(Consumer consumer, Date checkinDate) {
+        this.received.incrementAndGet();
+
+        this.runLock.readLock().lock();
+        try {
+            if (this.running) {
+                String consumerId = consumer.getId();
+
+                if (this.pending.size() < this.maxSize || this.pending.containsKey(consumerId)) {
+                    this.pending.merge(consumerId, checkinDate, (current, update) -> {
+                        this.coalesced.incrementAndGet();
+                        return current.after(update) ? current : update;
+                    });
+
+                    if (this.pending.size() >= this.maxSize) {
+                        this.requestFlush();
+                    }
+
+                    return;
+                }
+
+                this.requestFlush();
+            }
+        }
+        finally {
+            this.runLock.readLock().unlock();
+        }
+
+        this.direct.incrementAndGet();
+        this.consumerCurator.updateLastCheckin(consumer, checkinDate);
+    }
+
+    private void requestFlush() {
+        if (this.flushQueued.compareAndSet(false, true)) {
+            this.executor.execute(this::flush);
+        }
+    }
+
+    /**
+     * Writes all buffered check-ins to the database in a single batch. Check-ins which fail to
+     * be written are returned to the buffer and retried on the next flush.
+     */
+    public void flush() {
+        this.flushQueued.set(false);
+
+        if (this.pending.isEmpty()) {
+            return;
+        }
+
+        Map<String, Date> batch = new HashMap<>();
+        boolean startedUow = false;
+
+        try {
+            this.unitOfWork.begin();
+            startedUow = true;
+
+            for (String consumerId : this.pending.keySet()) {
+                Date checkinDate = this.pending.remove(consumerId);
+
+                if (checkinDate != null) {
+                    batch.put(consumerId, checkinDate);
+                }
+            }
+
+            long start = System.currentTimeMillis();
+            int updated = this.consumerCurator.updateLastCheckins(batch);
+
+            this.written.addAndGet(batch.size());
+            this.flushes.incrementAndGet();
+
+            log.debug("Flushed {} consumer check-ins ({} rows updated) in {}ms; " +
+                "received: {}, coalesced: {}, written immediately: {}", batch.size(), updated,
+                System.currentTimeMillis() - start, this.getReceivedCount(), this.getCoalescedCount(),
+                this.getDirectWriteCount());
+        }
+        catch (Exception e) {
+            log.error("Unable to write {} consumer check-ins; they will be retried", batch.size(), e);
+
+            for (Map.Entry<String, Date> entry : batch.entrySet()) {
+                this.pending.merge(entry.getKey(), entry.getValue(),
+                    (current, update) -> current.after(update) ? current : update);
+            }
+        }
+        finally {
+            if (startedUow) {
+                this.unitOfWork.end();
+            }
+        }
+    }
+
+    public int getFlushInterval() {
+        return this.flushInterval;
+    }
+
+    public int getMaxSize() {
+        return this.maxSize;
+    }
+
+    /**
+     * @return
+     *  the number of consumers with a check-in waiting to be written
+     */
+    public int getPendingCount() {
+        return this.pending.size();
+    }
+
+    /**
+     * @return
+     *  the number of check-ins received by this buffer
+     */
+    public long getReceivedCount() {
+        return this.received.get();
+    }
+
+    /**
+     * @return
+     *  the number of check-ins which replaced a check-in already buffered for the same consumer,
+     *  and so did not require an update of their own
+     */
+    public long getCoalescedCount() {
+        return this.coalesced.get();
+    }
+
+    /**
+     * @return
+     *  the number of buffered check-ins written by a flush
+     */
+    public long getWrittenCount() {
+        return this.written.get();
+    }
+
+    /**
+     * @return
+     *  the number of check-ins written immediately, bypassing the buffer
+     */
+    public long getDirectWriteCount() {
+        return this.direct.get();
+    }
+
+    /**
+     * @return
+     *  the number of batched updates performed
+     */
+    public long getFlushCount() {
+        return this.flushes.get();
+    }
+}
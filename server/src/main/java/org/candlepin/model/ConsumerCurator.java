@@ -14,6 +14,7 @@
  */
 package org.candlepin.model;
 
+import org.candlepin.auth.PrincipalCache;
 import org.candlepin.common.config.Configuration;
 import org.candlepin.common.exceptions.BadRequestException;
 import org.candlepin.common.exceptions.NotFoundException;
@@ -27,13 +28,12 @@ import com.google.inject.Inject;
 import com.google.inject.persist.Transactional;
 
 import org.apache.commons.collections.CollectionUtils;
-import org.apache.commons.lang3.tuple.ImmutablePair;
-import org.apache.commons.lang3.tuple.Pair;
 import org.hibernate.Criteria;
 import org.hibernate.FetchMode;
 import org.hibernate.Hibernate;
 import org.hibernate.Query;
 import org.hibernate.ReplicationMode;
+import org.hibernate.Session;
 import org.hibernate.criterion.Criterion;
 import org.hibernate.criterion.DetachedCriteria;
 import org.hibernate.criterion.Disjunction;
@@ -42,15 +42,20 @@ import org.hibernate.criterion.Projections;
 import org.hibernate.criterion.Property;
 import org.hibernate.criterion.Restrictions;
 import org.hibernate.criterion.Subqueries;
+import org.hibernate.engine.spi.SessionImplementor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.sql.Timestamp;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
@@ -58,7 +63,6 @@ import java.util.Map.Entry;
 import java.util.Set;
 import java.util.stream.Collectors;
 
-import javax.inject.Provider;
 import javax.inject.Singleton;
 import javax.persistence.LockModeType;
 import javax.persistence.TypedQuery;
@@ -76,7 +80,8 @@ public class ConsumerCurator extends AbstractHibernateCurator<Consumer> {
     @Inject private Configuration config;
     @Inject private FactValidator factValidator;
     @Inject private OwnerCurator ownerCurator;
-    @Inject private Provider<HostCache> cachedHostsProvider;
+    @Inject private GuestHostCache guestHostCache;
+    @Inject private PrincipalCache principalCache;
 
     public ConsumerCurator() {
         super(Consumer.class);
@@ -101,6 +106,7 @@ public class ConsumerCurator extends AbstractHibernateCurator<Consumer> {
             owner.getKey(), owner.getDisplayName());
 
         super.delete(entity);
+        this.principalCache.invalidateConsumer(dc.getConsumerUuid());
 
         DeletedConsumer existing = deletedConsumerCurator.findByConsumerUuid(dc.getConsumerUuid());
         if (existing != null) {
@@ -128,6 +134,7 @@ public class ConsumerCurator extends AbstractHibernateCurator<Consumer> {
         this.currentSession().replicate(idCert.getSerial(), ReplicationMode.EXCEPTION);
         this.currentSession().replicate(idCert, ReplicationMode.EXCEPTION);
 
+        consumer.updateCanonicalVirtUuid();
         this.currentSession().replicate(consumer, ReplicationMode.EXCEPTION);
 
         return consumer;
@@ -137,7 +144,8 @@ public class ConsumerCurator extends AbstractHibernateCurator<Consumer> {
      * Lookup consumer by its virt.uuid.
      *
      * In some cases the hypervisor will report UUIDs with uppercase, while the guest will
-     * report lowercase. As such we do case insensitive comparison when looking these up.
+     * report lowercase, or in a different byte order. As such we look these up by the
+     * canonical form of the UUID, which is the same in either case.
      *
      * @param uuid consumer virt.uuid to find
      * @return Consumer whose name matches the given virt.uuid, null otherwise.
@@ -145,18 +153,14 @@ public class ConsumerCurator extends AbstractHibernateCurator<Consumer> {
     @Transactional
     public Consumer findByVirtUuid(String uuid, String ownerId) {
         Consumer result = null;
-        List<String> possibleGuestIds = Util.getPossibleUuids(uuid);
 
         String sql = "select cp_consumer.id from cp_consumer " +
-            "inner join cp_consumer_facts " +
-            "on cp_consumer.id = cp_consumer_facts.cp_consumer_id " +
-            "where cp_consumer_facts.mapkey = 'virt.uuid' and " +
-            "lower(cp_consumer_facts.element) in (:guestids) " +
+            "where cp_consumer.virt_uuid_canonical = :guestid " +
             "and cp_consumer.owner_id = :ownerid " +
             "order by cp_consumer.updated desc";
 
         Query q = currentSession().createSQLQuery(sql);
-        q.setParameterList("guestids", possibleGuestIds);
+        q.setParameter("guestid", Util.getCanonicalUuid(uuid));
         q.setParameter("ownerid", ownerId);
         List<String> options = q.list();
 
@@ -189,13 +193,13 @@ public class ConsumerCurator extends AbstractHibernateCurator<Consumer> {
             return guestConsumersMap;
         }
 
-        List<String> possibleGuestIds = Util.getPossibleUuids(guestIds.toArray(new String [guestIds.size()]));
+        Set<String> canonicalGuestIds = new HashSet<>();
+        for (String guestId : guestIds) {
+            canonicalGuestIds.add(Util.getCanonicalUuid(guestId));
+        }
 
         String sql = "select cp_consumer.uuid from cp_consumer " +
-            "inner join cp_consumer_facts " +
-            "on cp_consumer.id = cp_consumer_facts.cp_consumer_id " +
-            "where cp_consumer_facts.mapkey = 'virt.uuid' and " +
-            "lower(cp_consumer_facts.element) in (:guestids) " +
+            "where cp_consumer.virt_uuid_canonical in (:guestids) " +
             "and cp_consumer.owner_id = :ownerid " +
             "order by cp_consumer.updated desc";
 
@@ -204,7 +208,7 @@ public class ConsumerCurator extends AbstractHibernateCurator<Consumer> {
 
         List<String> consumerUuids = new LinkedList<>();
 
-        Iterable<List<String>> blocks = Iterables.partition(possibleGuestIds, getInBlockSize());
+        Iterable<List<String>> blocks = Iterables.partition(canonicalGuestIds, getInBlockSize());
 
         Query query = this.currentSession()
             .createSQLQuery(sql)
@@ -461,6 +465,54 @@ public class ConsumerCurator extends AbstractHibernateCurator<Consumer> {
             .executeUpdate();
     }
 
+    /**
+     * Updates the last check-in times of several consumers using a single batched JDBC statement.
+     * A consumer's check-in time is never moved backwards; consumers which have since checked in
+     * more recently, or which no longer exist, are left untouched.
+     *
+     * @param checkins
+     *  a mapping of consumer IDs to their most recent check-in times
+     *
+     * @return
+     *  the number of consumers updated
+     */
+    @Transactional
+    public int updateLastCheckins(Map<String, Date> checkins) {
+        if (checkins == null || checkins.isEmpty()) {
+            return 0;
+        }
+
+        final String sql = "UPDATE " + Consumer.DB_TABLE + " SET lastcheckin = ?, updated = ? " +
+            "WHERE id = ? AND (lastcheckin IS NULL OR lastcheckin < ?)";
+
+        return this.currentSession().doReturningWork(connection -> {
+            int updated = 0;
+
+            try (PreparedStatement statement = connection.prepareStatement(sql)) {
+                for (List<Entry<String, Date>> block :
+                    Iterables.partition(checkins.entrySet(), getBatchBlockSize())) {
+
+                    for (Entry<String, Date> entry : block) {
+                        Timestamp timestamp = new Timestamp(entry.getValue().getTime());
+
+                        statement.setTimestamp(1, timestamp);
+                        statement.setTimestamp(2, timestamp);
+                        statement.setString(3, entry.getKey());
+                        statement.setTimestamp(4, timestamp);
+                        statement.addBatch();
+                    }
+
+                    for (int count : statement.executeBatch()) {
+                        // Some drivers only report that the statement succeeded
+                        updated += count == Statement.SUCCESS_NO_INFO ? 1 : Math.max(count, 0);
+                    }
+                }
+            }
+
+            return updated;
+        });
+    }
+
     private boolean factsChanged(Map<String, String> updatedFacts, Map<String, String> existingFacts) {
         return !existingFacts.equals(updatedFacts);
     }
@@ -520,12 +572,13 @@ public class ConsumerCurator extends AbstractHibernateCurator<Consumer> {
      * and assume this is the authoritative host for the guest.
      *
      * This search needs to be case insensitive as some hypervisors report uppercase
-     * guest UUIDs, when the guest itself will report lowercase.
+     * guest UUIDs, when the guest itself will report lowercase. Some also report them in a
+     * different byte order, so we match on the canonical form of the guest ID.
      *
-     * The first lookup will retrieve the host and then place it in the map. This
-     * will save from reloading the host from the database if it is asked for again
-     * during the session. An auto-bind can call this method up to 50 times and this
-     * will cut the database calls significantly.
+     * Hosts are cached across requests by the GuestHostCache, so repeated lookups of the same
+     * guest only load the host consumer by its ID. An auto-bind can call this method up to 50
+     * times and this will cut the database calls significantly. Cached hosts expire after a short
+     * time-to-live, as guest migrations recorded by other nodes do not invalidate them.
      *
      * @param guestId a virtual guest ID (not a consumer UUID)
      * @param ownerId ID of the organization to scope the search
@@ -536,29 +589,35 @@ public class ConsumerCurator extends AbstractHibernateCurator<Consumer> {
         if (guestId == null) {
             return null;
         }
-        String guestLower = guestId.toLowerCase();
 
-        Pair<String, String> key = new ImmutablePair<>(guestLower, ownerId);
-        if (cachedHostsProvider.get().containsKey(key)) {
-            return cachedHostsProvider.get().get(key);
-        }
+        GuestHostCache.CachedHost cached = this.guestHostCache.get(guestId, ownerId);
+        if (cached != null) {
+            if (cached.getHostId() == null) {
+                return null;
+            }
 
-        Disjunction guestIdCrit = Restrictions.disjunction();
-        for (String possibleId : Util.getPossibleUuids(guestId)) {
-            guestIdCrit.add(Restrictions.eq("guestIdLower", possibleId.toLowerCase()));
+            // The host may have been deleted by a transaction which has yet to complete. Hosts
+            // already loaded in this session are found without querying the database.
+            Consumer host = this.getEntityManager().find(Consumer.class, cached.getHostId());
+            if (host != null) {
+                return host;
+            }
         }
 
+        // Fetch the version before the lookup, so changes made meanwhile invalidate the result
+        long version = this.guestHostCache.getVersion();
+
         Criteria crit = currentSession()
             .createCriteria(GuestId.class)
             .createAlias("consumer", "gconsumer")
             .add(Restrictions.eq("gconsumer.ownerId", ownerId))
-            .add(guestIdCrit)
+            .add(Restrictions.eq("guestIdCanonical", Util.getCanonicalUuid(guestId)))
             .addOrder(Order.desc("updated"))
             .setMaxResults(1)
             .setProjection(Projections.property("consumer"));
 
         Consumer host = (Consumer) crit.uniqueResult();
-        cachedHostsProvider.get().put(key, host);
+        this.guestHostCache.put(guestId, ownerId, host != null ? host.getId() : null, version);
         return host;
     }
 
@@ -765,6 +824,78 @@ public class ConsumerCurator extends AbstractHibernateCurator<Consumer> {
         return hypervisorMap;
     }
 
+    /**
+     * The report digest stored for a registered hypervisor, along with the IDs of its consumer.
+     */
+    public static class HypervisorDigest {
+        private final String consumerId;
+        private final String consumerUuid;
+        private final String reportDigest;
+
+        public HypervisorDigest(String consumerId, String consumerUuid, String reportDigest) {
+            this.consumerId = consumerId;
+            this.consumerUuid = consumerUuid;
+            this.reportDigest = reportDigest;
+        }
+
+        public String getConsumerId() {
+            return this.consumerId;
+        }
+
+        public String getConsumerUuid() {
+            return this.consumerUuid;
+        }
+
+        public String getReportDigest() {
+            return this.reportDigest;
+        }
+    }
+
+    /**
+     * Looks up the report digests stored for the given hypervisors, without loading their
+     * consumers.
+     *
+     * This is an unsecured query, manually limited to an owner by the parameter given.
+     *
+     * @param owner
+     *  the owner of the hypervisors
+     *
+     * @param hypervisorIds
+     *  the hypervisor IDs to look up
+     *
+     * @return
+     *  a map of lower-case hypervisor IDs to the digest stored for each registered hypervisor
+     */
+    public Map<String, HypervisorDigest> getHypervisorDigests(Owner owner, Iterable<String> hypervisorIds) {
+        Map<String, HypervisorDigest> output = new HashMap<>();
+
+        if (owner == null || hypervisorIds == null) {
+            return output;
+        }
+
+        Set<String> lowered = new HashSet<>();
+        for (String hypervisorId : hypervisorIds) {
+            if (hypervisorId != null) {
+                lowered.add(hypervisorId.toLowerCase());
+            }
+        }
+
+        String hql = "SELECT h.hypervisorId, c.id, c.uuid, h.reportDigest FROM HypervisorId h " +
+            "JOIN h.consumer c WHERE h.owner.id = :owner AND h.hypervisorId IN (:hypervisor_ids)";
+
+        TypedQuery<Object[]> query = this.getEntityManager().createQuery(hql, Object[].class)
+            .setParameter("owner", owner.getId());
+
+        for (List<String> block : this.partition(lowered)) {
+            for (Object[] row : query.setParameter("hypervisor_ids", block).getResultList()) {
+                output.put((String) row[0],
+                    new HypervisorDigest((String) row[1], (String) row[2], (String) row[3]));
+            }
+        }
+
+        return output;
+    }
+
     /**
      * @param hypervisorIds list of unique hypervisor identifiers
      * @param ownerId Org namespace to search
@@ -850,6 +981,125 @@ public class ConsumerCurator extends AbstractHibernateCurator<Consumer> {
         return consumer;
     }
 
+    /**
+     * Fetches the consumers with the given UUIDs along with everything read while calculating
+     * their compliance status: their facts, installed products, guest IDs and entitlements, and
+     * the pools, products and attributes backing those entitlements. Rather than lazily loading
+     * each of these per consumer, they are fetched with a fixed number of queries per block of
+     * consumers. Once returned, the consumers may be safely read from threads which do not own
+     * the current session.
+     *
+     * @param uuids
+     *  a collection of UUIDs of the consumers to fetch
+     *
+     * @return
+     *  a list of the fully initialized consumers with the given UUIDs
+     */
+    public List<Consumer> getConsumersForComplianceCheck(Collection<String> uuids) {
+        List<Consumer> output = new ArrayList<>();
+
+        if (uuids == null || uuids.isEmpty()) {
+            return output;
+        }
+
+        String consumerHql = "SELECT DISTINCT c FROM Consumer c " +
+            "LEFT JOIN FETCH c.entitlements e " +
+            "LEFT JOIN FETCH e.pool p " +
+            "LEFT JOIN FETCH p.product " +
+            "WHERE c.uuid IN (:uuids)";
+
+        // The remaining collections are fetched with separate queries to avoid building a
+        // cartesian product of every collection; each query initializes the collections of the
+        // consumers already in the session.
+        String[] collectionHql = {
+            "SELECT DISTINCT c FROM Consumer c LEFT JOIN FETCH c.facts WHERE c.uuid IN (:uuids)",
+            "SELECT DISTINCT c FROM Consumer c LEFT JOIN FETCH c.installedProducts WHERE c.uuid IN (:uuids)",
+            "SELECT DISTINCT c FROM Consumer c LEFT JOIN FETCH c.guestIds WHERE c.uuid IN (:uuids)"
+        };
+
+        for (List<String> block : this.partition(uuids)) {
+            List<Consumer> consumers = this.getEntityManager()
+                .createQuery(consumerHql, Consumer.class)
+                .setParameter("uuids", block)
+                .getResultList();
+
+            for (String hql : collectionHql) {
+                this.getEntityManager()
+                    .createQuery(hql, Consumer.class)
+                    .setParameter("uuids", block)
+                    .getResultList();
+            }
+
+            for (Consumer consumer : consumers) {
+                for (GuestId guestId : consumer.getGuestIds()) {
+                    Hibernate.initialize(guestId.getAttributes());
+                }
+
+                for (Entitlement entitlement : consumer.getEntitlements()) {
+                    Pool pool = entitlement.getPool();
+
+                    // The attribute maps are only exposed through read-only views, so they are
+                    // initialized by reading them rather than through Hibernate.initialize
+                    if (pool != null) {
+                        pool.getAttributes().size();
+                        pool.getProductAttributes().size();
+                        Hibernate.initialize(pool.getProvidedProducts());
+                    }
+                }
+            }
+
+            output.addAll(consumers);
+        }
+
+        return output;
+    }
+
+    /**
+     * Fetches the consumers currently loaded in the session.
+     *
+     * @return
+     *  an identity-based set of the consumers loaded in the current session
+     */
+    public Set<Consumer> getManagedConsumers() {
+        Set<Consumer> output = Collections.newSetFromMap(new IdentityHashMap<>());
+        SessionImplementor session = (SessionImplementor) this.currentSession();
+
+        for (Object entity : session.getPersistenceContext().getEntitiesByKey().values()) {
+            if (entity instanceof Consumer) {
+                output.add((Consumer) entity);
+            }
+        }
+
+        return output;
+    }
+
+    /**
+     * Flushes any pending changes to the given consumers, and anything cascaded from them, using
+     * JDBC batching, optionally evicting them from the session afterward.
+     *
+     * @param consumers
+     *  the consumers to flush
+     *
+     * @param evict
+     *  whether or not to evict the consumers from the session once flushed
+     */
+    public void flushInBatches(Collection<Consumer> consumers, boolean evict) {
+        Session session = this.currentSession();
+        Integer batchSize = session.getJdbcBatchSize();
+
+        try {
+            session.setJdbcBatchSize(this.getBatchBlockSize());
+            this.flush();
+        }
+        finally {
+            session.setJdbcBatchSize(batchSize);
+        }
+
+        if (evict && consumers != null) {
+            this.evictAll(consumers);
+        }
+    }
+
     @SuppressWarnings("checkstyle:indentation")
     public CandlepinQuery<Consumer> searchOwnerConsumers(Owner owner, String userName,
         Collection<ConsumerType> types, List<String> uuids, List<String> hypervisorIds,
@@ -24,6 +24,7 @@ import org.hibernate.LockMode;
 import org.hibernate.ScrollMode;
 import org.hibernate.ScrollableResults;
 import org.hibernate.Session;
+import org.hibernate.criterion.Criterion;
 import org.hibernate.criterion.DetachedCriteria;
 import org.hibernate.criterion.Order;
 import org.hibernate.criterion.Projection;
@@ -64,6 +65,8 @@ public class DetachedCandlepinQuery<T> implements CandlepinQuery<T> {
     protected int offset;
     protected int limit;
     protected LockMode lockMode;
+    protected KeysetPaging keyset;
+    protected RowCountCache rowCountCache;
 
     /**
      * Creates a new DetachedCandlepinQuery instance using the specified criteria and session.
@@ -78,6 +81,26 @@ public class DetachedCandlepinQuery<T> implements CandlepinQuery<T> {
      *  if either criteria or session are null
      */
     public DetachedCandlepinQuery(Session session, DetachedCriteria criteria) {
+        this(session, criteria, null);
+    }
+
+    /**
+     * Creates a new DetachedCandlepinQuery instance using the specified criteria and session, which
+     * retrieves its row counts through the given row count cache.
+     *
+     * @param criteria
+     *  The detached criteria to execute
+     *
+     * @param session
+     *  The session to use to execute the given criteria
+     *
+     * @param rowCountCache
+     *  The cache to use when counting rows, or null to always count rows directly
+     *
+     * @throws IllegalArgumentException
+     *  if either criteria or session are null
+     */
+    public DetachedCandlepinQuery(Session session, DetachedCriteria criteria, RowCountCache rowCountCache) {
         if (session == null) {
             throw new IllegalArgumentException("session is null");
         }
@@ -97,6 +120,7 @@ public class DetachedCandlepinQuery<T> implements CandlepinQuery<T> {
         this.offset = -1;
         this.limit = -1;
         this.lockMode = null;
+        this.rowCountCache = rowCountCache;
     }
 
     /**
@@ -223,6 +247,53 @@ public class DetachedCandlepinQuery<T> implements CandlepinQuery<T> {
         return this;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public CandlepinQuery<T> seek(String sortField, boolean descending, String token) {
+        KeysetPaging keyset = new KeysetPaging(this.session.getSessionFactory(),
+            this.initialState.getEntityOrClassName(), sortField, descending);
+
+        Criterion restriction = keyset.getRestriction(token);
+        if (restriction != null) {
+            this.criteria.add(restriction);
+        }
+
+        for (Order order : keyset.getOrders()) {
+            this.criteria.addOrder(order);
+        }
+
+        this.keyset = keyset;
+        return this;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public String getNextSeekToken(int pageSize) {
+        if (this.keyset == null) {
+            throw new IllegalStateException("query has not been configured for keyset paging");
+        }
+
+        if (pageSize < 1) {
+            throw new IllegalArgumentException("pageSize must be a positive integer");
+        }
+
+        // Fetch the last row of the current page along with the row following it, if any. Only the
+        // values needed for the token are selected, and thanks to the keyset restriction the offset
+        // is never larger than a single page.
+        Criteria executable = this.getExecutableCriteria();
+        executable.setProjection(this.keyset.getProjection());
+        executable.setFirstResult(Math.max(this.offset, 0) + pageSize - 1);
+        executable.setMaxResults(2);
+
+        List<Object[]> rows = executable.list();
+        return rows != null && rows.size() > 1 ? this.keyset.getToken(rows.get(0)) : null;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -419,7 +490,7 @@ public class DetachedCandlepinQuery<T> implements CandlepinQuery<T> {
      * {@inheritDoc}
      */
     @Override
-    @SuppressWarnings({"unchecked", "checkstyle:indentation"})
+    @SuppressWarnings("unchecked")
     public int getRowCount() {
         CriteriaImpl executable = (CriteriaImpl) this.getExecutableCriteria();
 
@@ -437,6 +508,25 @@ public class DetachedCandlepinQuery<T> implements CandlepinQuery<T> {
             iterator.remove();
         }
 
+        if (this.rowCountCache != null) {
+            return this.rowCountCache.getRowCount(this.session, executable, () -> this.countRows(executable));
+        }
+
+        return this.countRows(executable);
+    }
+
+    /**
+     * Counts the rows the given criteria would return by replacing its projection with a row count
+     * projection.
+     *
+     * @param executable
+     *  the executable criteria to count, without any ordering applied
+     *
+     * @return
+     *  the number of rows the criteria would return
+     */
+    @SuppressWarnings("checkstyle:indentation")
+    private int countRows(CriteriaImpl executable) {
         Projection projection = executable.getProjection();
         if (projection != null && projection.isGrouped()) {
             // We have a projection that alters the grouping of the query. We need to rebuild the
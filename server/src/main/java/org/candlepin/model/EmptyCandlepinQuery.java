@@ -121,6 +121,34 @@ public class EmptyCandlepinQuery<T> implements CandlepinQuery<T> {
         return this;
     }
 
+    /**
+     * Returns a reference to this CandlepinQuery instance.
+     *
+     * @param sortField
+     * @param descending
+     * @param token
+     *
+     * @return
+     *  this query instance
+     */
+    @Override
+    public CandlepinQuery<T> seek(String sortField, boolean descending, String token) {
+        return this;
+    }
+
+    /**
+     * Returns null, as there are never any further results.
+     *
+     * @param pageSize
+     *
+     * @return
+     *  null
+     */
+    @Override
+    public String getNextSeekToken(int pageSize) {
+        return null;
+    }
+
     /**
      * Returns a reference to this CandlepinQuery instance.
      *
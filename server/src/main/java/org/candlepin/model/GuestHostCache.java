@@ -0,0 +1,188 @@
+/**
+ * Copyright (c) 2009 - 2018 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.model;
+
+import org.candlepin.common.config.Configuration;
+import org.candlepin.config.ConfigProperties;
+import org.candlepin.util.Util;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+
+import org.apache.commons.lang3.tuple.ImmutablePair;
+import org.apache.commons.lang3.tuple.Pair;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+
+/**
+ * Caches, across requests, which host consumer most recently reported each guest ID of an owner.
+ *
+ * Guest IDs are cached in their canonical form (see Util.getCanonicalUuid), so every byte order
+ * variant of a guest UUID shares a single entry. Guests without a host are cached as well. Only
+ * the ID of the host is retained, as consumers are bound to the session which loaded them.
+ *
+ * The entries of an owner are discarded as soon as the GuestModificationTracker reports a change
+ * to the guest IDs of the owner's consumers, and every entry expires after the configured
+ * time-to-live. As the tracker only sees changes made by this node, the time-to-live bounds how
+ * long a guest migration recorded by another node in a cluster may go unnoticed. At most the
+ * configured number of entries are retained, with the least recently used entries discarded first.
+ */
+@Singleton
+public class GuestHostCache {
+
+    /**
+     * A cached guest-to-host mapping
+     */
+    public static class CachedHost {
+        private final String hostId;
+        private final long version;
+        private final long expiration;
+
+        private CachedHost(String hostId, long version, long expiration) {
+            this.hostId = hostId;
+            this.version = version;
+            this.expiration = expiration;
+        }
+
+        /**
+         * @return
+         *  the ID of the host consumer of the guest, or null if the guest has no host
+         */
+        public String getHostId() {
+            return this.hostId;
+        }
+    }
+
+    private final GuestModificationTracker tracker;
+    private final boolean enabled;
+    private final long ttl;
+    private final Map<Pair<String, String>, CachedHost> entries;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    @Inject
+    public GuestHostCache(Configuration config, GuestModificationTracker tracker) {
+        this(tracker,
+            config.getBoolean(ConfigProperties.GUEST_HOST_CACHE_ENABLED, true),
+            config.getInt(ConfigProperties.GUEST_HOST_CACHE_SIZE, 10000),
+            TimeUnit.SECONDS.toMillis(config.getInt(ConfigProperties.GUEST_HOST_CACHE_TTL, 10)));
+    }
+
+    public GuestHostCache(GuestModificationTracker tracker, boolean enabled, final int maxSize, long ttl) {
+        if (tracker == null) {
+            throw new IllegalArgumentException("tracker is null");
+        }
+
+        if (enabled && maxSize < 1) {
+            throw new IllegalArgumentException("maxSize must be a positive integer");
+        }
+
+        this.tracker = tracker;
+        this.enabled = enabled && ttl > 0;
+        this.ttl = ttl;
+        this.entries = Collections.synchronizedMap(
+            new LinkedHashMap<Pair<String, String>, CachedHost>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Pair<String, String>, CachedHost> eldest) {
+                    return this.size() > maxSize;
+                }
+            });
+    }
+
+    /**
+     * @return
+     *  the current modification version. Fetch the version before looking up a host to cache, so
+     *  changes made during the lookup invalidate the result.
+     */
+    public long getVersion() {
+        return this.tracker.getVersion();
+    }
+
+    /**
+     * Fetches the cached host of the given guest.
+     *
+     * @param guestId
+     *  the guest ID to look up, in any case or byte order
+     *
+     * @param ownerId
+     *  the ID of the owner to which the lookup is scoped
+     *
+     * @return
+     *  the cached host of the guest, or null if the guest has not been cached, its entry has
+     *  expired, or its owner has changed since it was cached
+     */
+    public CachedHost get(String guestId, String ownerId) {
+        if (!this.enabled) {
+            return null;
+        }
+
+        Pair<String, String> key = new ImmutablePair<>(Util.getCanonicalUuid(guestId), ownerId);
+        CachedHost cached = this.entries.get(key);
+
+        if (cached != null && cached.expiration >= System.currentTimeMillis() &&
+            !this.tracker.isModifiedSince(ownerId, cached.version)) {
+            this.hits.incrementAndGet();
+            return cached;
+        }
+
+        this.misses.incrementAndGet();
+        return null;
+    }
+
+    /**
+     * Caches the host of the given guest.
+     *
+     * @param guestId
+     *  the guest ID, in any case or byte order
+     *
+     * @param ownerId
+     *  the ID of the owner to which the lookup was scoped
+     *
+     * @param hostId
+     *  the ID of the host consumer of the guest, or null if the guest has no host
+     *
+     * @param version
+     *  the modification version fetched before the host was looked up
+     */
+    public void put(String guestId, String ownerId, String hostId, long version) {
+        if (this.enabled && !this.tracker.isModifiedSince(ownerId, version)) {
+            this.entries.put(new ImmutablePair<>(Util.getCanonicalUuid(guestId), ownerId),
+                new CachedHost(hostId, version, System.currentTimeMillis() + this.ttl));
+        }
+    }
+
+    /**
+     * @return
+     *  the number of host lookups answered by this cache
+     */
+    public long getHits() {
+        return this.hits.get();
+    }
+
+    /**
+     * @return
+     *  the number of host lookups which were not cached
+     */
+    public long getMisses() {
+        return this.misses.get();
+    }
+}
@@ -16,6 +16,7 @@ package org.candlepin.model;
 
 import org.candlepin.common.jackson.HateoasArrayExclude;
 import org.candlepin.common.jackson.HateoasInclude;
+import org.candlepin.util.Util;
 
 import com.fasterxml.jackson.annotation.JsonFilter;
 
@@ -79,6 +80,13 @@ public class GuestId extends AbstractHibernateObject implements Owned, Named, Co
     @NotNull
     private String guestIdLower;
 
+    // The canonical form of the guest ID, the same for every case and byte order of a guest UUID
+    @Column(name = "guest_id_canonical", nullable = false)
+    @Index(name = "cp_cnsmr_guests_canonical_idx")
+    @Size(max = 255)
+    @NotNull
+    private String guestIdCanonical;
+
     @ManyToOne(fetch = FetchType.LAZY)
     @ForeignKey(name = "fk_consumer_guests")
     @JoinColumn(nullable = false)
@@ -131,6 +139,8 @@ public class GuestId extends AbstractHibernateObject implements Owned, Named, Co
         else {
             guestIdLower = null;
         }
+
+        guestIdCanonical = Util.getCanonicalUuid(guestId);
     }
 
     @HateoasInclude
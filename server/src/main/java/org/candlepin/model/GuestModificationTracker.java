@@ -0,0 +1,219 @@
+/**
+ * Copyright (c) 2009 - 2018 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.model;
+
+import com.google.inject.Singleton;
+
+import org.hibernate.Hibernate;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.AbstractCollectionEvent;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.PostCollectionRecreateEvent;
+import org.hibernate.event.spi.PostCollectionRecreateEventListener;
+import org.hibernate.event.spi.PostCollectionRemoveEvent;
+import org.hibernate.event.spi.PostCollectionRemoveEventListener;
+import org.hibernate.event.spi.PostCollectionUpdateEvent;
+import org.hibernate.event.spi.PostCollectionUpdateEventListener;
+import org.hibernate.event.spi.PostCommitDeleteEventListener;
+import org.hibernate.event.spi.PostCommitInsertEventListener;
+import org.hibernate.event.spi.PostCommitUpdateEventListener;
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.persister.entity.EntityPersister;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+
+/**
+ * Tracks when the guest IDs of each owner's consumers were last changed, so that the guest-to-host
+ * cache can tell whether the hosts it holds for an owner are still current.
+ *
+ * Changes are recorded against a version counter which increases with every change. A change is
+ * recorded for an owner whenever a guest ID of one of its consumers is added, changed or removed,
+ * or one of its consumers is deleted or moved to another owner. Such changes are recorded
+ * automatically once this tracker has been registered with Hibernate, both when they are flushed
+ * and again when their transaction completes, whether it commits or rolls back.
+ */
+@Singleton
+public class GuestModificationTracker implements PostCommitInsertEventListener,
+    PostCommitUpdateEventListener, PostCommitDeleteEventListener, PostCollectionRecreateEventListener,
+    PostCollectionUpdateEventListener, PostCollectionRemoveEventListener {
+
+    private final AtomicLong clock = new AtomicLong();
+    private final Map<String, Long> modified = new ConcurrentHashMap<>();
+    private volatile long globalModified;
+
+    /**
+     * Registers this tracker to be notified of guest ID and consumer changes.
+     *
+     * @param registry
+     *  the event listener registry of the session factory to track
+     */
+    public void register(EventListenerRegistry registry) {
+        registry.getEventListenerGroup(EventType.POST_INSERT).appendListener(this);
+        registry.getEventListenerGroup(EventType.POST_UPDATE).appendListener(this);
+        registry.getEventListenerGroup(EventType.POST_DELETE).appendListener(this);
+        registry.getEventListenerGroup(EventType.POST_COMMIT_INSERT).appendListener(this);
+        registry.getEventListenerGroup(EventType.POST_COMMIT_UPDATE).appendListener(this);
+        registry.getEventListenerGroup(EventType.POST_COMMIT_DELETE).appendListener(this);
+        registry.getEventListenerGroup(EventType.POST_COLLECTION_RECREATE).appendListener(this);
+        registry.getEventListenerGroup(EventType.POST_COLLECTION_UPDATE).appendListener(this);
+        registry.getEventListenerGroup(EventType.POST_COLLECTION_REMOVE).appendListener(this);
+    }
+
+    /**
+     * @return
+     *  the current modification version
+     */
+    public long getVersion() {
+        return this.clock.get();
+    }
+
+    /**
+     * Records a change to the guest IDs of the given owner.
+     *
+     * @param ownerId
+     *  the ID of the owner whose guest IDs changed, or null to record a change for every owner
+     */
+    public void markModified(String ownerId) {
+        long version = this.clock.incrementAndGet();
+
+        if (ownerId != null) {
+            this.modified.merge(ownerId, version, Math::max);
+        }
+        else {
+            this.globalModified = version;
+        }
+    }
+
+    /**
+     * Checks whether or not the guest IDs of the given owner have changed since the given version.
+     *
+     * @param ownerId
+     *  the ID of the owner to check
+     *
+     * @param version
+     *  the modification version to check against, as returned by getVersion
+     *
+     * @return
+     *  true if the owner's guest IDs have changed since the given version; false otherwise
+     */
+    public boolean isModifiedSince(String ownerId, long version) {
+        Long ownerModified = ownerId != null ? this.modified.get(ownerId) : null;
+
+        return this.globalModified > version || (ownerModified != null && ownerModified > version);
+    }
+
+    private void consumerChanged(Consumer consumer) {
+        // The consumer of a guest ID may not have been loaded, in which case we can't tell its owner
+        this.markModified(consumer != null && Hibernate.isInitialized(consumer) ?
+            consumer.getOwnerId() :
+            null);
+    }
+
+    private void entityChanged(Object entity) {
+        if (entity instanceof GuestId) {
+            this.consumerChanged(((GuestId) entity).getConsumer());
+        }
+        else if (entity instanceof Consumer) {
+            this.consumerChanged((Consumer) entity);
+        }
+    }
+
+    private void entityUpdated(PostUpdateEvent event) {
+        if (event.getEntity() instanceof Consumer) {
+            // Consumers change constantly; we're only interested in those moved to another owner
+            Integer index = event.getPersister().getEntityMetamodel().getPropertyIndexOrNull("ownerId");
+            Object previous = index != null && event.getOldState() != null ?
+                event.getOldState()[index] :
+                null;
+
+            if (previous != null && !previous.equals(((Consumer) event.getEntity()).getOwnerId())) {
+                this.markModified((String) previous);
+                this.entityChanged(event.getEntity());
+            }
+
+            return;
+        }
+
+        this.entityChanged(event.getEntity());
+    }
+
+    private void collectionChanged(AbstractCollectionEvent event) {
+        String role = event.getCollection().getRole();
+
+        if (event.getAffectedOwnerOrNull() instanceof Consumer && role != null &&
+            role.endsWith(".guestIds")) {
+
+            this.entityChanged(event.getAffectedOwnerOrNull());
+        }
+    }
+
+    @Override
+    public void onPostInsert(PostInsertEvent event) {
+        this.entityChanged(event.getEntity());
+    }
+
+    @Override
+    public void onPostInsertCommitFailed(PostInsertEvent event) {
+        this.entityChanged(event.getEntity());
+    }
+
+    @Override
+    public void onPostUpdate(PostUpdateEvent event) {
+        this.entityUpdated(event);
+    }
+
+    @Override
+    public void onPostUpdateCommitFailed(PostUpdateEvent event) {
+        this.entityUpdated(event);
+    }
+
+    @Override
+    public void onPostDelete(PostDeleteEvent event) {
+        this.entityChanged(event.getEntity());
+    }
+
+    @Override
+    public void onPostDeleteCommitFailed(PostDeleteEvent event) {
+        this.entityChanged(event.getEntity());
+    }
+
+    @Override
+    public void onPostRecreateCollection(PostCollectionRecreateEvent event) {
+        this.collectionChanged(event);
+    }
+
+    @Override
+    public void onPostUpdateCollection(PostCollectionUpdateEvent event) {
+        this.collectionChanged(event);
+    }
+
+    @Override
+    public void onPostRemoveCollection(PostCollectionRemoveEvent event) {
+        this.collectionChanged(event);
+    }
+
+    @Override
+    public boolean requiresPostCommitHanding(EntityPersister persister) {
+        Class<?> type = persister.getMappedClass();
+
+        return GuestId.class.isAssignableFrom(type) || Consumer.class.isAssignableFrom(type);
+    }
+}
@@ -14,6 +14,8 @@
  */
 package org.candlepin.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
 import org.hibernate.annotations.ForeignKey;
 import org.hibernate.annotations.GenericGenerator;
 import org.hibernate.annotations.Index;
@@ -75,6 +77,10 @@ public class HypervisorId extends AbstractHibernateObject {
     @Size(max = 255)
     private String reporterId;
 
+    @Column(name = "report_digest", length = 64)
+    @Size(max = 64)
+    private String reportDigest;
+
     @OneToOne(fetch = FetchType.LAZY)
     @ForeignKey(name = "fk_hypervisor_consumer")
     @JoinColumn(nullable = false, unique = true)
@@ -156,6 +162,23 @@ public class HypervisorId extends AbstractHibernateObject {
         this.reporterId = reporterId;
     }
 
+    /**
+     * @return the digest of the last report processed for this hypervisor, or null if the host has
+     *  changed since that report
+     */
+    @XmlTransient
+    @JsonIgnore
+    public String getReportDigest() {
+        return reportDigest;
+    }
+
+    /**
+     * @param reportDigest the digest of the last report processed for this hypervisor
+     */
+    public void setReportDigest(String reportDigest) {
+        this.reportDigest = reportDigest;
+    }
+
     /**
      * @return the consumer
      */
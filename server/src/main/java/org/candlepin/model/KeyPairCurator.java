@@ -14,7 +14,7 @@
  */
 package org.candlepin.model;
 
-import org.candlepin.pki.PKIUtility;
+import org.candlepin.pki.KeyPairPool;
 
 import com.google.inject.Inject;
 
@@ -29,12 +29,12 @@ import javax.inject.Singleton;
 public class KeyPairCurator extends
     AbstractHibernateCurator<KeyPair> {
 
-    private PKIUtility pki;
+    private KeyPairPool keyPairPool;
 
     @Inject
-    public KeyPairCurator(PKIUtility pki) {
+    public KeyPairCurator(KeyPairPool keyPairPool) {
         super(KeyPair.class);
-        this.pki = pki;
+        this.keyPairPool = keyPairPool;
     }
 
     /**
@@ -69,7 +69,7 @@ public class KeyPairCurator extends
 
     private KeyPair generateKeyPair() {
         try {
-            java.security.KeyPair newPair = pki.generateNewKeyPair();
+            java.security.KeyPair newPair = this.keyPairPool.take();
             KeyPair cpKeyPair = new KeyPair(newPair.getPrivate(), newPair.getPublic());
             return create(cpKeyPair);
         }
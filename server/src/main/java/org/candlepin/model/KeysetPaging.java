@@ -0,0 +1,378 @@
+/**
+ * Copyright (c) 2009 - 2018 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.model;
+
+import org.hibernate.HibernateException;
+import org.hibernate.NullPrecedence;
+import org.hibernate.SessionFactory;
+import org.hibernate.criterion.Criterion;
+import org.hibernate.criterion.Order;
+import org.hibernate.criterion.Projection;
+import org.hibernate.criterion.Projections;
+import org.hibernate.criterion.Restrictions;
+import org.hibernate.metadata.ClassMetadata;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Date;
+
+
+
+/**
+ * The KeysetPaging class builds the criteria needed to page through the results of a query by
+ * seeking past the last row of the previous page, rather than by skipping a number of rows.
+ *
+ * Results are ordered on the sort field, with ties broken by the entity's identifier, and the
+ * position of a row is carried between requests as an opaque continuation token encoding the values
+ * of both. Unlike offset paging, fetching a page costs the same regardless of how deep into the
+ * results it is, and rows inserted or removed ahead of the current position do not cause rows to
+ * be skipped or repeated.
+ *
+ * When the sort field is nullable, null values are always ordered after non-null values in
+ * ascending order, and before them in descending order.
+ */
+public class KeysetPaging {
+
+    private final String sortField;
+    private final String idField;
+    private final boolean descending;
+    private final boolean nullable;
+    private final Class<?> sortType;
+    private final Class<?> idType;
+
+    /**
+     * Creates a new KeysetPaging instance for the given entity and sort field.
+     *
+     * @param factory
+     *  the session factory from which to fetch the entity's metadata
+     *
+     * @param entityName
+     *  the name of the entity being paged
+     *
+     * @param sortField
+     *  the name of the entity property on which to order the results
+     *
+     * @param descending
+     *  whether or not the results are ordered in descending order
+     *
+     * @throws IllegalArgumentException
+     *  if the entity is unknown, or the sort field is not a property of the entity which can be used
+     *  for keyset paging
+     */
+    public KeysetPaging(SessionFactory factory, String entityName, String sortField, boolean descending) {
+        if (sortField == null || sortField.isEmpty()) {
+            throw new IllegalArgumentException("sortField is null or empty");
+        }
+
+        ClassMetadata metadata = factory.getClassMetadata(entityName);
+        if (metadata == null || metadata.getIdentifierPropertyName() == null) {
+            throw new IllegalArgumentException("Keyset paging is not supported for " + entityName);
+        }
+
+        this.sortField = sortField;
+        this.idField = metadata.getIdentifierPropertyName();
+        this.descending = descending;
+        this.idType = metadata.getIdentifierType().getReturnedClass();
+
+        if (this.idField.equals(sortField)) {
+            this.sortType = this.idType;
+            this.nullable = false;
+        }
+        else {
+            try {
+                this.sortType = metadata.getPropertyType(sortField).getReturnedClass();
+                this.nullable = metadata.getPropertyNullability()[
+                    Arrays.asList(metadata.getPropertyNames()).indexOf(sortField)];
+            }
+            catch (HibernateException | ArrayIndexOutOfBoundsException e) {
+                throw new IllegalArgumentException("Cannot sort by unknown field: " + sortField, e);
+            }
+        }
+
+        if (!isSupportedType(this.sortType) || !isSupportedType(this.idType)) {
+            throw new IllegalArgumentException("Cannot use keyset paging with sort field: " + sortField);
+        }
+    }
+
+    private static boolean isSupportedType(Class<?> type) {
+        return String.class.equals(type) || Date.class.isAssignableFrom(type) ||
+            Number.class.isAssignableFrom(type) || Boolean.class.equals(type) || type.isEnum();
+    }
+
+    /**
+     * Fetches the orderings to apply to the paged query.
+     *
+     * @return
+     *  the orderings to apply to the paged query
+     */
+    public Order[] getOrders() {
+        Order sortOrder = this.descending ? Order.desc(this.sortField) : Order.asc(this.sortField);
+
+        if (this.idField.equals(this.sortField)) {
+            return new Order[] { sortOrder };
+        }
+
+        if (this.nullable) {
+            sortOrder.nulls(this.descending ? NullPrecedence.FIRST : NullPrecedence.LAST);
+        }
+
+        return new Order[] {
+            sortOrder,
+            this.descending ? Order.desc(this.idField) : Order.asc(this.idField)
+        };
+    }
+
+    /**
+     * Builds the restriction limiting the paged query to the rows following the position encoded
+     * by the given continuation token.
+     *
+     * @param token
+     *  the continuation token of the previous page; may be null or empty to request the first page
+     *
+     * @throws IllegalArgumentException
+     *  if the token is malformed or was not generated for this sort field
+     *
+     * @return
+     *  the restriction to apply to the paged query, or null if the first page is requested
+     */
+    public Criterion getRestriction(String token) {
+        if (token == null || token.isEmpty()) {
+            return null;
+        }
+
+        String[] values = decodeToken(token);
+        Object sortValue = parseValue(values[0], this.sortType);
+        Object idValue = parseValue(values[1], this.idType);
+
+        if (idValue == null) {
+            throw new IllegalArgumentException("Malformed page token");
+        }
+
+        Criterion afterId = this.descending ?
+            Restrictions.lt(this.idField, idValue) :
+            Restrictions.gt(this.idField, idValue);
+
+        if (this.idField.equals(this.sortField)) {
+            return afterId;
+        }
+
+        if (sortValue == null) {
+            if (!this.nullable) {
+                throw new IllegalArgumentException("Malformed page token");
+            }
+
+            // Nulls come last in ascending order, and first in descending order
+            Criterion restriction = Restrictions.and(Restrictions.isNull(this.sortField), afterId);
+            return this.descending ?
+                Restrictions.or(restriction, Restrictions.isNotNull(this.sortField)) :
+                restriction;
+        }
+
+        Criterion beyond = this.descending ?
+            Restrictions.lt(this.sortField, sortValue) :
+            Restrictions.gt(this.sortField, sortValue);
+
+        Criterion restriction = Restrictions.or(beyond,
+            Restrictions.and(Restrictions.eq(this.sortField, sortValue), afterId));
+
+        return this.nullable && !this.descending ?
+            Restrictions.or(restriction, Restrictions.isNull(this.sortField)) :
+            restriction;
+    }
+
+    /**
+     * Fetches the projection selecting the values needed to build a continuation token for a row.
+     *
+     * @return
+     *  a projection selecting the sort field and identifier of each row
+     */
+    public Projection getProjection() {
+        return Projections.projectionList()
+            .add(Projections.property(this.sortField))
+            .add(Projections.property(this.idField));
+    }
+
+    /**
+     * Builds the continuation token for the position following the given row.
+     *
+     * @param row
+     *  a row selected using the projection returned by getProjection
+     *
+     * @return
+     *  the continuation token for the rows following the given row
+     */
+    public String getToken(Object[] row) {
+        return encodeToken(formatValue(row[0]), formatValue(row[1]));
+    }
+
+    private static String formatValue(Object value) {
+        if (value == null) {
+            return null;
+        }
+
+        if (value instanceof Date) {
+            // Keep the full precision of timestamps, otherwise rows created within the same
+            // millisecond could be repeated on the next page.
+            long time = ((Date) value).getTime();
+            long seconds = Math.floorDiv(time, 1000L);
+            int nanos = value instanceof Timestamp ?
+                ((Timestamp) value).getNanos() :
+                (int) Math.floorMod(time, 1000L) * 1000000;
+
+            return seconds + "." + nanos;
+        }
+
+        if (value instanceof Enum) {
+            return ((Enum) value).name();
+        }
+
+        return value.toString();
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static Object parseValue(String value, Class<?> type) {
+        if (value == null) {
+            return null;
+        }
+
+        try {
+            if (String.class.equals(type)) {
+                return value;
+            }
+
+            if (Date.class.isAssignableFrom(type)) {
+                int separator = value.indexOf('.');
+                Timestamp timestamp = new Timestamp(Long.parseLong(value.substring(0, separator)) * 1000L);
+                timestamp.setNanos(Integer.parseInt(value.substring(separator + 1)));
+
+                return timestamp;
+            }
+
+            if (Integer.class.equals(type)) {
+                return Integer.valueOf(value);
+            }
+
+            if (Long.class.equals(type)) {
+                return Long.valueOf(value);
+            }
+
+            if (Short.class.equals(type)) {
+                return Short.valueOf(value);
+            }
+
+            if (Double.class.equals(type)) {
+                return Double.valueOf(value);
+            }
+
+            if (Float.class.equals(type)) {
+                return Float.valueOf(value);
+            }
+
+            if (BigDecimal.class.equals(type)) {
+                return new BigDecimal(value);
+            }
+
+            if (BigInteger.class.equals(type)) {
+                return new BigInteger(value);
+            }
+
+            if (Boolean.class.equals(type)) {
+                return Boolean.valueOf(value);
+            }
+
+            if (type.isEnum()) {
+                return Enum.valueOf((Class<Enum>) type, value);
+            }
+        }
+        catch (RuntimeException e) {
+            throw new IllegalArgumentException("Malformed page token", e);
+        }
+
+        throw new IllegalArgumentException("Malformed page token");
+    }
+
+    /**
+     * Encodes the given values as a continuation token. Each value is written with a length prefix,
+     * or as a single '-' if null, and the result is base64url encoded.
+     */
+    private static String encodeToken(String... values) {
+        StringBuilder builder = new StringBuilder();
+
+        for (String value : values) {
+            if (value == null) {
+                builder.append('-');
+            }
+            else {
+                builder.append(value.length()).append(':').append(value);
+            }
+        }
+
+        return Base64.getUrlEncoder().withoutPadding()
+            .encodeToString(builder.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String[] decodeToken(String token) {
+        String decoded;
+        try {
+            decoded = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+        }
+        catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Malformed page token", e);
+        }
+
+        String[] values = new String[2];
+        int offset = 0;
+
+        try {
+            for (int i = 0; i < values.length; ++i) {
+                if (decoded.charAt(offset) == '-') {
+                    ++offset;
+                    continue;
+                }
+
+                int separator = decoded.indexOf(':', offset);
+                int length = Integer.parseInt(decoded.substring(offset, separator));
+
+                values[i] = decoded.substring(separator + 1, separator + 1 + length);
+                offset = separator + 1 + length;
+            }
+        }
+        catch (RuntimeException e) {
+            throw new IllegalArgumentException("Malformed page token", e);
+        }
+
+        if (offset != decoded.length()) {
+            throw new IllegalArgumentException("Malformed page token");
+        }
+
+        return values;
+    }
+
+    public String getSortField() {
+        return this.sortField;
+    }
+
+    public String getIdField() {
+        return this.idField;
+    }
+
+    public boolean isDescending() {
+        return this.descending;
+    }
+}
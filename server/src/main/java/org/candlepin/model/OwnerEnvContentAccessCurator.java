@@ -80,6 +80,42 @@ public class OwnerEnvContentAccessCurator extends AbstractHibernateCurator<Owner
         return (resultList == null || resultList.isEmpty()) ? null : resultList.get(0);
     }
 
+    /**
+     * Lists the content access data of all environments of the given owner, including that of the
+     * owner itself.
+     *
+     * @param ownerId
+     *  the ID of the owner for which to list content access data
+     *
+     * @return
+     *  a list of the content access data of the owner
+     */
+    @SuppressWarnings("unchecked")
+    public List<OwnerEnvContentAccess> listForOwner(String ownerId) {
+        return this.getEntityManager()
+            .createQuery("SELECT oeca FROM OwnerEnvContentAccess oeca WHERE oeca.owner.id = :ownerId")
+            .setParameter("ownerId", ownerId)
+            .getResultList();
+    }
+
+    /**
+     * Lists the content access data of the given environment.
+     *
+     * @param environmentId
+     *  the ID of the environment for which to list content access data
+     *
+     * @return
+     *  a list of the content access data of the environment
+     */
+    @SuppressWarnings("unchecked")
+    public List<OwnerEnvContentAccess> listForEnvironment(String environmentId) {
+        return this.getEntityManager()
+            .createQuery("SELECT oeca FROM OwnerEnvContentAccess oeca " +
+                "WHERE oeca.environment.id = :environmentId")
+            .setParameter("environmentId", environmentId)
+            .getResultList();
+    }
+
     @Transactional
     public void removeAllForOwner(String ownerId) {
         this.currentSession().createQuery(
@@ -61,6 +61,7 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.regex.Pattern;
 
 import javax.persistence.TypedQuery;
 
@@ -80,15 +81,19 @@ public class PoolCurator extends AbstractHibernateCurator<Pool> {
     private static Logger log = LoggerFactory.getLogger(PoolCurator.class);
     private ConsumerCurator consumerCurator;
     private ConsumerTypeCurator consumerTypeCurator;
+    private PoolIndex poolIndex;
 
     @Inject
     protected Injector injector;
 
     @Inject
-    public PoolCurator(ConsumerCurator consumerCurator, ConsumerTypeCurator consumerTypeCurator) {
+    public PoolCurator(ConsumerCurator consumerCurator, ConsumerTypeCurator consumerTypeCurator,
+        PoolIndex poolIndex) {
+
         super(Pool.class);
         this.consumerCurator = consumerCurator;
         this.consumerTypeCurator = consumerTypeCurator;
+        this.poolIndex = poolIndex;
     }
 
     /**
@@ -352,6 +357,15 @@ public class PoolCurator extends AbstractHibernateCurator<Pool> {
             log.debug("    after: {}", after);
         }
 
+        if (this.poolIndex.isEnabled()) {
+            Page<List<Pool>> output = this.listIndexedEntitlementPools(consumer, ownerId, productIds,
+                subscriptionId, activeOn, filters, pageRequest, postFilter, addFuture, onlyFuture, after);
+
+            if (output != null) {
+                return output;
+            }
+        }
+
         boolean joinedProvided = false;
 
         Criteria criteria = this.createSecureCriteria("Pool")
@@ -567,11 +581,18 @@ public class PoolCurator extends AbstractHibernateCurator<Pool> {
 
         List<String> poolIds = criteria.list();
 
-        if (poolIds != null && !poolIds.isEmpty()) {
-            criteria = this.currentSession()
-                .createCriteria(Pool.class)
-                .add(CPRestrictions.in("id", poolIds));
+        return this.listPoolsById(this.currentSession().createCriteria(Pool.class), poolIds, pageRequest,
+            postFilter);
+    }
 
+    /**
+     * Fetches the pools with the given IDs, restricted by the given criteria, as a page of results.
+     */
+    private Page<List<Pool>> listPoolsById(Criteria criteria, Collection<String> poolIds,
+        PageRequest pageRequest, boolean postFilter) {
+
+        if (poolIds != null && !poolIds.isEmpty()) {
+            criteria.add(CPRestrictions.in("id", poolIds));
             return this.listByCriteria(criteria, pageRequest, postFilter);
         }
 
@@ -582,6 +603,240 @@ public class PoolCurator extends AbstractHibernateCurator<Pool> {
         return output;
     }
 
+    /**
+     * Lists entitlement pools using the pool index rather than the filtering query. The filtering
+     * applied here must match that of listAvailableEntitlementPools exactly.
+     *
+     * @return
+     *  a page of entitlement pools, or null if the query cannot be answered by the pool index
+     */
+    private Page<List<Pool>> listIndexedEntitlementPools(Consumer consumer, String ownerId,
+        Collection<String> productIds, String subscriptionId, Date activeOn, PoolFilterBuilder filters,
+        PageRequest pageRequest, boolean postFilter, boolean addFuture, boolean onlyFuture, Date after) {
+
+        if (consumer != null) {
+            if (ownerId != null && !ownerId.equals(consumer.getOwnerId())) {
+                return null;
+            }
+
+            ownerId = consumer.getOwnerId();
+        }
+
+        // The matches filters search through content, which is not indexed. Similarly, we only
+        // index pools by owner.
+        if (ownerId == null || (filters != null && filters.getMatchesFilters() != null &&
+            !filters.getMatchesFilters().isEmpty())) {
+
+            return null;
+        }
+
+        Collection<String> productFilter = productIds == null && filters != null ?
+            filters.getProductIdFilter() :
+            productIds;
+
+        Collection<PoolIndex.IndexedPool> candidates = productFilter != null && !productFilter.isEmpty() ?
+            this.poolIndex.getPools(this.currentSession(), ownerId, productFilter) :
+            this.poolIndex.getPools(this.currentSession(), ownerId);
+
+        boolean manifest = false;
+        boolean guest = false;
+        String hostUuid = null;
+
+        if (consumer != null) {
+            ConsumerType ctype = this.consumerTypeCurator.getConsumerType(consumer);
+            manifest = ctype.isManifest();
+            guest = consumer.isGuest();
+
+            if (!manifest && guest && consumer.hasFact("virt.uuid")) {
+                Consumer host = null;
+                String uuidFact = consumer.getFact("virt.uuid");
+
+                if (uuidFact != null) {
+                    host = this.consumerCurator.getHost(uuidFact, ownerId);
+                }
+
+                hostUuid = host != null ? host.getUuid() : "";
+            }
+        }
+
+        String subscriptionFilter = subscriptionId == null && filters != null ?
+            filters.getSubscriptionIdFilter() :
+            subscriptionId;
+
+        Collection<String> idFilter = filters != null ? filters.getIdFilters() : null;
+        Set<String> poolIds = new TreeSet<>();
+
+        for (PoolIndex.IndexedPool pool : candidates) {
+            if (consumer != null) {
+                if (manifest) {
+                    if (pool.getAttributes().containsKey(Pool.Attributes.REQUIRES_HOST)) {
+                        continue;
+                    }
+                }
+                else if (!guest) {
+                    if (this.matchesAttribute(pool, Pool.Attributes.VIRT_ONLY, Arrays.asList("true"))) {
+                        continue;
+                    }
+                }
+                else if (hostUuid != null) {
+                    String requiredHost = pool.getAttributes().get(Pool.Attributes.REQUIRES_HOST);
+
+                    if (requiredHost != null && !requiredHost.equalsIgnoreCase(hostUuid)) {
+                        continue;
+                    }
+                }
+            }
+
+            if (activeOn != null) {
+                if (onlyFuture) {
+                    if (pool.getStartDate().before(activeOn)) {
+                        continue;
+                    }
+                }
+                else if (!addFuture) {
+                    if (pool.getStartDate().after(activeOn) || pool.getEndDate().before(activeOn)) {
+                        continue;
+                    }
+                }
+                else if (pool.getEndDate().before(activeOn)) {
+                    continue;
+                }
+            }
+
+            if (after != null && !pool.getStartDate().after(after)) {
+                continue;
+            }
+
+            if (subscriptionFilter != null && !subscriptionFilter.isEmpty() &&
+                !subscriptionFilter.equals(pool.getSubscriptionId())) {
+                continue;
+            }
+
+            if (idFilter != null && !idFilter.isEmpty() && !idFilter.contains(pool.getId())) {
+                continue;
+            }
+
+            if (filters != null && !this.matchesAttributeFilters(pool, filters.getAttributeFilters())) {
+                continue;
+            }
+
+            poolIds.add(pool.getId());
+        }
+
+        return this.listPoolsById(this.createSecureCriteria(), poolIds, pageRequest, postFilter);
+    }
+
+    /**
+     * Checks an indexed pool against the given attribute filters, in the same way they are applied
+     * by listAvailableEntitlementPools.
+     */
+    private boolean matchesAttributeFilters(PoolIndex.IndexedPool pool, Map<String, List<String>> filters) {
+        for (Map.Entry<String, List<String>> entry : filters.entrySet()) {
+            String attrib = entry.getKey();
+            List<String> values = entry.getValue();
+
+            if (attrib == null || attrib.isEmpty()) {
+                continue;
+            }
+
+            if (values != null && !values.isEmpty()) {
+                List<String> positives = new LinkedList<>();
+                List<String> negatives = new LinkedList<>();
+
+                for (String attrValue : values) {
+                    if (attrValue.startsWith("!")) {
+                        negatives.add(attrValue.substring(1));
+                    }
+                    else {
+                        positives.add(attrValue);
+                    }
+                }
+
+                if (!positives.isEmpty() && !this.matchesAttribute(pool, attrib, positives)) {
+                    return false;
+                }
+
+                if (!negatives.isEmpty() && this.matchesAttribute(pool, attrib, negatives)) {
+                    return false;
+                }
+            }
+            else if (!this.matchesAttribute(pool, attrib, values)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Checks whether an indexed pool matches the given attribute and values, in the same way as
+     * the subqueries built by addAttributeFilterSubquery: the pool's attribute is checked if the
+     * pool defines it, and its product's attribute otherwise.
+     */
+    private boolean matchesAttribute(PoolIndex.IndexedPool pool, String key, Collection<String> values) {
+        Map<String, String> attributes = pool.getAttributes().containsKey(key) ?
+            pool.getAttributes() :
+            pool.getProductAttributes();
+
+        if (!attributes.containsKey(key)) {
+            return false;
+        }
+
+        if (values == null || values.isEmpty()) {
+            return true;
+        }
+
+        String attribValue = attributes.get(key);
+
+        for (String value : values) {
+            if (value == null || value.isEmpty()) {
+                if (attribValue == null || attribValue.isEmpty()) {
+                    return true;
+                }
+            }
+            else if (attribValue != null &&
+                this.toMatchesPattern(this.sanitizeMatchesFilter(value)).matcher(attribValue).matches()) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Converts a sanitized matches filter into the equivalent case-insensitive regular expression.
+     */
+    private Pattern toMatchesPattern(String sanitized) {
+        StringBuilder regex = new StringBuilder();
+        StringBuilder literal = new StringBuilder();
+
+        for (int index = 0; index < sanitized.length(); ++index) {
+            char c = sanitized.charAt(index);
+
+            if (c == '!' && index + 1 < sanitized.length()) {
+                literal.append(sanitized.charAt(++index));
+            }
+            else if (c == '%' || c == '_') {
+                if (literal.length() > 0) {
+                    regex.append(Pattern.quote(literal.toString()));
+                    literal.setLength(0);
+                }
+
+                regex.append(c == '%' ? ".*" : ".");
+            }
+            else {
+                literal.append(c);
+            }
+        }
+
+        if (literal.length() > 0) {
+            regex.append(Pattern.quote(literal.toString()));
+        }
+
+        return Pattern.compile(regex.toString(),
+            Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE | Pattern.DOTALL);
+    }
+
     @SuppressWarnings("checkstyle:indentation")
     private Criterion addAttributeFilterSubquery(String key, Collection<String> values) {
         // key = this.sanitizeMatchesFilter(key);
@@ -0,0 +1,366 @@
+/**
+ * Copyright (c) 2009 - 2018 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.model;
+
+import org.candlepin.common.config.Configuration;
+import org.candlepin.config.ConfigProperties;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+
+import org.hibernate.Session;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+
+/**
+ * Retains, per owner, the pool data needed to determine which pools an availability query matches,
+ * so that such queries can be answered without running the full filtering query against the
+ * database.
+ *
+ * For each pool, the index holds its product and provided product IDs, active date range, source
+ * subscription, and both its own and its product's attributes (which include the virt-only,
+ * requires-host, development and stacking settings). Pools are looked up by the ID of the product
+ * or any provided product. The data for an owner is discarded as soon as the
+ * PoolModificationTracker reports a change to any of the owner's pools, or once it is older than the
+ * configured time-to-live, and is loaded again on the next lookup. As the tracker only sees changes
+ * made by this node, the time-to-live bounds how long changes made by other nodes may go unnoticed.
+ * At most the configured number of owners are retained, with the least recently used evicted first.
+ */
+@Singleton
+public class PoolIndex {
+
+    /**
+     * The indexed data of a single pool.
+     */
+    public static class IndexedPool {
+        private final String id;
+        private final String productId;
+        private final Date startDate;
+        private final Date endDate;
+        private final Set<String> providedProductIds = new HashSet<>();
+        private final Map<String, String> attributes = new HashMap<>();
+        private Map<String, String> productAttributes = Collections.emptyMap();
+        private String subscriptionId;
+
+        public IndexedPool(String id, String productId, Date startDate, Date endDate) {
+            this.id = id;
+            this.productId = productId;
+            this.startDate = startDate;
+            this.endDate = endDate;
+        }
+
+        public String getId() {
+            return this.id;
+        }
+
+        public String getProductId() {
+            return this.productId;
+        }
+
+        public Date getStartDate() {
+            return this.startDate;
+        }
+
+        public Date getEndDate() {
+            return this.endDate;
+        }
+
+        public String getSubscriptionId() {
+            return this.subscriptionId;
+        }
+
+        public Set<String> getProvidedProductIds() {
+            return Collections.unmodifiableSet(this.providedProductIds);
+        }
+
+        public Map<String, String> getAttributes() {
+            return Collections.unmodifiableMap(this.attributes);
+        }
+
+        public Map<String, String> getProductAttributes() {
+            return Collections.unmodifiableMap(this.productAttributes);
+        }
+    }
+
+    /**
+     * The indexed pools of a single owner.
+     */
+    private static class OwnerPools {
+        private final long version;
+        private final long expiration;
+        private final List<IndexedPool> pools;
+        private final Map<String, List<IndexedPool>> byProduct;
+
+        public OwnerPools(long version, long expiration, Collection<IndexedPool> pools) {
+            this.version = version;
+            this.expiration = expiration;
+            this.pools = Collections.unmodifiableList(new ArrayList<>(pools));
+            this.byProduct = new HashMap<>();
+
+            for (IndexedPool pool : pools) {
+                this.byProduct.computeIfAbsent(pool.productId, key -> new ArrayList<>()).add(pool);
+
+                for (String providedId : pool.providedProductIds) {
+                    if (!providedId.equals(pool.productId)) {
+                        this.byProduct.computeIfAbsent(providedId, key -> new ArrayList<>()).add(pool);
+                    }
+                }
+            }
+        }
+    }
+
+    private final PoolModificationTracker tracker;
+    private final boolean enabled;
+    private final long ttl;
+    private final Map<String, OwnerPools> owners;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    @Inject
+    public PoolIndex(Configuration config, PoolModificationTracker tracker) {
+        this(tracker,
+            config.getBoolean(ConfigProperties.POOL_INDEX_ENABLED, false),
+            config.getInt(ConfigProperties.POOL_INDEX_SIZE, 100),
+            TimeUnit.SECONDS.toMillis(config.getInt(ConfigProperties.POOL_INDEX_TTL, 30)));
+    }
+
+    public PoolIndex(PoolModificationTracker tracker, boolean enabled, final int maxSize, long ttl) {
+        if (tracker == null) {
+            throw new IllegalArgumentException("tracker is null");
+        }
+
+        if (enabled && maxSize < 1) {
+            throw new IllegalArgumentException("maxSize must be a positive integer");
+        }
+
+        this.tracker = tracker;
+        this.enabled = enabled && ttl > 0;
+        this.ttl = ttl;
+        this.owners = Collections.synchronizedMap(new LinkedHashMap<String, OwnerPools>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, OwnerPools> eldest) {
+                return this.size() > maxSize;
+            }
+        });
+    }
+
+    /**
+     * Checks whether or not the pool index is enabled. When disabled, availability queries should
+     * be answered by the database.
+     *
+     * @return
+     *  true if the pool index is enabled; false otherwise
+     */
+    public boolean isEnabled() {
+        return this.enabled;
+    }
+
+    /**
+     * Fetches the indexed pools of the given owner, loading them with the given session if they
+     * are not indexed or have changed since they were indexed.
+     *
+     * @param session
+     *  the session to use to load the owner's pools
+     *
+     * @param ownerId
+     *  the ID of the owner for which to fetch pools
+     *
+     * @return
+     *  the indexed pools of the owner
+     */
+    public List<IndexedPool> getPools(Session session, String ownerId) {
+        return this.getOwnerPools(session, ownerId).pools;
+    }
+
+    /**
+     * Fetches the indexed pools of the given owner which have any of the given products as their
+     * product or as a provided product, loading the owner's pools with the given session if they
+     * are not indexed or have changed since they were indexed.
+     *
+     * @param session
+     *  the session to use to load the owner's pools
+     *
+     * @param ownerId
+     *  the ID of the owner for which to fetch pools
+     *
+     * @param productIds
+     *  the IDs of the products for which to fetch pools
+     *
+     * @return
+     *  the indexed pools of the owner providing any of the products
+     */
+    public Collection<IndexedPool> getPools(Session session, String ownerId, Collection<String> productIds) {
+        OwnerPools ownerPools = this.getOwnerPools(session, ownerId);
+        Set<IndexedPool> pools = new LinkedHashSet<>();
+
+        for (String productId : productIds) {
+            List<IndexedPool> providing = ownerPools.byProduct.get(productId);
+
+            if (providing != null) {
+                pools.addAll(providing);
+            }
+        }
+
+        return pools;
+    }
+
+    private OwnerPools getOwnerPools(Session session, String ownerId) {
+        OwnerPools ownerPools = this.owners.get(ownerId);
+
+        if (ownerPools != null && ownerPools.expiration >= System.currentTimeMillis() &&
+            !this.tracker.isModifiedSince(ownerId, ownerPools.version)) {
+            this.hits.incrementAndGet();
+            return ownerPools;
+        }
+
+        this.misses.incrementAndGet();
+
+        // Fetch the version before loading, so changes made while we load invalidate the result
+        long version = this.tracker.getVersion();
+        long expiration = System.currentTimeMillis() + this.ttl;
+        ownerPools = new OwnerPools(version, expiration, this.loadPools(session, ownerId));
+
+        this.owners.put(ownerId, ownerPools);
+        return ownerPools;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Collection<IndexedPool> loadPools(Session session, String ownerId) {
+        Map<String, IndexedPool> pools = new HashMap<>();
+        Map<String, List<IndexedPool>> byProductUuid = new HashMap<>();
+
+        List<Object[]> rows = session.createQuery(
+            "SELECT p.id, prod.id, prod.uuid, p.startDate, p.endDate FROM Pool p JOIN p.product prod " +
+            "WHERE p.owner.id = :owner_id")
+            .setParameter("owner_id", ownerId)
+            .list();
+
+        for (Object[] row : rows) {
+            IndexedPool pool = new IndexedPool((String) row[0], (String) row[1], (Date) row[3],
+                (Date) row[4]);
+
+            pools.put(pool.id, pool);
+            byProductUuid.computeIfAbsent((String) row[2], key -> new ArrayList<>()).add(pool);
+        }
+
+        rows = session.createQuery(
+            "SELECT p.id, prov.id FROM Pool p JOIN p.providedProducts prov WHERE p.owner.id = :owner_id")
+            .setParameter("owner_id", ownerId)
+            .list();
+
+        for (Object[] row : rows) {
+            IndexedPool pool = pools.get((String) row[0]);
+
+            if (pool != null) {
+                pool.providedProductIds.add((String) row[1]);
+            }
+        }
+
+        rows = session.createQuery(
+            "SELECT p.id, KEY(attrib), VALUE(attrib) FROM Pool p JOIN p.attributes attrib " +
+            "WHERE p.owner.id = :owner_id")
+            .setParameter("owner_id", ownerId)
+            .list();
+
+        for (Object[] row : rows) {
+            IndexedPool pool = pools.get((String) row[0]);
+
+            if (pool != null) {
+                pool.attributes.put((String) row[1], (String) row[2]);
+            }
+        }
+
+        rows = session.createQuery(
+            "SELECT DISTINCT prod.uuid, KEY(attrib), VALUE(attrib) FROM Pool p JOIN p.product prod " +
+            "JOIN prod.attributes attrib WHERE p.owner.id = :owner_id")
+            .setParameter("owner_id", ownerId)
+            .list();
+
+        Map<String, Map<String, String>> productAttributes = new HashMap<>();
+        for (Object[] row : rows) {
+            productAttributes.computeIfAbsent((String) row[0], key -> new HashMap<>())
+                .put((String) row[1], (String) row[2]);
+        }
+
+        // Pools sharing a product also share its attributes
+        for (Map.Entry<String, Map<String, String>> entry : productAttributes.entrySet()) {
+            for (IndexedPool pool : byProductUuid.getOrDefault(entry.getKey(), Collections.emptyList())) {
+                pool.productAttributes = entry.getValue();
+            }
+        }
+
+        rows = session.createQuery(
+            "SELECT ss.pool.id, ss.subscriptionId FROM SourceSubscription ss " +
+            "WHERE ss.pool.owner.id = :owner_id")
+            .setParameter("owner_id", ownerId)
+            .list();
+
+        for (Object[] row : rows) {
+            IndexedPool pool = pools.get((String) row[0]);
+
+            if (pool != null) {
+                pool.subscriptionId = (String) row[1];
+            }
+        }
+
+        return pools.values();
+    }
+
+    /**
+     * Discards the indexed pools of all owners.
+     */
+    public void clear() {
+        this.owners.clear();
+    }
+
+    /**
+     * @return
+     *  the number of owners whose pools are currently indexed
+     */
+    public int getSize() {
+        return this.owners.size();
+    }
+
+    /**
+     * @return
+     *  the number of lookups answered from previously indexed pools
+     */
+    public long getHits() {
+        return this.hits.get();
+    }
+
+    /**
+     * @return
+     *  the number of lookups which required the owner's pools to be loaded
+     */
+    public long getMisses() {
+        return this.misses.get();
+    }
+}
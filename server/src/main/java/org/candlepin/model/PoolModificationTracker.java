@@ -0,0 +1,255 @@
+/**
+ * Copyright (c) 2009 - 2018 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.model;
+
+import com.google.inject.Singleton;
+
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.AbstractCollectionEvent;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.PostCollectionRecreateEvent;
+import org.hibernate.event.spi.PostCollectionRecreateEventListener;
+import org.hibernate.event.spi.PostCollectionRemoveEvent;
+import org.hibernate.event.spi.PostCollectionRemoveEventListener;
+import org.hibernate.event.spi.PostCollectionUpdateEvent;
+import org.hibernate.event.spi.PostCollectionUpdateEventListener;
+import org.hibernate.event.spi.PostCommitDeleteEventListener;
+import org.hibernate.event.spi.PostCommitInsertEventListener;
+import org.hibernate.event.spi.PostCommitUpdateEventListener;
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.persister.entity.EntityPersister;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+
+/**
+ * Tracks when the pool data of each owner was last changed, so that the in-memory pool index can
+ * tell whether the pools it holds for an owner are still current.
+ *
+ * Changes are recorded against a version counter which increases with every change. Pool,
+ * source subscription and product changes are recorded automatically once this tracker has been
+ * registered with Hibernate. Changes, to both entities and their collections, are recorded when
+ * they are flushed, and again when their transaction completes, whether it commits or rolls back,
+ * so data read while the change was still pending is also considered stale. Changes to a product
+ * are recorded against every owner, as products may be shared by the pools of several owners.
+ *
+ * Only changes made through this node's session factory are seen; changes made by other nodes in a
+ * cluster are not tracked.
+ */
+@Singleton
+public class PoolModificationTracker implements PostCommitInsertEventListener,
+    PostCommitUpdateEventListener, PostCommitDeleteEventListener, PostCollectionRecreateEventListener,
+    PostCollectionUpdateEventListener, PostCollectionRemoveEventListener {
+
+    /** The pool properties which affect the pools an availability query returns */
+    private static final Set<String> INDEXED_POOL_PROPERTIES = Collections.unmodifiableSet(new HashSet<>(
+        Arrays.asList("owner", "product", "startDate", "endDate", "attributes", "providedProducts")));
+
+    private final AtomicLong clock = new AtomicLong();
+    private final Map<String, Long> modified = new ConcurrentHashMap<>();
+    private volatile long globalModified;
+
+    /**
+     * Registers this tracker to be notified of pool, source subscription and product changes.
+     *
+     * @param registry
+     *  the event listener registry of the session factory to track
+     */
+    public void register(EventListenerRegistry registry) {
+        registry.getEventListenerGroup(EventType.POST_INSERT).appendListener(this);
+        registry.getEventListenerGroup(EventType.POST_UPDATE).appendListener(this);
+        registry.getEventListenerGroup(EventType.POST_DELETE).appendListener(this);
+        registry.getEventListenerGroup(EventType.POST_COMMIT_INSERT).appendListener(this);
+        registry.getEventListenerGroup(EventType.POST_COMMIT_UPDATE).appendListener(this);
+        registry.getEventListenerGroup(EventType.POST_COMMIT_DELETE).appendListener(this);
+        registry.getEventListenerGroup(EventType.POST_COLLECTION_RECREATE).appendListener(this);
+        registry.getEventListenerGroup(EventType.POST_COLLECTION_UPDATE).appendListener(this);
+        registry.getEventListenerGroup(EventType.POST_COLLECTION_REMOVE).appendListener(this);
+    }
+
+    /**
+     * @return
+     *  the current modification version
+     */
+    public long getVersion() {
+        return this.clock.get();
+    }
+
+    /**
+     * Records a change to the pools of the given owner.
+     *
+     * @param ownerId
+     *  the ID of the owner whose pools changed, or null to record a change for every owner
+     */
+    public void markModified(String ownerId) {
+        long version = this.clock.incrementAndGet();
+
+        if (ownerId != null) {
+            this.modified.merge(ownerId, version, Math::max);
+        }
+        else {
+            this.globalModified = version;
+        }
+    }
+
+    /**
+     * Checks whether or not the pools of the given owner have changed since the given version.
+     *
+     * @param ownerId
+     *  the ID of the owner to check
+     *
+     * @param version
+     *  the modification version to check against, as returned by getVersion
+     *
+     * @return
+     *  true if the owner's pools have changed since the given version; false otherwise
+     */
+    public boolean isModifiedSince(String ownerId, long version) {
+        Long ownerModified = this.modified.get(ownerId);
+
+        return this.globalModified > version || (ownerModified != null && ownerModified > version);
+    }
+
+    private void entityChanged(Object entity) {
+        if (entity instanceof SourceSubscription) {
+            entity = ((SourceSubscription) entity).getPool();
+
+            if (entity == null) {
+                this.markModified(null);
+                return;
+            }
+        }
+
+        if (entity instanceof Pool) {
+            Owner owner = ((Pool) entity).getOwner();
+            this.markModified(owner != null ? owner.getId() : null);
+        }
+        else if (entity instanceof Product) {
+            this.markModified(null);
+        }
+    }
+
+    private void entityUpdated(PostUpdateEvent event) {
+        if (event.getEntity() instanceof Pool && event.getDirtyProperties() != null) {
+            String[] names = event.getPersister().getPropertyNames();
+            boolean indexed = false;
+
+            for (int index : event.getDirtyProperties()) {
+                indexed |= INDEXED_POOL_PROPERTIES.contains(names[index]);
+            }
+
+            if (!indexed) {
+                return;
+            }
+
+            // The pool may have been moved from another owner
+            Integer ownerIndex = event.getPersister().getEntityMetamodel().getPropertyIndexOrNull("owner");
+            Object previous = ownerIndex != null && event.getOldState() != null ?
+                event.getOldState()[ownerIndex] :
+                null;
+
+            if (previous instanceof Owner) {
+                this.markModified(((Owner) previous).getId());
+            }
+        }
+
+        this.entityChanged(event.getEntity());
+    }
+
+    private void collectionChanged(AbstractCollectionEvent event) {
+        Object owner = event.getAffectedOwnerOrNull();
+        String role = event.getCollection().getRole();
+        boolean indexed = false;
+
+        if (owner instanceof Pool) {
+            String property = role != null ? role.substring(role.lastIndexOf('.') + 1) : null;
+            indexed = property == null || INDEXED_POOL_PROPERTIES.contains(property);
+        }
+        else if (owner instanceof Product) {
+            indexed = role != null && role.endsWith(".attributes");
+        }
+
+        if (indexed) {
+            this.entityChanged(owner);
+
+            // Collections have no post-commit events, so record the change again once the
+            // transaction completes
+            event.getSession().getActionQueue()
+                .registerProcess((success, session) -> this.entityChanged(owner));
+        }
+    }
+
+    @Override
+    public void onPostInsert(PostInsertEvent event) {
+        this.entityChanged(event.getEntity());
+    }
+
+    @Override
+    public void onPostInsertCommitFailed(PostInsertEvent event) {
+        this.entityChanged(event.getEntity());
+    }
+
+    @Override
+    public void onPostUpdate(PostUpdateEvent event) {
+        this.entityUpdated(event);
+    }
+
+    @Override
+    public void onPostUpdateCommitFailed(PostUpdateEvent event) {
+        this.entityUpdated(event);
+    }
+
+    @Override
+    public void onPostDelete(PostDeleteEvent event) {
+        this.entityChanged(event.getEntity());
+    }
+
+    @Override
+    public void onPostDeleteCommitFailed(PostDeleteEvent event) {
+        this.entityChanged(event.getEntity());
+    }
+
+    @Override
+    public void onPostRecreateCollection(PostCollectionRecreateEvent event) {
+        this.collectionChanged(event);
+    }
+
+    @Override
+    public void onPostUpdateCollection(PostCollectionUpdateEvent event) {
+        this.collectionChanged(event);
+    }
+
+    @Override
+    public void onPostRemoveCollection(PostCollectionRemoveEvent event) {
+        this.collectionChanged(event);
+    }
+
+    @Override
+    public boolean requiresPostCommitHanding(EntityPersister persister) {
+        Class<?> type = persister.getMappedClass();
+
+        return Pool.class.isAssignableFrom(type) || Product.class.isAssignableFrom(type) ||
+            SourceSubscription.class.isAssignableFrom(type);
+    }
+}
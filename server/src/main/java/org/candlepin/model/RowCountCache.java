@@ -0,0 +1,349 @@
+/**
+ * Copyright (c) 2009 - 2018 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.model;
+
+import org.candlepin.common.config.Configuration;
+import org.candlepin.config.ConfigProperties;
+import org.candlepin.hibernate.TableModificationTracker;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+
+import org.apache.commons.codec.binary.Hex;
+import org.hibernate.Criteria;
+import org.hibernate.HibernateException;
+import org.hibernate.Session;
+import org.hibernate.dialect.PostgreSQL81Dialect;
+import org.hibernate.engine.spi.QueryParameters;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.internal.CriteriaImpl;
+import org.hibernate.loader.criteria.CriteriaLoader;
+import org.hibernate.loader.criteria.CriteriaQueryTranslator;
+import org.hibernate.persister.entity.OuterJoinLoadable;
+import org.hibernate.type.Type;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntSupplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+
+
+/**
+ * Retains the row counts of recently counted queries, so that paging through a large listing does
+ * not require counting every row of the listing for every page.
+ *
+ * Counts are keyed by the SQL generated for the counted criteria and the values bound to it, which
+ * covers the owner and any other restrictions applied to the listing. A cached count is discarded
+ * once it is older than the configured TTL, or as soon as rows are added to or removed from any of
+ * the tables the query reads from. Other changes, such as updates moving rows in or out of the
+ * listing or bulk statements, are only reflected once the count expires.
+ *
+ * Optionally, counts may be estimated from the planner statistics of the database instead. This is
+ * only supported on PostgreSQL; estimates below the configured threshold, and all counts on other
+ * databases, are still counted exactly.
+ */
+@Singleton
+public class RowCountCache {
+    private static Logger log = LoggerFactory.getLogger(RowCountCache.class);
+
+    private static final Pattern PLAN_ROWS = Pattern.compile("rows=(\\d+)");
+
+    /**
+     * The SQL and parameters generated for a counted criteria.
+     */
+    private static class CountedQuery {
+        private String sql;
+        private Type[] types;
+        private Object[] values;
+        private Set<Serializable> tables;
+        private String key;
+    }
+
+    /**
+     * A retained row count, along with the information needed to determine whether it is stale.
+     */
+    private static class Count {
+        private final int count;
+        private final long version;
+        private final long expiration;
+        private final Set<Serializable> tables;
+
+        public Count(int count, long version, long expiration, Set<Serializable> tables) {
+            this.count = count;
+            this.version = version;
+            this.expiration = expiration;
+            this.tables = tables;
+        }
+    }
+
+    private final TableModificationTracker tracker;
+    private final boolean enabled;
+    private final long ttl;
+    private final boolean approximate;
+    private final int approximateThreshold;
+    private final Map<String, Count> counts;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong estimates = new AtomicLong();
+
+    @Inject
+    public RowCountCache(Configuration config, TableModificationTracker tracker) {
+        this(tracker,
+            config.getBoolean(ConfigProperties.ROW_COUNT_CACHE_ENABLED, true),
+            config.getInt(ConfigProperties.ROW_COUNT_CACHE_SIZE, 1000),
+            TimeUnit.SECONDS.toMillis(config.getInt(ConfigProperties.ROW_COUNT_CACHE_TTL, 10)),
+            config.getBoolean(ConfigProperties.ROW_COUNT_APPROXIMATE, false),
+            config.getInt(ConfigProperties.ROW_COUNT_APPROXIMATE_THRESHOLD, 10000));
+    }
+
+    public RowCountCache(TableModificationTracker tracker, boolean enabled, final int maxSize, long ttl,
+        boolean approximate, int approximateThreshold) {
+
+        if (tracker == null) {
+            throw new IllegalArgumentException("tracker is null");
+        }
+
+        if (enabled && maxSize < 1) {
+            throw new IllegalArgumentException("maxSize must be a positive integer");
+        }
+
+        this.tracker = tracker;
+        this.enabled = enabled && ttl > 0;
+        this.ttl = ttl;
+        this.approximate = approximate;
+        this.approximateThreshold = approximateThreshold;
+        this.counts = Collections.synchronizedMap(new LinkedHashMap<String, Count>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Count> eldest) {
+                return this.size() > maxSize;
+            }
+        });
+    }
+
+    /**
+     * Fetches the number of rows the given criteria would return, using a previously retained or
+     * estimated count where possible. The criteria should not have any ordering applied, and is
+     * not modified by this method.
+     *
+     * @param session
+     *  the session with which the criteria is to be executed
+     *
+     * @param criteria
+     *  the criteria to count
+     *
+     * @param counter
+     *  a counter which performs an exact count of the criteria when no usable count is available
+     *
+     * @return
+     *  the number of rows the criteria would return
+     */
+    public int getRowCount(Session session, Criteria criteria, IntSupplier counter) {
+        if (!this.enabled && !this.approximate) {
+            return counter.getAsInt();
+        }
+
+        CountedQuery query;
+
+        try {
+            query = this.describe(session, (CriteriaImpl) criteria);
+        }
+        catch (HibernateException | ClassCastException e) {
+            log.debug("Unable to describe criteria; counting rows directly", e);
+            return counter.getAsInt();
+        }
+
+        // Fetch the version before counting, so changes made while we count invalidate the result
+        long version = this.tracker.getVersion();
+
+        if (this.enabled) {
+            Count cached = this.counts.get(query.key);
+
+            if (cached != null && cached.expiration >= System.currentTimeMillis() &&
+                !this.tracker.isModifiedSince(cached.tables, cached.version)) {
+
+                this.hits.incrementAndGet();
+                return cached.count;
+            }
+
+            this.misses.incrementAndGet();
+        }
+
+        int count = this.approximate ? this.estimate(session, query) : -1;
+        if (count >= 0 && count >= this.approximateThreshold) {
+            this.estimates.incrementAndGet();
+        }
+        else {
+            count = counter.getAsInt();
+        }
+
+        if (this.enabled) {
+            this.counts.put(query.key,
+                new Count(count, version, System.currentTimeMillis() + this.ttl, query.tables));
+        }
+
+        log.debug("Counted {} rows; row count cache hits: {}, misses: {}, estimates: {}", count,
+            this.getHits(), this.getMisses(), this.getEstimates());
+
+        return count;
+    }
+
+    /**
+     * Generates the SQL and parameters Hibernate would use to execute the given criteria.
+     */
+    @SuppressWarnings("unchecked")
+    private CountedQuery describe(Session session, CriteriaImpl criteria) {
+        SessionImplementor sessionImpl = (SessionImplementor) session;
+        SessionFactoryImplementor factory = sessionImpl.getFactory();
+
+        String[] implementors = factory.getMetamodel().getImplementors(criteria.getEntityOrClassName());
+        if (implementors.length != 1) {
+            throw new HibernateException("Criteria does not resolve to a single entity: " +
+                criteria.getEntityOrClassName());
+        }
+
+        OuterJoinLoadable persister = (OuterJoinLoadable) factory.getMetamodel()
+            .entityPersister(implementors[0]);
+
+        CriteriaLoader loader = new CriteriaLoader(persister, factory, criteria, implementors[0],
+            sessionImpl.getLoadQueryInfluencers());
+
+        // The loader builds its SQL from an equivalent translator, so the parameters line up
+        CriteriaQueryTranslator translator = new CriteriaQueryTranslator(factory, criteria,
+            implementors[0], CriteriaQueryTranslator.ROOT_SQL_ALIAS);
+        QueryParameters parameters = translator.getQueryParameters();
+
+        CountedQuery query = new CountedQuery();
+        query.sql = loader.getSQLString();
+        query.types = parameters.getPositionalParameterTypes();
+        query.values = parameters.getPositionalParameterValues();
+        query.tables = new HashSet<>(loader.getQuerySpaces());
+
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(query.sql.getBytes(StandardCharsets.UTF_8));
+
+            for (int i = 0; i < query.types.length; ++i) {
+                digest.update((byte) '\n');
+                digest.update(query.types[i].toLoggableString(query.values[i], factory)
+                    .getBytes(StandardCharsets.UTF_8));
+            }
+
+            query.key = Hex.encodeHexString(digest.digest());
+        }
+        catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+
+        return query;
+    }
+
+    /**
+     * Estimates the number of rows the given query would return from the planner statistics of
+     * the database.
+     *
+     * @return
+     *  the estimated number of rows, or -1 if the rows could not be estimated
+     */
+    private int estimate(Session session, CountedQuery query) {
+        final SessionImplementor sessionImpl = (SessionImplementor) session;
+        final SessionFactoryImplementor factory = sessionImpl.getFactory();
+
+        if (!(factory.getJdbcServices().getDialect() instanceof PostgreSQL81Dialect)) {
+            return -1;
+        }
+
+        try {
+            return session.doReturningWork(connection -> {
+                try (PreparedStatement statement = connection.prepareStatement("EXPLAIN " + query.sql)) {
+                    int position = 1;
+
+                    for (int i = 0; i < query.types.length; ++i) {
+                        query.types[i].nullSafeSet(statement, query.values[i], position, sessionImpl);
+                        position += query.types[i].getColumnSpan(factory);
+                    }
+
+                    // The first line of the plan describes the final output of the query
+                    try (ResultSet result = statement.executeQuery()) {
+                        Matcher matcher = result.next() ? PLAN_ROWS.matcher(result.getString(1)) : null;
+
+                        return matcher != null && matcher.find() ?
+                            (int) Math.min(Long.parseLong(matcher.group(1)), Integer.MAX_VALUE) :
+                            -1;
+                    }
+                }
+            });
+        }
+        catch (HibernateException e) {
+            log.debug("Unable to estimate row count; counting rows directly", e);
+            return -1;
+        }
+    }
+
+    /**
+     * Discards all retained counts.
+     */
+    public void clear() {
+        this.counts.clear();
+    }
+
+    /**
+     * @return
+     *  the number of counts currently retained
+     */
+    public int getSize() {
+        return this.counts.size();
+    }
+
+    /**
+     * @return
+     *  the number of lookups which returned a previously retained count
+     */
+    public long getHits() {
+        return this.hits.get();
+    }
+
+    /**
+     * @return
+     *  the number of lookups which did not find a usable count
+     */
+    public long getMisses() {
+        return this.misses.get();
+    }
+
+    /**
+     * @return
+     *  the number of counts which were estimated from the database statistics
+     */
+    public long getEstimates() {
+        return this.estimates.get();
+    }
+}
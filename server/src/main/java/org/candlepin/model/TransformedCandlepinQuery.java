@@ -155,6 +155,23 @@ public class TransformedCandlepinQuery<I, O> implements CandlepinQuery<O> {
         return this;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public CandlepinQuery<O> seek(String sortField, boolean descending, String token) {
+        this.query.seek(sortField, descending, token);
+        return this;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getNextSeekToken(int pageSize) {
+        return this.query.getNextSeekToken(pageSize);
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -19,8 +19,10 @@ import static org.quartz.JobBuilder.*;
 import org.candlepin.auth.Principal;
 import org.candlepin.common.exceptions.BadRequestException;
 import org.candlepin.common.filter.LoggingFilter;
+import org.candlepin.config.ConfigProperties;
 import org.candlepin.model.Consumer;
 import org.candlepin.model.ConsumerCurator;
+import org.candlepin.model.ConsumerCurator.HypervisorDigest;
 import org.candlepin.model.ConsumerType;
 import org.candlepin.model.ConsumerType.ConsumerTypeEnum;
 import org.candlepin.model.ConsumerTypeCurator;
@@ -35,9 +37,14 @@ import org.candlepin.policy.js.compliance.ComplianceRules;
 import org.candlepin.resource.ConsumerResource;
 import org.candlepin.resource.dto.HypervisorUpdateResultUuids;
 import org.candlepin.resource.util.GuestMigration;
+import org.candlepin.resource.util.HypervisorReportCache;
 import org.candlepin.service.SubscriptionServiceAdapter;
 import org.candlepin.util.Util;
 
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.inject.Inject;
 import com.google.inject.persist.Transactional;
 
@@ -56,13 +63,16 @@ import org.xnap.commons.i18n.I18n;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
@@ -85,6 +95,7 @@ public class HypervisorUpdateJob extends KingpinJob {
     private ConsumerType hypervisorType;
     private SubscriptionServiceAdapter subAdapter;
     private ComplianceRules complianceRules;
+    @Inject private HypervisorReportCache reportCache;
 
     public static final String CREATE = "create";
     public static final String REPORTER_ID = "reporter_id";
@@ -197,7 +208,6 @@ public class HypervisorUpdateJob extends KingpinJob {
      * @param context the job's execution context
      */
     @Transactional
-    @SuppressWarnings({"checkstyle:indentation", "checkstyle:methodlength"})
     public void toExecute(JobExecutionContext context) throws JobExecutionException {
         try {
             JobDataMap map = context.getMergedJobDataMap();
@@ -224,131 +234,371 @@ public class HypervisorUpdateJob extends KingpinJob {
             }
 
             byte[] data = (byte[]) map.get(DATA);
-            String json = decompress(data);
-            HypervisorList hypervisors = (HypervisorList) Util.fromJson(json, HypervisorList.class);
-            log.debug("Hypervisor consumers for create/update: {}", hypervisors.getHypervisors().size());
-            log.debug("Updating hypervisor consumers for org {0}", ownerKey);
-
-            Set<String> hosts = new HashSet<>();
-            Set<String> guests = new HashSet<>();
-            Map<String, Consumer> incomingHosts = new HashMap<>();
-            parseHypervisorList(hypervisors, hosts, guests, incomingHosts);
-            // TODO Need to ensure that we retrieve existing guestIds from the DB before continuing.
-
-            // Maps virt hypervisor ID to registered consumer for that hypervisor, should one exist:
-            VirtConsumerMap hypervisorKnownConsumersMap =
-                consumerCurator.getHostConsumersMap(owner, hypervisors);
-            Map<String, Consumer> systemUuidKnownConsumersMap = new HashMap<>();
-            for (Consumer consumer : hypervisorKnownConsumersMap.getConsumers()) {
-                if (consumer.hasFact(Consumer.Facts.SYSTEM_UUID)) {
-                    systemUuidKnownConsumersMap.put(consumer.getFact(Consumer.Facts.SYSTEM_UUID), consumer);
+            int chunkSize = config.getInt(ConfigProperties.HYPERVISOR_UPDATE_CHUNK_SIZE, 0);
+
+            // Maps the hypervisor IDs in the report to the digest of each host, when enabled
+            Map<String, String> reportedDigests = null;
+            String reportDigest = null;
+            boolean reportSkipped = false;
+
+            if (config.getBoolean(ConfigProperties.HYPERVISOR_UPDATE_DIGEST_ENABLED, false)) {
+                reportedDigests = new HashMap<>();
+
+                if (jobReporterId != null && this.reportCache != null && this.reportCache.isEnabled()) {
+                    reportDigest = HypervisorReportCache.digestReport(data);
+                    reportSkipped = this.skipUnchangedReport(owner, jobReporterId, reportDigest, result);
                 }
             }
 
-            Map<String, GuestId> guestIds = consumerCurator.getGuestIdMap(guests, owner);
+            if (reportSkipped) {
+                log.debug("Report from {} is unchanged since its last report; skipping", jobReporterId);
+            }
+            else if (config.getBoolean(ConfigProperties.HYPERVISOR_UPDATE_STREAMING_ENABLED, false) &&
+                chunkSize > 0) {
+
+                log.debug("Updating hypervisor consumers for org {} in chunks of {}", ownerKey, chunkSize);
+                int count = 0;
 
-            for (String hypervisorId : hosts) {
-                Consumer incoming = syncGuestIds(incomingHosts.get(hypervisorId), guestIds);
-                Consumer knownHost = hypervisorKnownConsumersMap.get(hypervisorId);
-                // HypervisorId might be different in candlepin
-                if (knownHost == null && incoming.hasFact(Consumer.Facts.SYSTEM_UUID) &&
-                    systemUuidKnownConsumersMap.get(incoming.getFact(Consumer.Facts.SYSTEM_UUID)) != null) {
-                    knownHost = systemUuidKnownConsumersMap.get(incoming.getFact(Consumer.Facts.SYSTEM_UUID));
-                }
+                try (HypervisorReader reader = new HypervisorReader(data)) {
+                    List<Consumer> chunk = new ArrayList<>(chunkSize);
 
-                Consumer reportedOnConsumer = null;
+                    Consumer hypervisor;
+                    while ((hypervisor = reader.next()) != null) {
+                        chunk.add(hypervisor);
 
-                if (knownHost == null) {
-                    if (!create) {
-                        result.failed(hypervisorId,
-                            "Unable to find hypervisor with id " + hypervisorId + " in org " + ownerKey);
-                    }
-                    else {
-                        log.debug("Registering new host consumer for hypervisor ID: {}", hypervisorId);
-                        Consumer newHost = createConsumerForHypervisorId(hypervisorId, jobReporterId, owner,
-                            principal, incoming);
-
-                        // Since we just created this new consumer, we can migrate the guests immediately
-                        GuestMigration guestMigration = new GuestMigration(consumerCurator)
-                            .buildMigrationManifest(incoming, newHost);
-
-                        // Now that we have the new consumer persisted, immediately migrate the guests to it
-                        if (guestMigration.isMigrationPending()) {
-                            guestMigration.migrate(false);
+                        if (chunk.size() >= chunkSize) {
+                            count += chunk.size();
+                            this.updateHosts(owner, new HypervisorList(chunk), create, principal,
+                                jobReporterId, result, reportedDigests);
+
+                            // Detach the hosts we've already processed so the session doesn't grow with
+                            // the size of the report
+                            chunk = new ArrayList<>(chunkSize);
+                            consumerCurator.clear();
+                            owner = ownerCurator.getByKey(ownerKey);
                         }
+                    }
 
-                        hypervisorKnownConsumersMap.add(hypervisorId, newHost);
-                        result.created(newHost);
-                        reportedOnConsumer = newHost;
+                    if (!chunk.isEmpty()) {
+                        count += chunk.size();
+                        this.updateHosts(owner, new HypervisorList(chunk), create, principal, jobReporterId,
+                            result, reportedDigests);
                     }
                 }
+
+                log.debug("Hypervisor consumers for create/update: {}", count);
+            }
+            else {
+                String json = decompress(data);
+                HypervisorList hypervisors = (HypervisorList) Util.fromJson(json, HypervisorList.class);
+                log.debug("Hypervisor consumers for create/update: {}", hypervisors.getHypervisors().size());
+                log.debug("Updating hypervisor consumers for org {0}", ownerKey);
+
+                this.updateHosts(owner, hypervisors, create, principal, jobReporterId, result,
+                    reportedDigests);
+            }
+
+            // Only remember reports which were fully applied, and recorded a digest for every host
+            if (reportDigest != null && !reportSkipped) {
+                if (result.getFailedUpdate().isEmpty() && !reportedDigests.containsValue(null)) {
+                    this.reportCache.put(ownerKey, jobReporterId, reportDigest, reportedDigests);
+                }
                 else {
-                    boolean hypervisorIdUpdated = false;
-                    if (knownHost.getHypervisorId() != null && !hypervisorId.equalsIgnoreCase(knownHost
-                        .getHypervisorId().getHypervisorId())) {
-                        hypervisorIdUpdated = true;
-                        knownHost.setHypervisorId(incoming.getHypervisorId());
-                    }
+                    this.reportCache.remove(ownerKey, jobReporterId);
+                }
+            }
 
-                    reportedOnConsumer = knownHost;
-                    if (jobReporterId != null && knownHost.getHypervisorId() != null &&
-                        hypervisorId.equalsIgnoreCase(knownHost.getHypervisorId().getHypervisorId()) &&
-                        knownHost.getHypervisorId().getReporterId() != null &&
-                        !jobReporterId.equalsIgnoreCase(knownHost.getHypervisorId().getReporterId())) {
-                        log.debug("Reporter changed for Hypervisor {} of Owner {} from {} to {}",
-                            hypervisorId, ownerKey, knownHost.getHypervisorId().getReporterId(),
-                            jobReporterId);
-                    }
-                    boolean typeUpdated = false;
-                    if (!hypervisorType.getId().equals(knownHost.getTypeId())) {
-                        typeUpdated = true;
-                        knownHost.setType(hypervisorType);
-                    }
+            log.info("Summary for report from {} by principal {}\n {}", jobReporterId, principal, result);
+            context.setResult(result);
+        }
+        catch (Exception e) {
+            log.error("HypervisorUpdateJob encountered a problem.", e);
+            context.setResult(e.getMessage());
+            throw new JobExecutionException(e.getMessage(), e, false);
+        }
+    }
 
-                    GuestMigration guestMigration = new GuestMigration(consumerCurator)
-                        .buildMigrationManifest(incoming, knownHost);
+    /**
+     * Creates or updates the host consumers for the given hypervisors, migrating their guests as
+     * necessary, and flushes the changes.
+     *
+     * @param owner
+     *  the owner of the hypervisors
+     *
+     * @param hypervisors
+     *  the hypervisors to process, as reported by the virt fabric
+     *
+     * @param create
+     *  whether or not to register hypervisors which are not yet known
+     *
+     * @param principal
+     *  the principal that reported the hypervisors
+     *
+     * @param jobReporterId
+     *  the ID of the reporter, or null if one was not provided
+     *
+     * @param result
+     *  the result to which the outcome for each hypervisor should be added
+     *
+     * @param reportedDigests
+     *  the map to which the digest of each processed hypervisor should be added, or null if report
+     *  digests are not in use
+     */
+    @SuppressWarnings({"checkstyle:indentation", "checkstyle:methodlength"})
+    private void updateHosts(Owner owner, HypervisorList hypervisors, boolean create, Principal principal,
+        String jobReporterId, HypervisorUpdateResultUuids result, Map<String, String> reportedDigests) {
+
+        Map<String, String> digests = null;
+        if (reportedDigests != null) {
+            digests = this.skipUnchangedHosts(owner, hypervisors, jobReporterId, result, reportedDigests);
+
+            if (hypervisors.getHypervisors().isEmpty()) {
+                return;
+            }
+        }
+
+        Set<String> hosts = new HashSet<>();
+        Set<String> guests = new HashSet<>();
+        Map<String, Consumer> incomingHosts = new HashMap<>();
+        parseHypervisorList(hypervisors, hosts, guests, incomingHosts);
+
+        // Maps virt hypervisor ID to registered consumer for that hypervisor, should one exist:
+        VirtConsumerMap hypervisorKnownConsumersMap =
+            consumerCurator.getHostConsumersMap(owner, hypervisors);
+        Map<String, Consumer> systemUuidKnownConsumersMap = new HashMap<>();
+        for (Consumer consumer : hypervisorKnownConsumersMap.getConsumers()) {
+            if (consumer.hasFact(Consumer.Facts.SYSTEM_UUID)) {
+                systemUuidKnownConsumersMap.put(consumer.getFact(Consumer.Facts.SYSTEM_UUID), consumer);
+            }
+        }
 
-                    boolean factsUpdated = consumerResource.checkForFactsUpdate(knownHost, incoming);
+        Map<String, GuestId> guestIds = consumerCurator.getGuestIdMap(guests, owner);
+        Set<Consumer> createdHosts = Collections.newSetFromMap(new IdentityHashMap<>());
 
-                    if (factsUpdated || guestMigration.isMigrationPending() || typeUpdated ||
-                        hypervisorIdUpdated) {
-                        knownHost.setLastCheckin(new Date());
+        for (String hypervisorId : hosts) {
+            Consumer incoming = syncGuestIds(incomingHosts.get(hypervisorId), guestIds);
+            Consumer knownHost = hypervisorKnownConsumersMap.get(hypervisorId);
+            // HypervisorId might be different in candlepin
+            if (knownHost == null && incoming.hasFact(Consumer.Facts.SYSTEM_UUID) &&
+                systemUuidKnownConsumersMap.get(incoming.getFact(Consumer.Facts.SYSTEM_UUID)) != null) {
+                knownHost = systemUuidKnownConsumersMap.get(incoming.getFact(Consumer.Facts.SYSTEM_UUID));
+            }
+
+            Consumer reportedOnConsumer = null;
+
+            if (knownHost == null) {
+                if (!create) {
+                    result.failed(hypervisorId,
+                        "Unable to find hypervisor with id " + hypervisorId + " in org " + owner.getKey());
+                }
+                else {
+                    log.debug("Registering new host consumer for hypervisor ID: {}", hypervisorId);
+                    Consumer newHost = createConsumerForHypervisorId(hypervisorId, jobReporterId, owner,
+                        principal, incoming);
+
+                    // Since we just created this new consumer, we can migrate the guests immediately
+                    GuestMigration guestMigration = new GuestMigration(consumerCurator)
+                        .buildMigrationManifest(incoming, newHost);
+
+                    // Now that we have the new consumer persisted, immediately migrate the guests to it
+                    if (guestMigration.isMigrationPending()) {
                         guestMigration.migrate(false);
-                        result.updated(knownHost);
-                    }
-                    else {
-                        result.unchanged(knownHost);
                     }
+
+                    hypervisorKnownConsumersMap.add(hypervisorId, newHost);
+                    createdHosts.add(newHost);
+                    result.created(newHost);
+                    reportedOnConsumer = newHost;
                 }
-                // update reporter id if it changed
-                if (jobReporterId != null && reportedOnConsumer != null &&
-                    reportedOnConsumer.getHypervisorId() != null &&
-                    (reportedOnConsumer.getHypervisorId().getReporterId() == null ||
-                        !jobReporterId.contentEquals(reportedOnConsumer.getHypervisorId().getReporterId()))) {
-                    reportedOnConsumer.getHypervisorId().setReporterId(jobReporterId);
+            }
+            else {
+                boolean hypervisorIdUpdated = false;
+                if (knownHost.getHypervisorId() != null && !hypervisorId.equalsIgnoreCase(knownHost
+                    .getHypervisorId().getHypervisorId())) {
+                    hypervisorIdUpdated = true;
+                    knownHost.setHypervisorId(incoming.getHypervisorId());
+                }
+
+                reportedOnConsumer = knownHost;
+                if (jobReporterId != null && knownHost.getHypervisorId() != null &&
+                    hypervisorId.equalsIgnoreCase(knownHost.getHypervisorId().getHypervisorId()) &&
+                    knownHost.getHypervisorId().getReporterId() != null &&
+                    !jobReporterId.equalsIgnoreCase(knownHost.getHypervisorId().getReporterId())) {
+                    log.debug("Reporter changed for Hypervisor {} of Owner {} from {} to {}",
+                        hypervisorId, owner.getKey(), knownHost.getHypervisorId().getReporterId(),
+                        jobReporterId);
+                }
+                boolean typeUpdated = false;
+                if (!hypervisorType.getId().equals(knownHost.getTypeId())) {
+                    typeUpdated = true;
+                    knownHost.setType(hypervisorType);
                 }
-                else if (jobReporterId == null) {
-                    log.debug("hypervisor checkin reported asynchronously without reporter id " +
-                        "for hypervisor:{} of owner:{}", hypervisorId, ownerKey);
+
+                GuestMigration guestMigration = new GuestMigration(consumerCurator)
+                    .buildMigrationManifest(incoming, knownHost);
+
+                boolean factsUpdated = consumerResource.checkForFactsUpdate(knownHost, incoming);
+
+                if (factsUpdated || guestMigration.isMigrationPending() || typeUpdated ||
+                    hypervisorIdUpdated) {
+                    knownHost.setLastCheckin(new Date());
+                    guestMigration.migrate(false);
+                    result.updated(knownHost);
+                }
+                else {
+                    result.unchanged(knownHost);
                 }
             }
+            // update reporter id if it changed
+            if (jobReporterId != null && reportedOnConsumer != null &&
+                reportedOnConsumer.getHypervisorId() != null &&
+                (reportedOnConsumer.getHypervisorId().getReporterId() == null ||
+                    !jobReporterId.contentEquals(reportedOnConsumer.getHypervisorId().getReporterId()))) {
+                reportedOnConsumer.getHypervisorId().setReporterId(jobReporterId);
+            }
+            else if (jobReporterId == null) {
+                log.debug("hypervisor checkin reported asynchronously without reporter id " +
+                    "for hypervisor:{} of owner:{}", hypervisorId, owner.getKey());
+            }
+
+            // Remember what was reported for the host, so the next identical report can skip it. Hosts
+            // we can't record a digest for are marked with a null digest.
+            if (digests != null) {
+                String digest = null;
+
+                if (reportedOnConsumer != null && reportedOnConsumer.getHypervisorId() != null &&
+                    hypervisorId.equalsIgnoreCase(reportedOnConsumer.getHypervisorId().getHypervisorId())) {
+                    digest = digests.get(hypervisorId);
+                    reportedOnConsumer.getHypervisorId().setReportDigest(digest);
+                }
 
-            for (Consumer consumer : hypervisorKnownConsumersMap.getConsumers()) {
-                consumer = result.wasCreated(consumer) ?
-                    consumerCurator.create(consumer, false) :
-                    consumerCurator.update(consumer, false);
+                reportedDigests.put(hypervisorId, digest);
             }
+        }
 
-            consumerCurator.flush();
+        for (Consumer consumer : hypervisorKnownConsumersMap.getConsumers()) {
+            consumer = createdHosts.contains(consumer) ?
+                consumerCurator.create(consumer, false) :
+                consumerCurator.update(consumer, false);
+        }
 
-            log.info("Summary for report from {} by principal {}\n {}", jobReporterId, principal, result);
-            context.setResult(result);
+        consumerCurator.flush();
+    }
+
+    /**
+     * Removes the hosts reported exactly as they were in their last processed report from the given
+     * list, and updates their check-in time without loading them.
+     *
+     * @param owner
+     *  the owner of the hypervisors
+     *
+     * @param hypervisors
+     *  the hypervisors to check, as reported by the virt fabric
+     *
+     * @param jobReporterId
+     *  the ID of the reporter, or null if one was not provided
+     *
+     * @param result
+     *  the result to which skipped hosts should be added
+     *
+     * @param reportedDigests
+     *  the map to which the digest of each skipped hypervisor should be added
+     *
+     * @return
+     *  a map of hypervisor IDs to the digest computed for each reported host
+     */
+    private Map<String, String> skipUnchangedHosts(Owner owner, HypervisorList hypervisors,
+        String jobReporterId, HypervisorUpdateResultUuids result, Map<String, String> reportedDigests) {
+
+        // Later entries for the same host replace earlier ones, as they do when the hosts are updated
+        Map<String, String> digests = new HashMap<>();
+        for (Consumer hypervisor : hypervisors.getHypervisors()) {
+            HypervisorId idWrapper = hypervisor.getHypervisorId();
+
+            if (idWrapper != null && !StringUtils.isEmpty(idWrapper.getHypervisorId())) {
+                digests.put(idWrapper.getHypervisorId(), HypervisorReportCache.digestHost(hypervisor,
+                    jobReporterId));
+            }
         }
-        catch (Exception e) {
-            log.error("HypervisorUpdateJob encountered a problem.", e);
-            context.setResult(e.getMessage());
-            throw new JobExecutionException(e.getMessage(), e, false);
+
+        Map<String, HypervisorDigest> stored = consumerCurator.getHypervisorDigests(owner, digests.keySet());
+        Map<String, Date> checkins = new HashMap<>();
+        Set<String> unchanged = new HashSet<>();
+        Date now = new Date();
+
+        for (Map.Entry<String, String> entry : digests.entrySet()) {
+            HypervisorDigest known = stored.get(entry.getKey());
+
+            if (known != null && entry.getValue().equals(known.getReportDigest())) {
+                unchanged.add(entry.getKey());
+                checkins.put(known.getConsumerId(), now);
+                reportedDigests.put(entry.getKey(), entry.getValue());
+                result.shortCircuited(known.getConsumerUuid());
+            }
+        }
+
+        if (!unchanged.isEmpty()) {
+            log.debug("Skipping {} hosts unchanged since their last report", unchanged.size());
+
+            consumerCurator.updateLastCheckins(checkins);
+            hypervisors.getHypervisors().removeIf(hypervisor -> hypervisor.getHypervisorId() != null &&
+                unchanged.contains(hypervisor.getHypervisorId().getHypervisorId()));
         }
+
+        return digests;
+    }
+
+    /**
+     * Checks whether the given report is identical to the last report from the same reporter, and
+     * none of its hosts have changed since. If so, the check-in time of each host is updated without
+     * parsing the report or loading the hosts.
+     *
+     * @param owner
+     *  the owner of the hypervisors
+     *
+     * @param jobReporterId
+     *  the ID of the reporter
+     *
+     * @param reportDigest
+     *  the digest of the report
+     *
+     * @param result
+     *  the result to which skipped hosts should be added
+     *
+     * @return
+     *  true if the report was skipped; false if it needs to be processed
+     */
+    private boolean skipUnchangedReport(Owner owner, String jobReporterId, String reportDigest,
+        HypervisorUpdateResultUuids result) {
+
+        Map<String, String> expected = this.reportCache.get(owner.getKey(), jobReporterId, reportDigest);
+        if (expected == null || expected.isEmpty()) {
+            return false;
+        }
+
+        Map<String, HypervisorDigest> stored = consumerCurator.getHypervisorDigests(owner, expected.keySet());
+        Map<String, Date> checkins = new HashMap<>();
+        Date now = new Date();
+
+        for (Map.Entry<String, String> entry : expected.entrySet()) {
+            HypervisorDigest known = stored.get(entry.getKey());
+
+            if (known == null || !entry.getValue().equals(known.getReportDigest())) {
+                log.debug("Hypervisor {} has changed since the last report from {}", entry.getKey(),
+                    jobReporterId);
+
+                return false;
+            }
+
+            checkins.put(known.getConsumerId(), now);
+        }
+
+        consumerCurator.updateLastCheckins(checkins);
+        for (HypervisorDigest known : stored.values()) {
+            result.shortCircuited(known.getConsumerUuid());
+        }
+
+        return true;
     }
 
     private void logReporterWarning(String jobReporterId, Consumer knownHost, String hypervisorId,
@@ -522,6 +772,14 @@ public class HypervisorUpdateJob extends KingpinJob {
     public static class HypervisorList {
         private List<Consumer> hypervisors;
 
+        public HypervisorList() {
+            // Intentionally left empty
+        }
+
+        public HypervisorList(List<Consumer> hypervisors) {
+            this.hypervisors = hypervisors;
+        }
+
         public List<Consumer> getHypervisors() {
             return this.hypervisors;
         }
@@ -531,6 +789,66 @@ public class HypervisorUpdateJob extends KingpinJob {
         }
     }
 
+    /**
+     * Reads the hypervisors from a compressed hypervisor list one at a time, without decompressing
+     * or deserializing the entire list up front.
+     */
+    private static class HypervisorReader implements Closeable {
+        private static final ObjectMapper MAPPER = new ObjectMapper();
+
+        private final JsonParser parser;
+        private boolean inList;
+
+        public HypervisorReader(byte[] data) throws IOException {
+            this.parser = MAPPER.getFactory()
+                .createParser(new InflaterInputStream(new ByteArrayInputStream(data)));
+
+            if (this.parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new JsonParseException(this.parser, "Expected a hypervisor list");
+            }
+
+            // Skip ahead to the hypervisors array, ignoring anything else in the list
+            while (this.parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = this.parser.getCurrentName();
+                JsonToken token = this.parser.nextToken();
+
+                if ("hypervisors".equals(field) && token == JsonToken.START_ARRAY) {
+                    this.inList = true;
+                    break;
+                }
+
+                this.parser.skipChildren();
+            }
+        }
+
+        /**
+         * Reads the next hypervisor from the list.
+         *
+         * @return
+         *  the next hypervisor, or null if there are no more hypervisors in the list
+         */
+        public Consumer next() throws IOException {
+            while (this.inList) {
+                JsonToken token = this.parser.nextToken();
+
+                if (token == JsonToken.START_OBJECT) {
+                    return MAPPER.readValue(this.parser, Consumer.class);
+                }
+
+                if (token != JsonToken.VALUE_NULL) {
+                    this.inList = false;
+                }
+            }
+
+            return null;
+        }
+
+        @Override
+        public void close() throws IOException {
+            this.parser.close();
+        }
+    }
+
     public Consumer updateCheckinTime(Consumer consumer) {
         Date now = new Date();
         consumerCurator.updateLastCheckin(consumer, now);
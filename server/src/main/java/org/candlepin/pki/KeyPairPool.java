@@ -0,0 +1,305 @@
+/**
+ * Copyright (c) 2009 - 2018 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.pki;
+
+import org.candlepin.common.config.Configuration;
+import org.candlepin.config.ConfigProperties;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.security.KeyPair;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+
+/**
+ * A bounded pool of pre-generated RSA key pairs, kept filled by background worker threads so that
+ * key generation is moved off the request path.
+ *
+ * Once started, the workers fill the pool up to its high watermark, then idle until it drains
+ * below its low watermark. Key pairs are handed out at most once; when the pool is empty, disabled
+ * or not started, a key pair is generated inline on the calling thread instead.
+ */
+@Singleton
+public class KeyPairPool {
+    private static Logger log = LoggerFactory.getLogger(KeyPairPool.class);
+
+    private static final long MIN_FAILURE_BACKOFF = TimeUnit.SECONDS.toMillis(1);
+    private static final long MAX_FAILURE_BACKOFF = TimeUnit.MINUTES.toMillis(1);
+
+    private final PKIUtility pki;
+    private final boolean enabled;
+    private final int lowWatermark;
+    private final int highWatermark;
+    private final int threads;
+    private final BlockingQueue<KeyPair> keyPairs;
+
+    private final Object refillLock = new Object();
+    private boolean refilling;
+    private volatile boolean running;
+    private ExecutorService executor;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong generated = new AtomicLong();
+    private final AtomicLong generationTime = new AtomicLong();
+
+    @Inject
+    public KeyPairPool(PKIUtility pki, Configuration config) {
+        this(pki, config.getBoolean(ConfigProperties.KEY_PAIR_POOL_ENABLED, true),
+            config.getInt(ConfigProperties.KEY_PAIR_POOL_LOW_WATERMARK, 16),
+            config.getInt(ConfigProperties.KEY_PAIR_POOL_HIGH_WATERMARK, 64),
+            config.getInt(ConfigProperties.KEY_PAIR_POOL_THREADS, 1));
+    }
+
+    public KeyPairPool(PKIUtility pki, boolean enabled, int lowWatermark, int highWatermark, int threads) {
+        if (enabled) {
+            if (highWatermark < 1) {
+                throw new IllegalArgumentException("highWatermark must be a positive integer");
+            }
+
+            if (lowWatermark < 0 || lowWatermark > highWatermark) {
+                throw new IllegalArgumentException(
+                    "lowWatermark must be between zero and the high watermark, inclusive");
+            }
+
+            if (threads < 1) {
+                throw new IllegalArgumentException("threads must be a positive integer");
+            }
+        }
+
+        this.pki = pki;
+        this.enabled = enabled;
+        this.lowWatermark = lowWatermark;
+        this.highWatermark = highWatermark;
+        this.threads = threads;
+        this.keyPairs = new ArrayBlockingQueue<>(Math.max(1, highWatermark));
+    }
+
+    /**
+     * Checks whether or not key pairs are pre-generated. When disabled, every key pair is
+     * generated inline.
+     *
+     * @return
+     *  true if key pairs are pre-generated; false otherwise
+     */
+    public boolean isEnabled() {
+        return this.enabled;
+    }
+
+    /**
+     * Starts the worker threads and begins filling the pool. Does nothing if the pool is disabled
+     * or already started.
+     */
+    public synchronized void start() {
+        if (!this.enabled || this.running) {
+            return;
+        }
+
+        log.info("Starting {} key pair generation thread(s); pool watermarks: {}/{}", this.threads,
+            this.lowWatermark, this.highWatermark);
+
+        AtomicInteger count = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(this.threads, runnable -> {
+            Thread thread = new Thread(runnable, "key-pair-pool-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+
+            return thread;
+        });
+
+        this.running = true;
+        this.requestRefill();
+
+        for (int i = 0; i < this.threads; ++i) {
+            this.executor.submit(this::fill);
+        }
+    }
+
+    /**
+     * Stops the worker threads and discards any pooled key pairs.
+     */
+    public synchronized void shutdown() {
+        if (!this.running) {
+            return;
+        }
+
+        this.running = false;
+        synchronized (this.refillLock) {
+            this.refillLock.notifyAll();
+        }
+
+        this.executor.shutdownNow();
+        this.keyPairs.clear();
+    }
+
+    /**
+     * Takes a key pair from the pool, generating one inline if the pool is empty.
+     *
+     * @throws NoSuchAlgorithmException
+     *  if a key pair needs to be generated inline, and RSA key generation is unavailable
+     *
+     * @return
+     *  a key pair which has not been handed out before
+     */
+    public KeyPair take() throws NoSuchAlgorithmException {
+        KeyPair keyPair = this.keyPairs.poll();
+
+        if (this.running && this.keyPairs.size() < this.lowWatermark) {
+            this.requestRefill();
+        }
+
+        if (keyPair != null) {
+            this.hits.incrementAndGet();
+            return keyPair;
+        }
+
+        this.misses.incrementAndGet();
+        return this.generate();
+    }
+
+    private void requestRefill() {
+        synchronized (this.refillLock) {
+            if (!this.refilling) {
+                this.refilling = true;
+                this.refillLock.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Worker loop: waits for a refill request, then generates key pairs until the pool reaches
+     * its high watermark. A failed generation does not end the worker; it backs off and retries,
+     * doubling the delay after each consecutive failure, up to a minute.
+     */
+    private void fill() {
+        long backoff = MIN_FAILURE_BACKOFF;
+
+        try {
+            while (this.running) {
+                synchronized (this.refillLock) {
+                    while (this.running && !this.refilling) {
+                        this.refillLock.wait();
+                    }
+                }
+
+                try {
+                    while (this.running && this.keyPairs.size() < this.highWatermark) {
+                        if (!this.keyPairs.offer(this.generate())) {
+                            break;
+                        }
+                    }
+
+                    backoff = MIN_FAILURE_BACKOFF;
+                }
+                catch (Exception e) {
+                    log.error("Key pair generation failed; retrying in {}ms", backoff, e);
+
+                    synchronized (this.refillLock) {
+                        if (this.running) {
+                            this.refillLock.wait(backoff);
+                        }
+                    }
+
+                    backoff = Math.min(backoff * 2, MAX_FAILURE_BACKOFF);
+                    continue;
+                }
+
+                synchronized (this.refillLock) {
+                    if (this.keyPairs.size() >= this.lowWatermark) {
+                        this.refilling = false;
+                    }
+                }
+
+                log.debug("Key pair pool refilled; depth: {}, generation rate: {}/s",
+                    this.getDepth(), String.format("%.1f", this.getGenerationRate()));
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private KeyPair generate() throws NoSuchAlgorithmException {
+        long start = System.nanoTime();
+        KeyPair keyPair = this.pki.generateNewKeyPair();
+
+        this.generationTime.addAndGet(System.nanoTime() - start);
+        this.generated.incrementAndGet();
+
+        return keyPair;
+    }
+
+    public int getLowWatermark() {
+        return this.lowWatermark;
+    }
+
+    public int getHighWatermark() {
+        return this.highWatermark;
+    }
+
+    /**
+     * @return
+     *  the number of key pairs currently pooled
+     */
+    public int getDepth() {
+        return this.keyPairs.size();
+    }
+
+    /**
+     * @return
+     *  the number of key pairs handed out from the pool
+     */
+    public long getHits() {
+        return this.hits.get();
+    }
+
+    /**
+     * @return
+     *  the number of key pairs which had to be generated inline
+     */
+    public long getMisses() {
+        return this.misses.get();
+    }
+
+    /**
+     * @return
+     *  the total number of key pairs generated, both by the workers and inline
+     */
+    public long getGeneratedCount() {
+        return this.generated.get();
+    }
+
+    /**
+     * @return
+     *  the average number of key pairs generated per second of generation time, or zero if no
+     *  key pairs have been generated
+     */
+    public double getGenerationRate() {
+        long nanos = this.generationTime.get();
+        return nanos > 0 ? this.generated.get() / (nanos / (double) TimeUnit.SECONDS.toNanos(1)) : 0;
+    }
+}
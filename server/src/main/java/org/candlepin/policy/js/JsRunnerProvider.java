@@ -14,6 +14,8 @@
  */
 package org.candlepin.policy.js;
 
+import org.candlepin.common.config.Configuration;
+import org.candlepin.config.ConfigProperties;
 import org.candlepin.model.Rules;
 import org.candlepin.model.Rules.RulesSourceEnum;
 import org.candlepin.model.RulesCurator;
@@ -61,6 +63,20 @@ public class JsRunnerProvider implements Provider<JsRunner> {
     // Use this lock to access script, scope and updated
     private ReadWriteLock scriptLock = new ReentrantReadWriteLock();
 
+    /**
+     * Incremented every time the rules are recompiled; used to discard pooled scopes built
+     * against an older version of the rules.
+     */
+    private volatile int scopeGeneration;
+
+    /**
+     * When pooling is enabled, this holds the last rules timestamp seen by the
+     * RulesVersionPoller (or by a local recompile), so that requests do not need to go to
+     * the database to check whether the rules have changed.
+     */
+    private volatile Date polledRulesUpdated;
+    private JsRunnerScopePool scopePool;
+
     /**
      * DynamicScopeContextFactory - replace the standard rhino context factory with one that
      * enables dynamic scopes. Dynamic scopes allow us to define a global var (ie pools) in
@@ -81,11 +97,23 @@ public class JsRunnerProvider implements Provider<JsRunner> {
         ContextFactory.initGlobal(new DynamicScopeContextFactory());
     }
 
-    @Inject
     public JsRunnerProvider(RulesCurator rulesCurator, Provider<JsRunnerRequestCache> cacheProvider) {
+        this(rulesCurator, cacheProvider, null);
+    }
+
+    @Inject
+    public JsRunnerProvider(RulesCurator rulesCurator, Provider<JsRunnerRequestCache> cacheProvider,
+        Configuration config) {
+
         this.rulesCurator = rulesCurator;
         this.cacheProvider = cacheProvider;
 
+        if (config != null && config.getBoolean(ConfigProperties.RULES_SCOPE_POOL_ENABLED, false)) {
+            int poolSize = config.getInt(ConfigProperties.RULES_SCOPE_POOL_SIZE);
+            log.info("Using pooled rules execution scopes; pool size: {}", poolSize);
+            this.scopePool = new JsRunnerScopePool(poolSize);
+        }
+
         log.debug("Compiling rules for initial load");
         this.rulesCurator.updateDbRules();
         this.compileRules();
@@ -126,6 +154,8 @@ public class JsRunnerProvider implements Provider<JsRunner> {
                 script.exec(context, scope);
                 ((ScriptableObject) scope).sealObject();
                 this.currentRulesUpdated = newUpdated;
+                this.polledRulesUpdated = newUpdated;
+                this.scopeGeneration++;
             }
             finally {
                 Context.exit();
@@ -137,17 +167,8 @@ public class JsRunnerProvider implements Provider<JsRunner> {
     }
 
     public JsRunner get() {
-        /**
-         * Even though JsRunnerProvider is singleton, the
-         * following cache is being retrieved fresh for
-         * every new HTTP Request
-         */
-        JsRunnerRequestCache cache = cacheProvider.get();
-        Date updated = cache.getUpdated();
-        if (updated == null) {
-            updated = rulesCurator.getUpdated();
-            cache.setUpdated(updated);
-        }
+        Date updated = this.getRulesUpdated();
+
         /*
          * Create a new thread/request local javascript scope for the JsRules,
          * based on the preinitialized global one (which contains our js rules).
@@ -159,11 +180,9 @@ public class JsRunnerProvider implements Provider<JsRunner> {
         Scriptable rulesScope;
         scriptLock.readLock().lock();
         try {
-            Context context = Context.enter();
-            rulesScope = context.newObject(scope);
-            rulesScope.setPrototype(scope);
-            rulesScope.setParentScope(null);
-            Context.exit();
+            rulesScope = this.scopePool != null ?
+                this.scopePool.acquire(scope, this.scopeGeneration) :
+                JsRunnerScopePool.createScope(scope);
         }
         finally {
             scriptLock.readLock().unlock();
@@ -172,6 +191,67 @@ public class JsRunnerProvider implements Provider<JsRunner> {
         return new JsRunner(rulesScope);
     }
 
+    /**
+     * Fetches the timestamp of the rules that should currently be in use. When scope pooling is
+     * enabled, this is the in-memory version stamp maintained by the RulesVersionPoller;
+     * otherwise it is read from the database once per request.
+     *
+     * @return
+     *  the last updated timestamp of the rules
+     */
+    private Date getRulesUpdated() {
+        Date updated = this.scopePool != null ? this.polledRulesUpdated : null;
+        if (updated != null) {
+            return updated;
+        }
+
+        /**
+         * Even though JsRunnerProvider is singleton, the
+         * following cache is being retrieved fresh for
+         * every new HTTP Request
+         */
+        JsRunnerRequestCache cache = cacheProvider.get();
+        updated = cache.getUpdated();
+        if (updated == null) {
+            updated = rulesCurator.getUpdated();
+            cache.setUpdated(updated);
+        }
+
+        return updated;
+    }
+
+    /**
+     * Refreshes the in-memory rules version stamp from the database. Only meaningful when scope
+     * pooling is enabled; called periodically by the RulesVersionPoller.
+     */
+    public void refreshRulesVersion() {
+        Date updated = rulesCurator.getUpdated();
+        if (updated != null && !updated.equals(this.polledRulesUpdated)) {
+            log.debug("Rules version changed to: {}", updated);
+            this.polledRulesUpdated = updated;
+        }
+    }
+
+    /**
+     * Checks if this provider hands out pooled rules execution scopes.
+     *
+     * @return
+     *  true if scope pooling is enabled; false otherwise
+     */
+    public boolean isPoolingEnabled() {
+        return this.scopePool != null;
+    }
+
+    /**
+     * Fetches the pool of rules execution scopes, for monitoring purposes.
+     *
+     * @return
+     *  the scope pool, or null if scope pooling is disabled
+     */
+    public JsRunnerScopePool getScopePool() {
+        return this.scopePool;
+    }
+
     public String getRulesVersion() {
         if (rulesVersion == null) {
             compileRules();
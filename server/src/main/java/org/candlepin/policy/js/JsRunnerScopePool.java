@@ -0,0 +1,251 @@
+/**
+ * Copyright (c) 2009 - 2012 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.policy.js;
+
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.Scriptable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A bounded pool of reusable, per-thread rules execution scopes.
+ *
+ * Every thread that asks for a scope gets its own child scope of the sealed global rules
+ * scope, which is kept around and handed back to the same thread on its next request. Any
+ * variables left on the scope by a previous invocation are removed before it is reused, so a
+ * pooled scope behaves exactly like a freshly created one.
+ *
+ * Pooled scopes are tied to the generation of the compiled rules they were created from. When
+ * the rules are recompiled, the generation is bumped and all pooled scopes are discarded lazily.
+ * Once the configured number of pooled scopes are held by live threads, additional threads
+ * receive throwaway scopes; the slot held by a thread is released once that thread terminates.
+ */
+public class JsRunnerScopePool {
+    private static Logger log = LoggerFactory.getLogger(JsRunnerScopePool.class);
+
+    /**
+     * A scope owned by a single thread, along with the rules generation it was built against.
+     */
+    private static class PooledScope {
+        private final Scriptable scope;
+        private final int generation;
+
+        public PooledScope(Scriptable scope, int generation) {
+            this.scope = scope;
+            this.generation = generation;
+        }
+    }
+
+    private final int maxSize;
+    private final ThreadLocal<PooledScope> threadScopes = new ThreadLocal<>();
+
+    private volatile int generation;
+
+    // Threads holding a pooled scope for the current generation. Guarded by "this"; only touched
+    // when a thread needs a new scope, so the common reuse path never contends on it.
+    private final Map<Thread, Boolean> owners = new WeakHashMap<>();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong acquireTime = new AtomicLong();
+
+    public JsRunnerScopePool(int maxSize) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("maxSize must be a positive integer");
+        }
+
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Retrieves the pooled scope for the current thread, creating a new one as a child of the
+     * given global scope if the thread does not yet have one for the specified generation.
+     *
+     * @param globalScope
+     *  the sealed global scope containing the compiled rules
+     *
+     * @param scopeGeneration
+     *  the generation of the compiled rules backing the global scope
+     *
+     * @return
+     *  a clean execution scope for the current thread
+     */
+    public Scriptable acquire(Scriptable globalScope, int scopeGeneration) {
+        long start = System.nanoTime();
+
+        try {
+            if (scopeGeneration != this.generation) {
+                this.resetGeneration(scopeGeneration);
+            }
+
+            PooledScope pooled = this.threadScopes.get();
+            if (pooled != null && pooled.generation == scopeGeneration) {
+                this.hits.incrementAndGet();
+                clear(pooled.scope);
+
+                return pooled.scope;
+            }
+
+            this.misses.incrementAndGet();
+            Scriptable scope = createScope(globalScope);
+
+            if (this.claimSlot(scopeGeneration)) {
+                this.threadScopes.set(new PooledScope(scope, scopeGeneration));
+            }
+            else {
+                this.threadScopes.remove();
+                log.debug("Rules scope pool is exhausted; using a throwaway scope");
+            }
+
+            return scope;
+        }
+        finally {
+            this.acquireTime.addAndGet(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Releases the pool slots held for an older generation of the rules, if the given generation
+     * differs from the one this pool currently tracks.
+     */
+    private synchronized void resetGeneration(int scopeGeneration) {
+        if (scopeGeneration != this.generation) {
+            log.debug("Rules generation changed from {} to {}; discarding pooled scopes",
+                this.generation, scopeGeneration);
+
+            this.generation = scopeGeneration;
+            this.owners.clear();
+        }
+    }
+
+    /**
+     * Attempts to reserve a pool slot for the current thread. If the pool is full, slots held by
+     * threads which have since terminated are released first.
+     *
+     * @return
+     *  true if the current thread holds a pool slot for the given generation; false otherwise
+     */
+    private synchronized boolean claimSlot(int scopeGeneration) {
+        if (scopeGeneration != this.generation) {
+            // The rules moved on while this scope was being built; don't pool a stale scope
+            return false;
+        }
+
+        Thread current = Thread.currentThread();
+        if (!this.owners.containsKey(current) && this.owners.size() >= this.maxSize) {
+            this.releaseDeadOwners();
+        }
+
+        if (this.owners.containsKey(current) || this.owners.size() < this.maxSize) {
+            this.owners.put(current, Boolean.TRUE);
+            return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * Releases the slots held by threads which are no longer alive. Must be called while holding
+     * the lock on this pool.
+     */
+    private void releaseDeadOwners() {
+        Iterator<Thread> iterator = this.owners.keySet().iterator();
+        while (iterator.hasNext()) {
+            if (!iterator.next().isAlive()) {
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * Creates a new execution scope backed by the given global scope.
+     *
+     * @param globalScope
+     *  the sealed global scope containing the compiled rules
+     *
+     * @return
+     *  a new execution scope
+     */
+    public static Scriptable createScope(Scriptable globalScope) {
+        Context context = Context.enter();
+        try {
+            Scriptable scope = context.newObject(globalScope);
+            scope.setPrototype(globalScope);
+            scope.setParentScope(null);
+
+            return scope;
+        }
+        finally {
+            Context.exit();
+        }
+    }
+
+    /**
+     * Removes any variables a previous rules invocation left on the given scope.
+     */
+    private static void clear(Scriptable scope) {
+        for (Object id : scope.getIds()) {
+            if (id instanceof String) {
+                scope.delete((String) id);
+            }
+            else if (id instanceof Integer) {
+                scope.delete((Integer) id);
+            }
+        }
+    }
+
+    public int getMaxSize() {
+        return this.maxSize;
+    }
+
+    /**
+     * @return
+     *  the number of scopes currently pooled by live threads for the current rules generation
+     */
+    public synchronized int getSize() {
+        this.releaseDeadOwners();
+        return this.owners.size();
+    }
+
+    /**
+     * @return
+     *  the number of times a thread was handed a previously pooled scope
+     */
+    public long getHits() {
+        return this.hits.get();
+    }
+
+    /**
+     * @return
+     *  the number of times a new scope had to be created
+     */
+    public long getMisses() {
+        return this.misses.get();
+    }
+
+    /**
+     * @return
+     *  the total time, in nanoseconds, threads have spent in acquire, clearing pooled scopes or
+     *  creating new ones
+     */
+    public long getAcquireTime() {
+        return this.acquireTime.get();
+    }
+}
@@ -0,0 +1,108 @@
+/**
+ * Copyright (c) 2009 - 2012 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.policy.js;
+
+import org.candlepin.common.config.Configuration;
+import org.candlepin.config.ConfigProperties;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import com.google.inject.persist.UnitOfWork;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Periodically refreshes the in-memory rules version stamp used by the {@link JsRunnerProvider}
+ * when rules scope pooling is enabled. This replaces the per-request database check for updated
+ * rules with a single query every few seconds per node.
+ */
+@Singleton
+public class RulesVersionPoller implements Runnable {
+    private static Logger log = LoggerFactory.getLogger(RulesVersionPoller.class);
+
+    private JsRunnerProvider jsProvider;
+    private UnitOfWork unitOfWork;
+    private ScheduledExecutorService executorService;
+    private int interval;
+
+    @Inject
+    public RulesVersionPoller(JsRunnerProvider jsProvider, UnitOfWork unitOfWork,
+        ScheduledExecutorService executorService, Configuration config) {
+
+        this.jsProvider = jsProvider;
+        this.unitOfWork = unitOfWork;
+        this.executorService = executorService;
+
+        this.interval = config.getInt(ConfigProperties.RULES_VERSION_POLL_INTERVAL);
+        if (this.interval < 1) {
+            int defaultInterval = Integer.parseInt(
+                ConfigProperties.DEFAULT_PROPERTIES.get(ConfigProperties.RULES_VERSION_POLL_INTERVAL));
+            log.warn("{} is an invalid rules version poll interval. Must be greater than 0. " +
+                "Defaulting to {}", this.interval, defaultInterval);
+            this.interval = defaultInterval;
+        }
+    }
+
+    /**
+     * Schedules the poller to run at the configured interval.
+     */
+    public void schedule() {
+        log.info("Starting rules version poller. Checks will be performed every {} seconds.",
+            this.interval);
+        executorService.scheduleWithFixedDelay(this, this.interval, this.interval, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Stops any further checks from being performed.
+     */
+    public void shutdown() {
+        executorService.shutdownNow();
+    }
+
+    /**
+     * Executes a single rules version check. All exceptions are handled here to ensure the
+     * executor continues to schedule subsequent checks.
+     */
+    @Override
+    public void run() {
+        boolean startedUow = false;
+
+        try {
+            unitOfWork.begin();
+            startedUow = true;
+
+            jsProvider.refreshRulesVersion();
+
+            JsRunnerScopePool pool = jsProvider.getScopePool();
+            if (pool != null) {
+                log.debug("Rules scope pool: size: {}/{}, hits: {}, misses: {}, acquire time: {}ms",
+                    pool.getSize(), pool.getMaxSize(), pool.getHits(), pool.getMisses(),
+                    TimeUnit.NANOSECONDS.toMillis(pool.getAcquireTime()));
+            }
+        }
+        catch (Throwable t) {
+            log.error("Error while checking for updated rules", t);
+        }
+        finally {
+            if (startedUow) {
+                unitOfWork.end();
+            }
+        }
+    }
+}
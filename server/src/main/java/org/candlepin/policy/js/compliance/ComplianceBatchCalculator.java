@@ -0,0 +1,237 @@
+/**
+ * Copyright (c) 2009 - 2018 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.policy.js.compliance;
+
+import org.candlepin.common.config.Configuration;
+import org.candlepin.config.ConfigProperties;
+import org.candlepin.model.Consumer;
+import org.candlepin.model.ConsumerCurator;
+import org.candlepin.model.ConsumerType;
+import org.candlepin.model.ConsumerTypeCurator;
+import org.candlepin.policy.js.RuleExecutionException;
+import org.candlepin.util.WorkerPool;
+
+import com.google.inject.Inject;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.function.BiFunction;
+import java.util.stream.Stream;
+
+
+
+/**
+ * Calculates the current compliance status of many consumers at once.
+ *
+ * Consumers are processed in chunks. The consumers of each chunk are fetched, along with their
+ * entitlements and pools, using a small number of bulk queries; their statuses are then
+ * calculated and applied, and the resulting updates are flushed using JDBC batching before the
+ * chunk is evicted from the session and the next one is loaded. Consumers which were already
+ * loaded in the session before their chunk are left in it. When the compliance engine permits
+ * it, the statuses of a chunk are calculated in parallel using the shared worker pool. Loading
+ * consumers, applying statuses and emitting events is always done on the calling thread.
+ */
+public class ComplianceBatchCalculator {
+    private static Logger log = LoggerFactory.getLogger(ComplianceBatchCalculator.class);
+
+    private ComplianceRules complianceRules;
+    private ConsumerCurator consumerCurator;
+    private ConsumerTypeCurator consumerTypeCurator;
+    private WorkerPool workerPool;
+    private int chunkSize;
+    private int threads;
+
+    @Inject
+    public ComplianceBatchCalculator(ComplianceRules complianceRules, ConsumerCurator consumerCurator,
+        ConsumerTypeCurator consumerTypeCurator, WorkerPool workerPool, Configuration config) {
+
+        this.complianceRules = complianceRules;
+        this.consumerCurator = consumerCurator;
+        this.consumerTypeCurator = consumerTypeCurator;
+        this.workerPool = workerPool;
+
+        this.chunkSize = Math.max(1, config.getInt(ConfigProperties.COMPLIANCE_BATCH_CHUNK_SIZE, 500));
+        this.threads = Math.max(1, config.getInt(ConfigProperties.COMPLIANCE_BATCH_THREADS, 4));
+    }
+
+    /**
+     * Calculates the current compliance status of the consumers with the given UUIDs. As with
+     * {@link ComplianceRules#getStatus(Consumer, Date)}, entitlements which have started are
+     * flagged, the stored status of each consumer is updated and compliance events are emitted
+     * for any consumer whose status changed. UUIDs which do not match an existing consumer are
+     * ignored.
+     *
+     * @param consumerUuids
+     *  a stream of UUIDs of the consumers for which to calculate the compliance status
+     *
+     * @return
+     *  a map of consumer UUIDs to the current compliance status of each consumer
+     */
+    public Map<String, ComplianceStatus> getStatus(Stream<String> consumerUuids) {
+        return this.getStatus(consumerUuids, null);
+    }
+
+    /**
+     * Calculates the current compliance status of the consumers with the given UUIDs, as with
+     * {@link #getStatus(Stream)}, allowing the caller to provide the status of some consumers
+     * instead. Consumers for which the given function returns a status are neither evaluated nor
+     * updated, and are reported with that status.
+     *
+     * @param consumerUuids
+     *  a stream of UUIDs of the consumers for which to calculate the compliance status
+     *
+     * @param override
+     *  a function receiving each consumer and its type, returning the status to report for the
+     *  consumer, or null to calculate its status; may be null
+     *
+     * @return
+     *  a map of consumer UUIDs to the current compliance status of each consumer
+     */
+    public Map<String, ComplianceStatus> getStatus(Stream<String> consumerUuids,
+        BiFunction<Consumer, ConsumerType, ComplianceStatus> override) {
+
+        Map<String, ComplianceStatus> statuses = new LinkedHashMap<>();
+        boolean concurrent = this.threads > 1 && this.complianceRules.supportsConcurrentCalculation();
+
+        Date date = new Date();
+        List<String> chunk = new ArrayList<>(this.chunkSize);
+        Iterator<String> iterator = consumerUuids.iterator();
+
+        while (iterator.hasNext()) {
+            String uuid = iterator.next();
+
+            if (uuid != null && !statuses.containsKey(uuid)) {
+                // Reserve the slot so the output retains the order of the input
+                statuses.put(uuid, null);
+                chunk.add(uuid);
+            }
+
+            if (chunk.size() >= this.chunkSize || (!iterator.hasNext() && !chunk.isEmpty())) {
+                this.processChunk(chunk, date, concurrent, override, statuses);
+                chunk.clear();
+            }
+        }
+
+        // Drop any UUIDs which did not resolve to a consumer
+        statuses.values().removeIf(status -> status == null);
+        return statuses;
+    }
+
+    private void processChunk(List<String> uuids, Date date, boolean concurrent,
+        BiFunction<Consumer, ConsumerType, ComplianceStatus> override,
+        Map<String, ComplianceStatus> statuses) {
+
+        long start = System.currentTimeMillis();
+
+        // Consumers the caller already holds must remain in the session
+        Set<Consumer> retained = this.consumerCurator.getManagedConsumers();
+        List<Consumer> loaded = this.consumerCurator.getConsumersForComplianceCheck(uuids);
+
+        List<Consumer> consumers = new ArrayList<>(loaded.size());
+        List<ConsumerType> ctypes = new ArrayList<>(loaded.size());
+
+        for (Consumer consumer : loaded) {
+            ConsumerType ctype = this.consumerTypeCurator.getConsumerType(consumer);
+            ComplianceStatus status = override != null ? override.apply(consumer, ctype) : null;
+
+            if (status != null) {
+                statuses.put(consumer.getUuid(), status);
+                continue;
+            }
+
+            this.complianceRules.updateEntsOnStart(consumer);
+            consumers.add(consumer);
+            ctypes.add(ctype);
+        }
+
+        List<ComplianceStatus> results = concurrent ?
+            this.calculateConcurrently(consumers, ctypes, date) :
+            this.calculate(consumers, ctypes, date);
+
+        for (int i = 0; i < consumers.size(); ++i) {
+            Consumer consumer = consumers.get(i);
+            ComplianceStatus status = results.get(i);
+
+            if (!ComplianceRules.isComplianceExempt(ctypes.get(i))) {
+                this.complianceRules.applyStatus(consumer, status, false);
+            }
+
+            statuses.put(consumer.getUuid(), status);
+        }
+
+        List<Consumer> evictable = new ArrayList<>(loaded.size());
+        for (Consumer consumer : loaded) {
+            if (!retained.contains(consumer)) {
+                evictable.add(consumer);
+            }
+        }
+
+        this.consumerCurator.flushInBatches(evictable, true);
+
+        log.debug("Calculated compliance status for {} of {} consumers in {}ms", consumers.size(),
+            uuids.size(), System.currentTimeMillis() - start);
+    }
+
+    private List<ComplianceStatus> calculate(List<Consumer> consumers, List<ConsumerType> ctypes,
+        Date date) {
+
+        List<ComplianceStatus> results = new ArrayList<>(consumers.size());
+
+        for (int i = 0; i < consumers.size(); ++i) {
+            results.add(this.complianceRules.calculateStatus(consumers.get(i), ctypes.get(i), null, date,
+                true, false));
+        }
+
+        return results;
+    }
+
+    private List<ComplianceStatus> calculateConcurrently(List<Consumer> consumers,
+        List<ConsumerType> ctypes, Date date) {
+
+        List<Callable<ComplianceStatus>> tasks = new ArrayList<>(consumers.size());
+
+        for (int i = 0; i < consumers.size(); ++i) {
+            Consumer consumer = consumers.get(i);
+            ConsumerType ctype = ctypes.get(i);
+
+            tasks.add(() -> this.complianceRules.calculateStatus(consumer, ctype, null, date, true, false));
+        }
+
+        try {
+            return this.workerPool.invokeAll(tasks, this.threads);
+        }
+        catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+
+            throw new RuleExecutionException(e.getCause());
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuleExecutionException(e);
+        }
+    }
+}
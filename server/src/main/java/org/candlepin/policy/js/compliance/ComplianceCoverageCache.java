@@ -0,0 +1,212 @@
+/**
+ * Copyright (c) 2009 - 2018 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.policy.js.compliance;
+
+import org.candlepin.common.config.Configuration;
+import org.candlepin.config.ConfigProperties;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+
+/**
+ * Retains the partial compliance results calculated by the native compliance engine for each
+ * consumer, so that subsequent compliance checks only need to re-evaluate the stacks and
+ * entitlements which have changed.
+ *
+ * Results are keyed by the inputs they were calculated from: the consumer's relevant facts, and
+ * the relevant attributes and quantities of the entitlements involved. Any change to those inputs
+ * yields a new key, so stale results are never returned; a change to the consumer's facts
+ * discards all of its results. The number of consumers tracked is bounded, with the least
+ * recently used consumers evicted first.
+ */
+@Singleton
+public class ComplianceCoverageCache {
+    private static Logger log = LoggerFactory.getLogger(ComplianceCoverageCache.class);
+
+    /** The maximum number of results retained for a single consumer */
+    private static final int MAX_RESULTS_PER_CONSUMER = 256;
+
+    /**
+     * The results retained for a single consumer, along with the key of the consumer inputs they
+     * were calculated from.
+     */
+    private static class ConsumerResults {
+        private final Object consumerKey;
+        private final Map<Object, Object> results = new ConcurrentHashMap<>();
+
+        public ConsumerResults(Object consumerKey) {
+            this.consumerKey = consumerKey;
+        }
+    }
+
+    private final boolean enabled;
+    private final Map<String, ConsumerResults> consumers;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    @Inject
+    public ComplianceCoverageCache(Configuration config) {
+        this(config.getBoolean(ConfigProperties.COMPLIANCE_INCREMENTAL_ENABLED, false),
+            config.getInt(ConfigProperties.COMPLIANCE_INCREMENTAL_CACHE_SIZE, 10000));
+    }
+
+    public ComplianceCoverageCache(boolean enabled, final int maxConsumers) {
+        if (enabled && maxConsumers < 1) {
+            throw new IllegalArgumentException("maxConsumers must be a positive integer");
+        }
+
+        this.enabled = enabled;
+        this.consumers = Collections.synchronizedMap(new LinkedHashMap<String, ConsumerResults>(16, 0.75f,
+            true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, ConsumerResults> eldest) {
+                return this.size() > maxConsumers;
+            }
+        });
+    }
+
+    /**
+     * Checks whether or not incremental compliance calculation is enabled. When disabled, this
+     * cache does not retain any results.
+     *
+     * @return
+     *  true if incremental compliance calculation is enabled; false otherwise
+     */
+    public boolean isEnabled() {
+        return this.enabled;
+    }
+
+    /**
+     * Fetches the result previously calculated for the given consumer and key.
+     *
+     * @param consumerUuid
+     *  the UUID of the consumer for which the result was calculated
+     *
+     * @param consumerKey
+     *  the key representing the consumer inputs used by the calculation; if it differs from the
+     *  key used when the consumer's results were stored, all of the consumer's results are
+     *  discarded
+     *
+     * @param key
+     *  the key representing the entitlement inputs used by the calculation
+     *
+     * @return
+     *  the previously calculated result, or null if the result is not present
+     */
+    public Object get(String consumerUuid, Object consumerKey, Object key) {
+        if (!this.enabled || consumerUuid == null) {
+            return null;
+        }
+
+        ConsumerResults entry = this.consumers.get(consumerUuid);
+        Object result = null;
+
+        if (entry != null && Objects.equals(entry.consumerKey, consumerKey)) {
+            result = entry.results.get(key);
+        }
+
+        (result != null ? this.hits : this.misses).incrementAndGet();
+        return result;
+    }
+
+    /**
+     * Stores a result calculated for the given consumer.
+     *
+     * @param consumerUuid
+     *  the UUID of the consumer for which the result was calculated
+     *
+     * @param consumerKey
+     *  the key representing the consumer inputs used by the calculation
+     *
+     * @param key
+     *  the key representing the entitlement inputs used by the calculation
+     *
+     * @param result
+     *  the calculated result
+     */
+    public void put(String consumerUuid, Object consumerKey, Object key, Object result) {
+        if (!this.enabled || consumerUuid == null || result == null) {
+            return;
+        }
+
+        ConsumerResults entry = this.consumers.get(consumerUuid);
+        if (entry == null || !Objects.equals(entry.consumerKey, consumerKey)) {
+            if (entry != null) {
+                log.debug("Compliance inputs changed for consumer {}; discarding cached results",
+                    consumerUuid);
+            }
+
+            entry = new ConsumerResults(consumerKey);
+            this.consumers.put(consumerUuid, entry);
+        }
+
+        // Results for outdated entitlements are never looked up again; rather than tracking them
+        // individually, start over once a consumer accumulates too many of them.
+        if (entry.results.size() >= MAX_RESULTS_PER_CONSUMER) {
+            entry.results.clear();
+        }
+
+        entry.results.put(key, result);
+    }
+
+    /**
+     * Discards all results retained for the given consumer.
+     *
+     * @param consumerUuid
+     *  the UUID of the consumer for which to discard results
+     */
+    public void invalidate(String consumerUuid) {
+        if (consumerUuid != null) {
+            this.consumers.remove(consumerUuid);
+        }
+    }
+
+    /**
+     * @return
+     *  the number of consumers for which results are currently retained
+     */
+    public int getSize() {
+        return this.consumers.size();
+    }
+
+    /**
+     * @return
+     *  the number of lookups which returned a previously calculated result
+     */
+    public long getHits() {
+        return this.hits.get();
+    }
+
+    /**
+     * @return
+     *  the number of lookups which required a new calculation
+     */
+    public long getMisses() {
+        return this.misses.get();
+    }
+}
@@ -0,0 +1,105 @@
+/**
+ * Copyright (c) 2009 - 2018 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.policy.js.compliance;
+
+import org.candlepin.model.Consumer;
+import org.candlepin.model.ConsumerType;
+import org.candlepin.model.Entitlement;
+
+import java.util.Collection;
+import java.util.Date;
+
+
+
+/**
+ * A ComplianceEvaluator performs the actual compliance calculations on behalf of the
+ * {@link ComplianceRules}. Implementations must not modify the consumer or entitlements
+ * provided, nor emit any events; applying the resulting status is left to the caller.
+ */
+public interface ComplianceEvaluator {
+
+    /**
+     * Calculates the compliance status of the given consumer on the specified date.
+     *
+     * @param consumer
+     *  the consumer for which to calculate the compliance status
+     *
+     * @param ctype
+     *  the type of the consumer
+     *
+     * @param entitlements
+     *  the entitlements to consider when calculating the status
+     *
+     * @param date
+     *  the date on which to calculate the status
+     *
+     * @param calculateCompliantUntil
+     *  whether or not to calculate the date until which the consumer remains compliant
+     *
+     * @param calculateProductComplianceDateRanges
+     *  whether or not to calculate the compliance date ranges of the individual products
+     *
+     * @return
+     *  the compliance status of the consumer; reason messages are not yet populated
+     */
+    ComplianceStatus getStatus(Consumer consumer, ConsumerType ctype, Collection<Entitlement> entitlements,
+        Date date, boolean calculateCompliantUntil, boolean calculateProductComplianceDateRanges);
+
+    /**
+     * Checks whether or not this evaluator may calculate compliance statuses from multiple threads
+     * at once. Even when it may, the consumers and entitlements provided must be fully loaded, as
+     * the evaluator will not be called from the thread owning the session.
+     *
+     * @return
+     *  true if statuses may be calculated concurrently; false otherwise
+     */
+    boolean supportsConcurrentEvaluation();
+
+    /**
+     * Checks whether or not the given entitlements fully cover the consumer for the specified
+     * stack.
+     *
+     * @param consumer
+     *  the consumer to check
+     *
+     * @param stackId
+     *  the stack to check
+     *
+     * @param entitlements
+     *  the entitlements to consider
+     *
+     * @return
+     *  true if the stack is compliant; false otherwise
+     */
+    boolean isStackCompliant(Consumer consumer, String stackId, Collection<Entitlement> entitlements);
+
+    /**
+     * Checks whether or not the given entitlement fully covers the consumer.
+     *
+     * @param consumer
+     *  the consumer to check
+     *
+     * @param entitlement
+     *  the entitlement to check
+     *
+     * @param entitlements
+     *  all of the consumer's entitlements on the date being checked
+     *
+     * @return
+     *  true if the entitlement is compliant; false otherwise
+     */
+    boolean isEntitlementCompliant(Consumer consumer, Entitlement entitlement,
+        Collection<Entitlement> entitlements);
+}
@@ -15,10 +15,9 @@
 package org.candlepin.policy.js.compliance;
 
 import org.candlepin.audit.EventSink;
+import org.candlepin.common.config.Configuration;
+import org.candlepin.config.ConfigProperties;
 import org.candlepin.dto.ModelTranslator;
-import org.candlepin.dto.rules.v1.ConsumerDTO;
-import org.candlepin.dto.rules.v1.EntitlementDTO;
-import org.candlepin.dto.rules.v1.GuestIdDTO;
 import org.candlepin.model.Consumer;
 import org.candlepin.model.ConsumerType;
 import org.candlepin.model.ConsumerType.ConsumerTypeEnum;
@@ -26,9 +25,7 @@ import org.candlepin.model.ConsumerTypeCurator;
 import org.candlepin.model.ConsumerCurator;
 import org.candlepin.model.Entitlement;
 import org.candlepin.model.EntitlementCurator;
-import org.candlepin.model.GuestId;
 import org.candlepin.policy.js.JsRunner;
-import org.candlepin.policy.js.JsonJsContext;
 import org.candlepin.policy.js.RuleExecutionException;
 import org.candlepin.policy.js.RulesObjectMapper;
 import org.candlepin.policy.js.compliance.hash.ComplianceStatusHasher;
@@ -38,10 +35,10 @@ import com.google.inject.Inject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Date;
 import java.util.List;
-import java.util.stream.Stream;
 
 
 
@@ -53,30 +50,53 @@ import java.util.stream.Stream;
 public class ComplianceRules {
     private static Logger log = LoggerFactory.getLogger(ComplianceRules.class);
 
-    private JsRunner jsRules;
+    /** The compliance engine which runs the compliance namespace of the rules */
+    public static final String JS_ENGINE = "js";
+
+    /** The compliance engine which implements the compliance rules natively */
+    public static final String NATIVE_ENGINE = "native";
+
+    private ComplianceEvaluator evaluator;
     private EntitlementCurator entCurator;
     private StatusReasonMessageGenerator generator;
     private EventSink eventSink;
     private ConsumerCurator consumerCurator;
     private ConsumerTypeCurator consumerTypeCurator;
-    private RulesObjectMapper mapper;
-    private ModelTranslator translator;
 
-    @Inject
     public ComplianceRules(JsRunner jsRules, EntitlementCurator entCurator,
         StatusReasonMessageGenerator generator, EventSink eventSink, ConsumerCurator consumerCurator,
         ConsumerTypeCurator consumerTypeCurator, RulesObjectMapper mapper, ModelTranslator translator) {
 
-        this.jsRules = jsRules;
+        this(jsRules, entCurator, generator, eventSink, consumerCurator, consumerTypeCurator, mapper,
+            translator, null, null);
+    }
+
+    @Inject
+    public ComplianceRules(JsRunner jsRules, EntitlementCurator entCurator,
+        StatusReasonMessageGenerator generator, EventSink eventSink, ConsumerCurator consumerCurator,
+        ConsumerTypeCurator consumerTypeCurator, RulesObjectMapper mapper, ModelTranslator translator,
+        Configuration config, ComplianceCoverageCache coverageCache) {
+
         this.entCurator = entCurator;
         this.generator = generator;
         this.eventSink = eventSink;
         this.consumerCurator = consumerCurator;
         this.consumerTypeCurator = consumerTypeCurator;
-        this.mapper = mapper;
-        this.translator = translator;
 
-        jsRules.init("compliance_name_space");
+        String engine = config != null ?
+            config.getString(ConfigProperties.COMPLIANCE_ENGINE, JS_ENGINE) :
+            JS_ENGINE;
+
+        if (NATIVE_ENGINE.equalsIgnoreCase(engine)) {
+            this.evaluator = new NativeComplianceEvaluator(consumerTypeCurator, coverageCache);
+        }
+        else {
+            if (!JS_ENGINE.equalsIgnoreCase(engine)) {
+                log.warn("Unknown compliance engine \"{}\"; using the rules engine", engine);
+            }
+
+            this.evaluator = new JsComplianceEvaluator(jsRules, mapper, translator);
+        }
     }
 
     /**
@@ -143,7 +163,6 @@ public class ComplianceRules {
      *        (also expensive)
      * @return Compliance status.
      */
-    @SuppressWarnings("checkstyle:indentation")
     public ComplianceStatus getStatus(Consumer consumer, Collection<Entitlement> newEntitlements, Date date,
         boolean calculateCompliantUntil, boolean updateConsumer, boolean calculateProductComplianceDateRanges,
         boolean currentCompliance) {
@@ -156,44 +175,69 @@ public class ComplianceRules {
             updateEntsOnStart(consumer);
         }
 
-        Stream<EntitlementDTO> entStream = Stream.concat(
-            newEntitlements != null ? newEntitlements.stream() : Stream.empty(),
-            consumer.getEntitlements() != null ? consumer.getEntitlements().stream() : Stream.empty())
-                .map(this.translator.getStreamMapper(Entitlement.class, EntitlementDTO.class));
-
-        Stream<GuestIdDTO> guestIdStream = consumer.getGuestIds() == null ? Stream.empty() :
-            consumer.getGuestIds().stream()
-                .map(this.translator.getStreamMapper(GuestId.class, GuestIdDTO.class));
-
         // Do not calculate compliance status for distributors and shares. It is prohibitively
         // expensive and meaningless
         ConsumerType ctype = this.consumerTypeCurator.getConsumerType(consumer);
-        if (ctype != null && (ctype.isManifest() || ctype.isType(ConsumerTypeEnum.SHARE))) {
+        if (isComplianceExempt(ctype)) {
             return new ComplianceStatus(new Date());
         }
 
-        JsonJsContext args = new JsonJsContext(mapper);
-        args.put("consumer", this.translator.translate(consumer, ConsumerDTO.class));
-        args.put("entitlements", entStream);
-        args.put("ondate", date);
-        args.put("calculateCompliantUntil", calculateCompliantUntil);
-        args.put("calculateProductComplianceDateRanges", calculateProductComplianceDateRanges);
-        args.put("log", log, false);
-        args.put("guestIds", guestIdStream);
-
-        // Convert the JSON returned into a ComplianceStatus object:
-        String json = jsRules.runJsFunction(String.class, "get_status", args);
+        ComplianceStatus status = this.calculateStatus(consumer, ctype, newEntitlements, date,
+            calculateCompliantUntil, calculateProductComplianceDateRanges);
+
         try {
-            ComplianceStatus status = mapper.toObject(json, ComplianceStatus.class);
+            if (currentCompliance) {
+                applyStatus(consumer, status, updateConsumer);
+            }
+
+            return status;
+        }
+        catch (Exception e) {
+            throw new RuleExecutionException(e);
+        }
+    }
+
+    /**
+     * Calculates the compliance status for a consumer on a specific date, without updating the
+     * consumer or its entitlements and without emitting any events. When
+     * {@link #supportsConcurrentCalculation()} returns true, this method may be called from
+     * threads other than the one owning the session, provided the consumer, its entitlements
+     * and their pools are already fully loaded.
+     *
+     * @param consumer Consumer to check.
+     * @param ctype The type of the consumer.
+     * @param newEntitlements Entitlements to consider in addition to the consumer's own.
+     * @param date Date to check compliance status for.
+     * @param calculateCompliantUntil calculate how long the system will remain compliant (expensive)
+     * @param calculateProductComplianceDateRanges calculate the individual compliance ranges for each product
+     *        (also expensive)
+     * @return Compliance status.
+     */
+    public ComplianceStatus calculateStatus(Consumer consumer, ConsumerType ctype,
+        Collection<Entitlement> newEntitlements, Date date, boolean calculateCompliantUntil,
+        boolean calculateProductComplianceDateRanges) {
+
+        if (isComplianceExempt(ctype)) {
+            return new ComplianceStatus(new Date());
+        }
+
+        List<Entitlement> entitlements = new ArrayList<>();
+        if (newEntitlements != null) {
+            entitlements.addAll(newEntitlements);
+        }
+
+        if (consumer.getEntitlements() != null) {
+            entitlements.addAll(consumer.getEntitlements());
+        }
+
+        ComplianceStatus status = this.evaluator.getStatus(consumer, ctype, entitlements, date,
+            calculateCompliantUntil, calculateProductComplianceDateRanges);
 
+        try {
             for (ComplianceReason reason : status.getReasons()) {
                 generator.setMessage(consumer, reason, status.getDate());
             }
 
-            if (currentCompliance) {
-                applyStatus(consumer, status, updateConsumer);
-            }
-
             return status;
         }
         catch (Exception e) {
@@ -201,6 +245,22 @@ public class ComplianceRules {
         }
     }
 
+    /**
+     * @return
+     *  true if {@link #calculateStatus} may be called for several consumers concurrently
+     */
+    public boolean supportsConcurrentCalculation() {
+        return this.evaluator.supportsConcurrentEvaluation();
+    }
+
+    /**
+     * @return
+     *  true if compliance is not calculated for consumers of the given type
+     */
+    public static boolean isComplianceExempt(ConsumerType ctype) {
+        return ctype != null && (ctype.isManifest() || ctype.isType(ConsumerTypeEnum.SHARE));
+    }
+
     public void updateEntsOnStart(Consumer c) {
         for (Entitlement ent : c.getEntitlements()) {
             if (!ent.isUpdatedOnStart() && ent.isValid()) {
@@ -230,45 +290,13 @@ public class ComplianceRules {
         }
     }
 
-    @SuppressWarnings("checkstyle:indentation")
     public boolean isStackCompliant(Consumer consumer, String stackId, List<Entitlement> entsToConsider) {
-        Stream<EntitlementDTO> entStream = entsToConsider == null ? Stream.empty() :
-            entsToConsider.stream()
-                .map(this.translator.getStreamMapper(Entitlement.class, EntitlementDTO.class));
-
-        Stream<GuestIdDTO> guestIdStream = consumer.getGuestIds() == null ? Stream.empty() :
-            consumer.getGuestIds().stream()
-                .map(this.translator.getStreamMapper(GuestId.class, GuestIdDTO.class));
-
-        JsonJsContext args = new JsonJsContext(mapper);
-        args.put("stack_id", stackId);
-        args.put("consumer", this.translator.translate(consumer, ConsumerDTO.class));
-        args.put("entitlements", entStream);
-        args.put("log", log, false);
-        args.put("guestIds", guestIdStream);
-
-        return jsRules.runJsFunction(Boolean.class, "is_stack_compliant", args);
+        return this.evaluator.isStackCompliant(consumer, stackId, entsToConsider);
     }
 
-    @SuppressWarnings("checkstyle:indentation")
     public boolean isEntitlementCompliant(Consumer consumer, Entitlement ent, Date onDate) {
         List<Entitlement> ents = entCurator.listByConsumerAndDate(consumer, onDate).list();
-
-        Stream<EntitlementDTO> entStream = ents == null ? Stream.empty() :
-            ents.stream().map(this.translator.getStreamMapper(Entitlement.class, EntitlementDTO.class));
-
-        Stream<GuestIdDTO> guestIdStream = consumer.getGuestIds() == null ? Stream.empty() :
-            consumer.getGuestIds().stream()
-                .map(this.translator.getStreamMapper(GuestId.class, GuestIdDTO.class));
-
-        JsonJsContext args = new JsonJsContext(mapper);
-        args.put("consumer", this.translator.translate(consumer, ConsumerDTO.class));
-        args.put("entitlement", this.translator.translate(ent, EntitlementDTO.class));
-        args.put("entitlements", entStream);
-        args.put("log", log, false);
-        args.put("guestIds", guestIdStream);
-
-        return jsRules.runJsFunction(Boolean.class, "is_ent_compliant", args);
+        return this.evaluator.isEntitlementCompliant(consumer, ent, ents);
     }
 
     private String getComplianceStatusHash(ComplianceStatus status, Consumer consumer) {
@@ -0,0 +1,120 @@
+/**
+ * Copyright (c) 2009 - 2018 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.policy.js.compliance;
+
+import org.candlepin.dto.ModelTranslator;
+import org.candlepin.dto.rules.v1.ConsumerDTO;
+import org.candlepin.dto.rules.v1.EntitlementDTO;
+import org.candlepin.dto.rules.v1.GuestIdDTO;
+import org.candlepin.model.Consumer;
+import org.candlepin.model.ConsumerType;
+import org.candlepin.model.Entitlement;
+import org.candlepin.model.GuestId;
+import org.candlepin.policy.js.JsRunner;
+import org.candlepin.policy.js.JsonJsContext;
+import org.candlepin.policy.js.RuleExecutionException;
+import org.candlepin.policy.js.RulesObjectMapper;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collection;
+import java.util.Date;
+import java.util.stream.Stream;
+
+
+
+/**
+ * A ComplianceEvaluator which delegates to the compliance namespace of the javascript rules.
+ */
+public class JsComplianceEvaluator implements ComplianceEvaluator {
+    private static Logger log = LoggerFactory.getLogger(ComplianceRules.class);
+
+    private JsRunner jsRules;
+    private RulesObjectMapper mapper;
+    private ModelTranslator translator;
+
+    public JsComplianceEvaluator(JsRunner jsRules, RulesObjectMapper mapper, ModelTranslator translator) {
+        this.jsRules = jsRules;
+        this.mapper = mapper;
+        this.translator = translator;
+
+        jsRules.init("compliance_name_space");
+    }
+
+    @Override
+    public ComplianceStatus getStatus(Consumer consumer, ConsumerType ctype,
+        Collection<Entitlement> entitlements, Date date, boolean calculateCompliantUntil,
+        boolean calculateProductComplianceDateRanges) {
+
+        JsonJsContext args = this.buildContext(consumer, entitlements);
+        args.put("ondate", date);
+        args.put("calculateCompliantUntil", calculateCompliantUntil);
+        args.put("calculateProductComplianceDateRanges", calculateProductComplianceDateRanges);
+
+        // Convert the JSON returned into a ComplianceStatus object:
+        String json = jsRules.runJsFunction(String.class, "get_status", args);
+        try {
+            return mapper.toObject(json, ComplianceStatus.class);
+        }
+        catch (Exception e) {
+            throw new RuleExecutionException(e);
+        }
+    }
+
+    @Override
+    public boolean supportsConcurrentEvaluation() {
+        // Translating the consumer and its entitlements may touch the session, and the rules
+        // scopes are shared per thread; keep the rules on the calling thread.
+        return false;
+    }
+
+    @Override
+    public boolean isStackCompliant(Consumer consumer, String stackId, Collection<Entitlement> entitlements) {
+        JsonJsContext args = this.buildContext(consumer, entitlements);
+        args.put("stack_id", stackId);
+
+        return jsRules.runJsFunction(Boolean.class, "is_stack_compliant", args);
+    }
+
+    @Override
+    public boolean isEntitlementCompliant(Consumer consumer, Entitlement entitlement,
+        Collection<Entitlement> entitlements) {
+
+        JsonJsContext args = this.buildContext(consumer, entitlements);
+        args.put("entitlement", this.translator.translate(entitlement, EntitlementDTO.class));
+
+        return jsRules.runJsFunction(Boolean.class, "is_ent_compliant", args);
+    }
+
+    @SuppressWarnings("checkstyle:indentation")
+    private JsonJsContext buildContext(Consumer consumer, Collection<Entitlement> entitlements) {
+        Stream<EntitlementDTO> entStream = entitlements == null ? Stream.empty() :
+            entitlements.stream()
+                .map(this.translator.getStreamMapper(Entitlement.class, EntitlementDTO.class));
+
+        Stream<GuestIdDTO> guestIdStream = consumer.getGuestIds() == null ? Stream.empty() :
+            consumer.getGuestIds().stream()
+                .map(this.translator.getStreamMapper(GuestId.class, GuestIdDTO.class));
+
+        JsonJsContext args = new JsonJsContext(mapper);
+        args.put("consumer", this.translator.translate(consumer, ConsumerDTO.class));
+        args.put("entitlements", entStream);
+        args.put("log", log, false);
+        args.put("guestIds", guestIdStream);
+
+        return args;
+    }
+}
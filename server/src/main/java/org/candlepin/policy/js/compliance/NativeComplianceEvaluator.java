@@ -0,0 +1,1157 @@
+/**
+ * Copyright (c) 2009 - 2018 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.policy.js.compliance;
+
+import org.candlepin.model.Consumer;
+import org.candlepin.model.ConsumerInstalledProduct;
+import org.candlepin.model.ConsumerType;
+import org.candlepin.model.ConsumerTypeCurator;
+import org.candlepin.model.Entitlement;
+import org.candlepin.model.GuestId;
+import org.candlepin.model.Pool;
+import org.candlepin.model.Product;
+import org.candlepin.util.DateRange;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+
+
+/**
+ * A ComplianceEvaluator which implements the compliance namespace of the javascript rules
+ * natively.
+ *
+ * The calculations performed here must produce the same results as the get_status,
+ * is_stack_compliant and is_ent_compliant rule functions, including the javascript rules'
+ * handling of numeric attribute and fact values. Any change made to the compliance logic of
+ * the rules file must be mirrored here.
+ *
+ * Unlike the rules, this evaluator does not need to serialize the consumer and its entitlements
+ * for every invocation. The consumer facts and the attributes of each entitlement are resolved
+ * once per evaluation, and are then reused for every date checked while calculating the
+ * compliant-until date and product compliance date ranges.
+ *
+ * When provided with an enabled {@link ComplianceCoverageCache}, the coverage calculated for each
+ * stack and entitlement is retained between evaluations, such that only the stacks and
+ * entitlements affected by a change are re-evaluated.
+ */
+public class NativeComplianceEvaluator implements ComplianceEvaluator {
+    private static Logger log = LoggerFactory.getLogger(NativeComplianceEvaluator.class);
+
+    // Consumer fact names
+    private static final String SOCKET_FACT = "cpu.cpu_socket(s)";
+    private static final String RAM_FACT = "memory.memtotal";
+    private static final String CORES_FACT = "cpu.core(s)_per_socket";
+    private static final String ARCH_FACT = "uname.machine";
+    private static final String IS_VIRT_GUEST_FACT = "virt.is_guest";
+    private static final String STORAGE_BAND_USAGE_FACT = "band.storage.usage";
+
+    // Product attribute names
+    private static final String SOCKETS_ATTRIBUTE = Product.Attributes.SOCKETS;
+    private static final String CORES_ATTRIBUTE = Product.Attributes.CORES;
+    private static final String ARCH_ATTRIBUTE = Product.Attributes.ARCHITECTURE;
+    private static final String RAM_ATTRIBUTE = Product.Attributes.RAM;
+    private static final String GUEST_LIMIT_ATTRIBUTE = Product.Attributes.GUEST_LIMIT;
+    private static final String VCPU_ATTRIBUTE = Product.Attributes.VCPU;
+    private static final String STORAGE_BAND_ATTRIBUTE = "storage_band";
+
+    private static final String SYSTEM_TYPE = ConsumerType.ConsumerTypeEnum.SYSTEM.getLabel();
+
+    private static final Map<String, String> ATTRIBUTES_TO_CONSUMER_FACTS;
+    static {
+        Map<String, String> facts = new HashMap<>();
+        facts.put(SOCKETS_ATTRIBUTE, SOCKET_FACT);
+        facts.put(CORES_ATTRIBUTE, CORES_FACT);
+        facts.put(ARCH_ATTRIBUTE, ARCH_FACT);
+        facts.put(RAM_ATTRIBUTE, RAM_FACT);
+        facts.put(VCPU_ATTRIBUTE, CORES_FACT);
+        facts.put(STORAGE_BAND_ATTRIBUTE, STORAGE_BAND_USAGE_FACT);
+
+        ATTRIBUTES_TO_CONSUMER_FACTS = Collections.unmodifiableMap(facts);
+    }
+
+    /** Attributes considered when determining the coverage of a physical consumer */
+    private static final List<String> PHYSICAL_ATTRIBUTES = Collections.unmodifiableList(Arrays.asList(
+        SOCKETS_ATTRIBUTE, CORES_ATTRIBUTE, RAM_ATTRIBUTE, ARCH_ATTRIBUTE, GUEST_LIMIT_ATTRIBUTE,
+        STORAGE_BAND_ATTRIBUTE));
+
+    /** Attributes considered when determining the coverage of a virtual guest */
+    private static final List<String> VIRT_ATTRIBUTES = Collections.unmodifiableList(Arrays.asList(
+        VCPU_ATTRIBUTE, RAM_ATTRIBUTE, ARCH_ATTRIBUTE, GUEST_LIMIT_ATTRIBUTE, STORAGE_BAND_ATTRIBUTE));
+
+    /** All attributes which may be considered when determining coverage */
+    private static final List<String> ALL_ATTRIBUTES = Collections.unmodifiableList(Arrays.asList(
+        SOCKETS_ATTRIBUTE, CORES_ATTRIBUTE, RAM_ATTRIBUTE, ARCH_ATTRIBUTE, GUEST_LIMIT_ATTRIBUTE,
+        STORAGE_BAND_ATTRIBUTE, VCPU_ATTRIBUTE));
+
+    /** Attributes which are not enforced for guests on host-restricted pools */
+    private static final Set<String> UNCHECKED_WHEN_HOST_RESTRICTED = Collections.unmodifiableSet(
+        new HashSet<>(Arrays.asList(RAM_ATTRIBUTE, VCPU_ATTRIBUTE)));
+
+    private ConsumerTypeCurator consumerTypeCurator;
+    private ComplianceCoverageCache coverageCache;
+
+    public NativeComplianceEvaluator(ConsumerTypeCurator consumerTypeCurator) {
+        this(consumerTypeCurator, null);
+    }
+
+    public NativeComplianceEvaluator(ConsumerTypeCurator consumerTypeCurator,
+        ComplianceCoverageCache coverageCache) {
+
+        this.consumerTypeCurator = consumerTypeCurator;
+        this.coverageCache = coverageCache != null && coverageCache.isEnabled() ? coverageCache : null;
+    }
+
+    @Override
+    public ComplianceStatus getStatus(Consumer consumer, ConsumerType ctype,
+        Collection<Entitlement> entitlements, Date date, boolean calculateCompliantUntil,
+        boolean calculateProductComplianceDateRanges) {
+
+        String typeLabel = ctype != null ? ctype.getLabel() : this.getConsumerTypeLabel(consumer);
+        ConsumerView cview = new ConsumerView(consumer, typeLabel);
+        List<EntitlementView> eviews = createViews(entitlements);
+
+        ComplianceStatus status = this.getStatusOnDate(cview, eviews, date.getTime());
+
+        if (calculateCompliantUntil && !eviews.isEmpty() && isCompliant(status)) {
+            status.setCompliantUntil(this.determineCompliantUntilDate(cview, eviews, date.getTime()));
+        }
+
+        if (calculateProductComplianceDateRanges && !eviews.isEmpty() && isPartiallyCompliant(status)) {
+            status.getProductComplianceDateRanges()
+                .putAll(this.getProductComplianceDateRanges(cview, eviews, date.getTime(), status));
+        }
+
+        return status;
+    }
+
+    @Override
+    public boolean supportsConcurrentEvaluation() {
+        return true;
+    }
+
+    @Override
+    public boolean isStackCompliant(Consumer consumer, String stackId, Collection<Entitlement> entitlements) {
+        ConsumerView cview = new ConsumerView(consumer, this.getConsumerTypeLabel(consumer));
+        List<EntitlementView> eviews = createViews(entitlements);
+
+        return this.getStackCoverage(cview, stackId, eviews, getGlobalGuestLimit(eviews)).covered;
+    }
+
+    @Override
+    public boolean isEntitlementCompliant(Consumer consumer, Entitlement entitlement,
+        Collection<Entitlement> entitlements) {
+
+        ConsumerView cview = new ConsumerView(consumer, this.getConsumerTypeLabel(consumer));
+        List<EntitlementView> eviews = createViews(entitlements);
+
+        Coverage coverage = this.getEntitlementCoverage(cview, new EntitlementView(entitlement),
+            getGlobalGuestLimit(eviews));
+
+        return coverage.covered;
+    }
+
+    private String getConsumerTypeLabel(Consumer consumer) {
+        ConsumerType ctype = this.consumerTypeCurator.getConsumerType(consumer);
+        return ctype != null ? ctype.getLabel() : null;
+    }
+
+    private static List<EntitlementView> createViews(Collection<Entitlement> entitlements) {
+        List<EntitlementView> views = new ArrayList<>();
+
+        if (entitlements != null) {
+            for (Entitlement entitlement : entitlements) {
+                views.add(new EntitlementView(entitlement));
+            }
+        }
+
+        return views;
+    }
+
+    /**
+     * Checks the compliance status of the consumer on the given date. Mirrors the
+     * getComplianceStatusOnDate rule function.
+     */
+    private ComplianceStatus getStatusOnDate(ConsumerView consumer, List<EntitlementView> entitlements,
+        long date) {
+
+        log.debug("Checking compliance status for consumer: {} on date: {}", consumer.uuid, date);
+        ComplianceStatus status = new ComplianceStatus(new Date(date));
+
+        List<EntitlementView> entitlementsOnDate = new ArrayList<>();
+        for (EntitlementView entitlement : entitlements) {
+            if (entitlement.startDate <= date && entitlement.endDate >= date) {
+                entitlementsOnDate.add(entitlement);
+            }
+        }
+
+        // The guest limit applies to every stack and entitlement, so it only needs to be
+        // calculated once for this date
+        Double guestLimit = getGlobalGuestLimit(entitlementsOnDate);
+
+        // Track the stacks we've already checked, and the coverage of each entitlement, as the
+        // results will not change for the remainder of this date
+        Set<String> compliantStackIds = new HashSet<>();
+        Set<String> nonCompliantStackIds = new HashSet<>();
+        Map<EntitlementView, Coverage> coverageCache = new IdentityHashMap<>();
+
+        for (EntitlementView entitlement : entitlementsOnDate) {
+            List<String> relevantPids = consumer.findRelevantProductIds(entitlement);
+            boolean partiallyStacked = false;
+
+            // If the pool is stacked, check that the stack requirements are met:
+            if (entitlement.stacked) {
+                String stackId = entitlement.getProductAttribute(Product.Attributes.STACKING_ID);
+
+                if (nonCompliantStackIds.contains(stackId)) {
+                    partiallyStacked = true;
+                    status.addPartialStack(stackId, entitlement.entitlement);
+                }
+                else if (!compliantStackIds.contains(stackId)) {
+                    Coverage stackCoverage = this.getStackCoverage(consumer, stackId, entitlementsOnDate,
+                        guestLimit);
+
+                    if (!stackCoverage.covered) {
+                        partiallyStacked = true;
+                        status.addPartialStack(stackId, entitlement.entitlement);
+                        nonCompliantStackIds.add(stackId);
+                        stackCoverage.addReasonsTo(status);
+                    }
+                    else {
+                        compliantStackIds.add(stackId);
+                    }
+                }
+            }
+
+            // If we have no installed products and the entitlement is partially covered, we want
+            // the system to be partial.
+            if (relevantPids.isEmpty() && !entitlement.stacked) {
+                Coverage coverage = this.getCachedEntitlementCoverage(consumer, entitlement,
+                    guestLimit, coverageCache);
+
+                if (!coverage.covered) {
+                    coverage.addReasonsTo(status);
+                }
+            }
+
+            // If the consumer has an entitlement from a pool marked unmapped_guests_only it can only
+            // hope to be yellow
+            if ("true".equalsIgnoreCase(entitlement.getAttribute(Pool.Attributes.UNMAPPED_GUESTS_ONLY))) {
+                status.getReasons().add(buildReason(ComplianceReason.ReasonKeys.UNMAPPED_GUEST,
+                    ComplianceReason.Attributes.ENTITLEMENT_ID, entitlement.id));
+            }
+
+            for (String pid : relevantPids) {
+                if (partiallyStacked) {
+                    status.addPartiallyCompliantProduct(pid, entitlement.entitlement);
+                    continue;
+                }
+
+                // The coverage of a fully stacked entitlement has no bearing on the product
+                Coverage coverage = entitlement.stacked ? null :
+                    this.getCachedEntitlementCoverage(consumer, entitlement, guestLimit, coverageCache);
+
+                if (coverage != null && !coverage.covered) {
+                    status.addPartiallyCompliantProduct(pid, entitlement.entitlement);
+                    coverage.addReasonsTo(status);
+                }
+                else {
+                    status.addCompliantProduct(pid, entitlement.entitlement);
+                }
+            }
+        }
+
+        // Products provided by a regular entitlement are not considered partially compliant, even
+        // if they're also provided by a partial stack. The stack itself remains in the partial stacks.
+        status.getPartiallyCompliantProducts().keySet()
+            .removeAll(status.getCompliantProducts().keySet());
+
+        // Any installed product we didn't find an entitlement for is not compliant
+        for (String pid : consumer.installedProductIds) {
+            if (!status.getCompliantProducts().containsKey(pid) &&
+                !status.getPartiallyCompliantProducts().containsKey(pid)) {
+
+                status.addNonCompliantProduct(pid);
+                status.getReasons().add(buildReason(ComplianceReason.ReasonKeys.NOT_COVERED,
+                    ComplianceReason.Attributes.PRODUCT_ID, pid));
+            }
+        }
+
+        return status;
+    }
+
+    /**
+     * Determines the date on which the consumer will no longer be compliant, or null if the
+     * consumer remains compliant for the lifetime of its entitlements. Mirrors the
+     * determineCompliantUntilDate rule function.
+     */
+    private Date determineCompliantUntilDate(ConsumerView consumer, List<EntitlementView> entitlements,
+        long startDate) {
+
+        if (consumer.installedProductIds.isEmpty()) {
+            return null;
+        }
+
+        List<EntitlementView> providing = new ArrayList<>();
+        for (EntitlementView entitlement : entitlements) {
+            for (String pid : consumer.installedProductIds) {
+                if (entitlement.provides(pid)) {
+                    providing.add(entitlement);
+                    break;
+                }
+            }
+        }
+
+        long lastDate = startDate;
+        for (long date : getSortedEntitlementDates(providing, false, true)) {
+            // Ignore past dates and duplicates
+            if (date <= lastDate) {
+                continue;
+            }
+
+            // Need to check if we are still compliant after the end date, so we add one second.
+            date += 1000;
+            lastDate = date;
+
+            if (!isCompliant(this.getStatusOnDate(consumer, entitlements, date))) {
+                return new Date(date);
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Calculates the date ranges over which each installed product remains at least as compliant
+     * as it is in the given status. Mirrors the getProductComplianceDateRanges rule function.
+     */
+    private Map<String, DateRange> getProductComplianceDateRanges(ConsumerView consumer,
+        List<EntitlementView> entitlements, long date, ComplianceStatus current) {
+
+        Map<String, Date[]> ranges = new LinkedHashMap<>();
+        for (String pid : consumer.installedProductIds) {
+            if (!current.getNonCompliantProducts().contains(pid)) {
+                ranges.put(pid, new Date[2]);
+            }
+        }
+
+        if (ranges.isEmpty()) {
+            return Collections.emptyMap();
+        }
+
+        long[] dates = getSortedEntitlementDates(entitlements, true, true);
+        int nextDate = -1;
+
+        // Find our next date in the future...
+        for (int i = dates.length - 1; i >= 0; --i) {
+            if (dates[i] <= date) {
+                nextDate = i + 1;
+                break;
+            }
+        }
+
+        // Find start dates
+        int complete = 0;
+        Date lastValidDate = new Date(date);
+        for (int i = nextDate - 1; i >= 0 && complete < ranges.size(); --i) {
+            // Step just past the date to (potentially) move outside the range of the entitlement
+            // from which the date came, so we don't bridge coverage gaps.
+            ComplianceStatus status = this.getStatusOnDate(consumer, entitlements, dates[i] + 1);
+
+            for (Map.Entry<String, Date[]> entry : ranges.entrySet()) {
+                String pid = entry.getKey();
+                Date[] range = entry.getValue();
+
+                if (range[0] == null && (status.getNonCompliantProducts().contains(pid) ||
+                    (isCompliant(current, pid) && !isCompliant(status, pid)) ||
+                    (isPartiallyCompliant(current, pid) && !isPartiallyCompliant(status, pid)))) {
+
+                    range[0] = lastValidDate;
+                    ++complete;
+                }
+            }
+
+            lastValidDate = new Date(dates[i]);
+        }
+
+        // Find end dates
+        complete = 0;
+        for (int i = Math.max(nextDate, 0); i < dates.length && complete < ranges.size(); ++i) {
+            ComplianceStatus status = this.getStatusOnDate(consumer, entitlements, dates[i] + 1);
+
+            for (Map.Entry<String, Date[]> entry : ranges.entrySet()) {
+                String pid = entry.getKey();
+                Date[] range = entry.getValue();
+
+                if (range[1] == null && (status.getNonCompliantProducts().contains(pid) ||
+                    (isCompliant(current, pid) && !isCompliant(status, pid)) ||
+                    (isPartiallyCompliant(current, pid) && !isPartiallyCompliant(status, pid) &&
+                    !isCompliant(status, pid)))) {
+
+                    range[1] = new Date(dates[i]);
+                    ++complete;
+                }
+            }
+        }
+
+        // Products which were valid all the way to the ends of our date ranges use the extremes
+        Map<String, DateRange> output = new HashMap<>();
+        for (Map.Entry<String, Date[]> entry : ranges.entrySet()) {
+            Date[] range = entry.getValue();
+
+            output.put(entry.getKey(), new DateRange(
+                range[0] != null ? range[0] : new Date(dates[0]),
+                range[1] != null ? range[1] : new Date(dates[dates.length - 1])));
+        }
+
+        return output;
+    }
+
+    /**
+     * Fetches the sorted start and/or end dates of the given entitlements. As with the rules,
+     * duplicate dates are retained.
+     */
+    private static long[] getSortedEntitlementDates(List<EntitlementView> entitlements,
+        boolean useStartDates, boolean useEndDates) {
+
+        long[] dates = new long[entitlements.size() * ((useStartDates ? 1 : 0) + (useEndDates ? 1 : 0))];
+        int index = 0;
+
+        for (EntitlementView entitlement : entitlements) {
+            if (useStartDates) {
+                dates[index++] = entitlement.startDate;
+            }
+
+            if (useEndDates) {
+                dates[index++] = entitlement.endDate;
+            }
+        }
+
+        Arrays.sort(dates);
+        return dates;
+    }
+
+    private static boolean isCompliant(ComplianceStatus status) {
+        return status.getNonCompliantProducts().isEmpty() &&
+            status.getPartiallyCompliantProducts().isEmpty();
+    }
+
+    private static boolean isPartiallyCompliant(ComplianceStatus status) {
+        return !status.getCompliantProducts().isEmpty() ||
+            !status.getPartiallyCompliantProducts().isEmpty();
+    }
+
+    private static boolean isCompliant(ComplianceStatus status, String productId) {
+        return status.getCompliantProducts().containsKey(productId);
+    }
+
+    private static boolean isPartiallyCompliant(ComplianceStatus status, String productId) {
+        return status.getPartiallyCompliantProducts().containsKey(productId);
+    }
+
+    /**
+     * Determines the coverage the entitlements of the specified stack provide to the consumer.
+     */
+    private Coverage getStackCoverage(ConsumerView consumer, String stackId,
+        List<EntitlementView> entitlements, Double guestLimit) {
+
+        List<EntitlementView> stacked = new ArrayList<>();
+        List<Object> key = new ArrayList<>();
+        key.add(stackId);
+        key.add(guestLimit);
+
+        for (EntitlementView entitlement : entitlements) {
+            if (entitlement.stacked &&
+                Objects.equals(stackId, entitlement.getProductAttribute(Product.Attributes.STACKING_ID))) {
+
+                stacked.add(entitlement);
+                key.add(entitlement.getKey());
+            }
+        }
+
+        Coverage coverage = this.getCachedCoverage(consumer, key);
+        if (coverage == null) {
+            log.debug("Checking stack compliance for: {}", stackId);
+            ComplianceTracker tracker = new ComplianceTracker(consumer, stackId);
+
+            for (EntitlementView entitlement : stacked) {
+                tracker.updateAccumulatedFromEntitlement(entitlement);
+            }
+
+            coverage = this.getTrackerCoverage(tracker, consumer, guestLimit);
+            this.cacheCoverage(consumer, key, coverage);
+        }
+
+        return coverage;
+    }
+
+    /**
+     * Determines the coverage a single entitlement provides to the consumer.
+     */
+    private Coverage getEntitlementCoverage(ConsumerView consumer, EntitlementView entitlement,
+        Double guestLimit) {
+
+        List<Object> key = Arrays.asList(entitlement.getKey(), guestLimit);
+
+        Coverage coverage = this.getCachedCoverage(consumer, key);
+        if (coverage == null) {
+            ComplianceTracker tracker = new ComplianceTracker(consumer, null);
+            tracker.updateAccumulatedFromEntitlement(entitlement);
+
+            coverage = this.getTrackerCoverage(tracker, consumer, guestLimit);
+            this.cacheCoverage(consumer, key, coverage);
+        }
+
+        return coverage;
+    }
+
+    private Coverage getCachedEntitlementCoverage(ConsumerView consumer, EntitlementView entitlement,
+        Double guestLimit, Map<EntitlementView, Coverage> cache) {
+
+        Coverage coverage = cache.get(entitlement);
+        if (coverage == null) {
+            coverage = this.getEntitlementCoverage(consumer, entitlement, guestLimit);
+            cache.put(entitlement, coverage);
+        }
+
+        return coverage;
+    }
+
+    private Coverage getCachedCoverage(ConsumerView consumer, List<Object> key) {
+        return this.coverageCache != null ?
+            (Coverage) this.coverageCache.get(consumer.uuid, consumer.getKey(), key) :
+            null;
+    }
+
+    private void cacheCoverage(ConsumerView consumer, List<Object> key, Coverage coverage) {
+        if (this.coverageCache != null) {
+            this.coverageCache.put(consumer.uuid, consumer.getKey(), key, coverage);
+        }
+    }
+
+    /**
+     * Checks the values accumulated by the given tracker against the consumer, after applying the
+     * global guest limit provided by all of the consumer's entitlements.
+     */
+    private Coverage getTrackerCoverage(ComplianceTracker tracker, ConsumerView consumer,
+        Double guestLimit) {
+
+        if (tracker.enforces(GUEST_LIMIT_ATTRIBUTE) && consumer.attributes.contains(GUEST_LIMIT_ATTRIBUTE)) {
+            tracker.accumulated.put(GUEST_LIMIT_ATTRIBUTE, guestLimit);
+        }
+
+        Coverage coverage = new Coverage();
+        for (String attribute : consumer.attributes) {
+            if (!tracker.enforces(attribute)) {
+                continue;
+            }
+
+            ComplianceReason reason;
+            switch (attribute) {
+                case ARCH_ATTRIBUTE:
+                    reason = checkArchitecture(tracker, consumer);
+                    break;
+
+                case GUEST_LIMIT_ATTRIBUTE:
+                    reason = checkGuestLimit(tracker, consumer);
+                    break;
+
+                default:
+                    reason = checkQuantity(tracker, attribute, consumer);
+            }
+
+            if (reason != null) {
+                coverage.covered = false;
+                coverage.reasons.add(reason);
+            }
+        }
+
+        return coverage;
+    }
+
+    /**
+     * Calculates the guest limit provided by all of the given entitlements, where -1 is
+     * unlimited. Returns null if none of the entitlements provide a guest limit.
+     */
+    private static Double getGlobalGuestLimit(List<EntitlementView> entitlements) {
+        Double total = null;
+
+        for (EntitlementView entitlement : entitlements) {
+            String value = entitlement.getProductAttribute(GUEST_LIMIT_ATTRIBUTE);
+
+            if (value != null) {
+                if (total == null) {
+                    total = 0.0;
+                }
+
+                double limit = parseInt(value);
+                if (limit == -1) {
+                    return limit;
+                }
+
+                if (limit > total) {
+                    total = limit;
+                }
+            }
+        }
+
+        return total;
+    }
+
+    private static ComplianceReason checkArchitecture(ComplianceTracker tracker, ConsumerView consumer) {
+        @SuppressWarnings("unchecked")
+        List<String> supportedArches = (List<String>) tracker.accumulated.get(ARCH_ATTRIBUTE);
+
+        for (String arches : supportedArches) {
+            if (!architectureMatches(arches, consumer.arch, consumer.typeLabel)) {
+                return tracker.buildReason(ARCH_ATTRIBUTE, consumer.arch, arches);
+            }
+        }
+
+        return null;
+    }
+
+    private static ComplianceReason checkGuestLimit(ComplianceTracker tracker, ConsumerView consumer) {
+        Object consumerValue = consumer.getFact(GUEST_LIMIT_ATTRIBUTE);
+        Object sourceValue = tracker.accumulated.get(GUEST_LIMIT_ATTRIBUTE);
+
+        boolean covered = (sourceValue != null && toNumber(sourceValue) == -1) ||
+            parseInt(sourceValue) >= toNumber(consumerValue);
+
+        return covered ? null : tracker.buildReason(GUEST_LIMIT_ATTRIBUTE, consumerValue, sourceValue);
+    }
+
+    private static ComplianceReason checkQuantity(ComplianceTracker tracker, String attribute,
+        ConsumerView consumer) {
+
+        Object consumerValue = consumer.getFact(attribute);
+        Object sourceValue = tracker.accumulated.get(attribute);
+
+        boolean covered = parseInt(sourceValue) >= toNumber(consumerValue);
+
+        return covered ? null : tracker.buildReason(attribute, consumerValue, sourceValue);
+    }
+
+    private static boolean architectureMatches(String productArches, String consumerArch,
+        String consumerType) {
+
+        // Non-system consumers without an architecture fact can pass this rule regardless what
+        // arch the product requires.
+        if ((consumerArch == null || consumerArch.isEmpty()) && !SYSTEM_TYPE.equals(consumerType)) {
+            return true;
+        }
+
+        List<String> supported = new ArrayList<>(Arrays.asList(productArches.toUpperCase().split(",", -1)));
+
+        // If X86 is supported, add all variants to this list:
+        if (supported.contains("X86")) {
+            supported.addAll(Arrays.asList("I386", "I586", "I686"));
+        }
+
+        return supported.contains("ALL") || (consumerArch != null && !consumerArch.isEmpty() &&
+            supported.contains(consumerArch.toUpperCase()));
+    }
+
+    private static ComplianceReason buildReason(String key, String attribute, String value) {
+        ComplianceReason reason = new ComplianceReason();
+        reason.setKey(key);
+        reason.setMessage(key);
+        reason.getAttributes().put(attribute, value);
+
+        return reason;
+    }
+
+    /**
+     * The coverage provided to a consumer by a stack or entitlement. Instances are not modified
+     * once calculated, and may be shared between evaluations.
+     */
+    private static class Coverage {
+        private boolean covered = true;
+        private List<ComplianceReason> reasons = new ArrayList<>();
+
+        /**
+         * Adds a copy of each reason to the given status. Each addition gets new reason instances,
+         * as the rules build a new set of reasons every time coverage is checked.
+         */
+        public void addReasonsTo(ComplianceStatus status) {
+            for (ComplianceReason reason : this.reasons) {
+                ComplianceReason copy = new ComplianceReason();
+                copy.setKey(reason.getKey());
+                copy.setMessage(reason.getMessage());
+                copy.setAttributes(new HashMap<>(reason.getAttributes()));
+
+                status.getReasons().add(copy);
+            }
+        }
+    }
+
+    /**
+     * The consumer facts and properties used by the compliance calculations, resolved once per
+     * evaluation.
+     */
+    private static class ConsumerView {
+        private final String uuid;
+        private final String typeLabel;
+        private final Map<String, String> facts;
+        private final boolean guest;
+        private final String arch;
+        private final List<String> attributes;
+        private final List<String> installedProductIds;
+        private final int activeGuestCount;
+        private final Map<String, Object> factValues;
+        private List<Object> key;
+
+        public ConsumerView(Consumer consumer, String typeLabel) {
+            this.uuid = consumer.getUuid();
+            this.typeLabel = typeLabel;
+            this.facts = consumer.getFacts() != null ? consumer.getFacts() : Collections.emptyMap();
+            this.guest = "true".equalsIgnoreCase(this.facts.get(IS_VIRT_GUEST_FACT));
+            this.arch = this.facts.get(ARCH_FACT);
+            this.attributes = this.guest ? VIRT_ATTRIBUTES : PHYSICAL_ATTRIBUTES;
+
+            this.installedProductIds = new ArrayList<>();
+            if (consumer.getInstalledProducts() != null) {
+                for (ConsumerInstalledProduct installed : consumer.getInstalledProducts()) {
+                    this.installedProductIds.add(installed.getProductId());
+                }
+            }
+
+            int active = 0;
+            if (consumer.getGuestIds() != null) {
+                for (GuestId guestId : consumer.getGuestIds()) {
+                    Map<String, String> attrs = guestId.getAttributes();
+
+                    if (attrs != null && "libvirt".equals(attrs.get("virtWhoType")) &&
+                        "1".equals(attrs.get("active"))) {
+                        ++active;
+                    }
+                }
+            }
+
+            this.activeGuestCount = active;
+            this.factValues = new HashMap<>();
+        }
+
+        /**
+         * Fetches the value of the consumer fact associated with the given product attribute.
+         * Depending on the attribute, this is either the raw fact value or a calculated number.
+         */
+        public Object getFact(String attribute) {
+            Object value = this.factValues.get(attribute);
+
+            if (value == null) {
+                value = this.calculateFact(attribute);
+                this.factValues.put(attribute, value);
+            }
+
+            return value;
+        }
+
+        private Object calculateFact(String attribute) {
+            switch (attribute) {
+                case RAM_ATTRIBUTE:
+                    // RAM is reported in KB, but products specify it in GB
+                    double ram = parseInt(this.getRawFact(attribute)) / 1024 / 1024;
+                    return Double.isNaN(ram) ? ram : Math.floor(ram + 0.5);
+
+                case CORES_ATTRIBUTE:
+                case VCPU_ATTRIBUTE:
+                    // The consumer reports cores per socket
+                    return toNumber(this.getRawFact(CORES_ATTRIBUTE)) *
+                        toNumber(this.getFact(SOCKETS_ATTRIBUTE));
+
+                case GUEST_LIMIT_ATTRIBUTE:
+                    return (double) this.activeGuestCount;
+
+                default:
+                    return this.getRawFact(attribute);
+            }
+        }
+
+        /**
+         * Builds a key representing every consumer property the coverage calculations depend on.
+         */
+        public List<Object> getKey() {
+            if (this.key == null) {
+                List<Object> key = new ArrayList<>();
+                key.add(this.typeLabel);
+                key.add(this.guest);
+                key.add(this.arch);
+
+                for (String attribute : this.attributes) {
+                    key.add(this.getFact(attribute));
+                }
+
+                this.key = key;
+            }
+
+            return this.key;
+        }
+
+        private Object getRawFact(String attribute) {
+            String value = this.facts.get(ATTRIBUTES_TO_CONSUMER_FACTS.get(attribute));
+            return value != null && !value.isEmpty() ? value : (Object) 1.0;
+        }
+
+        public List<String> findRelevantProductIds(EntitlementView entitlement) {
+            List<String> relevant = new ArrayList<>();
+
+            for (String pid : this.installedProductIds) {
+                if (entitlement.provides(pid)) {
+                    relevant.add(pid);
+                }
+            }
+
+            return relevant;
+        }
+    }
+
+    /**
+     * The pool properties of an entitlement used by the compliance calculations.
+     */
+    private static class EntitlementView {
+        private final Entitlement entitlement;
+        private final String id;
+        private final int quantity;
+        private final long startDate;
+        private final long endDate;
+        private final Map<String, String> attributes;
+        private final Map<String, String> productAttributes;
+        private final String productId;
+        private final Set<String> providedProductIds;
+        private final boolean stacked;
+        private List<Object> key;
+
+        public EntitlementView(Entitlement entitlement) {
+            Pool pool = entitlement.getPool();
+
+            this.entitlement = entitlement;
+            this.id = entitlement.getId();
+            this.quantity = entitlement.getQuantity() != null ? entitlement.getQuantity() : 0;
+            this.startDate = entitlement.getStartDate() != null ? entitlement.getStartDate().getTime() : 0;
+            this.endDate = entitlement.getEndDate() != null ? entitlement.getEndDate().getTime() : 0;
+            this.attributes = pool.getAttributes();
+            this.productAttributes = pool.getProductAttributes() != null ?
+                pool.getProductAttributes() : Collections.emptyMap();
+            this.productId = pool.getProductId();
+
+            this.providedProductIds = new HashSet<>();
+            if (pool.getProvidedProducts() != null) {
+                for (Product product : pool.getProvidedProducts()) {
+                    if (product != null) {
+                        this.providedProductIds.add(product.getId());
+                    }
+                }
+            }
+
+            this.stacked = this.productAttributes.containsKey(Product.Attributes.STACKING_ID);
+        }
+
+        /**
+         * Fetches an attribute from the pool, falling back to the product. As with the rules, an
+         * attribute with a value of "0" is considered to be unset.
+         */
+        public String getAttribute(String name) {
+            String value = findAttributeIn(name, this.attributes);
+            return value != null ? value : findAttributeIn(name, this.productAttributes);
+        }
+
+        /**
+         * Fetches an attribute from the product, falling back to the pool.
+         */
+        public String getProductAttribute(String name) {
+            String value = findAttributeIn(name, this.productAttributes);
+            return value != null ? value : findAttributeIn(name, this.attributes);
+        }
+
+        private static String findAttributeIn(String name, Map<String, String> attributes) {
+            String value = attributes.get(name);
+            return "0".equals(value) ? null : value;
+        }
+
+        /**
+         * Builds a key representing every property of this entitlement the coverage calculations
+         * depend on.
+         */
+        public List<Object> getKey() {
+            if (this.key == null) {
+                List<Object> key = new ArrayList<>();
+                key.add(this.id);
+                key.add(this.quantity);
+                key.add(this.stacked);
+                key.add(this.getAttribute(Pool.Attributes.REQUIRES_HOST));
+                key.add(this.getProductAttribute(Product.Attributes.INSTANCE_MULTIPLIER));
+
+                for (String attribute : ALL_ATTRIBUTES) {
+                    key.add(this.getProductAttribute(attribute));
+                }
+
+                this.key = key;
+            }
+
+            return this.key;
+        }
+
+        public boolean provides(String productId) {
+            return Objects.equals(this.productId, productId) || this.providedProductIds.contains(productId);
+        }
+    }
+
+    /**
+     * Tracks the values accumulated from the entitlements of a stack, or from a single entitlement.
+     */
+    private static class ComplianceTracker {
+        private final ConsumerView consumer;
+        private final boolean stack;
+        private String id;
+        private String hostRestricted;
+        private boolean updated;
+
+        /** Accumulated attribute values; either a Double, a list of arch strings or null */
+        private final Map<String, Object> accumulated = new HashMap<>();
+
+        public ComplianceTracker(ConsumerView consumer, String id) {
+            this.consumer = consumer;
+            this.id = id;
+            this.stack = id != null;
+        }
+
+        /**
+         * Checks whether or not the specified attribute is enforced by this tracker. Guests are not
+         * subject to RAM and VCPU limitations when using a host-restricted pool.
+         */
+        public boolean enforces(String attribute) {
+            if (this.hostRestricted != null && this.consumer.guest &&
+                UNCHECKED_WHEN_HOST_RESTRICTED.contains(attribute)) {
+                return false;
+            }
+
+            return this.accumulated.containsKey(attribute);
+        }
+
+        public void updateAccumulatedFromEntitlement(EntitlementView entitlement) {
+            if (!this.stack && !this.updated) {
+                this.id = entitlement.id;
+            }
+
+            // Like the rules, duplicate entitlements are not filtered out here
+            this.updated = true;
+
+            // If quantity is > 1 but the entitlement is not stacked only calculate compliance
+            // for quantity 1
+            int quantity = !entitlement.stacked && entitlement.quantity > 1 ? 1 : entitlement.quantity;
+            this.updateAccumulatedFromPool(entitlement, quantity);
+        }
+
+        @SuppressWarnings("unchecked")
+        private void updateAccumulatedFromPool(EntitlementView entitlement, int quantity) {
+            String requiresHost = entitlement.getAttribute(Pool.Attributes.REQUIRES_HOST);
+            if (requiresHost != null && !requiresHost.isEmpty()) {
+                this.hostRestricted = requiresHost;
+            }
+
+            for (String attribute : this.consumer.attributes) {
+                String poolValue = entitlement.getProductAttribute(attribute);
+                if (poolValue == null) {
+                    continue;
+                }
+
+                Object stackValue = this.enforces(attribute) ? this.accumulated.get(attribute) : null;
+
+                switch (attribute) {
+                    case ARCH_ATTRIBUTE:
+                        List<String> arches = stackValue != null ?
+                            (List<String>) stackValue : new ArrayList<>();
+
+                        arches.add(poolValue);
+                        this.accumulated.put(attribute, arches);
+                        break;
+
+                    case SOCKETS_ATTRIBUTE:
+                        double increment =
+                            parseInt(entitlement.getProductAttribute(Product.Attributes.INSTANCE_MULTIPLIER));
+
+                        if (Double.isNaN(increment) || increment == 0) {
+                            increment = 1;
+                        }
+
+                        // use lowest quantity evenly divisible by the instance multiplier
+                        double adjusted = quantity - (quantity % increment);
+                        this.accumulated.put(attribute,
+                            toInt32(stackValue) + (parseInt(poolValue) * adjusted) / increment);
+                        break;
+
+                    case GUEST_LIMIT_ATTRIBUTE:
+                        // The value doesn't matter; it just needs to be enforced
+                        this.accumulated.put(attribute, -1.0);
+                        break;
+
+                    default:
+                        this.accumulated.put(attribute, toInt32(stackValue) + parseInt(poolValue) * quantity);
+                }
+            }
+        }
+
+        public ComplianceReason buildReason(String attribute, Object has, Object covered) {
+            ComplianceReason reason = new ComplianceReason();
+            String key = attribute.toUpperCase();
+
+            reason.setKey(key);
+            reason.setMessage(key);
+            reason.getAttributes().put(ComplianceReason.Attributes.PRESENT, toJsString(has));
+            reason.getAttributes().put(ComplianceReason.Attributes.COVERED, toJsString(covered));
+            reason.getAttributes().put(this.stack ? ComplianceReason.Attributes.STACKING_ID :
+                ComplianceReason.Attributes.ENTITLEMENT_ID, this.id);
+
+            return reason;
+        }
+    }
+
+    /*
+     * The rules operate on loosely typed attribute and fact values; the methods below reproduce
+     * the javascript conversions the compliance rules depend on.
+     */
+
+    /**
+     * Converts the given value to a number in the same manner as javascript's parseInt,
+     * returning NaN if the value does not begin with an integer.
+     */
+    private static double parseInt(Object value) {
+        if (value == null) {
+            return Double.NaN;
+        }
+
+        if (value instanceof Double) {
+            double number = (Double) value;
+
+            if (Double.isNaN(number) || Double.isInfinite(number)) {
+                return Double.NaN;
+            }
+
+            return number < 0 ? Math.ceil(number) : Math.floor(number);
+        }
+
+        String str = toJsString(value).trim();
+        int index = 0;
+        boolean negative = false;
+
+        if (index < str.length() && (str.charAt(index) == '-' || str.charAt(index) == '+')) {
+            negative = str.charAt(index++) == '-';
+        }
+
+        int radix = 10;
+        if (str.startsWith("0x", index) || str.startsWith("0X", index)) {
+            radix = 16;
+            index += 2;
+        }
+
+        double result = 0;
+        int start = index;
+        for (; index < str.length(); ++index) {
+            int digit = Character.digit(str.charAt(index), radix);
+            if (digit < 0) {
+                break;
+            }
+
+            result = result * radix + digit;
+        }
+
+        if (index == start) {
+            return Double.NaN;
+        }
+
+        return negative ? -result : result;
+    }
+
+    /**
+     * Converts the given value to a number in the same manner as javascript's implicit numeric
+     * conversion.
+     */
+    private static double toNumber(Object value) {
+        if (value == null) {
+            return 0;
+        }
+
+        if (value instanceof Double) {
+            return (Double) value;
+        }
+
+        String str = toJsString(value).trim();
+        if (str.isEmpty()) {
+            return 0;
+        }
+
+        if (str.matches("[+-]?Infinity")) {
+            return str.charAt(0) == '-' ? Double.NEGATIVE_INFINITY : Double.POSITIVE_INFINITY;
+        }
+
+        if (str.matches("0[xX][0-9a-fA-F]+")) {
+            return parseInt(str);
+        }
+
+        if (str.matches("[+-]?(\\d+\\.?\\d*|\\.\\d+)([eE][+-]?\\d+)?")) {
+            return Double.parseDouble(str);
+        }
+
+        return Double.NaN;
+    }
+
+    /**
+     * Converts the given value to a 32-bit integer in the same manner as javascript's bitwise
+     * operators.
+     */
+    private static double toInt32(Object value) {
+        double number = value instanceof Double ? (Double) value : toNumber(value);
+
+        if (Double.isNaN(number) || Double.isInfinite(number)) {
+            return 0;
+        }
+
+        return (int) (long) number;
+    }
+
+    /**
+     * Converts the given value to the string it would be serialized as by the rules.
+     */
+    private static String toJsString(Object value) {
+        if (value instanceof Double) {
+            double number = (Double) value;
+
+            if (Double.isNaN(number) || Double.isInfinite(number)) {
+                return null;
+            }
+
+            if (number == Math.rint(number) && Math.abs(number) < 1e21) {
+                return Long.toString((long) number);
+            }
+        }
+
+        return value != null ? value.toString() : null;
+    }
+}
@@ -108,7 +108,8 @@ public class AdminResource {
     @Produces({MediaType.APPLICATION_JSON})
     @Path("queues")
     @ApiOperation(
-        notes = "Basic information on the ActiveMQ queues and how many messages are pending in each.",
+        notes = "Basic information on the ActiveMQ queues and how many messages are pending in each. " +
+        "When event batching is enabled, also reports the events waiting to be published.",
         value = "Get Queue Stats")
     public List<QueueStatus> getQueueStats() {
         return sink.getQueueInfo();
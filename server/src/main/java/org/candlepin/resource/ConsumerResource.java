@@ -95,6 +95,7 @@ import org.candlepin.model.activationkeys.ActivationKey;
 import org.candlepin.model.activationkeys.ActivationKeyCurator;
 import org.candlepin.pinsetter.tasks.EntitleByProductsJob;
 import org.candlepin.pinsetter.tasks.EntitlerJob;
+import org.candlepin.policy.js.compliance.ComplianceBatchCalculator;
 import org.candlepin.policy.js.compliance.ComplianceRules;
 import org.candlepin.policy.js.compliance.ComplianceStatus;
 import org.candlepin.policy.js.consumer.ConsumerRules;
@@ -222,6 +223,7 @@ public class ConsumerResource {
     private ConsumerEnricher consumerEnricher;
     private Provider<GuestMigration> migrationProvider;
     private ModelTranslator translator;
+    private ComplianceBatchCalculator complianceBatchCalculator;
 
     @Inject
     @SuppressWarnings({"checkstyle:parameternumber"})
@@ -249,7 +251,8 @@ public class ConsumerResource {
         ConsumerTypeValidator consumerTypeValidator,
         ConsumerEnricher consumerEnricher,
         Provider<GuestMigration> migrationProvider,
-        ModelTranslator translator) {
+        ModelTranslator translator,
+        ComplianceBatchCalculator complianceBatchCalculator) {
 
         this.consumerCurator = consumerCurator;
         this.consumerTypeCurator = consumerTypeCurator;
@@ -289,6 +292,7 @@ public class ConsumerResource {
         this.consumerEnricher = consumerEnricher;
         this.migrationProvider = migrationProvider;
         this.translator = translator;
+        this.complianceBatchCalculator = complianceBatchCalculator;
     }
 
     /**
@@ -1435,6 +1439,11 @@ public class ConsumerResource {
             // since only the facts table will receive the update.
             toUpdate.setUpdated(new Date());
 
+            // Make sure the next hypervisor report for this consumer is fully processed
+            if (toUpdate.getHypervisorId() != null) {
+                toUpdate.getHypervisorId().setReportDigest(null);
+            }
+
             // this should update compliance on toUpdate, but not call the curator
             complianceRules.getStatus(toUpdate, null, false, false);
 
@@ -2757,19 +2766,19 @@ public class ConsumerResource {
         Map<String, ComplianceStatusDTO> results = new HashMap<>();
 
         if (uuids != null && !uuids.isEmpty()) {
-            for (Consumer consumer : consumerCurator.findByUuids(uuids)) {
-                ConsumerType ctype = this.consumerTypeCurator.getConsumerType(consumer);
-                ComplianceStatus status;
+            Map<String, ComplianceStatus> statuses = this.complianceBatchCalculator.getStatus(uuids.stream(),
+                (consumer, ctype) -> {
+                    if (ctype.isType(ConsumerTypeEnum.SHARE)) {
+                        logShareConsumerRequestWarning("fetch compliance", consumer);
+                        return new ComplianceStatus(null);
+                    }
 
-                if (ctype.isType(ConsumerTypeEnum.SHARE)) {
-                    logShareConsumerRequestWarning("fetch compliance", consumer);
-                    status = new ComplianceStatus(null);
-                }
-                else {
-                    status = complianceRules.getStatus(consumer, null);
-                }
+                    return null;
+                });
 
-                results.put(consumer.getUuid(), this.translator.translate(status, ComplianceStatusDTO.class));
+            for (Map.Entry<String, ComplianceStatus> entry : statuses.entrySet()) {
+                results.put(entry.getKey(), this.translator.translate(entry.getValue(),
+                    ComplianceStatusDTO.class));
             }
         }
 
@@ -22,17 +22,21 @@ import org.candlepin.model.CertificateSerial;
 import org.candlepin.model.CertificateSerialCurator;
 import org.candlepin.pki.PKIUtility;
 import org.candlepin.util.CrlFileUtil;
+import org.candlepin.util.EncodedCrl;
 
 import com.google.inject.Inject;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.math.BigInteger;
 import java.security.cert.CRLException;
+import java.util.Date;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 import javax.ws.rs.DELETE;
 import javax.ws.rs.GET;
@@ -40,8 +44,12 @@ import javax.ws.rs.Path;
 import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
 import javax.ws.rs.core.Context;
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Request;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.core.Response.ResponseBuilder;
 
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
@@ -53,6 +61,16 @@ import io.swagger.annotations.Authorization;
 @Path("/crl")
 @Api(value = "crl", authorizations = { @Authorization("basic") })
 public class CrlResource {
+    public static final String PKIX_CRL = "application/pkix-crl";
+    private static final MediaType PKIX_CRL_TYPE = MediaType.valueOf(PKIX_CRL);
+
+    private static final String RANGE = "Range";
+    private static final String IF_RANGE = "If-Range";
+    private static final String CONTENT_RANGE = "Content-Range";
+    private static final String ACCEPT_RANGES = "Accept-Ranges";
+    private static final Pattern BYTE_RANGE = Pattern.compile("^bytes=(\\d{0,18})-(\\d{0,18})$");
+    private static final int PARTIAL_CONTENT = 206;
+    private static final int REQUESTED_RANGE_NOT_SATISFIABLE = 416;
 
     private Configuration config;
     private CrlFileUtil crlFileUtil;
@@ -73,13 +91,17 @@ public class CrlResource {
     @ApiOperation(notes = "Retrieves the Certificate Revocation List", value = "getCurrentCrl", response =
         String.class)
     @GET
-    @Produces(MediaType.TEXT_PLAIN)
-    public Response getCurrentCrl(@Context Principal principal) throws CRLException {
+    @Produces({ MediaType.TEXT_PLAIN, PKIX_CRL })
+    public Response getCurrentCrl(@Context Principal principal, @Context Request request,
+        @Context HttpHeaders headers) throws CRLException {
+
         String filePath = getCrlFilePath();
         File crlFile = new File(filePath);
 
         try {
-            this.crlFileUtil.syncCRLWithDB(crlFile);
+            if (!this.config.getBoolean(ConfigProperties.CRL_SERVE_CACHED, false)) {
+                this.crlFileUtil.syncCRLWithDB(crlFile);
+            }
 
             // Create an empty CRL if we didn't have anything to write
             if (!crlFile.exists() || crlFile.length() < 1) {
@@ -89,13 +111,101 @@ public class CrlResource {
                 );
             }
 
-            return Response.ok().entity(new FileInputStream(crlFile)).build();
+            EncodedCrl crl = this.crlFileUtil.getEncodedCrl(crlFile);
+            boolean der = this.acceptsDer(headers);
+
+            // The two encodings are different entities, so they need distinct strong tags
+            byte[] content = der ? crl.getDer() : crl.getPem();
+            EntityTag tag = new EntityTag(der ? crl.getEntityTag() + "-der" : crl.getEntityTag());
+            Date lastModified = crl.getLastModified();
+
+            if (request != null) {
+                ResponseBuilder builder = request.evaluatePreconditions(lastModified, tag);
+
+                if (builder != null) {
+                    return builder.tag(tag)
+                        .lastModified(lastModified)
+                        .build();
+                }
+            }
+
+            ResponseBuilder builder = this.buildContentResponse(content, tag, headers)
+                .type(der ? PKIX_CRL : MediaType.TEXT_PLAIN)
+                .tag(tag)
+                .lastModified(lastModified)
+                .header(HttpHeaders.VARY, HttpHeaders.ACCEPT)
+                .header(ACCEPT_RANGES, "bytes");
+
+            return builder.build();
         }
         catch (IOException e) {
             throw new IseException(e.getMessage(), e);
         }
     }
 
+    /**
+     * Checks whether the client prefers the DER encoding of the CRL over the default PEM encoding.
+     * DER is only served when requested explicitly.
+     */
+    private boolean acceptsDer(HttpHeaders headers) {
+        if (headers != null && headers.getAcceptableMediaTypes() != null) {
+            // Acceptable types are sorted by preference
+            for (MediaType type : headers.getAcceptableMediaTypes()) {
+                if (PKIX_CRL_TYPE.isCompatible(type) && !type.isWildcardType() &&
+                    !type.isWildcardSubtype()) {
+                    return true;
+                }
+
+                if (MediaType.TEXT_PLAIN_TYPE.isCompatible(type)) {
+                    return false;
+                }
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Builds a response for the given content, honoring a single byte range if one was requested
+     * and the If-Range condition, if any, matches the current entity.
+     */
+    private ResponseBuilder buildContentResponse(byte[] content, EntityTag tag, HttpHeaders headers) {
+        String range = headers != null ? headers.getHeaderString(RANGE) : null;
+        String ifRange = headers != null ? headers.getHeaderString(IF_RANGE) : null;
+
+        if (range != null && (ifRange == null || ifRange.trim().equals(tag.toString()))) {
+            Matcher matcher = BYTE_RANGE.matcher(range.trim());
+
+            // Anything other than a single, well-formed byte range is ignored per RFC 7233
+            if (matcher.matches() && !(matcher.group(1).isEmpty() && matcher.group(2).isEmpty())) {
+                long length = content.length;
+                long start;
+                long end;
+
+                if (matcher.group(1).isEmpty()) {
+                    start = Math.max(0, length - Long.parseLong(matcher.group(2)));
+                    end = length - 1;
+                }
+                else {
+                    start = Long.parseLong(matcher.group(1));
+                    end = matcher.group(2).isEmpty() ? length - 1 :
+                        Math.min(Long.parseLong(matcher.group(2)), length - 1);
+                }
+
+                if (start >= length || start > end) {
+                    return Response.status(REQUESTED_RANGE_NOT_SATISFIABLE)
+                        .header(CONTENT_RANGE, "bytes */" + length);
+                }
+
+                return Response.status(PARTIAL_CONTENT)
+                    .entity(new ByteArrayInputStream(content, (int) start, (int) (end - start + 1)))
+                    .header(CONTENT_RANGE, String.format("bytes %d-%d/%d", start, end, length));
+            }
+        }
+
+        return Response.ok().entity(new ByteArrayInputStream(content));
+    }
+
     @ApiOperation(notes = "Deletes a Certificate from the Revocation List", value = "unrevoke")
     @DELETE
     @Produces(MediaType.APPLICATION_JSON)
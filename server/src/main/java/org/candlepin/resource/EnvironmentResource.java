@@ -35,8 +35,8 @@ import org.candlepin.model.EnvironmentContent;
 import org.candlepin.model.EnvironmentContentCurator;
 import org.candlepin.model.EnvironmentCurator;
 import org.candlepin.model.OwnerContentCurator;
-import org.candlepin.model.OwnerEnvContentAccessCurator;
 import org.candlepin.pinsetter.tasks.RegenEnvEntitlementCertsJob;
+import org.candlepin.service.impl.ContentAccessPayloadRefresher;
 import org.candlepin.util.RdbmsExceptionTranslator;
 import org.candlepin.util.Util;
 
@@ -93,7 +93,7 @@ public class EnvironmentResource {
     private PoolManager poolManager;
     private ConsumerCurator consumerCurator;
     private OwnerContentCurator ownerContentCurator;
-    private OwnerEnvContentAccessCurator ownerEnvContentAccessCurator;
+    private ContentAccessPayloadRefresher payloadRefresher;
     private RdbmsExceptionTranslator rdbmsExceptionTranslator;
     private ModelTranslator translator;
 
@@ -102,7 +102,7 @@ public class EnvironmentResource {
         EnvironmentContentCurator envContentCurator, ConsumerResource consumerResource,
         PoolManager poolManager, ConsumerCurator consumerCurator, OwnerContentCurator ownerContentCurator,
         RdbmsExceptionTranslator rdbmsExceptionTranslator,
-        OwnerEnvContentAccessCurator ownerEnvContentAccessCurator, ModelTranslator translator) {
+        ContentAccessPayloadRefresher payloadRefresher, ModelTranslator translator) {
 
         this.envCurator = envCurator;
         this.i18n = i18n;
@@ -112,7 +112,7 @@ public class EnvironmentResource {
         this.consumerCurator = consumerCurator;
         this.ownerContentCurator = ownerContentCurator;
         this.rdbmsExceptionTranslator = rdbmsExceptionTranslator;
-        this.ownerEnvContentAccessCurator = ownerEnvContentAccessCurator;
+        this.payloadRefresher = payloadRefresher;
         this.translator = translator;
     }
 
@@ -374,7 +374,7 @@ public class EnvironmentResource {
 
     @Transactional
     private void clearContentAccessCerts(Environment env) {
-        ownerEnvContentAccessCurator.removeAllForEnvironment(env.getId());
+        this.payloadRefresher.refreshEnvironment(env);
     }
 
     private Environment lookupEnvironment(String envId) {
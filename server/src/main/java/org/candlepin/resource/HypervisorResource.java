@@ -231,6 +231,10 @@ public class HypervisorResource {
                 guestIdResource.populateEntities(guestIds, hostEntry.getValue());
                 boolean guestIdsUpdated = addGuestIds(consumer, guestIds);
 
+                if (updatedType && consumer.getHypervisorId() != null) {
+                    consumer.getHypervisorId().setReportDigest(null);
+                }
+
                 Date now = new Date();
                 consumerCurator.updateLastCheckin(consumer, now);
                 consumer.setLastCheckin(now);
@@ -15,6 +15,7 @@
 package org.candlepin.resource;
 
 import org.candlepin.auth.Access;
+import org.candlepin.auth.PrincipalCache;
 import org.candlepin.common.exceptions.NotFoundException;
 import org.candlepin.model.Owner;
 import org.candlepin.model.OwnerCurator;
@@ -61,15 +62,17 @@ public class RoleResource {
     private UserServiceAdapter userService;
     private OwnerCurator ownerCurator;
     private PermissionBlueprintCurator permissionCurator;
+    private PrincipalCache principalCache;
     private I18n i18n;
 
     @Inject
     public RoleResource(UserServiceAdapter userService, OwnerCurator ownerCurator,
-        PermissionBlueprintCurator permCurator, I18n i18n) {
+        PermissionBlueprintCurator permCurator, PrincipalCache principalCache, I18n i18n) {
         this.userService = userService;
         this.ownerCurator = ownerCurator;
         this.i18n = i18n;
         this.permissionCurator = permCurator;
+        this.principalCache = principalCache;
     }
 
     @ApiOperation(notes = "Creates a Role", value = "createRole")
@@ -90,6 +93,7 @@ public class RoleResource {
         }
 
         Role r = this.userService.createRole(role);
+        this.principalCache.invalidateUsers();
         return r;
     }
 
@@ -140,6 +144,7 @@ public class RoleResource {
         existingRole.addPermission(permission);
 
         Role r = this.userService.updateRole(existingRole);
+        this.principalCache.invalidateUsers();
         return r;
     }
 
@@ -174,6 +179,7 @@ public class RoleResource {
         Role r = this.userService.updateRole(existingRole);
         toRemove.setOwner(null);
         permissionCurator.delete(toRemove);
+        this.principalCache.invalidateUsers();
         return r;
     }
 
@@ -207,6 +213,7 @@ public class RoleResource {
     @Produces(MediaType.WILDCARD)
     public void deleteRole(@PathParam("role_id") String roleId) {
         this.userService.deleteRole(roleId);
+        this.principalCache.invalidateUsers();
     }
 
     @ApiOperation(notes = "Adds a User to a Role", value = "addUser")
@@ -220,6 +227,7 @@ public class RoleResource {
         Role role = lookupRole(roleId);
         User user = lookupUser(username);
         userService.addUserToRole(role, user);
+        this.principalCache.invalidateUser(username);
         return role;
     }
 
@@ -233,6 +241,7 @@ public class RoleResource {
         Role role = lookupRole(roleId);
         User user = lookupUser(username);
         userService.removeUserFromRole(role, user);
+        this.principalCache.invalidateUser(username);
         return role;
     }
 
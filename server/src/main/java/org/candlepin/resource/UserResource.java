@@ -17,6 +17,7 @@ package org.candlepin.resource;
 
 import org.candlepin.auth.Access;
 import org.candlepin.auth.Principal;
+import org.candlepin.auth.PrincipalCache;
 import org.candlepin.auth.SubResource;
 import org.candlepin.auth.Verify;
 import org.candlepin.dto.ModelTranslator;
@@ -77,16 +78,18 @@ public class UserResource {
     private I18n i18n;
     private OwnerCurator ownerCurator;
     private ModelTranslator modelTranslator;
+    private PrincipalCache principalCache;
 
 
     @Inject
     public UserResource(UserServiceAdapter userService, I18n i18n, OwnerCurator ownerCurator,
-        ModelTranslator modelTranslator) {
+        ModelTranslator modelTranslator, PrincipalCache principalCache) {
 
         this.userService = userService;
         this.i18n = i18n;
         this.ownerCurator = ownerCurator;
         this.modelTranslator = modelTranslator;
+        this.principalCache = principalCache;
     }
 
     /**
@@ -230,7 +233,10 @@ public class UserResource {
             user.setSuperAdmin(dto.isSuperAdmin());
         }
 
-        return this.modelTranslator.translate(userService.updateUser(user), UserDTO.class);
+        User updated = userService.updateUser(user);
+        this.principalCache.invalidateUser(username);
+
+        return this.modelTranslator.translate(updated, UserDTO.class);
     }
 
     @ApiOperation(notes = "Removes a User", value = "deleteUser")
@@ -242,6 +248,7 @@ public class UserResource {
         User user = this.fetchUserByUsername(username);
 
         userService.deleteUser(user);
+        this.principalCache.invalidateUser(username);
     }
 
     @ApiOperation(notes = "Retrieve a list of owners the user can register systems to. " +
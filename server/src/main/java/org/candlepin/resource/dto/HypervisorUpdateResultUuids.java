@@ -29,6 +29,7 @@ import java.util.Set;
  *     updated: List of host consumers UUIDs that have had their guest IDs updated.
  *     unchanged: List of host consumers UUIDs that have not been changed.
  *     failed: a list of strings formated as '{host_virt_id}: Error message'.
+ *     shortCircuited: the number of unchanged hosts recognized from their report digest alone.
  * </pre>
  */
 public class HypervisorUpdateResultUuids implements Serializable {
@@ -39,6 +40,7 @@ public class HypervisorUpdateResultUuids implements Serializable {
     private Set<String> updated;
     private Set<String> unchanged;
     private Set<String> failed;
+    private int shortCircuited;
 
     public HypervisorUpdateResultUuids() {
         this.created = new HashSet<>();
@@ -95,6 +97,17 @@ public class HypervisorUpdateResultUuids implements Serializable {
         this.unchanged.add(uuid);
     }
 
+    /**
+     * Records a host which was found to be unchanged from its report digest, without loading it.
+     *
+     * @param uuid
+     *  the UUID of the host consumer
+     */
+    public void shortCircuited(String uuid) {
+        this.unchanged.add(uuid);
+        this.shortCircuited++;
+    }
+
     public void failed(String hostVirtId, String errorMessage) {
         String error = errorMessage == null ? "" : errorMessage;
         this.failed.add(hostVirtId + ": " + error);
@@ -116,10 +129,15 @@ public class HypervisorUpdateResultUuids implements Serializable {
         return failed;
     }
 
+    public int getShortCircuited() {
+        return shortCircuited;
+    }
+
     @Override
     public String toString() {
         return "Created: " + created.size() + ", Updated: " + updated.size() +
-            ", Unchanged:" + unchanged.size() + ", Failed: " + failed.size();
+            ", Unchanged:" + unchanged.size() + ", Failed: " + failed.size() +
+            ", Short-circuited: " + shortCircuited;
     }
 
 }
@@ -239,6 +239,11 @@ public class GuestMigration {
                 Consumer oldHost = entry.getKey();
                 List<GuestId> transferedGuests = entry.getValue();
                 oldHost.getGuestIds().removeAll(transferedGuests);
+
+                // The old host no longer matches what was last reported for it
+                if (oldHost.getHypervisorId() != null) {
+                    oldHost.getHypervisorId().setReportDigest(null);
+                }
             }
         }
     }
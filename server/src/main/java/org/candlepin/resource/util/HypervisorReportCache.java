@@ -0,0 +1,320 @@
+/**
+ * Copyright (c) 2009 - 2018 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.resource.util;
+
+import org.candlepin.common.config.Configuration;
+import org.candlepin.config.ConfigProperties;
+import org.candlepin.model.Consumer;
+import org.candlepin.model.GuestId;
+import org.candlepin.model.HypervisorId;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+
+import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.lang.StringUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.InflaterInputStream;
+
+
+
+/**
+ * Remembers the last hypervisor report received from each reporter, so that a report identical to
+ * the previous one can be recognized without being parsed.
+ *
+ * For each reporter, the cache retains a digest of the last report along with the digest computed
+ * for each of the hosts in it. A cached report is only a hint: before a report is skipped, the host
+ * digests it lists must still match those stored with the hosts themselves, which are cleared
+ * whenever a host is changed by other means. The number of reporters retained is bounded, with the
+ * least recently used evicted first.
+ */
+@Singleton
+public class HypervisorReportCache {
+
+    /**
+     * The digests of a single report and of each of the hosts it contained.
+     */
+    private static class Report {
+        private final String digest;
+        private final Map<String, String> hostDigests;
+
+        public Report(String digest, Map<String, String> hostDigests) {
+            this.digest = digest;
+            this.hostDigests = hostDigests;
+        }
+    }
+
+    private final boolean enabled;
+    private final Map<String, Report> reports;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    @Inject
+    public HypervisorReportCache(Configuration config) {
+        this(config.getBoolean(ConfigProperties.HYPERVISOR_UPDATE_DIGEST_ENABLED, true),
+            config.getInt(ConfigProperties.HYPERVISOR_REPORT_CACHE_SIZE, 100));
+    }
+
+    public HypervisorReportCache(boolean enabled, final int maxSize) {
+        if (enabled && maxSize < 1) {
+            throw new IllegalArgumentException("maxSize must be a positive integer");
+        }
+
+        this.enabled = enabled;
+        this.reports = Collections.synchronizedMap(new LinkedHashMap<String, Report>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Report> eldest) {
+                return this.size() > maxSize;
+            }
+        });
+    }
+
+    private static MessageDigest createDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        }
+        catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void update(MessageDigest digest, String value) {
+        if (value == null) {
+            digest.update(ByteBuffer.allocate(4).putInt(-1).array());
+        }
+        else {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+
+            digest.update(ByteBuffer.allocate(4).putInt(bytes.length).array());
+            digest.update(bytes);
+        }
+    }
+
+    private static void update(MessageDigest digest, Map<String, String> values) {
+        Map<String, String> sorted = values != null ? new TreeMap<>(values) : Collections.emptyMap();
+
+        digest.update(ByteBuffer.allocate(4).putInt(sorted.size()).array());
+        for (Map.Entry<String, String> entry : sorted.entrySet()) {
+            update(digest, entry.getKey());
+            update(digest, entry.getValue());
+        }
+    }
+
+    /**
+     * Computes a digest of everything a hypervisor report states about a single host: its
+     * hypervisor ID, name, facts and guests, and the reporter which sent it. Guests with empty IDs
+     * are ignored, and neither the order of the guests nor the case of the IDs affect the digest.
+     *
+     * @param host
+     *  the host as reported by the virt fabric
+     *
+     * @param reporterId
+     *  the ID of the reporter, or null if one was not provided
+     *
+     * @return
+     *  the digest of the host
+     */
+    public static String digestHost(Consumer host, String reporterId) {
+        MessageDigest digest = createDigest();
+
+        HypervisorId hypervisorId = host.getHypervisorId();
+        String id = hypervisorId != null ? hypervisorId.getHypervisorId() : null;
+
+        update(digest, id != null ? id.toLowerCase() : null);
+        update(digest, host.getName());
+        update(digest, reporterId);
+        update(digest, host.getFacts());
+
+        Map<String, Map<String, String>> guests = new TreeMap<>();
+        if (host.getGuestIds() != null) {
+            for (GuestId guest : host.getGuestIds()) {
+                if (!StringUtils.isEmpty(guest.getGuestId())) {
+                    guests.put(guest.getGuestId().toLowerCase(), guest.getAttributes());
+                }
+            }
+        }
+
+        digest.update(ByteBuffer.allocate(4).putInt(guests.size()).array());
+        for (Map.Entry<String, Map<String, String>> guest : guests.entrySet()) {
+            update(digest, guest.getKey());
+            update(digest, guest.getValue());
+        }
+
+        return Hex.encodeHexString(digest.digest());
+    }
+
+    /**
+     * Computes a digest of an entire report, as compressed by HypervisorUpdateJob.
+     *
+     * @param data
+     *  the compressed report
+     *
+     * @return
+     *  the digest of the uncompressed report
+     */
+    public static String digestReport(byte[] data) {
+        MessageDigest digest = createDigest();
+
+        try (InputStream in = new InflaterInputStream(new ByteArrayInputStream(data))) {
+            byte[] buffer = new byte[8192];
+            int len;
+
+            while ((len = in.read(buffer)) > 0) {
+                digest.update(buffer, 0, len);
+            }
+        }
+        catch (IOException e) {
+            throw new IllegalArgumentException("Unable to read hypervisor report", e);
+        }
+
+        return Hex.encodeHexString(digest.digest());
+    }
+
+    private static String buildKey(String ownerKey, String reporterId) {
+        return ownerKey + '\0' + reporterId;
+    }
+
+    /**
+     * Checks whether or not reports are cached. When disabled, this cache does not retain any
+     * reports.
+     *
+     * @return
+     *  true if reports are cached; false otherwise
+     */
+    public boolean isEnabled() {
+        return this.enabled;
+    }
+
+    /**
+     * Fetches the host digests of the last report from the given reporter, if that report had the
+     * given digest.
+     *
+     * @param ownerKey
+     *  the key of the owner the report was sent to
+     *
+     * @param reporterId
+     *  the ID of the reporter
+     *
+     * @param reportDigest
+     *  the digest of the report being processed
+     *
+     * @return
+     *  a map of hypervisor IDs to the digest of each host in the report, or null if the last report
+     *  from this reporter is not known or had a different digest
+     */
+    public Map<String, String> get(String ownerKey, String reporterId, String reportDigest) {
+        if (!this.enabled || ownerKey == null || reporterId == null || reportDigest == null) {
+            return null;
+        }
+
+        Report report = this.reports.get(buildKey(ownerKey, reporterId));
+
+        if (report != null && report.digest.equals(reportDigest)) {
+            this.hits.incrementAndGet();
+            return report.hostDigests;
+        }
+
+        this.misses.incrementAndGet();
+        return null;
+    }
+
+    /**
+     * Stores the digests of the last report from the given reporter, replacing any report
+     * previously stored for it.
+     *
+     * @param ownerKey
+     *  the key of the owner the report was sent to
+     *
+     * @param reporterId
+     *  the ID of the reporter
+     *
+     * @param reportDigest
+     *  the digest of the report
+     *
+     * @param hostDigests
+     *  a map of hypervisor IDs to the digest of each host in the report
+     */
+    public void put(String ownerKey, String reporterId, String reportDigest,
+        Map<String, String> hostDigests) {
+
+        if (!this.enabled || ownerKey == null || reporterId == null || reportDigest == null ||
+            hostDigests == null) {
+            return;
+        }
+
+        Report report = new Report(reportDigest, Collections.unmodifiableMap(new HashMap<>(hostDigests)));
+        this.reports.put(buildKey(ownerKey, reporterId), report);
+    }
+
+    /**
+     * Discards the report stored for the given reporter, if any.
+     *
+     * @param ownerKey
+     *  the key of the owner the report was sent to
+     *
+     * @param reporterId
+     *  the ID of the reporter
+     */
+    public void remove(String ownerKey, String reporterId) {
+        if (ownerKey != null && reporterId != null) {
+            this.reports.remove(buildKey(ownerKey, reporterId));
+        }
+    }
+
+    /**
+     * Discards all retained reports.
+     */
+    public void clear() {
+        this.reports.clear();
+    }
+
+    /**
+     * @return
+     *  the number of reporters whose last report is currently retained
+     */
+    public int getSize() {
+        return this.reports.size();
+    }
+
+    /**
+     * @return
+     *  the number of lookups which found a matching report
+     */
+    public long getHits() {
+        return this.hits.get();
+    }
+
+    /**
+     * @return
+     *  the number of lookups which did not find a matching report
+     */
+    public long getMisses() {
+        return this.misses.get();
+    }
+}
@@ -14,6 +14,7 @@
  */
 package org.candlepin.resteasy.filter;
 
+import org.candlepin.common.exceptions.BadRequestException;
 import org.candlepin.common.paging.Page;
 import org.candlepin.common.paging.PageRequest;
 import org.candlepin.model.AbstractHibernateObject;
@@ -50,7 +51,8 @@ import javax.ws.rs.core.StreamingOutput;
 
 /**
  * The CandlepinQueryInterceptor handles the streaming of a query and applies any paging
- * configuration.
+ * configuration. Requests carrying a page token are paged using keyset paging, and requests
+ * which opt out of counting are paged without fetching the total number of records.
  */
 @javax.ws.rs.ext.Provider
 @ServerInterceptor
@@ -107,23 +109,47 @@ public class CandlepinQueryInterceptor implements PostProcessInterceptor {
                     pageRequest.getOrder() :
                     PageRequest.DEFAULT_ORDER;
 
-                query.addOrder(order == PageRequest.Order.DESCENDING ?
-                    Order.desc(sortField) :
-                    Order.asc(sortField)
-                );
+                if (pageRequest.isKeyset()) {
+                    // Keyset paging seeks directly to the start of the page, and fetches just
+                    // enough of the following page to build its token instead of counting rows.
+                    try {
+                        query.seek(sortField, order == PageRequest.Order.DESCENDING,
+                            pageRequest.getPageToken());
+                    }
+                    catch (IllegalArgumentException e) {
+                        session.close();
+                        throw new BadRequestException(e.getMessage(), e);
+                    }
 
-                if (pageRequest.isPaging()) {
-                    query.setFirstResult((pageRequest.getPage() - 1) * pageRequest.getPerPage());
                     query.setMaxResults(pageRequest.getPerPage());
 
-                    // Create a page object for the link header response
                     Page page = new Page();
-                    page.setMaxRecords(query.getRowCount()); // This is expensive :(
+                    page.setNextPageToken(query.getNextSeekToken(pageRequest.getPerPage()));
                     page.setPageRequest(pageRequest);
-                    // Note: we don't need to store the page data in the page
 
                     ResteasyProviderFactory.pushContext(Page.class, page);
                 }
+                else {
+                    query.addOrder(order == PageRequest.Order.DESCENDING ?
+                        Order.desc(sortField) :
+                        Order.asc(sortField)
+                    );
+
+                    if (pageRequest.isPaging()) {
+                        query.setFirstResult((pageRequest.getPage() - 1) * pageRequest.getPerPage());
+                        query.setMaxResults(pageRequest.getPerPage());
+
+                        // Create a page object for the link header response
+                        Page page = new Page();
+                        if (pageRequest.isCounting()) {
+                            page.setMaxRecords(query.getRowCount()); // This is expensive :(
+                        }
+                        page.setPageRequest(pageRequest);
+                        // Note: we don't need to store the page data in the page
+
+                        ResteasyProviderFactory.pushContext(Page.class, page);
+                    }
+                }
             }
 
             // Set the output streamer that will stream our query result
@@ -17,12 +17,13 @@ package org.candlepin.resteasy.filter;
 import org.candlepin.auth.ConsumerPrincipal;
 import org.candlepin.auth.Principal;
 import org.candlepin.auth.UpdateConsumerCheckIn;
-import org.candlepin.model.ConsumerCurator;
+import org.candlepin.model.ConsumerCheckInBuffer;
 
 import org.jboss.resteasy.spi.ResteasyProviderFactory;
 
 import java.io.IOException;
 import java.lang.reflect.Method;
+import java.util.Date;
 
 import javax.annotation.Priority;
 import javax.inject.Inject;
@@ -39,11 +40,11 @@ import javax.ws.rs.ext.Provider;
 @Priority(Priorities.USER)
 @Provider
 public class ConsumerCheckInFilter implements ContainerRequestFilter {
-    private final ConsumerCurator consumerCurator;
+    private final ConsumerCheckInBuffer checkInBuffer;
 
     @Inject
-    public ConsumerCheckInFilter(ConsumerCurator consumerCurator) {
-        this.consumerCurator = consumerCurator;
+    public ConsumerCheckInFilter(ConsumerCheckInBuffer checkInBuffer) {
+        this.checkInBuffer = checkInBuffer;
     }
 
     @Override
@@ -55,7 +56,7 @@ public class ConsumerCheckInFilter implements ContainerRequestFilter {
         if (principal instanceof ConsumerPrincipal &&
             method.getAnnotation(UpdateConsumerCheckIn.class) != null) {
             ConsumerPrincipal p = (ConsumerPrincipal) principal;
-            consumerCurator.updateLastCheckin(p.getConsumer());
+            checkInBuffer.checkIn(p.getConsumer(), new Date());
         }
     }
 }
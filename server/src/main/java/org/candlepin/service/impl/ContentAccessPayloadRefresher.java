@@ -0,0 +1,422 @@
+/**
+ * Copyright (c) 2009 - 2018 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.service.impl;
+
+import org.candlepin.common.config.Configuration;
+import org.candlepin.config.ConfigProperties;
+import org.candlepin.model.Environment;
+import org.candlepin.model.Owner;
+import org.candlepin.model.OwnerEnvContentAccess;
+import org.candlepin.model.OwnerEnvContentAccessCurator;
+import org.candlepin.service.ContentAccessCertServiceAdapter;
+
+import com.google.inject.Inject;
+import com.google.inject.Provider;
+import com.google.inject.Singleton;
+import com.google.inject.persist.Transactional;
+import com.google.inject.persist.UnitOfWork;
+
+import org.hibernate.engine.spi.SessionImplementor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+import javax.persistence.EntityManager;
+
+
+
+/**
+ * Maintains the content access payloads (OwnerEnvContentAccess) served with content access
+ * certificates.
+ *
+ * Once started, payloads affected by a content or environment change are regenerated on a
+ * background thread after the change is committed, and clients continue to receive the previous
+ * payload until its replacement is ready. A change made while a regeneration is already queued
+ * for the same owner or environment does not queue another. When background refresh is disabled
+ * or not started, affected payloads are discarded instead, and rebuilt on the next request.
+ *
+ * Payloads which do not exist yet are built by the first request needing them. Requests arriving
+ * while that payload is being built wait for, and share, its result rather than building it again.
+ */
+@Singleton
+public class ContentAccessPayloadRefresher {
+    private static Logger log = LoggerFactory.getLogger(ContentAccessPayloadRefresher.class);
+
+    private final Provider<DefaultContentAccessCertServiceAdapter> adapterProvider;
+    private final OwnerEnvContentAccessCurator ownerEnvContentAccessCurator;
+    private final Provider<EntityManager> entityManagerProvider;
+    private final UnitOfWork unitOfWork;
+    private final boolean enabled;
+
+    private final Set<String> queuedOwners = ConcurrentHashMap.newKeySet();
+    private final Set<String> queuedEnvironments = ConcurrentHashMap.newKeySet();
+    private final Map<String, CompletableFuture<String>> building = new ConcurrentHashMap<>();
+    private volatile ExecutorService executor;
+
+    private final AtomicLong built = new AtomicLong();
+    private final AtomicLong shared = new AtomicLong();
+    private final AtomicLong regenerated = new AtomicLong();
+
+    @Inject
+    public ContentAccessPayloadRefresher(Provider<DefaultContentAccessCertServiceAdapter> adapterProvider,
+        OwnerEnvContentAccessCurator ownerEnvContentAccessCurator,
+        Provider<EntityManager> entityManagerProvider, UnitOfWork unitOfWork, Configuration config) {
+
+        this(adapterProvider, ownerEnvContentAccessCurator, entityManagerProvider, unitOfWork,
+            config.getBoolean(ConfigProperties.CONTENT_ACCESS_BACKGROUND_REFRESH, true));
+    }
+
+    public ContentAccessPayloadRefresher(Provider<DefaultContentAccessCertServiceAdapter> adapterProvider,
+        OwnerEnvContentAccessCurator ownerEnvContentAccessCurator,
+        Provider<EntityManager> entityManagerProvider, UnitOfWork unitOfWork, boolean enabled) {
+
+        this.adapterProvider = adapterProvider;
+        this.ownerEnvContentAccessCurator = ownerEnvContentAccessCurator;
+        this.entityManagerProvider = entityManagerProvider;
+        this.unitOfWork = unitOfWork;
+        this.enabled = enabled;
+    }
+
+    /**
+     * Checks whether or not payloads are regenerated in the background.
+     *
+     * @return
+     *  true if background refresh is enabled; false otherwise
+     */
+    public boolean isEnabled() {
+        return this.enabled;
+    }
+
+    /**
+     * Starts regenerating payloads in the background. Does nothing if background refresh is
+     * disabled or already started.
+     */
+    public synchronized void start() {
+        if (!this.enabled || this.executor != null) {
+            return;
+        }
+
+        log.info("Starting content access payload refresher");
+
+        this.executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "content-access-refresher");
+            thread.setDaemon(true);
+
+            return thread;
+        });
+    }
+
+    /**
+     * Stops regenerating payloads in the background, waiting briefly for a regeneration in
+     * progress to complete. Payloads affected by later changes are discarded instead.
+     */
+    public void shutdown() {
+        ExecutorService executor;
+
+        synchronized (this) {
+            executor = this.executor;
+            this.executor = null;
+        }
+
+        if (executor != null) {
+            log.info("Stopping content access payload refresher; payloads built: {}, shared: {}, " +
+                "regenerated: {}", this.getBuildCount(), this.getSharedCount(), this.getRegeneratedCount());
+
+            executor.shutdown();
+
+            try {
+                if (!executor.awaitTermination(30, TimeUnit.SECONDS)) {
+                    log.warn("Timed out waiting for content access payload regeneration to complete");
+                }
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Fetches the content access payload of the given owner and environment, building and storing
+     * it if it does not yet exist.
+     *
+     * @param owner
+     *  the owner for which to fetch the payload
+     *
+     * @param environment
+     *  the environment for which to fetch the payload, or null for the owner's payload
+     *
+     * @throws IOException
+     *  if the payload must be built and cannot be
+     *
+     * @return
+     *  the content access payload of the owner and environment
+     */
+    public OwnerEnvContentAccess getContentAccess(Owner owner, Environment environment)
+        throws IOException {
+
+        String environmentId = environment != null ? environment.getId() : null;
+        OwnerEnvContentAccess oeca = this.ownerEnvContentAccessCurator
+            .getContentAccess(owner.getId(), environmentId);
+
+        if (oeca != null) {
+            return oeca;
+        }
+
+        String key = owner.getId() + ":" + (environmentId != null ? environmentId : "");
+
+        CompletableFuture<String> future = new CompletableFuture<>();
+        CompletableFuture<String> existing = this.building.putIfAbsent(key, future);
+
+        if (existing != null) {
+            // Someone else is already building this payload; the stored copy is theirs to create
+            this.shared.incrementAndGet();
+            return new OwnerEnvContentAccess(owner, environment, this.await(existing));
+        }
+
+        try {
+            String contentJson = this.adapterProvider.get().createPayloadAndSignature(owner, environment);
+
+            oeca = new OwnerEnvContentAccess(owner, environment, contentJson);
+            this.ownerEnvContentAccessCurator.saveOrUpdate(oeca);
+            this.built.incrementAndGet();
+
+            future.complete(contentJson);
+        }
+        catch (IOException | RuntimeException e) {
+            future.completeExceptionally(e);
+            this.building.remove(key, future);
+
+            throw e;
+        }
+
+        // Continue sharing the payload until the stored copy is visible to other transactions
+        this.afterCompletion(success -> this.building.remove(key, future));
+
+        return oeca;
+    }
+
+    private String await(CompletableFuture<String> future) throws IOException {
+        try {
+            return future.get();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for content access payload", e);
+        }
+        catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+
+            throw new IOException("Unable to build content access payload", e.getCause());
+        }
+    }
+
+    /**
+     * Refreshes the content access payloads of the given owner and all of its environments
+     * following a change to the owner's content or content access mode.
+     *
+     * @param owner
+     *  the owner for which to refresh content access payloads
+     */
+    public void refreshOwner(Owner owner) {
+        String ownerId = owner.getId();
+
+        if (this.executor == null) {
+            this.ownerEnvContentAccessCurator.removeAllForOwner(ownerId);
+            return;
+        }
+
+        this.afterCompletion(success -> {
+            if (success) {
+                this.queue(this.queuedOwners, ownerId, () -> this.regenerateOwner(ownerId));
+            }
+        });
+    }
+
+    /**
+     * Refreshes the content access payload of the given environment following a change to the
+     * content promoted to it.
+     *
+     * @param environment
+     *  the environment for which to refresh content access payloads
+     */
+    public void refreshEnvironment(Environment environment) {
+        String environmentId = environment.getId();
+
+        if (this.executor == null) {
+            this.ownerEnvContentAccessCurator.removeAllForEnvironment(environmentId);
+            return;
+        }
+
+        this.afterCompletion(success -> {
+            if (success) {
+                this.queue(this.queuedEnvironments, environmentId,
+                    () -> this.regenerateEnvironment(environmentId));
+            }
+        });
+    }
+
+    /**
+     * Performs the given action once the current transaction completes, or immediately if there
+     * is no active transaction.
+     */
+    private void afterCompletion(Consumer<Boolean> action) {
+        EntityManager entityManager = this.entityManagerProvider.get();
+
+        if (entityManager.getTransaction().isActive()) {
+            entityManager.unwrap(SessionImplementor.class)
+                .getActionQueue()
+                .registerProcess((success, session) -> action.accept(success));
+        }
+        else {
+            action.accept(true);
+        }
+    }
+
+    private void queue(Set<String> queued, String key, RegenerationTask task) {
+        ExecutorService executor = this.executor;
+
+        if (executor == null || !queued.add(key)) {
+            return;
+        }
+
+        try {
+            executor.execute(() -> {
+                // Changes arriving from this point on need another regeneration
+                queued.remove(key);
+
+                boolean startedUow = false;
+
+                try {
+                    this.unitOfWork.begin();
+                    startedUow = true;
+
+                    task.run();
+
+                    log.debug("Regenerated content access payloads for: {}; payloads built: {}, " +
+                        "shared: {}, regenerated: {}", key, this.getBuildCount(), this.getSharedCount(),
+                        this.getRegeneratedCount());
+                }
+                catch (Exception e) {
+                    log.error("Unable to regenerate content access payloads for: {}", key, e);
+                }
+                finally {
+                    if (startedUow) {
+                        this.unitOfWork.end();
+                    }
+                }
+            });
+        }
+        catch (RejectedExecutionException e) {
+            queued.remove(key);
+            log.warn("Content access payload refresher is shut down; not regenerating: {}", key);
+        }
+    }
+
+    /**
+     * A regeneration to be performed by the background thread.
+     */
+    private interface RegenerationTask {
+        void run() throws IOException;
+    }
+
+    /**
+     * Regenerates the stored content access payloads of the given owner and its environments.
+     *
+     * @param ownerId
+     *  the ID of the owner for which to regenerate content access payloads
+     *
+     * @throws IOException
+     *  if a payload cannot be regenerated
+     */
+    @Transactional
+    public void regenerateOwner(String ownerId) throws IOException {
+        this.regenerate(this.ownerEnvContentAccessCurator.listForOwner(ownerId));
+    }
+
+    /**
+     * Regenerates the stored content access payload of the given environment.
+     *
+     * @param environmentId
+     *  the ID of the environment for which to regenerate content access payloads
+     *
+     * @throws IOException
+     *  if a payload cannot be regenerated
+     */
+    @Transactional
+    public void regenerateEnvironment(String environmentId) throws IOException {
+        this.regenerate(this.ownerEnvContentAccessCurator.listForEnvironment(environmentId));
+    }
+
+    private void regenerate(List<OwnerEnvContentAccess> payloads) throws IOException {
+        DefaultContentAccessCertServiceAdapter adapter = this.adapterProvider.get();
+
+        for (OwnerEnvContentAccess oeca : payloads) {
+            Owner owner = oeca.getOwner();
+
+            // Payloads are only served to owners using org-environment content access
+            if (!ContentAccessCertServiceAdapter.ORG_ENV_ACCESS_MODE.equals(owner.getContentAccessMode())) {
+                this.ownerEnvContentAccessCurator.delete(oeca);
+                continue;
+            }
+
+            oeca.setContentJson(adapter.createPayloadAndSignature(owner, oeca.getEnvironment()));
+            this.ownerEnvContentAccessCurator.merge(oeca);
+            this.regenerated.incrementAndGet();
+        }
+    }
+
+    /**
+     * @return
+     *  the number of payloads built by the request needing them
+     */
+    public long getBuildCount() {
+        return this.built.get();
+    }
+
+    /**
+     * @return
+     *  the number of requests which shared a payload being built by another request
+     */
+    public long getSharedCount() {
+        return this.shared.get();
+    }
+
+    /**
+     * @return
+     *  the number of payloads regenerated in the background
+     */
+    public long getRegeneratedCount() {
+        return this.regenerated.get();
+    }
+}
@@ -84,6 +84,7 @@ public class DefaultContentAccessCertServiceAdapter implements ContentAccessCert
     private ConsumerCurator consumerCurator;
     private ConsumerTypeCurator consumerTypeCurator;
     private EnvironmentCurator environmentCurator;
+    private ContentAccessPayloadRefresher payloadRefresher;
 
 
     @Inject
@@ -97,7 +98,8 @@ public class DefaultContentAccessCertServiceAdapter implements ContentAccessCert
         OwnerEnvContentAccessCurator ownerEnvContentAccessCurator,
         ConsumerCurator consumerCurator,
         ConsumerTypeCurator consumerTypeCurator,
-        EnvironmentCurator environmentCurator) {
+        EnvironmentCurator environmentCurator,
+        ContentAccessPayloadRefresher payloadRefresher) {
 
         this.pki = pki;
         this.contentAccessCertificateCurator = contentAccessCertificateCurator;
@@ -110,6 +112,7 @@ public class DefaultContentAccessCertServiceAdapter implements ContentAccessCert
         this.consumerCurator = consumerCurator;
         this.consumerTypeCurator = consumerTypeCurator;
         this.environmentCurator = environmentCurator;
+        this.payloadRefresher = payloadRefresher;
     }
 
     @Transactional
@@ -172,13 +175,7 @@ public class DefaultContentAccessCertServiceAdapter implements ContentAccessCert
 
         Environment env = this.environmentCurator.getConsumerEnvironment(consumer);
         // we need to see if this is newer than the previous result
-        OwnerEnvContentAccess oeca = ownerEnvContentAccessCurator.getContentAccess(owner.getId(),
-            env == null ? null : env.getId());
-        if (oeca == null) {
-            String contentJson = createPayloadAndSignature(owner, env);
-            oeca = new OwnerEnvContentAccess(owner, env, contentJson);
-            ownerEnvContentAccessCurator.saveOrUpdate(oeca);
-        }
+        OwnerEnvContentAccess oeca = this.payloadRefresher.getContentAccess(owner, env);
         pem += oeca.getContentJson();
 
         result.setCert(pem);
@@ -45,6 +45,7 @@ import org.candlepin.service.BaseEntitlementCertServiceAdapter;
 import org.candlepin.util.CertificateSizeException;
 import org.candlepin.util.OIDUtil;
 import org.candlepin.util.Util;
+import org.candlepin.util.WorkerPool;
 import org.candlepin.util.X509ExtensionUtil;
 import org.candlepin.util.X509Util;
 import org.candlepin.util.X509V3ExtensionUtil;
@@ -64,15 +65,19 @@ import java.net.URLEncoder;
 import java.security.GeneralSecurityException;
 import java.security.KeyPair;
 import java.security.cert.X509Certificate;
+import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
 
 /**
  * DefaultEntitlementCertServiceAdapter
@@ -80,6 +85,45 @@ import java.util.Set;
 public class DefaultEntitlementCertServiceAdapter extends BaseEntitlementCertServiceAdapter {
     private static Logger log = LoggerFactory.getLogger(DefaultEntitlementCertServiceAdapter.class);
 
+    /**
+     * Everything needed to sign a single X509 certificate.
+     */
+    private static class X509CertificateData {
+        private final String dn;
+        private final Set<X509ExtensionWrapper> extensions;
+        private final Set<X509ByteExtensionWrapper> byteExtensions;
+        private final Date startDate;
+        private final Date endDate;
+        private final KeyPair keyPair;
+        private final BigInteger serialNumber;
+
+        public X509CertificateData(String dn, Set<X509ExtensionWrapper> extensions,
+            Set<X509ByteExtensionWrapper> byteExtensions, Date startDate, Date endDate, KeyPair keyPair,
+            BigInteger serialNumber) {
+
+            this.dn = dn;
+            this.extensions = extensions;
+            this.byteExtensions = byteExtensions;
+            this.startDate = startDate;
+            this.endDate = endDate;
+            this.keyPair = keyPair;
+            this.serialNumber = serialNumber;
+        }
+    }
+
+    /**
+     * A prepared entitlement certificate, along with its v3 entitlement data payload, if any.
+     */
+    private static class EntitlementCertData {
+        private final X509CertificateData x509Data;
+        private final byte[] payloadBytes;
+
+        public EntitlementCertData(X509CertificateData x509Data, byte[] payloadBytes) {
+            this.x509Data = x509Data;
+            this.payloadBytes = payloadBytes;
+        }
+    }
+
     private PKIUtility pki;
     private X509ExtensionUtil extensionUtil;
     private X509V3ExtensionUtil v3extensionUtil;
@@ -92,6 +136,8 @@ public class DefaultEntitlementCertServiceAdapter extends BaseEntitlementCertSer
     private ProductCurator productCurator;
     private ConsumerTypeCurator consumerTypeCurator;
     private EnvironmentCurator environmentCurator;
+    private WorkerPool workerPool;
+    private int generationThreads;
 
     @Inject
     public DefaultEntitlementCertServiceAdapter(PKIUtility pki,
@@ -105,7 +151,8 @@ public class DefaultEntitlementCertServiceAdapter extends BaseEntitlementCertSer
         Configuration config,
         ProductCurator productCurator,
         ConsumerTypeCurator consumerTypeCurator,
-        EnvironmentCurator environmentCurator) {
+        EnvironmentCurator environmentCurator,
+        WorkerPool workerPool) {
 
         this.pki = pki;
         this.extensionUtil = extensionUtil;
@@ -120,6 +167,9 @@ public class DefaultEntitlementCertServiceAdapter extends BaseEntitlementCertSer
         this.productCurator = productCurator;
         this.consumerTypeCurator = consumerTypeCurator;
         this.environmentCurator = environmentCurator;
+        this.workerPool = workerPool;
+        this.generationThreads = Math.max(1,
+            config.getInt(ConfigProperties.ENTITLEMENT_CERT_GENERATION_THREADS, 4));
     }
 
 
@@ -170,6 +220,23 @@ public class DefaultEntitlementCertServiceAdapter extends BaseEntitlementCertSer
         KeyPair keyPair, boolean useContentPrefix)
         throws GeneralSecurityException, IOException {
 
+        X509CertificateData data = this.prepareX509Certificate(consumer, owner, pool, ent, product,
+            products, productModels, serialNumber, keyPair, useContentPrefix, shouldGenerateV3(consumer));
+
+        return this.signX509Certificate(data);
+    }
+
+    /**
+     * Gathers everything needed to build the X509 certificate for the given entitlement, without
+     * signing it. Anything requiring database access happens here, so the resulting data can be
+     * signed safely on another thread.
+     */
+    private X509CertificateData prepareX509Certificate(Consumer consumer, Owner owner, Pool pool,
+        Entitlement ent, Product product, Set<Product> products,
+        List<org.candlepin.model.dto.Product> productModels, BigInteger serialNumber,
+        KeyPair keyPair, boolean useContentPrefix, boolean generateV3)
+        throws IOException {
+
         // oidutil is busted at the moment, so do this manually
         Set<X509ExtensionWrapper> extensions;
         Set<X509ByteExtensionWrapper> byteExtensions = new LinkedHashSet<>();
@@ -178,7 +245,7 @@ public class DefaultEntitlementCertServiceAdapter extends BaseEntitlementCertSer
         Map<String, EnvironmentContent> promotedContent = getPromotedContent(consumer);
         String contentPrefix = getContentPrefix(consumer, owner, useContentPrefix);
 
-        if (shouldGenerateV3(consumer)) {
+        if (generateV3) {
             extensions = prepareV3Extensions();
             byteExtensions = prepareV3ByteExtensions(product, productModels, contentPrefix, promotedContent);
         }
@@ -198,11 +265,15 @@ public class DefaultEntitlementCertServiceAdapter extends BaseEntitlementCertSer
             startDate = calMinusHour.getTime();
         }
 
-        X509Certificate x509Cert =  this.pki.createX509Certificate(
-            createDN(ent, owner), extensions, byteExtensions, startDate,
-            endDate, keyPair, serialNumber, null);
+        return new X509CertificateData(createDN(ent, owner), extensions, byteExtensions, startDate,
+            endDate, keyPair, serialNumber);
+    }
+
+    private X509Certificate signX509Certificate(X509CertificateData data)
+        throws GeneralSecurityException, IOException {
 
-        return x509Cert;
+        return this.pki.createX509Certificate(data.dn, data.extensions, data.byteExtensions,
+            data.startDate, data.endDate, data.keyPair, data.serialNumber, null);
     }
 
     /**
@@ -447,7 +518,11 @@ public class DefaultEntitlementCertServiceAdapter extends BaseEntitlementCertSer
             serialMap.put(entry.getKey(), new CertificateSerial(entry.getValue().getPool().getEndDate()));
         }
 
-        Map<String, EntitlementCertificate> entitlementCerts = new HashMap<>();
+        boolean generateV3 = shouldGenerateV3(consumer);
+        Map<String, EntitlementCertData> certData = new LinkedHashMap<>();
+
+        // Everything touching the database or the v3 extension utility is done up-front on the
+        // calling thread; only the signing and encoding of each certificate is done concurrently.
         for (Entry<String, PoolQuantity> entry : poolQuantities.entrySet()) {
             Pool pool = entry.getValue().getPool();
             Entitlement ent = entitlements.get(entry.getKey());
@@ -475,35 +550,32 @@ public class DefaultEntitlementCertServiceAdapter extends BaseEntitlementCertSer
             List<org.candlepin.model.dto.Product> productModels = v3extensionUtil.createProducts(product,
                 products, contentPrefix, promotedContent, consumer, pool);
 
-            X509Certificate x509Cert = createX509Certificate(consumer, owner, pool, ent,
+            X509CertificateData x509Data = prepareX509Certificate(consumer, owner, pool, ent,
                 product, products, productModels,
-                BigInteger.valueOf(serial.getId()), keyPair, true);
+                BigInteger.valueOf(serial.getId()), keyPair, true, generateV3);
 
-            log.debug("Getting PEM encoded cert.");
-            String pem = new String(this.pki.getPemEncoded(x509Cert));
-
-            if (shouldGenerateV3(consumer)) {
+            byte[] payloadBytes = null;
+            if (generateV3) {
                 log.debug("Generating v3 entitlement data");
 
-                byte[] payloadBytes = v3extensionUtil.createEntitlementDataPayload(productModels,
+                payloadBytes = v3extensionUtil.createEntitlementDataPayload(productModels,
                         consumer, pool, ent.getQuantity());
+            }
 
-                String payload = "-----BEGIN ENTITLEMENT DATA-----\n";
-                payload += Util.toBase64(payloadBytes);
-                payload += "-----END ENTITLEMENT DATA-----\n";
+            certData.put(entry.getKey(), new EntitlementCertData(x509Data, payloadBytes));
+        }
 
-                byte[] bytes = pki.getSHA256WithRSAHash(new ByteArrayInputStream(payloadBytes));
-                String signature = "-----BEGIN RSA SIGNATURE-----\n";
-                signature += Util.toBase64(bytes);
-                signature += "-----END RSA SIGNATURE-----\n";
+        Map<String, String> pems = this.signCertificates(certData);
 
-                pem += payload + signature;
-            }
+        Map<String, EntitlementCertificate> entitlementCerts = new HashMap<>();
+        for (Entry<String, PoolQuantity> entry : poolQuantities.entrySet()) {
+            Entitlement ent = entitlements.get(entry.getKey());
+            CertificateSerial serial = serialMap.get(entry.getKey());
 
             // Build a skeleton cert as part of the entitlement processing.
             EntitlementCertificate cert = new EntitlementCertificate();
             cert.setKeyAsBytes(pemEncodedKeyPair);
-            cert.setCert(pem);
+            cert.setCert(pems.get(entry.getKey()));
             if (save) {
                 cert.setEntitlement(ent);
             }
@@ -552,6 +624,97 @@ public class DefaultEntitlementCertServiceAdapter extends BaseEntitlementCertSer
         return entitlementCerts;
     }
 
+    /**
+     * Signs and PEM-encodes the prepared certificates, along with their v3 entitlement data if
+     * present. When more than one certificate is being generated and the configured concurrency
+     * level allows it, the certificates are signed in parallel on the shared worker pool.
+     *
+     * @param certData
+     *  the prepared certificate data, indexed by pool id
+     *
+     * @return
+     *  the PEM-encoded certificates, indexed by pool id
+     */
+    private Map<String, String> signCertificates(Map<String, EntitlementCertData> certData)
+        throws GeneralSecurityException, IOException {
+
+        Map<String, String> pems = new HashMap<>();
+        int threads = Math.min(this.generationThreads, certData.size());
+
+        if (threads <= 1) {
+            for (Entry<String, EntitlementCertData> entry : certData.entrySet()) {
+                pems.put(entry.getKey(), this.signCertificate(entry.getValue()));
+            }
+
+            return pems;
+        }
+
+        log.debug("Signing {} entitlement certificates using up to {} threads", certData.size(), threads);
+
+        List<String> poolIds = new ArrayList<>(certData.size());
+        List<Callable<String>> tasks = new ArrayList<>(certData.size());
+        for (Entry<String, EntitlementCertData> entry : certData.entrySet()) {
+            EntitlementCertData data = entry.getValue();
+
+            poolIds.add(entry.getKey());
+            tasks.add(() -> this.signCertificate(data));
+        }
+
+        try {
+            List<String> signed = this.workerPool.invokeAll(tasks, threads);
+
+            for (int i = 0; i < poolIds.size(); ++i) {
+                pems.put(poolIds.get(i), signed.get(i));
+            }
+        }
+        catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+
+            if (cause instanceof GeneralSecurityException) {
+                throw (GeneralSecurityException) cause;
+            }
+            else if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+
+            throw new RuntimeException(cause);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while generating entitlement certificates", e);
+        }
+
+        return pems;
+    }
+
+    private String signCertificate(EntitlementCertData data) throws GeneralSecurityException, IOException {
+        X509Certificate x509Cert = this.signX509Certificate(data.x509Data);
+
+        log.debug("Getting PEM encoded cert.");
+        String pem = new String(this.pki.getPemEncoded(x509Cert));
+
+        if (data.payloadBytes != null) {
+            String payload = "-----BEGIN ENTITLEMENT DATA-----\n";
+            payload += Util.toBase64(data.payloadBytes);
+            payload += "-----END ENTITLEMENT DATA-----\n";
+
+            byte[] bytes = pki.getSHA256WithRSAHash(new ByteArrayInputStream(data.payloadBytes));
+            String signature = "-----BEGIN RSA SIGNATURE-----\n";
+            signature += Util.toBase64(bytes);
+            signature += "-----END RSA SIGNATURE-----\n";
+
+            pem += payload + signature;
+        }
+
+        return pem;
+    }
+
     private String createDN(Entitlement ent, Owner owner) {
         StringBuilder sb = new StringBuilder("CN=");
         sb.append(ent.getId());
@@ -0,0 +1,134 @@
+/**
+ * Copyright (c) 2009 - 2018 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.service.impl;
+
+import org.candlepin.common.config.Configuration;
+import org.candlepin.config.ConfigProperties;
+import org.candlepin.service.UniqueIdGenerator;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+
+
+/**
+ * A lock-free UniqueIdGenerator which generates numeric IDs which are unique across a cluster of
+ * Candlepin nodes without any coordination between them.
+ *
+ * Each ID is a positive 63-bit number made up of, from most to least significant bits, the number
+ * of milliseconds since 2018-01-01 (41 bits), the ID of the generating node (10 bits) and a
+ * per-millisecond sequence number (12 bits). The timestamp and sequence are advanced together with
+ * a single compare-and-set, so IDs are strictly increasing on each node. When more than 4096 IDs
+ * are requested within a millisecond, or the system clock moves backwards, the generator borrows
+ * from the following milliseconds rather than waiting for the clock.
+ *
+ * Node IDs must be configured explicitly, and be distinct for every node in a cluster; the
+ * generator refuses to start without one, as IDs are only unique when no two nodes share a node ID.
+ */
+@Singleton
+public class SnowflakeUniqueIdGenerator implements UniqueIdGenerator {
+    private static Logger log = LoggerFactory.getLogger(SnowflakeUniqueIdGenerator.class);
+
+    /** 2018-01-01T00:00:00Z */
+    public static final long EPOCH = 1514764800000L;
+
+    public static final int NODE_ID_BITS = 10;
+    public static final int SEQUENCE_BITS = 12;
+    public static final int MAX_NODE_ID = (1 << NODE_ID_BITS) - 1;
+
+    private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+
+    private final long nodeId;
+
+    /** The timestamp and sequence of the last ID generated, as (timestamp << SEQUENCE_BITS) | seq */
+    private final AtomicLong state = new AtomicLong();
+
+    @Inject
+    public SnowflakeUniqueIdGenerator(Configuration config) {
+        this(readNodeId(config));
+    }
+
+    public SnowflakeUniqueIdGenerator(int nodeId) {
+        if (nodeId < 0 || nodeId > MAX_NODE_ID) {
+            throw new IllegalArgumentException("nodeId must be between 0 and " + MAX_NODE_ID);
+        }
+
+        this.nodeId = nodeId;
+        log.info("Generating unique IDs as node {}", nodeId);
+    }
+
+    private static int readNodeId(Configuration config) {
+        int nodeId = config.getInt(ConfigProperties.UNIQUE_ID_NODE_ID, -1);
+
+        if (nodeId < 0 || nodeId > MAX_NODE_ID) {
+            throw new IllegalStateException(String.format(
+                "%s must be set to a value between 0 and %d, distinct for each node, when %s is enabled",
+                ConfigProperties.UNIQUE_ID_NODE_ID, MAX_NODE_ID,
+                ConfigProperties.UNIQUE_ID_SNOWFLAKE_ENABLED));
+        }
+
+        return nodeId;
+    }
+
+    /**
+     * Fetches the current time, in milliseconds since the generator epoch. Exposed for testing.
+     *
+     * @return
+     *  the number of milliseconds since the generator epoch
+     */
+    protected long currentTime() {
+        return System.currentTimeMillis() - EPOCH;
+    }
+
+    /**
+     * Generates the next ID for this node as a number.
+     *
+     * @return
+     *  a new unique ID
+     */
+    public long nextId() {
+        long now = this.currentTime();
+        long previous;
+        long next;
+
+        do {
+            previous = this.state.get();
+
+            // Start a new millisecond if the clock has moved on; otherwise increment the sequence,
+            // carrying into the timestamp if the sequence for this millisecond is exhausted.
+            next = (now > (previous >>> SEQUENCE_BITS)) ? now << SEQUENCE_BITS : previous + 1;
+        }
+        while (!this.state.compareAndSet(previous, next));
+
+        long timestamp = next >>> SEQUENCE_BITS;
+        long sequence = next & SEQUENCE_MASK;
+
+        return (timestamp << (NODE_ID_BITS + SEQUENCE_BITS)) | (this.nodeId << SEQUENCE_BITS) | sequence;
+    }
+
+    @Override
+    public String generateId() {
+        return String.valueOf(this.nextId());
+    }
+
+    public long getNodeId() {
+        return this.nodeId;
+    }
+}
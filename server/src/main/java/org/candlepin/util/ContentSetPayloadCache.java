@@ -0,0 +1,179 @@
+/**
+ * Copyright (c) 2009 - 2018 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.util;
+
+import org.candlepin.common.config.Configuration;
+import org.candlepin.config.ConfigProperties;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+
+import org.apache.commons.codec.binary.Hex;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+
+/**
+ * Retains the compressed content-set blobs embedded in v3 entitlement certificates, so that the
+ * path tree and Huffman dictionaries for a given set of content are only built once, no matter how
+ * many certificates carry that content.
+ *
+ * Blobs are keyed by a digest of the ordered content paths they were built from. Since those paths
+ * already reflect the product content, content prefix and environment filtering of the
+ * certificate, any change to one of them yields a different key, and stale blobs simply age out.
+ * The number of blobs retained is bounded, with the least recently used evicted first.
+ */
+@Singleton
+public class ContentSetPayloadCache {
+
+    private final boolean enabled;
+    private final Map<String, byte[]> payloads;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    @Inject
+    public ContentSetPayloadCache(Configuration config) {
+        this(config.getBoolean(ConfigProperties.CONTENT_SET_CACHE_ENABLED, true),
+            config.getInt(ConfigProperties.CONTENT_SET_CACHE_SIZE, 1000));
+    }
+
+    public ContentSetPayloadCache(boolean enabled, final int maxSize) {
+        if (enabled && maxSize < 1) {
+            throw new IllegalArgumentException("maxSize must be a positive integer");
+        }
+
+        this.enabled = enabled;
+        this.payloads = Collections.synchronizedMap(new LinkedHashMap<String, byte[]>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, byte[]> eldest) {
+                return this.size() > maxSize;
+            }
+        });
+    }
+
+    /**
+     * Builds the key identifying the content set made up of the given paths.
+     *
+     * @param paths
+     *  the ordered content paths of the content set
+     *
+     * @return
+     *  the key for the content set
+     */
+    public static String buildKey(List<String> paths) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+
+            for (String path : paths) {
+                digest.update(String.valueOf(path).getBytes(StandardCharsets.UTF_8));
+                digest.update((byte) '\n');
+            }
+
+            return Hex.encodeHexString(digest.digest());
+        }
+        catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Checks whether or not content-set blobs are cached. When disabled, this cache does not
+     * retain any blobs.
+     *
+     * @return
+     *  true if blobs are cached; false otherwise
+     */
+    public boolean isEnabled() {
+        return this.enabled;
+    }
+
+    /**
+     * Fetches the blob previously built for the content set with the given key.
+     *
+     * @param key
+     *  the key of the content set, as returned by buildKey
+     *
+     * @return
+     *  a copy of the previously built blob, or null if no blob is present
+     */
+    public byte[] get(String key) {
+        if (!this.enabled || key == null) {
+            return null;
+        }
+
+        byte[] payload = this.payloads.get(key);
+
+        (payload != null ? this.hits : this.misses).incrementAndGet();
+        return payload != null ? payload.clone() : null;
+    }
+
+    /**
+     * Stores the blob built for the content set with the given key. The blob is copied, so later
+     * changes to it do not affect the stored blob.
+     *
+     * @param key
+     *  the key of the content set, as returned by buildKey
+     *
+     * @param payload
+     *  the blob built for the content set
+     */
+    public void put(String key, byte[] payload) {
+        if (!this.enabled || key == null || payload == null) {
+            return;
+        }
+
+        this.payloads.put(key, payload.clone());
+    }
+
+    /**
+     * Discards all retained blobs.
+     */
+    public void clear() {
+        this.payloads.clear();
+    }
+
+    /**
+     * @return
+     *  the number of blobs currently retained
+     */
+    public int getSize() {
+        return this.payloads.size();
+    }
+
+    /**
+     * @return
+     *  the number of lookups which returned a previously built blob
+     */
+    public long getHits() {
+        return this.hits.get();
+    }
+
+    /**
+     * @return
+     *  the number of lookups which did not find a blob
+     */
+    public long getMisses() {
+        return this.misses.get();
+    }
+}
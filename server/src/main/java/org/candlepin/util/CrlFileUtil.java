@@ -23,7 +23,6 @@ import com.google.inject.Inject;
 import com.google.inject.Singleton;
 import com.google.inject.persist.Transactional;
 
-import org.apache.commons.codec.binary.Base64InputStream;
 import org.apache.commons.codec.binary.Base64OutputStream;
 import org.apache.commons.io.IOUtils;
 import org.bouncycastle.asn1.x509.CRLReason;
@@ -32,6 +31,7 @@ import org.bouncycastle.crypto.CryptoException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
@@ -46,6 +46,10 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.security.GeneralSecurityException;
 import java.security.PrivateKey;
 import java.security.cert.X509CRL;
@@ -54,9 +58,11 @@ import java.util.Arrays;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Date;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Set;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.regex.Pattern;
@@ -80,6 +86,36 @@ public class CrlFileUtil {
 
     private final ReadWriteLock lock = new ReentrantReadWriteLock(true);
 
+    // The serials of the CRL file most recently written or scanned, and the state of the file at
+    // that time. Used to skip updates which would not change the file.
+    private volatile IndexedCrl indexedCrl;
+
+    // The most recently published CRL, served until the file changes
+    private volatile EncodedCrl encodedCrl;
+    private final Object publishLock = new Object();
+
+    /**
+     * The serial index of a CRL file, valid for as long as the file remains unchanged.
+     */
+    private static class IndexedCrl {
+        private final String path;
+        private final long modified;
+        private final long length;
+        private final CrlSerialIndex index;
+
+        public IndexedCrl(File file, CrlSerialIndex index) {
+            this.path = file.getAbsolutePath();
+            this.modified = file.lastModified();
+            this.length = file.length();
+            this.index = index;
+        }
+
+        public boolean isValidFor(File file) {
+            return this.path.equals(file.getAbsolutePath()) && this.modified == file.lastModified() &&
+                this.length == file.length();
+        }
+    }
+
     @Inject
     public CrlFileUtil(CertificateReader certificateReader, PKIUtility pkiUtility,
         CertificateSerialCurator curator) {
@@ -102,18 +138,120 @@ public class CrlFileUtil {
 
         List<X509CRLEntryWrapper> entries = new LinkedList<>();
 
-        for (BigInteger serial : revoke) {
-            entries.add(new X509CRLEntryWrapper(serial, new Date()));
+        if (revoke != null) {
+            for (BigInteger serial : revoke) {
+                entries.add(new X509CRLEntryWrapper(serial, new Date()));
+            }
         }
 
         X509CRL crl = this.pkiUtility.createX509CRL(entries, BigInteger.ONE);
+        File tempFile = this.createReplacementFile(file);
 
         try {
-            output = new FileOutputStream(file);
+            output = new FileOutputStream(tempFile);
             this.pkiUtility.writePemEncoded(crl, output);
+            output.close();
+
+            this.replaceFile(tempFile, file);
         }
         finally {
             IOUtils.closeQuietly(output);
+
+            this.deleteTempFile(tempFile);
+        }
+
+        CrlSerialIndex.Builder builder = CrlSerialIndex.builder();
+        if (revoke != null) {
+            builder.addAll(revoke);
+        }
+
+        this.indexedCrl = new IndexedCrl(file, builder.build());
+    }
+
+    /**
+     * Creates a temporary file alongside the given file, to which its replacement can be written.
+     */
+    private File createReplacementFile(File file) throws IOException {
+        return File.createTempFile("candlepin_crl_", ".tmp", file.getAbsoluteFile().getParentFile());
+    }
+
+    /**
+     * Deletes the given temporary file, if it still exists.
+     */
+    private void deleteTempFile(File file) {
+        if (file != null && file.exists() && !file.delete()) {
+            log.error("Unable to delete temporary CRL file: {}", file);
+        }
+    }
+
+    /**
+     * Replaces the given file with the specified replacement, atomically where the file system
+     * allows, so the file is never seen partially written. The new contents are then published
+     * as the current CRL.
+     */
+    private void replaceFile(File replacement, File file) throws IOException {
+        try {
+            Files.move(replacement.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+        }
+        catch (AtomicMoveNotSupportedException e) {
+            Files.move(replacement.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+
+        // The file may have been replaced within the resolution of its timestamp, so always reload
+        this.publish(file, true);
+    }
+
+    /**
+     * Fetches the current contents of the specified CRL file. The contents are read once after
+     * each change to the file and retained in memory, so repeated calls while the file is
+     * unchanged do not read the file again.
+     *
+     * @param file
+     *  The CRL file to read
+     *
+     * @throws IOException
+     *  If an IO error occurs while reading the CRL file
+     *
+     * @return
+     *  the current contents of the CRL file
+     */
+    public EncodedCrl getEncodedCrl(File file) throws IOException {
+        EncodedCrl crl = this.encodedCrl;
+
+        if (crl != null && crl.isValidFor(file)) {
+            return crl;
+        }
+
+        return this.publish(file, false);
+    }
+
+    /**
+     * Reads the specified CRL file and retains its contents as the current CRL. Unless forced, the
+     * file is only read if it appears to have changed since it was last published.
+     */
+    private EncodedCrl publish(File file, boolean force) throws IOException {
+        synchronized (this.publishLock) {
+            EncodedCrl crl = this.encodedCrl;
+
+            if (!force && crl != null && crl.isValidFor(file)) {
+                return crl;
+            }
+
+            // Make sure the file wasn't replaced while we were reading it
+            long modified;
+            byte[] pem;
+
+            do {
+                modified = file.lastModified();
+                pem = Files.readAllBytes(file.toPath());
+            }
+            while (modified != file.lastModified() || pem.length != file.length());
+
+            crl = new EncodedCrl(file, modified, pem);
+            this.encodedCrl = crl;
+
+            return crl;
         }
     }
 
@@ -161,10 +299,63 @@ public class CrlFileUtil {
         }
     }
 
+    /**
+     * Strips the header and footer from the specified PEM-encoded CRL file, and decodes the
+     * remainder to a temporary DER-encoded file.
+     *
+     * @param file
+     *  The CRL file to decode
+     *
+     * @throws IOException
+     *  If an IO error occurs while decoding the CRL file
+     *
+     * @return
+     *  a temporary file containing the DER-encoded CRL
+     */
+    private File decodeCRLFile(File file) throws IOException {
+        File tempFile = File.createTempFile("candlepin_crl_", ".der");
+
+        try (BufferedReader r = new BufferedReader(new FileReader(file));
+            OutputStream w = new Base64OutputStream(
+                new BufferedOutputStream(new FileOutputStream(tempFile)), false)) {
+
+            String line = null;
+
+            do {
+                line = r.readLine();
+            }
+            while (line != null &&
+                (WHITESPACE.matcher(line).matches() || CRL_HEADER_PATTERN.matcher(line).matches()));
+
+            if (line == null) {
+                throw new IOException("No data left in file " + file);
+            }
+
+            do {
+                w.write(line.getBytes(StandardCharsets.US_ASCII));
+                line = r.readLine();
+            }
+            while (line != null && !CRL_FOOTER_PATTERN.matcher(line).matches());
+        }
+        catch (IOException | RuntimeException e) {
+            if (!tempFile.delete()) {
+                log.error("Unable to delete temporary CRL file: {}", tempFile);
+            }
+
+            throw e;
+        }
+
+        return tempFile;
+    }
+
     /**
      * Updates the specified CRL file by adding or removing entries. If both lists are either null
      * or empty, the CRL file will not be modified by this method. If the file does not exist or
      * appears to be empty, it will be initialized before processing the lists.
+     * <p></p>
+     * The serials listed in the file are indexed as it is updated. Until the file is changed by
+     * something else, later updates use that index to ignore serials to unrevoke which are not
+     * listed, and skip reading the file entirely when there is nothing left to change.
      *
      * @param file
      *  The CRL file to update
@@ -186,7 +377,21 @@ public class CrlFileUtil {
             return;
         }
 
-        File strippedFile = stripCRLFile(file);
+        final Set<BigInteger> removals = unrevoke != null ? new HashSet<>(unrevoke) : new HashSet<>();
+
+        IndexedCrl indexed = this.indexedCrl;
+        if (indexed != null && indexed.isValidFor(file)) {
+            removals.removeIf(serial -> !indexed.index.contains(serial));
+
+            if ((revoke == null || revoke.isEmpty()) && removals.isEmpty()) {
+                log.debug("No changes to apply to CRL file: {}", file);
+                return;
+            }
+        }
+
+        this.indexedCrl = null;
+        File derFile = this.decodeCRLFile(file);
+        File replacement = null;
 
         InputStream input = null;
         InputStream reaper = null;
@@ -198,9 +403,10 @@ public class CrlFileUtil {
         try {
             // Impl note:
             // Due to the way the X509CRLStreamWriter works (and the DER format in general), we have
-            // to make two passes through the file.
-            input = new Base64InputStream(new FileInputStream(strippedFile));
-            reaper = new Base64InputStream(new FileInputStream(strippedFile));
+            // to make two passes through the file. We decode it once up front so neither pass needs
+            // to decode it again.
+            input = new BufferedInputStream(new FileInputStream(derFile));
+            reaper = new BufferedInputStream(new FileInputStream(derFile));
 
             // Note: This will break if we ever stop using RSA keys
             PrivateKey key = this.certificateReader.getCaKey();
@@ -216,24 +422,25 @@ public class CrlFileUtil {
             }
 
             // Unfortunately, we need to do the prescan before checking if we have changes queued,
-            // or we could miss cases where we have entries to remove, but nothing to add.
-            if (unrevoke != null && !unrevoke.isEmpty()) {
-                writer.preScan(reaper, new CRLEntryValidator() {
-                    public boolean shouldDelete(CRLEntry entry) {
-                        BigInteger certSerial = entry.getUserCertificate().getValue();
-                        return unrevoke.contains(certSerial);
-                    }
-                });
-            }
-            else {
-                writer.preScan(reaper);
-            }
+            // or we could miss cases where we have entries to remove, but nothing to add. We also
+            // index the existing serials while we're at it.
+            final CrlSerialIndex.Builder scanned = CrlSerialIndex.builder();
+
+            writer.preScan(reaper, new CRLEntryValidator() {
+                public boolean shouldDelete(CRLEntry entry) {
+                    BigInteger certSerial = entry.getUserCertificate().getValue();
+                    scanned.add(certSerial);
+
+                    return removals.contains(certSerial);
+                }
+            });
 
             writer.setSigningAlgorithm(PKIUtility.SIGNATURE_ALGO);
 
             // Verify we actually have work to do now
             if (writer.hasChangesQueued()) {
-                output = new BufferedOutputStream(new FileOutputStream(file));
+                replacement = this.createReplacementFile(file);
+                output = new BufferedOutputStream(new FileOutputStream(replacement));
                 filter = new FilterOutputStream(output) {
                     private boolean needsLineBreak = true;
 
@@ -273,7 +480,11 @@ public class CrlFileUtil {
 
                 output.write("-----END X509 CRL-----\n".getBytes());
                 output.close();
+
+                this.replaceFile(replacement, file);
             }
+
+            this.indexedCrl = new IndexedCrl(file, scanned.build().update(revoke, removals));
         }
         catch (GeneralSecurityException e) {
             // This should never actually happen
@@ -295,9 +506,8 @@ public class CrlFileUtil {
                 }
             }
 
-            if (!strippedFile.delete()) {
-                log.error("Unable to delete temporary CRL file: {}", strippedFile);
-            }
+            this.deleteTempFile(derFile);
+            this.deleteTempFile(replacement);
         }
     }
 
@@ -0,0 +1,159 @@
+/**
+ * Copyright (c) 2009 - 2018 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.util;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+
+
+/**
+ * An immutable, compact index of the serials listed in a CRL.
+ *
+ * Serials which fit in a long are kept in a sorted array and looked up using a binary search,
+ * requiring eight bytes per serial; any other serials are kept in a separate set.
+ */
+public class CrlSerialIndex {
+
+    /**
+     * Builds a CrlSerialIndex from serials supplied in any order.
+     */
+    public static class Builder {
+        private long[] serials = new long[1024];
+        private int size = 0;
+        private Set<BigInteger> overflow = new HashSet<>();
+
+        public Builder add(BigInteger serial) {
+            if (serial.bitLength() < Long.SIZE) {
+                if (this.size == this.serials.length) {
+                    this.serials = Arrays.copyOf(this.serials, this.size * 2);
+                }
+
+                this.serials[this.size++] = serial.longValue();
+            }
+            else {
+                this.overflow.add(serial);
+            }
+
+            return this;
+        }
+
+        public Builder addAll(Collection<BigInteger> serials) {
+            for (BigInteger serial : serials) {
+                this.add(serial);
+            }
+
+            return this;
+        }
+
+        public CrlSerialIndex build() {
+            long[] sorted = Arrays.copyOf(this.serials, this.size);
+            Arrays.sort(sorted);
+
+            // Remove duplicates
+            int distinct = 0;
+            for (int i = 0; i < sorted.length; ++i) {
+                if (distinct == 0 || sorted[distinct - 1] != sorted[i]) {
+                    sorted[distinct++] = sorted[i];
+                }
+            }
+
+            return new CrlSerialIndex(Arrays.copyOf(sorted, distinct), this.overflow);
+        }
+    }
+
+    private final long[] serials;
+    private final Set<BigInteger> overflow;
+
+    private CrlSerialIndex(long[] serials, Set<BigInteger> overflow) {
+        this.serials = serials;
+        this.overflow = Collections.unmodifiableSet(overflow);
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Checks whether or not the given serial is listed in this index.
+     *
+     * @param serial
+     *  the serial to check
+     *
+     * @return
+     *  true if the serial is listed in this index; false otherwise
+     */
+    public boolean contains(BigInteger serial) {
+        if (serial == null) {
+            return false;
+        }
+
+        return serial.bitLength() < Long.SIZE ?
+            Arrays.binarySearch(this.serials, serial.longValue()) >= 0 :
+            this.overflow.contains(serial);
+    }
+
+    /**
+     * @return
+     *  the number of serials in this index
+     */
+    public int size() {
+        return this.serials.length + this.overflow.size();
+    }
+
+    /**
+     * Creates a new index containing the serials of this index, plus the added serials, less the
+     * removed serials.
+     *
+     * @param added
+     *  a collection of serials to add; may be null
+     *
+     * @param removed
+     *  a set of serials to remove; may be null
+     *
+     * @return
+     *  a new index reflecting the given changes
+     */
+    public CrlSerialIndex update(Collection<BigInteger> added, Set<BigInteger> removed) {
+        CrlSerialIndex exclusions = removed != null && !removed.isEmpty() ?
+            new Builder().addAll(removed).build() :
+            null;
+
+        Builder builder = new Builder();
+        builder.serials = new long[Math.max(1, this.serials.length + (added != null ? added.size() : 0))];
+
+        for (long serial : this.serials) {
+            if (exclusions == null || Arrays.binarySearch(exclusions.serials, serial) < 0) {
+                builder.serials[builder.size++] = serial;
+            }
+        }
+
+        for (BigInteger serial : this.overflow) {
+            if (removed == null || !removed.contains(serial)) {
+                builder.overflow.add(serial);
+            }
+        }
+
+        if (added != null) {
+            builder.addAll(added);
+        }
+
+        return builder.build();
+    }
+}
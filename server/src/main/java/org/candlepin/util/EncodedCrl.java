@@ -0,0 +1,151 @@
+/**
+ * Copyright (c) 2009 - 2018 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.util;
+
+import org.apache.commons.codec.binary.Base64;
+import org.apache.commons.codec.binary.Hex;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Date;
+
+
+
+/**
+ * An immutable, in-memory copy of a published CRL, in both its PEM and DER encodings, along with
+ * the validators needed to serve it with conditional and range requests.
+ */
+public class EncodedCrl {
+    private final String path;
+    private final long modified;
+    private final long length;
+
+    private final byte[] pem;
+    private volatile byte[] der;
+    private final String entityTag;
+
+    /**
+     * Creates a new EncodedCrl from the PEM-encoded contents of the given CRL file.
+     *
+     * @param file
+     *  the file from which the CRL was read
+     *
+     * @param modified
+     *  the last modified time of the file when it was read
+     *
+     * @param pem
+     *  the PEM-encoded contents of the file
+     */
+    public EncodedCrl(File file, long modified, byte[] pem) {
+        this.path = file.getAbsolutePath();
+        this.modified = modified;
+        this.length = pem.length;
+        this.pem = pem;
+
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            this.entityTag = Hex.encodeHexString(digest.digest(pem));
+        }
+        catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Checks whether or not this CRL still reflects the contents of the given file.
+     *
+     * @param file
+     *  the file to check
+     *
+     * @return
+     *  true if the file is unchanged since this CRL was read from it; false otherwise
+     */
+    public boolean isValidFor(File file) {
+        return this.path.equals(file.getAbsolutePath()) && this.modified == file.lastModified() &&
+            this.length == file.length();
+    }
+
+    /**
+     * @return
+     *  the PEM encoding of this CRL. The returned array must not be modified.
+     */
+    public byte[] getPem() {
+        return this.pem;
+    }
+
+    /**
+     * @throws IOException
+     *  if the PEM encoding of this CRL is malformed
+     *
+     * @return
+     *  the DER encoding of this CRL. The returned array must not be modified.
+     */
+    public byte[] getDer() throws IOException {
+        byte[] der = this.der;
+
+        if (der == null) {
+            StringBuilder base64 = new StringBuilder();
+            boolean body = false;
+
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new ByteArrayInputStream(this.pem), StandardCharsets.US_ASCII))) {
+
+                for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                    if (line.startsWith("-----BEGIN")) {
+                        body = true;
+                    }
+                    else if (line.startsWith("-----END")) {
+                        break;
+                    }
+                    else if (body) {
+                        base64.append(line.trim());
+                    }
+                }
+            }
+
+            if (base64.length() == 0) {
+                throw new IOException("CRL is not PEM-encoded: " + this.path);
+            }
+
+            // Benign race; concurrent callers compute identical encodings
+            der = Base64.decodeBase64(base64.toString());
+            this.der = der;
+        }
+
+        return der;
+    }
+
+    /**
+     * @return
+     *  a strong entity tag identifying the contents of this CRL, without quotes
+     */
+    public String getEntityTag() {
+        return this.entityTag;
+    }
+
+    /**
+     * @return
+     *  the time at which the CRL file was last modified
+     */
+    public Date getLastModified() {
+        return new Date(this.modified);
+    }
+}
@@ -437,6 +437,25 @@ public class Util {
         return results;
     }
 
+    /*
+     * Gets the canonical form of the given guest uuid, which is the same for every
+     * variant returned by getPossibleUuids, regardless of endianness. When given a
+     * non-uuid, this returns the given value in lower case.
+     */
+    public static String getCanonicalUuid(String id) {
+        if (id == null) {
+            return null;
+        }
+
+        String lower = id.toLowerCase();
+        if (!isUuid(lower)) {
+            return lower;
+        }
+
+        String transformed = transformUuid(lower);
+        return lower.compareTo(transformed) <= 0 ? lower : transformed;
+    }
+
     private static final String UUID_REGEX = "[a-fA-F0-9]{8}-" +
         "[a-fA-F0-9]{4}-[a-fA-F0-9]{4}-[a-fA-F0-9]{4}-[a-fA-F0-9]{12}";
 
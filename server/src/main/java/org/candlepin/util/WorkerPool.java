@@ -0,0 +1,181 @@
+/**
+ * Copyright (c) 2009 - 2018 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.util;
+
+import org.candlepin.common.config.Configuration;
+import org.candlepin.config.ConfigProperties;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+
+
+/**
+ * A bounded pool of worker threads, shared by everything which parallelizes CPU-bound work on
+ * behalf of a single request or job, such as signing entitlement certificates or calculating
+ * compliance.
+ *
+ * The pool never runs more than the configured number of threads, no matter how many requests use
+ * it at once. Threads are started on demand and stop again once idle. Work which cannot be queued,
+ * including any work submitted after the pool has been shut down, is run on the calling thread
+ * instead, so callers are slowed down rather than rejected when the pool is saturated.
+ */
+@Singleton
+public class WorkerPool {
+    private static Logger log = LoggerFactory.getLogger(WorkerPool.class);
+
+    private final ThreadPoolExecutor executor;
+
+    @Inject
+    public WorkerPool(Configuration config) {
+        this(Math.max(1, config.getInt(ConfigProperties.WORKER_POOL_THREADS, 4)),
+            Math.max(1, config.getInt(ConfigProperties.WORKER_POOL_QUEUE_SIZE, 1000)));
+    }
+
+    public WorkerPool(int threads, int queueSize) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("threads must be a positive integer");
+        }
+
+        if (queueSize < 1) {
+            throw new IllegalArgumentException("queueSize must be a positive integer");
+        }
+
+        AtomicInteger count = new AtomicInteger();
+
+        this.executor = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS,
+            new ArrayBlockingQueue<>(queueSize),
+            runnable -> {
+                Thread thread = new Thread(runnable, "worker-pool-" + count.incrementAndGet());
+                thread.setDaemon(true);
+
+                return thread;
+            },
+            (runnable, executor) -> runnable.run());
+
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Runs the given tasks, using at most the given number of threads, including the calling
+     * thread. The tasks are divided among that many groups; every group but one is handed to the
+     * pool, and the remaining group is run on the calling thread. The tasks of each group are run
+     * one after another, in order.
+     *
+     * @param tasks
+     *  the tasks to run
+     *
+     * @param parallelism
+     *  the maximum number of threads with which to run the tasks; values below 2 run every task on
+     *  the calling thread
+     *
+     * @throws ExecutionException
+     *  if any of the tasks fails; the cause of the exception is the failure of the task. Tasks
+     *  which have not started yet are not run.
+     *
+     * @throws InterruptedException
+     *  if the calling thread is interrupted while waiting for the tasks to complete
+     *
+     * @return
+     *  the results of the tasks, in the order of the tasks
+     */
+    public <T> List<T> invokeAll(List<? extends Callable<T>> tasks, int parallelism)
+        throws ExecutionException, InterruptedException {
+
+        int groups = Math.max(1, Math.min(parallelism, tasks.size()));
+        List<Future<List<T>>> futures = new ArrayList<>(groups - 1);
+        List<List<T>> results = new ArrayList<>(groups);
+
+        try {
+            for (int group = 1; group < groups; ++group) {
+                int offset = group;
+                futures.add(this.executor.submit(() -> runGroup(tasks, offset, groups)));
+            }
+
+            try {
+                results.add(runGroup(tasks, 0, groups));
+            }
+            catch (InterruptedException e) {
+                throw e;
+            }
+            catch (Exception e) {
+                throw new ExecutionException(e);
+            }
+
+            for (Future<List<T>> future : futures) {
+                results.add(future.get());
+            }
+        }
+        finally {
+            for (Future<List<T>> future : futures) {
+                future.cancel(true);
+            }
+        }
+
+        // Restore the order of the tasks from the round-robin distribution of the groups
+        List<T> output = new ArrayList<>(tasks.size());
+        for (int i = 0; i < tasks.size(); ++i) {
+            output.add(results.get(i % groups).get(i / groups));
+        }
+
+        return output;
+    }
+
+    private static <T> List<T> runGroup(List<? extends Callable<T>> tasks, int offset, int groups)
+        throws Exception {
+
+        List<T> results = new ArrayList<>();
+
+        for (int i = offset; i < tasks.size(); i += groups) {
+            if (Thread.currentThread().isInterrupted()) {
+                throw new InterruptedException();
+            }
+
+            results.add(tasks.get(i).call());
+        }
+
+        return results;
+    }
+
+    /**
+     * Stops the pool, waiting briefly for running tasks to complete. Tasks submitted afterwards
+     * are run on the calling thread.
+     */
+    public void shutdown() {
+        this.executor.shutdown();
+
+        try {
+            if (!this.executor.awaitTermination(30, TimeUnit.SECONDS)) {
+                log.warn("Timed out waiting for worker pool tasks to complete");
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
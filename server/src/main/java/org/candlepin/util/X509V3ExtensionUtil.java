@@ -53,6 +53,7 @@ import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.PriorityQueue;
 import java.util.Set;
 import java.util.StringTokenizer;
 import java.util.zip.Deflater;
@@ -68,18 +69,25 @@ public class X509V3ExtensionUtil extends X509Util {
     private static Logger log = LoggerFactory.getLogger(X509V3ExtensionUtil.class);
     private Configuration config;
     private EntitlementCurator entCurator;
+    private ContentSetPayloadCache contentSetCache;
     private String thisVersion = "3.3";
 
     private long pathNodeId = 0;
     private long huffNodeId = 0;
-    private static final Object END_NODE = new Object();
+    static final Object END_NODE = new Object();
     private static boolean treeDebug = false;
 
-    @Inject
     public X509V3ExtensionUtil(Configuration config, EntitlementCurator entCurator) {
+        this(config, entCurator, null);
+    }
+
+    @Inject
+    public X509V3ExtensionUtil(Configuration config, EntitlementCurator entCurator,
+        ContentSetPayloadCache contentSetCache) {
         // Output everything in UTC
         this.config = config;
         this.entCurator = entCurator;
+        this.contentSetCache = contentSetCache;
     }
 
     public Set<X509ExtensionWrapper> getExtensions() {
@@ -119,6 +127,29 @@ public class X509V3ExtensionUtil extends X509Util {
 
     private byte[] retrieveContentValue(EntitlementBody eb) throws IOException {
         List<Content> contentList = getContentList(eb);
+
+        if (this.contentSetCache == null || !this.contentSetCache.isEnabled()) {
+            return this.buildContentValue(contentList);
+        }
+
+        // The blob depends only on the content paths, so identical content sets can share it
+        List<String> paths = new ArrayList<>(contentList.size());
+        for (Content content : contentList) {
+            paths.add(content.getPath());
+        }
+
+        String key = ContentSetPayloadCache.buildKey(paths);
+        byte[] value = this.contentSetCache.get(key);
+
+        if (value == null) {
+            value = this.buildContentValue(contentList);
+            this.contentSetCache.put(key, value);
+        }
+
+        return value;
+    }
+
+    private byte[] buildContentValue(List<Content> contentList) throws IOException {
         PathNode treeRoot = makePathTree(contentList, new PathNode());
         List<String> nodeStrings = orderStrings(treeRoot);
         if (nodeStrings.size() == 0) {
@@ -736,7 +767,7 @@ public class X509V3ExtensionUtil extends X509Util {
         return nodes;
     }
 
-    private byte[] makeNodeDictionary(HuffNode stringParent,
+    byte[] makeNodeDictionary(HuffNode stringParent,
         HuffNode pathNodeParent, List<PathNode> pathNodes) throws IOException {
 
         ByteArrayOutputStream baos = new ByteArrayOutputStream();
@@ -760,37 +791,21 @@ public class X509V3ExtensionUtil extends X509Util {
         else {
             baos.write(nodeSize);
         }
-        StringBuilder bits = new StringBuilder();
-        String endNodeLocation = findHuffPath(stringParent, END_NODE);
+
+        Map<Object, HuffCode> stringCodes = buildHuffCodes(stringParent);
+        Map<Object, HuffCode> pathNodeCodes = buildHuffCodes(pathNodeParent);
+
+        BitWriter bits = new BitWriter(baos);
+        HuffCode endNodeLocation = stringCodes.get(END_NODE);
         for (PathNode pn : pathNodes) {
             for (NodePair np : pn.getChildren()) {
-                bits.append(findHuffPath(stringParent, np.getName()));
-                bits.append(findHuffPath(pathNodeParent, np.getConnection()));
-            }
-            bits.append(endNodeLocation);
-            while (bits.length() >= 8) {
-                int next = 0;
-                for (int i = 0; i < 8; i++) {
-                    next = (byte) next << 1;
-                    if (bits.charAt(i) == '1') {
-                        next++;
-                    }
-                }
-                baos.write(next);
-                bits.delete(0, 8);
+                bits.write(stringCodes.get(np.getName()));
+                bits.write(pathNodeCodes.get(np.getConnection()));
             }
+            bits.write(endNodeLocation);
         }
+        bits.flush();
 
-        if (bits.length() > 0) {
-            int next = 0;
-            for (int i = 0;  i < 8; i++) {
-                next = (byte) next << 1;
-                if (i < bits.length() && bits.charAt(i) == '1') {
-                    next++;
-                }
-            }
-            baos.write(next);
-        }
         byte[] result = baos.toByteArray();
         if (treeDebug) {
             ByteArrayInputStream bais = new ByteArrayInputStream(result);
@@ -804,6 +819,51 @@ public class X509V3ExtensionUtil extends X509Util {
         return result;
     }
 
+    /**
+     * Builds a table of the Huffman code for each value in the given trie. Where a value appears
+     * more than once, the code chosen is the one findHuffPath would return for it.
+     *
+     * @param trie
+     *  the trie for which to build the code table
+     *
+     * @return
+     *  a map of the values in the trie to their codes
+     */
+    Map<Object, HuffCode> buildHuffCodes(HuffNode trie) {
+        Map<Object, HuffCode> codes = new HashMap<>();
+        this.addHuffCodes(trie, 0L, 0, codes);
+
+        return codes;
+    }
+
+    private void addHuffCodes(HuffNode node, long bits, int length, Map<Object, HuffCode> codes) {
+        HuffNode left = node.getLeft();
+        HuffNode right = node.getRight();
+
+        if (left == null && right == null) {
+            return;
+        }
+
+        if (length >= 63) {
+            // Not reachable with int weights, which bound the depth of the trie well below this
+            throw new IllegalStateException("Huffman trie is too deep to encode");
+        }
+
+        // Direct children take precedence over deeper nodes, and left subtrees over right ones
+        if (left != null && left.getValue() != null && !codes.containsKey(left.getValue())) {
+            codes.put(left.getValue(), new HuffCode(bits << 1, length + 1));
+        }
+        if (right != null && right.getValue() != null && !codes.containsKey(right.getValue())) {
+            codes.put(right.getValue(), new HuffCode((bits << 1) | 1, length + 1));
+        }
+        if (left != null) {
+            this.addHuffCodes(left, bits << 1, length + 1, codes);
+        }
+        if (right != null) {
+            this.addHuffCodes(right, (bits << 1) | 1, length + 1, codes);
+        }
+    }
+
     private byte[] toByteArray(int value) {
         return new byte[] {
             (byte) (value >> 24),
@@ -891,36 +951,32 @@ public class X509V3ExtensionUtil extends X509Util {
         if (nodesList.get(0).getValue() instanceof PathNode) {
             nodesList.remove(0);
         }
-        while (nodesList.size() > 1) {
-            int node1 = findSmallest(-1, nodesList);
-            int node2 = findSmallest(node1, nodesList);
-            HuffNode hn1 = nodesList.get(node1);
-            HuffNode hn2 = nodesList.get(node2);
-            HuffNode merged = mergeNodes(hn1, hn2);
-            nodesList.remove(hn1);
-            nodesList.remove(hn2);
-            nodesList.add(merged);
+
+        // Always merge the two lightest nodes, breaking ties in favour of the node which was
+        // queued first. Merged nodes are queued behind every node already present.
+        PriorityQueue<QueuedHuffNode> queue = new PriorityQueue<>(Math.max(1, nodesList.size()));
+        long sequence = 0;
+        for (HuffNode node : nodesList) {
+            queue.add(new QueuedHuffNode(node, sequence++));
+        }
+
+        while (queue.size() > 1) {
+            HuffNode hn1 = queue.poll().node;
+            HuffNode hn2 = queue.poll().node;
+            queue.add(new QueuedHuffNode(mergeNodes(hn1, hn2), sequence++));
+        }
+
+        nodesList.clear();
+        if (!queue.isEmpty()) {
+            nodesList.add(queue.poll().node);
         }
+
         if (treeDebug) {
             printTrie(nodesList.get(0), 0);
         }
         return nodesList.get(0);
     }
 
-    private int findSmallest(int exclude, List<HuffNode> nodes) {
-        int smallest = -1;
-        for (int index = 0; index < nodes.size(); index++) {
-            if (index == exclude) {
-                continue;
-            }
-            if (smallest == -1 || nodes.get(index).getWeight() <
-                nodes.get(smallest).getWeight()) {
-                smallest = index;
-            }
-        }
-        return smallest;
-    }
-
     private HuffNode mergeNodes(HuffNode left, HuffNode right) {
         return new HuffNode(null, left.weight + right.weight, left, right);
     }
@@ -1124,6 +1180,85 @@ public class X509V3ExtensionUtil extends X509Util {
         return baos.toByteArray();
     }
 
+    /**
+     * A node waiting to be merged into a Huffman trie, along with the order in which it was queued.
+     */
+    private static class QueuedHuffNode implements Comparable<QueuedHuffNode> {
+        private final HuffNode node;
+        private final long sequence;
+
+        public QueuedHuffNode(HuffNode node, long sequence) {
+            this.node = node;
+            this.sequence = sequence;
+        }
+
+        @Override
+        public int compareTo(QueuedHuffNode other) {
+            int result = Integer.compare(this.node.getWeight(), other.node.getWeight());
+            return result != 0 ? result : Long.compare(this.sequence, other.sequence);
+        }
+    }
+
+    /**
+     * The Huffman code for a single value, stored in the lowest bits of a long.
+     */
+    static class HuffCode {
+        private final long bits;
+        private final int length;
+
+        public HuffCode(long bits, int length) {
+            this.bits = bits;
+            this.length = length;
+        }
+
+        public String toString() {
+            StringBuilder builder = new StringBuilder(this.length);
+            for (int i = this.length - 1; i >= 0; --i) {
+                builder.append((this.bits >>> i) & 1);
+            }
+
+            return builder.toString();
+        }
+    }
+
+    /**
+     * Writes Huffman codes to an output stream, most significant bit first, padding the final
+     * byte with zeros.
+     */
+    static class BitWriter {
+        private final ByteArrayOutputStream out;
+        private int current = 0;
+        private int count = 0;
+
+        public BitWriter(ByteArrayOutputStream out) {
+            this.out = out;
+        }
+
+        public void write(HuffCode code) {
+            if (code == null) {
+                return;
+            }
+
+            for (int i = code.length - 1; i >= 0; --i) {
+                this.current = (this.current << 1) | (int) ((code.bits >>> i) & 1);
+
+                if (++this.count == 8) {
+                    this.out.write(this.current);
+                    this.current = 0;
+                    this.count = 0;
+                }
+            }
+        }
+
+        public void flush() {
+            if (this.count > 0) {
+                this.out.write(this.current << (8 - this.count));
+                this.current = 0;
+                this.count = 0;
+            }
+        }
+    }
+
     /**
      *
      * HuffNode
@@ -23,6 +23,7 @@ import org.apache.activemq.artemis.api.core.ActiveMQException;
 import org.apache.activemq.artemis.api.core.ActiveMQExceptionType;
 import org.apache.activemq.artemis.api.core.client.ClientConsumer;
 import org.apache.activemq.artemis.api.core.client.ClientMessage;
+import org.apache.activemq.artemis.api.core.client.ClientProducer;
 import org.apache.activemq.artemis.api.core.client.ClientSession;
 import org.apache.activemq.artemis.api.core.client.ClientSessionFactory;
 import org.candlepin.auth.PrincipalData;
@@ -39,9 +40,12 @@ import static org.junit.Assert.fail;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyString;
 import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doNothing;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyZeroInteractions;
 import static org.mockito.Mockito.when;
@@ -159,6 +163,61 @@ public class EventMessageReceiverTest {
         verify(clientSession, never()).commit();
     }
 
+    @Test
+    public void batchedMessageDeliversEachEvent() throws Exception {
+        EventMessageReceiver receiver = new EventMessageReceiver(eventListener, clientSessionFactory, mapper);
+        when(clientMessage.containsProperty(EventSinkImpl.BATCH_SIZE_PROPERTY)).thenReturn(true);
+        doReturn("[" + eventJson() + "," + eventJson() + "]").when(activeMQBuffer).readString();
+        receiver.onMessage(clientMessage);
+        verify(eventListener, times(2)).onEvent(any(Event.class));
+        verify(clientMessage).acknowledge();
+        verify(clientSession).commit();
+        verify(clientSession, never()).rollback();
+    }
+
+    @Test
+    public void failedBatchRequeuesUndeliveredEventsAndCommits() throws Exception {
+        EventMessageReceiver receiver = new EventMessageReceiver(eventListener, clientSessionFactory,
+            mapper);
+        ClientProducer producer = mock(ClientProducer.class);
+        ClientMessage requeued = mock(ClientMessage.class);
+        when(clientSession.createProducer(anyString())).thenReturn(producer);
+        when(clientSession.createMessage(eq(true))).thenReturn(requeued);
+        when(requeued.getBodyBuffer()).thenReturn(ActiveMQBuffers.fixedBuffer(1000));
+        when(clientMessage.containsProperty(EventSinkImpl.BATCH_SIZE_PROPERTY)).thenReturn(true);
+        doReturn("[" + eventJson() + "," + eventJson() + "," + eventJson() + "]")
+            .when(activeMQBuffer).readString();
+        doNothing().doThrow(new RuntimeException("Forced")).when(eventListener).onEvent(any(Event.class));
+
+        receiver.onMessage(clientMessage);
+
+        // The first event was delivered; the failed event and the one after it are requeued
+        verify(eventListener, times(2)).onEvent(any(Event.class));
+        verify(producer, times(2)).send(eq(requeued));
+        verify(requeued, times(2)).putStringProperty(eq(MessageReceiver.TARGET_QUEUE_PROPERTY),
+            eq(EventSource.getQueueName(eventListener)));
+        verify(producer).close();
+        verify(clientMessage).acknowledge();
+        verify(clientSession).commit();
+        verify(clientSession, never()).rollback();
+    }
+
+    @Test
+    public void messageRequeuedForAnotherQueueIsSkipped() throws Exception {
+        EventMessageReceiver receiver = new EventMessageReceiver(eventListener, clientSessionFactory,
+            mapper);
+        when(clientMessage.containsProperty(MessageReceiver.TARGET_QUEUE_PROPERTY)).thenReturn(true);
+        when(clientMessage.getStringProperty(MessageReceiver.TARGET_QUEUE_PROPERTY))
+            .thenReturn("event.SomeOtherListener");
+
+        receiver.onMessage(clientMessage);
+
+        verifyZeroInteractions(eventListener);
+        verify(clientMessage).acknowledge();
+        verify(clientSession).commit();
+        verify(clientSession, never()).rollback();
+    }
+
     private String eventJson() throws Exception {
         StringWriter sw = new StringWriter();
         Event e = new Event();
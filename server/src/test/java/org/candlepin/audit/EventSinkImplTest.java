@@ -15,21 +15,26 @@
 package org.candlepin.audit;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyBoolean;
 import static org.mockito.Matchers.anyObject;
 import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import org.candlepin.auth.Principal;
 import org.candlepin.config.CandlepinCommonTestConfig;
+import org.candlepin.config.ConfigProperties;
 import org.candlepin.controller.ModeManager;
 import org.candlepin.guice.PrincipalProvider;
 import org.candlepin.model.Consumer;
@@ -58,6 +63,7 @@ import org.mockito.Mock;
 import org.mockito.runners.MockitoJUnitRunner;
 
 import java.util.ArrayList;
+import java.util.List;
 
 /**
  * EventSinkImplTest
@@ -115,6 +121,21 @@ public class EventSinkImplTest {
         return sink;
     }
 
+    private EventSinkImpl createBatchingEventSink(int batchSize) throws Exception {
+        CandlepinCommonTestConfig config = new CandlepinCommonTestConfig();
+        config.setProperty(ConfigProperties.EVENT_BATCH_ENABLED, "true");
+        config.setProperty(ConfigProperties.EVENT_BATCH_SIZE, Integer.toString(batchSize));
+
+        EventSinkImpl sink = new EventSinkImpl(eventFilter, factory, mapper, config, mockModeManager) {
+            @Override
+            protected ClientSessionFactory createClientSessionFactory() {
+                return mockSessionFactory;
+            }
+        };
+        sink.initialize();
+        return sink;
+    }
+
     /**Set up the {@link ClientSessionFactory} to throw an exception when
      * {@link ClientSessionFactory#createSession()} is called.
      * Make sure, we throw up our hands saying "I am not dealing with this".
@@ -252,4 +273,125 @@ public class EventSinkImplTest {
         verify(mockClientProducer).send(any(ClientMessage.class));
     }
 
+    @Test
+    public void batchedEventsAreSentInASingleMessage() throws Exception {
+        // Each send is given a fresh message so the bodies can be inspected afterward
+        when(mockClientSession.createMessage(anyBoolean())).thenAnswer(invocation -> {
+            ClientMessage message = mock(ClientMessage.class);
+            when(message.getBodyBuffer()).thenReturn(ActiveMQBuffers.fixedBuffer(10000));
+            return message;
+        });
+
+        EventSinkImpl sink = createBatchingEventSink(10);
+        sink.emitOwnerCreated(o);
+        sink.emitPoolCreated(TestUtil.createPool(o, TestUtil.createProduct()));
+        sink.emitConsumerCreated(TestUtil.createConsumer());
+
+        // Nothing is sent until the transaction completes
+        verify(mockClientProducer, never()).send(any(ClientMessage.class));
+
+        sink.sendEvents();
+        sink.shutdown();
+
+        ArgumentCaptor<ClientMessage> captor = ArgumentCaptor.forClass(ClientMessage.class);
+        verify(mockClientProducer).send(captor.capture());
+        verify(mockClientSession).commit();
+
+        ClientMessage message = captor.getValue();
+        verify(message).putIntProperty(eq(EventSinkImpl.BATCH_SIZE_PROPERTY), eq(3));
+
+        Event[] events = new ObjectMapper().readValue(message.getBodyBuffer().readString(), Event[].class);
+        assertEquals(3, events.length);
+        assertEquals(Event.Target.OWNER, events[0].getTarget());
+        assertEquals(Event.Target.POOL, events[1].getTarget());
+        assertEquals(Event.Target.CONSUMER, events[2].getTarget());
+
+        assertEquals(3, sink.getPublishedEventCount());
+        assertEquals(1, sink.getPublishedBatchCount());
+        assertEquals(0, sink.getQueuedEventCount());
+        assertTrue(sink.getLastPublishLatency() > 0);
+        assertTrue(sink.getAveragePublishLatency() > 0);
+    }
+
+    @Test
+    public void batchingSinkReportsPublisherQueue() throws Exception {
+        EventSinkImpl sink = createBatchingEventSink(10);
+
+        List<QueueStatus> statuses = sink.getQueueInfo();
+        sink.shutdown();
+
+        QueueStatus publisher = statuses.get(statuses.size() - 1);
+        assertEquals(EventSinkImpl.PUBLISHER_QUEUE_NAME, publisher.getQueueName());
+        assertEquals(0, publisher.getPendingMessageCount());
+    }
+
+    @Test
+    public void batchedEventsAreSplitByBatchSize() throws Exception {
+        when(mockClientMessage.getBodyBuffer()).thenReturn(ActiveMQBuffers.dynamicBuffer(10000));
+
+        EventSinkImpl sink = createBatchingEventSink(2);
+        for (int i = 0; i < 5; i++) {
+            sink.emitOwnerCreated(new Owner("owner-" + i));
+        }
+
+        sink.sendEvents();
+        sink.shutdown();
+
+        verify(mockClientProducer, times(3)).send(any(ClientMessage.class));
+        verify(mockClientSession).commit();
+        assertEquals(5, sink.getPublishedEventCount());
+        assertEquals(3, sink.getPublishedBatchCount());
+        assertEquals(5.0 / 3, sink.getAverageBatchSize(), 0.001);
+    }
+
+    @Test
+    public void batchedEventsAreDiscardedOnRollback() throws Exception {
+        EventSinkImpl sink = createBatchingEventSink(10);
+        sink.emitOwnerCreated(o);
+        sink.rollback();
+        sink.sendEvents();
+        sink.shutdown();
+
+        verify(mockClientProducer, never()).send(any(ClientMessage.class));
+        verify(mockClientSession, never()).commit();
+        assertEquals(0, sink.getPublishedEventCount());
+    }
+
+    @Test
+    public void unserializableBatchedEventsAreSkipped() throws Exception {
+        when(mockClientMessage.getBodyBuffer()).thenReturn(ActiveMQBuffers.dynamicBuffer(10000));
+
+        Event badEvent = mock(Event.class);
+        doThrow(new JsonGenerationException("Nothing serious!")).when(mapper).writeValueAsString(badEvent);
+
+        EventSinkImpl sink = createBatchingEventSink(10);
+        sink.queueEvent(badEvent);
+        sink.emitOwnerCreated(o);
+        sink.sendEvents();
+        sink.shutdown();
+
+        verify(mockClientProducer).send(any(ClientMessage.class));
+        verify(mockClientMessage).putIntProperty(eq(EventSinkImpl.BATCH_SIZE_PROPERTY), eq(1));
+        assertEquals(1, sink.getPublishedEventCount());
+    }
+
+    @Test
+    public void batchedEventsArePublishedOnCallingThreadAfterShutdown() throws Exception {
+        when(mockClientMessage.getBodyBuffer()).thenReturn(ActiveMQBuffers.dynamicBuffer(10000));
+
+        EventSinkImpl sink = createBatchingEventSink(10);
+        assertTrue(sink.isBatchingEnabled());
+        sink.shutdown();
+
+        sink.emitOwnerCreated(o);
+        sink.sendEvents();
+
+        verify(mockClientProducer).send(any(ClientMessage.class));
+        verify(mockClientSession).commit();
+    }
+
+    @Test
+    public void batchingIsDisabledByDefault() {
+        assertFalse(eventSinkImpl.isBatchingEnabled());
+    }
 }
@@ -26,6 +26,7 @@ import org.apache.activemq.artemis.api.core.ActiveMQException;
 import org.apache.activemq.artemis.api.core.ActiveMQExceptionType;
 import org.apache.activemq.artemis.api.core.client.ClientConsumer;
 import org.apache.activemq.artemis.api.core.client.ClientMessage;
+import org.apache.activemq.artemis.api.core.client.ClientProducer;
 import org.apache.activemq.artemis.api.core.client.ClientSession;
 import org.apache.activemq.artemis.api.core.client.ClientSessionFactory;
 import org.candlepin.auth.PrincipalData;
@@ -168,6 +169,62 @@ public class QpidEventMessageReceiverTest {
         verify(clientSession, never()).commit();
     }
 
+    @Test
+    public void batchedMessageDeliversEachEvent() throws Exception {
+        QpidEventMessageReceiver receiver = new QpidEventMessageReceiver(eventListener, clientSessionFactory,
+            mapper);
+        when(clientMessage.containsProperty(EventSinkImpl.BATCH_SIZE_PROPERTY)).thenReturn(true);
+        doReturn("[" + eventJson() + "," + eventJson() + "]").when(activeMQBuffer).readString();
+        receiver.onMessage(clientMessage);
+        verify(eventListener, times(2)).onEvent(any(Event.class));
+        verify(clientMessage).acknowledge();
+        verify(clientSession).commit();
+        verify(clientSession, never()).rollback();
+    }
+
+    @Test
+    public void failedBatchRequeuesUndeliveredEventsAndCommits() throws Exception {
+        QpidEventMessageReceiver receiver = new QpidEventMessageReceiver(eventListener, clientSessionFactory,
+            mapper);
+        ClientProducer producer = mock(ClientProducer.class);
+        ClientMessage requeued = mock(ClientMessage.class);
+        when(clientSession.createProducer(anyString())).thenReturn(producer);
+        when(clientSession.createMessage(eq(true))).thenReturn(requeued);
+        when(requeued.getBodyBuffer()).thenReturn(ActiveMQBuffers.fixedBuffer(1000));
+        when(clientMessage.containsProperty(EventSinkImpl.BATCH_SIZE_PROPERTY)).thenReturn(true);
+        doReturn("[" + eventJson() + "," + eventJson() + "," + eventJson() + "]")
+            .when(activeMQBuffer).readString();
+        doNothing().doThrow(new RuntimeException("Forced")).when(eventListener).onEvent(any(Event.class));
+
+        receiver.onMessage(clientMessage);
+
+        // The first event was delivered; the failed event and the one after it are requeued
+        verify(eventListener, times(2)).onEvent(any(Event.class));
+        verify(producer, times(2)).send(eq(requeued));
+        verify(requeued, times(2)).putStringProperty(eq(MessageReceiver.TARGET_QUEUE_PROPERTY),
+            eq(EventSource.getQueueName(eventListener)));
+        verify(producer).close();
+        verify(clientMessage).acknowledge();
+        verify(clientSession).commit();
+        verify(clientSession, never()).rollback();
+    }
+
+    @Test
+    public void messageRequeuedForAnotherQueueIsSkipped() throws Exception {
+        QpidEventMessageReceiver receiver = new QpidEventMessageReceiver(eventListener, clientSessionFactory,
+            mapper);
+        when(clientMessage.containsProperty(MessageReceiver.TARGET_QUEUE_PROPERTY)).thenReturn(true);
+        when(clientMessage.getStringProperty(MessageReceiver.TARGET_QUEUE_PROPERTY))
+            .thenReturn("event.SomeOtherListener");
+
+        receiver.onMessage(clientMessage);
+
+        verifyZeroInteractions(eventListener);
+        verify(clientMessage).acknowledge();
+        verify(clientSession).commit();
+        verify(clientSession, never()).rollback();
+    }
+
     private String eventJson() throws Exception {
         StringWriter sw = new StringWriter();
         Event e = new Event();
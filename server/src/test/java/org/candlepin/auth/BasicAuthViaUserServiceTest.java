@@ -16,6 +16,8 @@ package org.candlepin.auth;
 
 import static org.junit.Assert.*;
 import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import org.candlepin.auth.permissions.OwnerPermission;
@@ -55,6 +57,7 @@ public class BasicAuthViaUserServiceTest {
     @Mock private UserServiceAdapter userService;
     @Mock private Injector injector;
     @Mock private Provider<I18n> mockI18n;
+    private PrincipalCache principalCache;
     private BasicAuth auth;
 
     @Before
@@ -72,7 +75,8 @@ public class BasicAuthViaUserServiceTest {
 
         I18n i18n = I18nFactory.getI18n(getClass(), Locale.US, I18nFactory.FALLBACK);
         when(mockI18n.get()).thenReturn(i18n);
-        this.auth = new BasicAuth(userService, mockI18n);
+        this.principalCache = new PrincipalCache(true, 100, 60000);
+        this.auth = new BasicAuth(userService, principalCache, mockI18n);
     }
 
     /**
@@ -162,6 +166,54 @@ public class BasicAuthViaUserServiceTest {
         assertEquals(expected, this.auth.getPrincipal(request));
     }
 
+    @Test
+    public void cachedCredentialsSkipValidation() throws Exception {
+        setUserAndPassword("user", "redhat");
+        when(userService.validateUser("user", "redhat")).thenReturn(true);
+        when(userService.findByLogin("user")).thenReturn(new User());
+
+        Principal first = this.auth.getPrincipal(request);
+        Principal second = this.auth.getPrincipal(request);
+
+        assertEquals(first, second);
+        assertNotSame(first, second);
+        verify(userService, times(1)).validateUser("user", "redhat");
+        verify(userService, times(2)).findByLogin("user");
+    }
+
+    @Test
+    public void cachedPrincipalRequiresSamePassword() throws Exception {
+        setUserAndPassword("user", "redhat");
+        when(userService.validateUser("user", "redhat")).thenReturn(true);
+        when(userService.findByLogin("user")).thenReturn(new User());
+        assertNotNull(this.auth.getPrincipal(request));
+
+        headerMap.clear();
+        setUserAndPassword("user", "wrong");
+        when(userService.validateUser("user", "wrong")).thenReturn(false);
+
+        try {
+            this.auth.getPrincipal(request);
+            fail("Expected NotAuthorizedException");
+        }
+        catch (NotAuthorizedException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void invalidatedUserIsRevalidated() throws Exception {
+        setUserAndPassword("user", "redhat");
+        when(userService.validateUser("user", "redhat")).thenReturn(true);
+        when(userService.findByLogin("user")).thenReturn(new User());
+        assertNotNull(this.auth.getPrincipal(request));
+
+        this.principalCache.invalidateUser("user");
+        assertNotNull(this.auth.getPrincipal(request));
+
+        verify(userService, times(2)).validateUser("user", "redhat");
+    }
+
     // TODO:  Add in owner creation/retrieval tests?
 
     private void setUserAndPassword(String username, String password) {
@@ -0,0 +1,151 @@
+/**
+ * Copyright (c) 2009 - 2018 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.auth;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.candlepin.model.Consumer;
+import org.candlepin.model.IdentityCertificate;
+import org.candlepin.model.Owner;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Collections;
+
+
+
+/**
+ * PrincipalCacheTest
+ */
+public class PrincipalCacheTest {
+
+    private PrincipalCache cache;
+    private Consumer consumer;
+
+    @Before
+    public void setUp() {
+        this.cache = new PrincipalCache(true, 100, 60000);
+
+        Owner owner = new Owner("owner");
+        owner.setId("owner-id");
+
+        this.consumer = new Consumer("consumer", "user", owner, null);
+        this.consumer.setId("consumer-id");
+        this.consumer.setUuid("consumer-uuid");
+        this.consumer.setIdCert(new IdentityCertificate());
+        this.consumer.getIdCert().setId("cert-id");
+    }
+
+    @Test
+    public void testOnlyUsernameIsCached() {
+        this.cache.put("key", new UserPrincipal("user", Collections.emptyList(), false));
+
+        assertEquals("user", this.cache.getUsername("key"));
+        assertNull(this.cache.getConsumer("key"));
+    }
+
+    @Test
+    public void testOnlyConsumerIdentityIsCached() {
+        this.cache.put("key", new ConsumerPrincipal(this.consumer, new Owner("owner")));
+
+        PrincipalCache.CachedConsumer cached = this.cache.getConsumer("key");
+        assertNotNull(cached);
+        assertEquals("consumer-id", cached.getConsumerId());
+        assertTrue(cached.matches(this.consumer));
+        assertNull(this.cache.getUsername("key"));
+    }
+
+    @Test
+    public void testRegeneratedIdentityCertDoesNotMatch() {
+        this.cache.put("key", new ConsumerPrincipal(this.consumer, new Owner("owner")));
+        PrincipalCache.CachedConsumer cached = this.cache.getConsumer("key");
+
+        this.consumer.getIdCert().setId("new-cert-id");
+        assertFalse(cached.matches(this.consumer));
+        assertFalse(cached.matches(null));
+    }
+
+    @Test
+    public void testEntriesExpire() {
+        this.cache = new PrincipalCache(true, 100, 1);
+        this.cache.put("key", new UserPrincipal("user", Collections.emptyList(), false));
+
+        long start = System.currentTimeMillis();
+        while (System.currentTimeMillis() <= start + 1) {
+            Thread.yield();
+        }
+
+        assertNull(this.cache.getUsername("key"));
+    }
+
+    @Test
+    public void testInvalidateConsumer() {
+        this.cache.put("consumer", new ConsumerPrincipal(this.consumer, new Owner("owner")));
+        this.cache.put("user", new UserPrincipal("user", Collections.emptyList(), false));
+
+        this.cache.invalidateConsumer("consumer-uuid");
+        assertNull(this.cache.getConsumer("consumer"));
+        assertNotNull(this.cache.getUsername("user"));
+    }
+
+    @Test
+    public void testInvalidateUser() {
+        this.cache.put("user1", new UserPrincipal("user1", Collections.emptyList(), false));
+        this.cache.put("user2", new UserPrincipal("user2", Collections.emptyList(), false));
+
+        this.cache.invalidateUser("user1");
+        assertNull(this.cache.getUsername("user1"));
+        assertNotNull(this.cache.getUsername("user2"));
+    }
+
+    @Test
+    public void testInvalidateUsersRetainsConsumers() {
+        this.cache.put("consumer", new ConsumerPrincipal(this.consumer, new Owner("owner")));
+        this.cache.put("user", new UserPrincipal("user", Collections.emptyList(), false));
+
+        this.cache.invalidateUsers();
+        assertNotNull(this.cache.getConsumer("consumer"));
+        assertNull(this.cache.getUsername("user"));
+    }
+
+    @Test
+    public void testCredentialKeyDoesNotRevealPassword() {
+        String key = this.cache.getCredentialKey("user", "secret");
+
+        assertNotNull(key);
+        assertFalse(key.contains("secret"));
+        assertEquals(key, this.cache.getCredentialKey("user", "secret"));
+        assertNotEquals(key, this.cache.getCredentialKey("user", "secret2"));
+        assertNotEquals(key, this.cache.getCredentialKey("users", "ecret"));
+        assertNull(this.cache.getCredentialKey("user", null));
+    }
+
+    @Test
+    public void testDisabledCacheHasNoKeys() {
+        this.cache = new PrincipalCache(false, 100, 60000);
+
+        assertNull(this.cache.getCredentialKey("user", "secret"));
+        assertNull(this.cache.getOAuthKey("consumer", "user"));
+
+        this.cache.put("key", new UserPrincipal("user", Collections.emptyList(), false));
+        assertNull(this.cache.getUsername("key"));
+    }
+}
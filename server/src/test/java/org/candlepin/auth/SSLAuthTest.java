@@ -23,6 +23,7 @@ import org.candlepin.model.ConsumerCurator;
 import org.candlepin.model.ConsumerType;
 import org.candlepin.model.ConsumerType.ConsumerTypeEnum;
 import org.candlepin.model.DeletedConsumerCurator;
+import org.candlepin.model.IdentityCertificate;
 import org.candlepin.model.Owner;
 import org.candlepin.model.OwnerCurator;
 import org.candlepin.test.TestUtil;
@@ -34,6 +35,7 @@ import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 import org.xnap.commons.i18n.I18n;
 
+import java.security.cert.CertificateEncodingException;
 import java.security.cert.X509Certificate;
 
 import javax.inject.Provider;
@@ -47,14 +49,17 @@ public class SSLAuthTest {
     @Mock private DeletedConsumerCurator deletedConsumerCurator;
     @Mock private Provider<I18n> i18nProvider;
 
+    private PrincipalCache principalCache;
     private SSLAuth auth;
 
     @Before
     public void setUp() {
         MockitoAnnotations.initMocks(this);
+        this.principalCache = new PrincipalCache(true, 100, 60000);
         this.auth = new SSLAuth(this.consumerCurator,
             this.ownerCurator,
             this.deletedConsumerCurator,
+            this.principalCache,
             i18nProvider);
     }
 
@@ -116,12 +121,91 @@ public class SSLAuthTest {
         assertNull(this.auth.getPrincipal(httpRequest));
     }
 
+    @Test
+    public void cachedConsumerIsReloadedById() throws Exception {
+        Owner owner = new Owner("test owner");
+        owner.setId(TestUtil.randomString());
+        Consumer consumer = this.createConsumer(owner);
+
+        mockCert("CN=453-44423-235");
+        when(this.consumerCurator.getConsumer("453-44423-235")).thenReturn(consumer);
+        when(this.consumerCurator.get(consumer.getId())).thenReturn(consumer);
+        when(this.ownerCurator.findOwnerById(owner.getOwnerId())).thenReturn(owner);
+
+        ConsumerPrincipal expected = new ConsumerPrincipal(consumer, owner);
+        assertEquals(expected, this.auth.getPrincipal(httpRequest));
+        assertEquals(expected, this.auth.getPrincipal(httpRequest));
+
+        verify(this.consumerCurator, times(1)).getConsumer("453-44423-235");
+        verify(this.deletedConsumerCurator, times(1)).countByConsumerUuid("453-44423-235");
+        verify(this.consumerCurator, times(1)).get(consumer.getId());
+    }
+
+    @Test
+    public void regeneratedIdentityCertInvalidatesCachedConsumer() throws Exception {
+        Owner owner = new Owner("test owner");
+        owner.setId(TestUtil.randomString());
+        Consumer consumer = this.createConsumer(owner);
+
+        mockCert("CN=453-44423-235");
+        when(this.consumerCurator.getConsumer("453-44423-235")).thenReturn(consumer);
+        when(this.ownerCurator.findOwnerById(owner.getOwnerId())).thenReturn(owner);
+        assertNotNull(this.auth.getPrincipal(httpRequest));
+
+        Consumer regenerated = this.createConsumer(owner);
+        regenerated.setId(consumer.getId());
+        regenerated.setUuid(consumer.getUuid());
+        regenerated.setIdCert(new IdentityCertificate());
+        regenerated.getIdCert().setId("new-cert");
+        when(this.consumerCurator.get(consumer.getId())).thenReturn(regenerated);
+        when(this.consumerCurator.getConsumer("453-44423-235")).thenReturn(regenerated);
+
+        ConsumerPrincipal principal = (ConsumerPrincipal) this.auth.getPrincipal(httpRequest);
+        assertSame(regenerated, principal.getConsumer());
+        verify(this.consumerCurator, times(2)).getConsumer("453-44423-235");
+    }
+
+    @Test
+    public void deletedConsumerIsNotServedFromCache() throws Exception {
+        Owner owner = new Owner("test owner");
+        owner.setId(TestUtil.randomString());
+        Consumer consumer = this.createConsumer(owner);
+
+        mockCert("CN=453-44423-235");
+        when(this.consumerCurator.getConsumer("453-44423-235")).thenReturn(consumer);
+        when(this.ownerCurator.findOwnerById(owner.getOwnerId())).thenReturn(owner);
+        assertNotNull(this.auth.getPrincipal(httpRequest));
+
+        when(this.consumerCurator.get(consumer.getId())).thenReturn(null);
+        when(this.consumerCurator.getConsumer("453-44423-235")).thenReturn(null);
+        assertNull(this.auth.getPrincipal(httpRequest));
+    }
+
+    private Consumer createConsumer(Owner owner) {
+        ConsumerType ctype = new ConsumerType(ConsumerTypeEnum.SYSTEM);
+        ctype.setId("test-ctype");
+
+        Consumer consumer = new Consumer("machine_name", "test user", owner, ctype);
+        consumer.setId(TestUtil.randomString());
+        consumer.setUuid("453-44423-235");
+        consumer.setIdCert(new IdentityCertificate());
+        consumer.getIdCert().setId("old-cert");
+
+        return consumer;
+    }
 
     private void mockCert(String dn) {
         X509Certificate idCert =  mock(X509Certificate.class);
         X500Principal principal = new X500Principal(dn);
 
         when(idCert.getSubjectX500Principal()).thenReturn(principal);
+        try {
+            when(idCert.getEncoded()).thenReturn(principal.getEncoded());
+        }
+        catch (CertificateEncodingException e) {
+            throw new RuntimeException(e);
+        }
+
         when(this.httpRequest.getAttribute("javax.servlet.request.X509Certificate"))
             .thenReturn(new X509Certificate[]{idCert});
     }
@@ -25,7 +25,6 @@ import org.candlepin.model.ImportRecordCurator;
 import org.candlepin.model.Owner;
 import org.candlepin.model.OwnerContentCurator;
 import org.candlepin.model.OwnerCurator;
-import org.candlepin.model.OwnerEnvContentAccessCurator;
 import org.candlepin.model.OwnerProductCurator;
 import org.candlepin.model.PermissionBlueprintCurator;
 import org.candlepin.model.UeberCertificateCurator;
@@ -33,6 +32,7 @@ import org.candlepin.model.activationkeys.ActivationKeyCurator;
 
 import org.candlepin.service.ContentAccessCertServiceAdapter;
 import org.candlepin.service.OwnerServiceAdapter;
+import org.candlepin.service.impl.ContentAccessPayloadRefresher;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -75,7 +75,7 @@ public class OwnerManagerTest {
     @Mock
     private ContentAccessCertificateCurator contentAccessCertCurator;
     @Mock
-    private OwnerEnvContentAccessCurator ownerEnvContentAccessCurator;
+    private ContentAccessPayloadRefresher payloadRefresher;
     @Mock
     private UeberCertificateCurator uberCertificateCurator;
     @Mock
@@ -86,7 +86,7 @@ public class OwnerManagerTest {
         ownerManager = new OwnerManager(consumerCurator, activationKeyCurator, envCurator,
             exportCurator, importRecordCurator, permissionCurator, ownerProductCurator, productManager,
             ownerContentCurator, contentManager, ownerCurator, contentAccessCertService,
-            contentAccessCertCurator, ownerEnvContentAccessCurator, uberCertificateCurator,
+            contentAccessCertCurator, payloadRefresher, uberCertificateCurator,
             ownerServiceAdapter);
     }
 
@@ -1127,8 +1127,8 @@ public class PoolManagerTest {
         CandlepinQuery mockQuery = mock(CandlepinQuery.class);
         when(mockPoolCurator.listAllByIds(any(List.class))).thenReturn(mockQuery);
         when(mockQuery.iterator()).thenReturn(Arrays.asList(pool1).listIterator());
-        when(enforcerMock.preEntitlement(any(Consumer.class), any(Pool.class), anyInt(),
-            any(CallerType.class))).thenReturn(result);
+        when(enforcerMock.preEntitlement(any(Consumer.class), anyCollectionOf(PoolQuantity.class),
+            eq(CallerType.BEST_POOLS))).thenReturn(Collections.singletonMap(pool1.getId(), result));
 
         when(enforcerMock.postEntitlement(eq(manager), any(Consumer.class), any(Owner.class), anyMap(),
             anyList(), eq(false), anyMap())).thenReturn(new PoolOperationCallback());
@@ -1415,8 +1415,8 @@ public class PoolManagerTest {
         when(mockPoolCurator.listAllByIds(any(List.class))).thenReturn(mockQuery);
         when(mockQuery.iterator()).thenReturn(Arrays.asList(pool1).listIterator());
 
-        when(enforcerMock.preEntitlement(any(Consumer.class), any(Pool.class), anyInt(),
-            any(CallerType.class))).thenReturn(result);
+        when(enforcerMock.preEntitlement(any(Consumer.class), anyCollectionOf(PoolQuantity.class),
+            eq(CallerType.BEST_POOLS))).thenReturn(Collections.singletonMap(pool1.getId(), result));
         when(enforcerMock.postEntitlement(eq(manager), any(Consumer.class), any(Owner.class), anyMap(),
             anyList(), eq(false), anyMap())).thenReturn(new PoolOperationCallback());
         when(result.isSuccessful()).thenReturn(true);
@@ -1440,6 +1440,59 @@ public class PoolManagerTest {
             any(Set.class), eq(false));
     }
 
+    @SuppressWarnings({ "rawtypes", "unchecked" })
+    @Test
+    public void testGetBestPoolsValidatesCandidatesInOneRulesCall() throws Exception {
+        Product product = TestUtil.createProduct();
+        List<Pool> pools = new ArrayList<>();
+        for (int i = 0; i < 3; ++i) {
+            Pool pool = TestUtil.createPool(owner, product);
+            pool.setId("pool-" + i);
+            pools.add(pool);
+        }
+
+        Date now = new Date();
+
+        Page page = mock(Page.class);
+        when(page.getPageData()).thenReturn(pools);
+        when(mockPoolCurator.listAvailableEntitlementPools(any(Consumer.class),
+            any(String.class), any(String.class), any(String.class), eq(now),
+            any(PoolFilterBuilder.class), any(PageRequest.class), anyBoolean(), anyBoolean(), anyBoolean(),
+            any(Date.class)))
+            .thenReturn(page);
+        when(enforcerMock.filterPools(any(Consumer.class), any(List.class), anyBoolean())).thenReturn(pools);
+        when(complianceRules.getStatus(any(Consumer.class), any(Date.class), anyBoolean()))
+            .thenReturn(new ComplianceStatus(now));
+
+        ValidationResult failed = new ValidationResult();
+        failed.addError(new ValidationError("rulefailed.no.entitlements.available"));
+
+        Map<String, ValidationResult> results = new HashMap<>();
+        results.put("pool-0", new ValidationResult());
+        results.put("pool-1", failed);
+        results.put("pool-2", new ValidationResult());
+        when(enforcerMock.preEntitlement(any(Consumer.class), anyCollectionOf(PoolQuantity.class),
+            eq(CallerType.BEST_POOLS))).thenReturn(results);
+
+        ConsumerType ctype = this.mockConsumerType(TestUtil.createConsumerType());
+        Consumer consumer = TestUtil.createConsumer(ctype, owner);
+
+        manager.getBestPools(consumer, new String[] { product.getId() }, now, owner.getId(), null, null);
+
+        ArgumentCaptor<Collection> quantityCaptor = ArgumentCaptor.forClass(Collection.class);
+        verify(enforcerMock, times(1)).preEntitlement(eq(consumer), quantityCaptor.capture(),
+            eq(CallerType.BEST_POOLS));
+        verify(enforcerMock, never()).preEntitlement(any(Consumer.class), any(Pool.class), anyInt(),
+            any(CallerType.class));
+        assertEquals(3, quantityCaptor.getValue().size());
+
+        ArgumentCaptor<List> candidateCaptor = ArgumentCaptor.forClass(List.class);
+        verify(autobindRules).selectBestPools(eq(consumer), any(String[].class),
+            candidateCaptor.capture(), any(ComplianceStatus.class), any(String.class),
+            any(Set.class), eq(false));
+        assertEquals(Arrays.asList(pools.get(0), pools.get(2)), candidateCaptor.getValue());
+    }
+
     @Test
     public void testRefreshPoolsRemovesOtherOwnerPoolsForSameSub() {
         PreUnbindHelper preHelper =  mock(PreUnbindHelper.class);
@@ -322,4 +322,46 @@ public class SimpleModelTranslatorTest {
         assertSame(entity, dto.getSourceObject());
     }
 
+    @Test
+    public void testResolvedTranslatorsUpdatedOnRegistration() {
+        ModelTranslator modelTranslator = new SimpleModelTranslator();
+        ObjectTranslator translator1 = new TestTranslator();
+        ObjectTranslator translator2 = new TestTranslator();
+
+        modelTranslator.registerTranslator(translator1, ModelEntity.class, TestDTO.class);
+
+        ModelEntity entity = new TestModelEntity() {};
+        assertSame(translator1, modelTranslator.translate(entity, TestDTO.class).getObjectTranslator());
+        assertSame(translator1, modelTranslator.findTranslatorByInstance(entity, TestDTO.class));
+
+        modelTranslator.registerTranslator(translator2, TestModelEntity.class, TestDTO.class);
+        assertSame(translator2, modelTranslator.translate(entity, TestDTO.class).getObjectTranslator());
+    }
+
+    @Test
+    public void testResolvedTranslatorsUpdatedOnUnregistration() {
+        ModelTranslator modelTranslator = new SimpleModelTranslator();
+        ObjectTranslator translator1 = new TestTranslator();
+        ObjectTranslator translator2 = new TestTranslator();
+
+        modelTranslator.registerTranslator(translator1, ModelEntity.class, TestDTO.class);
+        modelTranslator.registerTranslator(translator2, TestModelEntity.class, TestDTO.class);
+
+        ModelEntity entity = new TestModelEntity() {};
+        assertSame(translator2, modelTranslator.translate(entity, TestDTO.class).getObjectTranslator());
+
+        modelTranslator.unregisterTranslator(TestModelEntity.class, TestDTO.class);
+        assertSame(translator1, modelTranslator.translate(entity, TestDTO.class).getObjectTranslator());
+
+        modelTranslator.unregisterTranslator(translator1);
+
+        try {
+            modelTranslator.translate(entity, TestDTO.class);
+            fail("Expected a TranslationException");
+        }
+        catch (TranslationException e) {
+            // Expected
+        }
+    }
+
 }
@@ -23,6 +23,7 @@ import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
@@ -136,6 +137,25 @@ public class PoolDTOTest extends AbstractDTOTest<PoolDTO> {
         assertTrue(dto.removeAttribute("attribute-key-4"));
     }
 
+    @Test
+    public void testCloneRetainsSourceCollections() {
+        PoolDTO dto = new PoolDTO();
+
+        Map<String, String> attributes = new HashMap<>();
+        attributes.put("attribute-key-5", "attribute-value-5");
+        dto.setAttributes(attributes);
+        dto.setProductAttributes(attributes);
+
+        PoolDTO copy = dto.clone();
+
+        assertEquals(attributes, dto.getAttributes());
+        assertEquals(attributes, dto.getProductAttributes());
+        assertEquals(dto, copy);
+
+        copy.removeAttribute("attribute-key-5");
+        assertTrue(dto.hasAttribute("attribute-key-5"));
+    }
+
     @Test(expected = IllegalArgumentException.class)
     public void testRemoveAttributeWithNullInput() {
         PoolDTO dto = new PoolDTO();
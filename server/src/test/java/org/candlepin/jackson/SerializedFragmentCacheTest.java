@@ -0,0 +1,89 @@
+/**
+ * Copyright (c) 2009 - 2018 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.jackson;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+import org.candlepin.dto.rules.v1.OwnerDTO;
+
+import org.junit.Test;
+
+
+
+/**
+ * SerializedFragmentCacheTest
+ */
+public class SerializedFragmentCacheTest {
+
+    @Test
+    public void returnsFragmentsForEqualDTOs() {
+        SerializedFragmentCache cache = new SerializedFragmentCache(true, 10, 60000);
+        cache.put(new OwnerDTO().setId("owner"), "{\"id\":\"owner\"}");
+
+        assertEquals("{\"id\":\"owner\"}", cache.get(new OwnerDTO().setId("owner")));
+        assertNull(cache.get(new OwnerDTO().setId("owner").setDefaultServiceLevel("Premium")));
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+    }
+
+    @Test
+    public void changesToStoredDTOsDoNotAffectFragments() {
+        SerializedFragmentCache cache = new SerializedFragmentCache(true, 10, 60000);
+        OwnerDTO owner = new OwnerDTO().setId("owner");
+        cache.put(owner, "{\"id\":\"owner\"}");
+
+        owner.setDefaultServiceLevel("Premium");
+
+        assertNull(cache.get(owner));
+        assertEquals("{\"id\":\"owner\"}", cache.get(new OwnerDTO().setId("owner")));
+    }
+
+    @Test
+    public void expiredFragmentsAreDiscarded() throws Exception {
+        SerializedFragmentCache cache = new SerializedFragmentCache(true, 10, 1);
+        cache.put(new OwnerDTO().setId("owner"), "{\"id\":\"owner\"}");
+
+        Thread.sleep(10);
+
+        assertNull(cache.get(new OwnerDTO().setId("owner")));
+        assertEquals(0, cache.getSize());
+    }
+
+    @Test
+    public void leastRecentlyUsedFragmentsAreEvicted() {
+        SerializedFragmentCache cache = new SerializedFragmentCache(true, 2, 60000);
+        cache.put(new OwnerDTO().setId("owner1"), "1");
+        cache.put(new OwnerDTO().setId("owner2"), "2");
+        cache.get(new OwnerDTO().setId("owner1"));
+        cache.put(new OwnerDTO().setId("owner3"), "3");
+
+        assertEquals(2, cache.getSize());
+        assertEquals("1", cache.get(new OwnerDTO().setId("owner1")));
+        assertNull(cache.get(new OwnerDTO().setId("owner2")));
+        assertEquals("3", cache.get(new OwnerDTO().setId("owner3")));
+    }
+
+    @Test
+    public void disabledCacheRetainsNothing() {
+        SerializedFragmentCache cache = new SerializedFragmentCache(false, 10, 60000);
+        cache.put(new OwnerDTO().setId("owner"), "{\"id\":\"owner\"}");
+
+        assertFalse(cache.isEnabled());
+        assertNull(cache.get(new OwnerDTO().setId("owner")));
+        assertEquals(0, cache.getSize());
+    }
+}
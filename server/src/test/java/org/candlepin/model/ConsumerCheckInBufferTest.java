@@ -0,0 +1,224 @@
+/**
+ * Copyright (c) 2009 - 2018 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyMap;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.google.inject.persist.UnitOfWork;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+
+
+/**
+ * ConsumerCheckInBufferTest
+ */
+public class ConsumerCheckInBufferTest {
+    private ConsumerCurator consumerCurator;
+    private UnitOfWork unitOfWork;
+    private ConsumerCheckInBuffer buffer;
+
+    @Before
+    public void init() {
+        this.consumerCurator = mock(ConsumerCurator.class);
+        this.unitOfWork = mock(UnitOfWork.class);
+    }
+
+    @After
+    public void cleanup() {
+        if (this.buffer != null) {
+            this.buffer.shutdown();
+        }
+    }
+
+    private Consumer mockConsumer(String id) {
+        Consumer consumer = mock(Consumer.class);
+        when(consumer.getId()).thenReturn(id);
+
+        return consumer;
+    }
+
+    @Test
+    public void checkInsAreWrittenImmediatelyWhenNotStarted() {
+        this.buffer = new ConsumerCheckInBuffer(this.consumerCurator, this.unitOfWork, true, 3600, 10);
+        Consumer consumer = this.mockConsumer("c1");
+        Date date = new Date();
+
+        this.buffer.checkIn(consumer, date);
+
+        verify(this.consumerCurator).updateLastCheckin(eq(consumer), eq(date));
+        assertEquals(0, this.buffer.getPendingCount());
+        assertEquals(1, this.buffer.getDirectWriteCount());
+    }
+
+    @Test
+    public void checkInsAreWrittenImmediatelyWhenDisabled() {
+        this.buffer = new ConsumerCheckInBuffer(this.consumerCurator, this.unitOfWork, false, 0, 0);
+        this.buffer.start();
+        Consumer consumer = this.mockConsumer("c1");
+        Date date = new Date();
+
+        this.buffer.checkIn(consumer, date);
+
+        verify(this.consumerCurator).updateLastCheckin(eq(consumer), eq(date));
+        assertEquals(0, this.buffer.getPendingCount());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidSizeIsRejectedWhenEnabled() {
+        new ConsumerCheckInBuffer(this.consumerCurator, this.unitOfWork, true, 5, 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidFlushIntervalIsRejectedWhenEnabled() {
+        new ConsumerCheckInBuffer(this.consumerCurator, this.unitOfWork, true, 0, 10);
+    }
+
+    @Test
+    public void checkInsAreBufferedUntilFlushed() {
+        this.buffer = new ConsumerCheckInBuffer(this.consumerCurator, this.unitOfWork, true, 3600, 10);
+        this.buffer.start();
+        Date date1 = new Date(1000);
+        Date date2 = new Date(2000);
+
+        this.buffer.checkIn(this.mockConsumer("c1"), date1);
+        this.buffer.checkIn(this.mockConsumer("c2"), date2);
+
+        verify(this.consumerCurator, never()).updateLastCheckin(any(Consumer.class), any(Date.class));
+        verify(this.consumerCurator, never()).updateLastCheckins(anyMap());
+        assertEquals(2, this.buffer.getPendingCount());
+
+        this.buffer.flush();
+
+        Map<String, Date> expected = new HashMap<>();
+        expected.put("c1", date1);
+        expected.put("c2", date2);
+
+        verify(this.consumerCurator).updateLastCheckins(eq(expected));
+        verify(this.unitOfWork).begin();
+        verify(this.unitOfWork).end();
+        assertEquals(0, this.buffer.getPendingCount());
+        assertEquals(2, this.buffer.getWrittenCount());
+        assertEquals(1, this.buffer.getFlushCount());
+    }
+
+    @Test
+    public void repeatedCheckInsAreCoalesced() {
+        this.buffer = new ConsumerCheckInBuffer(this.consumerCurator, this.unitOfWork, true, 3600, 10);
+        this.buffer.start();
+        Consumer consumer = this.mockConsumer("c1");
+
+        this.buffer.checkIn(consumer, new Date(1000));
+        this.buffer.checkIn(consumer, new Date(3000));
+        this.buffer.checkIn(consumer, new Date(2000));
+        this.buffer.flush();
+
+        verify(this.consumerCurator).updateLastCheckins(eq(Collections.singletonMap("c1", new Date(3000))));
+        assertEquals(3, this.buffer.getReceivedCount());
+        assertEquals(2, this.buffer.getCoalescedCount());
+        assertEquals(1, this.buffer.getWrittenCount());
+    }
+
+    @Test
+    public void shutdownFlushesPendingCheckIns() {
+        this.buffer = new ConsumerCheckInBuffer(this.consumerCurator, this.unitOfWork, true, 3600, 10);
+        this.buffer.start();
+        Date date = new Date(1000);
+
+        this.buffer.checkIn(this.mockConsumer("c1"), date);
+        this.buffer.shutdown();
+
+        verify(this.consumerCurator).updateLastCheckins(eq(Collections.singletonMap("c1", date)));
+        assertEquals(0, this.buffer.getPendingCount());
+
+        // Check-ins after shutdown are no longer buffered
+        Consumer consumer = this.mockConsumer("c2");
+        this.buffer.checkIn(consumer, date);
+        verify(this.consumerCurator).updateLastCheckin(eq(consumer), eq(date));
+    }
+
+    @Test
+    public void failedFlushesAreRetried() {
+        this.buffer = new ConsumerCheckInBuffer(this.consumerCurator, this.unitOfWork, true, 3600, 10);
+        this.buffer.start();
+        Date date = new Date(1000);
+        Map<String, Date> expected = Collections.singletonMap("c1", date);
+
+        when(this.consumerCurator.updateLastCheckins(anyMap()))
+            .thenThrow(new RuntimeException("db unavailable"))
+            .thenReturn(1);
+
+        this.buffer.checkIn(this.mockConsumer("c1"), date);
+        this.buffer.flush();
+
+        assertEquals(1, this.buffer.getPendingCount());
+        assertEquals(0, this.buffer.getWrittenCount());
+        verify(this.unitOfWork).end();
+
+        this.buffer.flush();
+
+        verify(this.consumerCurator, times(2)).updateLastCheckins(eq(expected));
+        assertEquals(0, this.buffer.getPendingCount());
+        assertEquals(1, this.buffer.getWrittenCount());
+    }
+
+    @Test
+    public void fullBufferIsFlushedEarly() throws Exception {
+        this.buffer = new ConsumerCheckInBuffer(this.consumerCurator, this.unitOfWork, true, 3600, 1);
+        this.buffer.start();
+
+        CountDownLatch flushStarted = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            flushStarted.countDown();
+            release.await(10, TimeUnit.SECONDS);
+            return null;
+        }).when(this.unitOfWork).begin();
+
+        Date date = new Date(1000);
+        this.buffer.checkIn(this.mockConsumer("c1"), date);
+        flushStarted.await(10, TimeUnit.SECONDS);
+
+        // The buffer is still full while the flush waits to start, so new consumers are written
+        // immediately
+        Consumer consumer = this.mockConsumer("c2");
+        this.buffer.checkIn(consumer, date);
+        verify(this.consumerCurator).updateLastCheckin(eq(consumer), eq(date));
+        assertEquals(1, this.buffer.getDirectWriteCount());
+
+        release.countDown();
+        verify(this.consumerCurator, timeout(10000))
+            .updateLastCheckins(eq(Collections.singletonMap("c1", date)));
+    }
+}
@@ -16,6 +16,7 @@ package org.candlepin.model;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.times;
@@ -413,6 +414,42 @@ public class ConsumerCuratorTest extends DatabaseTestFixture {
         assertTrue(guests.size() == 0);
     }
 
+    @Test
+    public void reverseEndianVirtUuidMatching() {
+        Consumer gConsumer1 = new Consumer("guestConsumer1", "testUser", owner, ct);
+        gConsumer1.getFacts().put("virt.uuid", "DAF0FE10-956B-7B4E-B7DC-B383CE681BA8");
+        consumerCurator.create(gConsumer1);
+
+        assertEquals(gConsumer1, consumerCurator.findByVirtUuid("10fef0da-6b95-4e7b-b7dc-b383ce681ba8",
+            owner.getId()));
+    }
+
+    @Test
+    public void changedVirtUuidMatching() {
+        Consumer gConsumer1 = new Consumer("guestConsumer1", "testUser", owner, ct);
+        gConsumer1.getFacts().put("virt.uuid", "daf0fe10-956b-7b4e-b7dc-b383ce681ba8");
+        consumerCurator.create(gConsumer1);
+
+        gConsumer1.setFact("virt.uuid", "daf0fe10-956b-7b4e-b7dc-b383ce681ba9");
+        consumerCurator.merge(gConsumer1);
+        consumerCurator.flush();
+
+        assertNull(consumerCurator.findByVirtUuid("daf0fe10-956b-7b4e-b7dc-b383ce681ba8", owner.getId()));
+        assertEquals(gConsumer1, consumerCurator.findByVirtUuid("daf0fe10-956b-7b4e-b7dc-b383ce681ba9",
+            owner.getId()));
+    }
+
+    @Test
+    public void reverseEndianGuestIdHostMatching() {
+        Consumer host = new Consumer("hostConsumer", "testUser", owner, ct);
+        consumerCurator.create(host);
+
+        host.addGuestId(new GuestId("10FEF0DA-6B95-4E7B-B7DC-B383CE681BA8"));
+        consumerCurator.update(host);
+
+        assertEquals(host, consumerCurator.getHost("daf0fe10-956b-7b4e-b7dc-b383ce681ba8", owner.getId()));
+    }
+
     @Test
     public void addGuestsNotConsumers() {
         Consumer consumer = new Consumer("hostConsumer", "testUser", owner, ct);
@@ -675,6 +712,41 @@ public class ConsumerCuratorTest extends DatabaseTestFixture {
         assertTrue(consumer.getLastCheckin().getTime() > date.getTime());
     }
 
+    @Test
+    public void updateLastCheckinsInBatch() {
+        Consumer consumer1 = consumerCurator.create(new Consumer("consumer1", "testUser", owner, ct));
+        Consumer consumer2 = consumerCurator.create(new Consumer("consumer2", "testUser", owner, ct));
+        Date dt1 = ResourceDateParser.parseDateString("2011-09-26T18:10:50.184081+00:00");
+        Date dt2 = ResourceDateParser.parseDateString("2011-09-27T18:10:50.184081+00:00");
+
+        Map<String, Date> checkins = new HashMap<>();
+        checkins.put(consumer1.getId(), dt1);
+        checkins.put(consumer2.getId(), dt2);
+        checkins.put("unknown", dt2);
+
+        assertEquals(2, consumerCurator.updateLastCheckins(checkins));
+        consumerCurator.refresh(consumer1);
+        consumerCurator.refresh(consumer2);
+
+        assertEquals(dt1.getTime(), consumer1.getLastCheckin().getTime());
+        assertEquals(dt2.getTime(), consumer2.getLastCheckin().getTime());
+    }
+
+    @Test
+    public void updateLastCheckinsDoesNotMoveCheckinBackwards() {
+        Consumer consumer = consumerCurator.create(new Consumer("consumer", "testUser", owner, ct));
+        Date newer = ResourceDateParser.parseDateString("2011-09-27T18:10:50.184081+00:00");
+        Date older = ResourceDateParser.parseDateString("2011-09-26T18:10:50.184081+00:00");
+        consumerCurator.updateLastCheckin(consumer, newer);
+
+        Map<String, Date> checkins = Collections.singletonMap(consumer.getId(), older);
+
+        assertEquals(0, consumerCurator.updateLastCheckins(checkins));
+        consumerCurator.refresh(consumer);
+
+        assertEquals(newer.getTime(), consumer.getLastCheckin().getTime());
+    }
+
     @Test
     public void delete() {
         Consumer consumer = new Consumer("testConsumer", "testUser", owner, ct);
@@ -960,6 +1032,44 @@ public class ConsumerCuratorTest extends DatabaseTestFixture {
         assertNull(result);
     }
 
+    @Test
+    public void testGetHypervisorDigests() {
+        Consumer consumer = new Consumer("testConsumer", "testUser", owner, ct);
+        HypervisorId hypervisorId = new HypervisorId("Hypervisor-1");
+        hypervisorId.setOwner(owner);
+        hypervisorId.setReportDigest("digest-1");
+        consumer.setHypervisorId(hypervisorId);
+        consumer = consumerCurator.create(consumer);
+
+        Consumer other = new Consumer("otherConsumer", "testUser", owner, ct);
+        HypervisorId otherId = new HypervisorId("hypervisor-2");
+        otherId.setOwner(owner);
+        other.setHypervisorId(otherId);
+        other = consumerCurator.create(other);
+
+        Map<String, ConsumerCurator.HypervisorDigest> digests = consumerCurator.getHypervisorDigests(owner,
+            Arrays.asList("HYPERVISOR-1", "hypervisor-2", "hypervisor-3"));
+
+        assertEquals(2, digests.size());
+        assertEquals(consumer.getId(), digests.get("hypervisor-1").getConsumerId());
+        assertEquals(consumer.getUuid(), digests.get("hypervisor-1").getConsumerUuid());
+        assertEquals("digest-1", digests.get("hypervisor-1").getReportDigest());
+        assertEquals(other.getId(), digests.get("hypervisor-2").getConsumerId());
+        assertNull(digests.get("hypervisor-2").getReportDigest());
+    }
+
+    @Test
+    public void testGetHypervisorDigestsWrongOwner() {
+        Owner otherOwner = ownerCurator.create(new Owner("test-owner-other", "Test Other Owner"));
+        Consumer consumer = new Consumer("testConsumer", "testUser", owner, ct);
+        HypervisorId hypervisorId = new HypervisorId("hypervisor");
+        hypervisorId.setOwner(owner);
+        consumer.setHypervisorId(hypervisorId);
+        consumerCurator.create(consumer);
+
+        assertTrue(consumerCurator.getHypervisorDigests(otherOwner, Arrays.asList("hypervisor")).isEmpty());
+    }
+
     @Test
     public void testGetHypervisorConsumerMap() {
         String hypervisorId1 = "Hypervisor";
@@ -1521,6 +1631,70 @@ public class ConsumerCuratorTest extends DatabaseTestFixture {
         assertEquals(1, count);
     }
 
+    @Test
+    public void testGetConsumersForComplianceCheck() {
+        Consumer consumer1 = new Consumer("consumer1", "testUser", owner, ct);
+        consumer1.setFact("cpu.cpu_socket(s)", "4");
+        consumer1.addInstalledProduct(new ConsumerInstalledProduct("installed-1", "Installed 1"));
+        consumer1.addGuestId(new GuestId("guest-1", consumer1, Collections.singletonMap("active", "1")));
+        consumer1 = consumerCurator.create(consumer1);
+
+        Consumer consumer2 = consumerCurator.create(new Consumer("consumer2", "testUser", owner, ct));
+        createProductAndBindItToConsumer(owner, consumer1);
+        createProductAndBindItToConsumer(owner, consumer2);
+        createConsumer(owner);
+
+        consumerCurator.flush();
+        consumerCurator.clear();
+
+        List<Consumer> consumers = consumerCurator.getConsumersForComplianceCheck(
+            Arrays.asList(consumer1.getUuid(), consumer2.getUuid(), "unknown-uuid"));
+
+        assertEquals(2, consumers.size());
+
+        // Detach everything to verify nothing is left to be lazily loaded
+        consumerCurator.clear();
+
+        Map<String, Consumer> fetched = new HashMap<>();
+        for (Consumer consumer : consumers) {
+            fetched.put(consumer.getUuid(), consumer);
+
+            assertEquals(1, consumer.getEntitlements().size());
+            for (Entitlement entitlement : consumer.getEntitlements()) {
+                assertNotNull(entitlement.getPool().getProductName());
+                entitlement.getPool().getAttributes().size();
+                entitlement.getPool().getProductAttributes().size();
+                entitlement.getPool().getProvidedProducts().size();
+            }
+        }
+
+        Consumer result = fetched.get(consumer1.getUuid());
+        assertEquals("4", result.getFact("cpu.cpu_socket(s)"));
+        assertEquals(1, result.getInstalledProducts().size());
+        assertEquals(1, result.getGuestIds().size());
+        assertEquals("1", result.getGuestIds().get(0).getAttributes().get("active"));
+
+        assertTrue(fetched.get(consumer2.getUuid()).getGuestIds().isEmpty());
+    }
+
+    @Test
+    public void testFlushInBatches() {
+        Consumer consumer1 = createConsumer(owner);
+        Consumer consumer2 = createConsumer(owner);
+        List<Consumer> consumers = Arrays.asList(consumer1, consumer2);
+
+        for (Consumer consumer : consumers) {
+            consumer.setEntitlementStatus("invalid");
+        }
+
+        consumerCurator.flushInBatches(consumers, true);
+
+        assertFalse(em.contains(consumer1));
+        assertFalse(em.contains(consumer2));
+        assertEquals("invalid", consumerCurator.get(consumer1.getId()).getEntitlementStatus());
+        assertEquals("invalid", consumerCurator.get(consumer2.getId()).getEntitlementStatus());
+    }
+
     @Test
     public void countShouldBeIdempotent() throws Exception {
         int n = 5;
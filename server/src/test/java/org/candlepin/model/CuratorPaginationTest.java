@@ -16,18 +16,24 @@ package org.candlepin.model;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 
+import org.candlepin.common.exceptions.BadRequestException;
 import org.candlepin.common.paging.Page;
 import org.candlepin.common.paging.PageRequest;
 import org.candlepin.test.DatabaseTestFixture;
 
 import org.hibernate.Criteria;
 import org.hibernate.Session;
+import org.hibernate.criterion.Order;
 import org.hibernate.criterion.Restrictions;
 import org.junit.Before;
 import org.junit.Test;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
 
 import javax.inject.Inject;
@@ -188,6 +194,158 @@ public class CuratorPaginationTest extends DatabaseTestFixture {
         assertEquals(pageRequest, pageRequest2);
     }
 
+    @Test
+    public void testPagingWithoutCount() {
+        PageRequest pageRequest = new PageRequest();
+        pageRequest.setSortBy("key");
+        pageRequest.setOrder(PageRequest.Order.ASCENDING);
+        pageRequest.setPage(3);
+        pageRequest.setPerPage(2);
+        pageRequest.setSkipCount(true);
+
+        Page<List<Owner>> p = ownerCurator.listAll(pageRequest);
+        assertNull(p.getMaxRecords());
+
+        List<Owner> ownerList = p.getPageData();
+        assertEquals(2, ownerList.size());
+        assertEquals("4", ownerList.get(0).getKey());
+        assertEquals("5", ownerList.get(1).getKey());
+    }
+
+    private List<String> listKeysByKeyset(String sortBy, PageRequest.Order order, int perPage) {
+        List<String> keys = new ArrayList<>();
+        String token = "";
+
+        while (token != null) {
+            PageRequest pageRequest = new PageRequest();
+            pageRequest.setSortBy(sortBy);
+            pageRequest.setOrder(order);
+            pageRequest.setPage(1);
+            pageRequest.setPerPage(perPage);
+            pageRequest.setPageToken(token);
+
+            Page<List<Owner>> p = ownerCurator.listAll(pageRequest);
+            assertNull(p.getMaxRecords());
+
+            for (Owner owner : p.getPageData()) {
+                keys.add(owner.getKey());
+            }
+
+            token = p.getNextPageToken();
+            assertFalse(keys.size() > 10);
+        }
+
+        return keys;
+    }
+
+    private List<String> listKeys(Order... orders) {
+        Criteria criteria = session.createCriteria(Owner.class);
+        for (Order order : orders) {
+            criteria.addOrder(order);
+        }
+
+        List<String> keys = new ArrayList<>();
+        for (Object owner : criteria.list()) {
+            keys.add(((Owner) owner).getKey());
+        }
+
+        return keys;
+    }
+
+    @Test
+    public void testKeysetPaging() {
+        assertEquals(listKeys(Order.asc("key")), listKeysByKeyset("key", PageRequest.Order.ASCENDING, 3));
+        assertEquals(listKeys(Order.desc("key")), listKeysByKeyset("key", PageRequest.Order.DESCENDING, 3));
+    }
+
+    @Test
+    public void testKeysetPagingBreaksTiesById() {
+        // Owners created in the same test frequently share their creation time
+        assertEquals(listKeys(Order.asc("created"), Order.asc("id")),
+            listKeysByKeyset("created", PageRequest.Order.ASCENDING, 3));
+        assertEquals(listKeys(Order.desc("created"), Order.desc("id")),
+            listKeysByKeyset("created", PageRequest.Order.DESCENDING, 4));
+    }
+
+    @Test
+    public void testKeysetPagingWithNullValues() {
+        List<Owner> owners = ownerCurator.listAll().list();
+        for (int i = 0; i < owners.size(); i += 3) {
+            owners.get(i).setContentPrefix("prefix-" + (i % 2));
+            ownerCurator.merge(owners.get(i));
+        }
+        ownerCurator.flush();
+
+        List<String> ascending = listKeysByKeyset("contentPrefix", PageRequest.Order.ASCENDING, 3);
+        List<String> descending = listKeysByKeyset("contentPrefix", PageRequest.Order.DESCENDING, 3);
+
+        assertEquals(10, ascending.size());
+        assertEquals(10, descending.size());
+        assertEquals(10, new HashSet<>(ascending).size());
+
+        List<String> reversed = new ArrayList<>(ascending);
+        Collections.reverse(reversed);
+        assertEquals(reversed, descending);
+    }
+
+    @Test
+    public void testKeysetPagingWithCriteria() {
+        PageRequest pageRequest = new PageRequest();
+        pageRequest.setSortBy("key");
+        pageRequest.setOrder(PageRequest.Order.ASCENDING);
+        pageRequest.setPage(1);
+        pageRequest.setPerPage(3);
+        pageRequest.setPageToken("");
+
+        Criteria criteria = session.createCriteria(Owner.class).add(Restrictions.gt("key", "5"));
+        Page<List<Owner>> p = ownerCurator.listByCriteria(criteria, pageRequest);
+
+        assertEquals(3, p.getPageData().size());
+        assertEquals("6", p.getPageData().get(0).getKey());
+        assertNotNull(p.getNextPageToken());
+
+        pageRequest.setPageToken(p.getNextPageToken());
+        criteria = session.createCriteria(Owner.class).add(Restrictions.gt("key", "5"));
+        p = ownerCurator.listByCriteria(criteria, pageRequest);
+
+        assertEquals(1, p.getPageData().size());
+        assertEquals("9", p.getPageData().get(0).getKey());
+        assertNull(p.getNextPageToken());
+    }
+
+    @Test(expected = BadRequestException.class)
+    public void testKeysetPagingRejectsMalformedToken() {
+        PageRequest pageRequest = new PageRequest();
+        pageRequest.setSortBy("key");
+        pageRequest.setPage(1);
+        pageRequest.setPerPage(3);
+        pageRequest.setPageToken("not a token");
+
+        ownerCurator.listAll(pageRequest);
+    }
+
+    @Test(expected = BadRequestException.class)
+    public void testKeysetPagingRejectsUnknownSortField() {
+        PageRequest pageRequest = new PageRequest();
+        pageRequest.setSortBy("bogus");
+        pageRequest.setPage(1);
+        pageRequest.setPerPage(3);
+        pageRequest.setPageToken("");
+
+        ownerCurator.listAll(pageRequest);
+    }
+
+    @Test(expected = BadRequestException.class)
+    public void testKeysetPagingRejectsPostFiltering() {
+        PageRequest pageRequest = new PageRequest();
+        pageRequest.setSortBy("key");
+        pageRequest.setPage(1);
+        pageRequest.setPerPage(3);
+        pageRequest.setPageToken("");
+
+        ownerCurator.listAll(pageRequest, true);
+    }
+
     private List<Owner> createOwners(int owners) {
         List<Owner> ownerList = new ArrayList<>();
         for (int i = 0; i < owners; i++) {
@@ -0,0 +1,156 @@
+/**
+ * Copyright (c) 2009 - 2018 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import org.candlepin.test.DatabaseTestFixture;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.inject.Inject;
+
+
+
+/**
+ * GuestHostCacheTest
+ */
+public class GuestHostCacheTest extends DatabaseTestFixture {
+    private static final String GUEST_ID = "daf0fe10-956b-7b4e-b7dc-b383ce681ba8";
+    private static final String REVERSED_GUEST_ID = "10fef0da-6b95-4e7b-b7dc-b383ce681ba8";
+
+    @Inject private GuestModificationTracker tracker;
+    @Inject private GuestHostCache cache;
+
+    private Owner owner;
+    private Consumer host;
+
+    @Before
+    public void setUp() {
+        this.owner = this.createOwner();
+        this.host = this.createConsumer(this.owner);
+        this.host.addGuestId(new GuestId(GUEST_ID.toUpperCase()));
+        this.consumerCurator.update(this.host);
+    }
+
+    @Test
+    public void testHostIsCachedAcrossLookups() {
+        assertEquals(this.host, this.consumerCurator.getHost(GUEST_ID, this.owner.getId()));
+
+        long hits = this.cache.getHits();
+        assertEquals(this.host, this.consumerCurator.getHost(GUEST_ID, this.owner.getId()));
+        assertEquals(hits + 1, this.cache.getHits());
+    }
+
+    @Test
+    public void testByteOrderVariantsShareAnEntry() {
+        assertEquals(this.host, this.consumerCurator.getHost(GUEST_ID, this.owner.getId()));
+
+        GuestHostCache.CachedHost cached = this.cache.get(REVERSED_GUEST_ID.toUpperCase(),
+            this.owner.getId());
+        assertNotNull(cached);
+        assertEquals(this.host.getId(), cached.getHostId());
+    }
+
+    @Test
+    public void testGuestsWithoutHostsAreCached() {
+        assertNull(this.consumerCurator.getHost("unhosted", this.owner.getId()));
+
+        GuestHostCache.CachedHost cached = this.cache.get("unhosted", this.owner.getId());
+        assertNotNull(cached);
+        assertNull(cached.getHostId());
+    }
+
+    @Test
+    public void testGuestIdChangesInvalidateOwner() {
+        assertEquals(this.host, this.consumerCurator.getHost(GUEST_ID, this.owner.getId()));
+        assertNull(this.consumerCurator.getHost("unhosted", this.owner.getId()));
+
+        Consumer other = this.createConsumer(this.owner);
+        other.addGuestId(new GuestId("unhosted"));
+        this.consumerCurator.update(other);
+
+        assertNull(this.cache.get(GUEST_ID, this.owner.getId()));
+        assertEquals(other, this.consumerCurator.getHost("unhosted", this.owner.getId()));
+    }
+
+    @Test
+    public void testChangesToOtherOwnersDoNotInvalidate() {
+        assertEquals(this.host, this.consumerCurator.getHost(GUEST_ID, this.owner.getId()));
+
+        Owner otherOwner = this.createOwner();
+        Consumer other = this.createConsumer(otherOwner);
+        other.addGuestId(new GuestId(GUEST_ID));
+        this.consumerCurator.update(other);
+
+        assertNotNull(this.cache.get(GUEST_ID, this.owner.getId()));
+        assertEquals(other, this.consumerCurator.getHost(GUEST_ID, otherOwner.getId()));
+    }
+
+    @Test
+    public void testHostDeletionInvalidatesOwner() {
+        assertEquals(this.host, this.consumerCurator.getHost(GUEST_ID, this.owner.getId()));
+
+        this.consumerCurator.delete(this.host);
+
+        assertNull(this.cache.get(GUEST_ID, this.owner.getId()));
+        assertNull(this.consumerCurator.getHost(GUEST_ID, this.owner.getId()));
+    }
+
+    @Test
+    public void testStaleLookupsAreNotCached() {
+        long version = this.cache.getVersion();
+        this.tracker.markModified(this.owner.getId());
+
+        this.cache.put("stale", this.owner.getId(), this.host.getId(), version);
+        assertNull(this.cache.get("stale", this.owner.getId()));
+    }
+
+    @Test
+    public void testDisabledCacheRetainsNothing() {
+        GuestHostCache disabled = new GuestHostCache(this.tracker, false, 10, 60000);
+
+        disabled.put(GUEST_ID, this.owner.getId(), this.host.getId(), disabled.getVersion());
+        assertNull(disabled.get(GUEST_ID, this.owner.getId()));
+    }
+
+    @Test
+    public void testEntriesExpire() throws Exception {
+        GuestHostCache expiring = new GuestHostCache(this.tracker, true, 10, 1);
+
+        expiring.put(GUEST_ID, this.owner.getId(), this.host.getId(), expiring.getVersion());
+        Thread.sleep(5);
+
+        assertNull(expiring.get(GUEST_ID, this.owner.getId()));
+    }
+
+    @Test
+    public void testLeastRecentlyUsedEntriesAreDiscarded() {
+        GuestHostCache small = new GuestHostCache(this.tracker, true, 2, 60000);
+        long version = small.getVersion();
+
+        small.put("guest-1", this.owner.getId(), "host-1", version);
+        small.put("guest-2", this.owner.getId(), "host-2", version);
+        small.get("guest-1", this.owner.getId());
+        small.put("guest-3", this.owner.getId(), "host-3", version);
+
+        assertNotNull(small.get("guest-1", this.owner.getId()));
+        assertNull(small.get("guest-2", this.owner.getId()));
+        assertNotNull(small.get("guest-3", this.owner.getId()));
+    }
+}
@@ -0,0 +1,242 @@
+/**
+ * Copyright (c) 2009 - 2018 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.candlepin.common.paging.Page;
+import org.candlepin.test.DatabaseTestFixture;
+import org.candlepin.test.TestUtil;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+import javax.inject.Inject;
+
+
+
+/**
+ * PoolIndexTest
+ */
+public class PoolIndexTest extends DatabaseTestFixture {
+    @Inject private PoolModificationTracker tracker;
+
+    private PoolIndex index;
+    private PoolCurator indexedCurator;
+
+    private Owner owner;
+    private Product product;
+    private Product provided;
+    private Pool basePool;
+    private Pool virtPool;
+    private Pool hostPool;
+    private Pool futurePool;
+    private Pool expiredPool;
+
+    @Before
+    public void setUp() {
+        this.index = new PoolIndex(this.tracker, true, 10, 60000);
+        this.indexedCurator = new PoolCurator(this.consumerCurator, this.consumerTypeCurator, this.index);
+        this.injector.injectMembers(this.indexedCurator);
+
+        this.owner = this.createOwner();
+        Owner other = this.createOwner();
+
+        this.provided = this.createProduct("provided", "provided", this.owner, other);
+        this.product = TestUtil.createProduct("product", "product");
+        this.product.setAttribute(Product.Attributes.STACKING_ID, "stack");
+        this.product.setAttribute(Pool.Attributes.VIRT_ONLY, "false");
+        this.product = this.createProduct(this.product, this.owner, other);
+        Product virtProduct = TestUtil.createProduct("virt-product", "virt product");
+        virtProduct.setAttribute(Pool.Attributes.VIRT_ONLY, "true");
+        virtProduct = this.createProduct(virtProduct, this.owner);
+
+        Date start = TestUtil.createDate(2010, 1, 1);
+        Date end = TestUtil.createDate(2050, 1, 1);
+
+        this.basePool = this.createPool(this.owner, this.product, Collections.singleton(this.provided), 10L,
+            start, end);
+        this.virtPool = this.createPool(this.owner, virtProduct, 10L, start, end);
+
+        this.hostPool = this.createPool(this.owner, this.product, 10L, start, end);
+        this.hostPool.setAttribute(Pool.Attributes.REQUIRES_HOST, "host-uuid");
+        this.hostPool.setAttribute(Pool.Attributes.VIRT_ONLY, "true");
+        this.poolCurator.merge(this.hostPool);
+
+        this.futurePool = this.createPool(this.owner, virtProduct, 10L, TestUtil.createDate(2040, 1, 1),
+            end);
+        this.expiredPool = this.createPool(this.owner, this.product, 10L, start,
+            TestUtil.createDate(2011, 1, 1));
+
+        this.createPool(other, this.product, Collections.singleton(this.provided), 10L, start, end);
+    }
+
+    private Set<String> ids(List<Pool> pools) {
+        Set<String> ids = new TreeSet<>();
+        for (Pool pool : pools) {
+            ids.add(pool.getId());
+        }
+
+        return ids;
+    }
+
+    private Set<String> ids(Pool... pools) {
+        return this.ids(Arrays.asList(pools));
+    }
+
+    private Set<String> list(PoolCurator curator, Consumer consumer, Collection<String> productIds,
+        Date activeOn, PoolFilterBuilder filters, boolean addFuture, boolean onlyFuture) {
+
+        String ownerId = consumer == null ? this.owner.getId() : null;
+        Page<List<Pool>> page = curator.listAvailableEntitlementPools(consumer, ownerId, productIds, null,
+            activeOn, filters, null, false, addFuture, onlyFuture, null);
+
+        return this.ids(page.getPageData());
+    }
+
+    private Set<String> assertSameResults(Consumer consumer, Collection<String> productIds, Date activeOn,
+        PoolFilterBuilder filters, boolean addFuture, boolean onlyFuture) {
+
+        Set<String> expected = this.list(this.poolCurator, consumer, productIds, activeOn, filters,
+            addFuture, onlyFuture);
+        Set<String> actual = this.list(this.indexedCurator, consumer, productIds, activeOn, filters,
+            addFuture, onlyFuture);
+
+        assertEquals(expected, actual);
+        return actual;
+    }
+
+    @Test
+    public void testOwnerPools() {
+        Set<String> ids = this.assertSameResults(null, null, null, null, false, false);
+
+        assertEquals(this.ids(this.basePool, this.virtPool, this.hostPool, this.futurePool, this.expiredPool),
+            ids);
+    }
+
+    @Test
+    public void testProductAndProvidedProductLookups() {
+        Set<String> ids = this.assertSameResults(null, Arrays.asList("provided"), null, null, false, false);
+        assertEquals(this.ids(this.basePool), ids);
+
+        ids = this.assertSameResults(null, Arrays.asList("product", "provided"), null, null, false, false);
+        assertEquals(this.ids(this.basePool, this.hostPool, this.expiredPool), ids);
+
+        ids = this.assertSameResults(null, Arrays.asList("unknown"), null, null, false, false);
+        assertTrue(ids.isEmpty());
+    }
+
+    @Test
+    public void testDateFiltering() {
+        Date now = new Date();
+
+        this.assertSameResults(null, null, now, null, false, false);
+        this.assertSameResults(null, null, now, null, true, false);
+
+        Set<String> ids = this.assertSameResults(null, null, now, null, false, true);
+        assertEquals(this.ids(this.futurePool), ids);
+    }
+
+    @Test
+    public void testAttributeFilters() {
+        PoolFilterBuilder filters = new PoolFilterBuilder();
+        filters.addAttributeFilter(Pool.Attributes.VIRT_ONLY, "TRUE");
+        Set<String> ids = this.assertSameResults(null, null, null, filters, false, false);
+        assertEquals(this.ids(this.virtPool, this.hostPool, this.futurePool), ids);
+
+        filters = new PoolFilterBuilder();
+        filters.addAttributeFilter(Pool.Attributes.VIRT_ONLY, "!tr*");
+        ids = this.assertSameResults(null, null, null, filters, false, false);
+        assertEquals(this.ids(this.basePool, this.expiredPool), ids);
+
+        filters = new PoolFilterBuilder();
+        filters.addAttributeFilter(Product.Attributes.STACKING_ID);
+        this.assertSameResults(null, null, null, filters, false, false);
+
+        filters = new PoolFilterBuilder();
+        filters.addIdFilter(this.basePool.getId());
+        ids = this.assertSameResults(null, null, null, filters, false, false);
+        assertEquals(this.ids(this.basePool), ids);
+    }
+
+    @Test
+    public void testConsumerFiltering() {
+        Consumer physical = this.createConsumer(this.owner);
+        Set<String> ids = this.assertSameResults(physical, null, null, null, false, false);
+        assertEquals(this.ids(this.basePool, this.expiredPool), ids);
+
+        Consumer distributor = this.createDistributor(this.owner);
+        ids = this.assertSameResults(distributor, null, null, null, false, false);
+        assertFalse(ids.contains(this.hostPool.getId()));
+
+        Consumer guest = this.createConsumer(this.owner);
+        guest.setFact("virt.is_guest", "true");
+        guest.setFact("virt.uuid", "guest-uuid");
+        this.consumerCurator.merge(guest);
+        ids = this.assertSameResults(guest, null, null, null, false, false);
+        assertFalse(ids.contains(this.hostPool.getId()));
+    }
+
+    @Test
+    public void testIndexIsReusedUntilPoolsChange() {
+        this.list(this.indexedCurator, null, null, null, null, false, false);
+        this.list(this.indexedCurator, null, null, null, null, false, false);
+
+        assertEquals(1, this.index.getMisses());
+        assertEquals(1, this.index.getHits());
+
+        Pool created = this.createPool(this.owner, this.product);
+        Set<String> ids = this.assertSameResults(null, null, null, null, false, false);
+        assertTrue(ids.contains(created.getId()));
+        assertEquals(2, this.index.getMisses());
+
+        created.setAttribute(Pool.Attributes.VIRT_ONLY, "true");
+        this.poolCurator.merge(created);
+        this.poolCurator.flush();
+        PoolFilterBuilder filters = new PoolFilterBuilder();
+        filters.addAttributeFilter(Pool.Attributes.VIRT_ONLY, "true");
+        ids = this.assertSameResults(null, null, null, filters, false, false);
+        assertTrue(ids.contains(created.getId()));
+
+        this.poolCurator.delete(created);
+        this.poolCurator.flush();
+        ids = this.assertSameResults(null, null, null, null, false, false);
+        assertFalse(ids.contains(created.getId()));
+    }
+
+    @Test
+    public void testIndexIsReloadedOnceExpired() throws Exception {
+        PoolIndex expiring = new PoolIndex(this.tracker, true, 10, 1);
+        PoolCurator curator = new PoolCurator(this.consumerCurator, this.consumerTypeCurator, expiring);
+        this.injector.injectMembers(curator);
+
+        this.list(curator, null, null, null, null, false, false);
+        Thread.sleep(5);
+        this.list(curator, null, null, null, null, false, false);
+
+        assertEquals(2, expiring.getMisses());
+        assertEquals(0, expiring.getHits());
+    }
+}
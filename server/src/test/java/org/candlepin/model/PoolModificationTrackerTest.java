@@ -0,0 +1,116 @@
+/**
+ * Copyright (c) 2009 - 2018 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.model;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.RETURNS_DEEP_STUBS;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import org.hibernate.action.spi.AfterTransactionCompletionProcess;
+import org.hibernate.collection.spi.PersistentCollection;
+import org.hibernate.engine.spi.ActionQueue;
+import org.hibernate.engine.spi.PersistenceContext;
+import org.hibernate.event.spi.EventSource;
+import org.hibernate.event.spi.PostCollectionUpdateEvent;
+import org.hibernate.persister.collection.CollectionPersister;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+
+
+/**
+ * PoolModificationTrackerTest
+ */
+public class PoolModificationTrackerTest {
+
+    private PoolModificationTracker tracker;
+    private ActionQueue actionQueue;
+    private Owner owner;
+
+    @Before
+    public void setUp() {
+        this.tracker = new PoolModificationTracker();
+        this.actionQueue = mock(ActionQueue.class);
+
+        this.owner = new Owner("owner");
+        this.owner.setId("owner-id");
+    }
+
+    private PostCollectionUpdateEvent collectionEvent(Object entity, String role) {
+        PersistentCollection collection = mock(PersistentCollection.class);
+        when(collection.getRole()).thenReturn(role);
+
+        PersistenceContext context = mock(PersistenceContext.class);
+        when(context.getLoadedCollectionOwnerOrNull(collection)).thenReturn(entity);
+
+        EventSource session = mock(EventSource.class);
+        when(session.getPersistenceContext()).thenReturn(context);
+        when(session.getActionQueue()).thenReturn(this.actionQueue);
+
+        CollectionPersister persister = mock(CollectionPersister.class, RETURNS_DEEP_STUBS);
+        when(persister.getOwnerEntityPersister().getEntityName()).thenReturn(entity.getClass().getName());
+
+        return new PostCollectionUpdateEvent(persister, collection, session);
+    }
+
+    @Test
+    public void collectionChangesAreRecordedAgainOnCompletion() {
+        Pool pool = new Pool();
+        pool.setOwner(this.owner);
+
+        this.tracker.onPostUpdateCollection(
+            this.collectionEvent(pool, Pool.class.getName() + ".attributes"));
+        assertTrue(this.tracker.isModifiedSince(this.owner.getId(), 0));
+
+        // Data loaded after the flush, but before the transaction completes, is still stale
+        long version = this.tracker.getVersion();
+        assertFalse(this.tracker.isModifiedSince(this.owner.getId(), version));
+
+        ArgumentCaptor<AfterTransactionCompletionProcess> captor =
+            ArgumentCaptor.forClass(AfterTransactionCompletionProcess.class);
+        verify(this.actionQueue).registerProcess(captor.capture());
+
+        captor.getValue().doAfterTransactionCompletion(true, null);
+        assertTrue(this.tracker.isModifiedSince(this.owner.getId(), version));
+    }
+
+    @Test
+    public void productAttributeChangesAreRecordedForEveryOwner() {
+        Product product = new Product("product", "product");
+
+        this.tracker.onPostUpdateCollection(
+            this.collectionEvent(product, Product.class.getName() + ".attributes"));
+
+        assertTrue(this.tracker.isModifiedSince("other-owner", 0));
+    }
+
+    @Test
+    public void unindexedCollectionChangesAreIgnored() {
+        Pool pool = new Pool();
+        pool.setOwner(this.owner);
+
+        this.tracker.onPostUpdateCollection(
+            this.collectionEvent(pool, Pool.class.getName() + ".entitlements"));
+
+        assertFalse(this.tracker.isModifiedSince(this.owner.getId(), 0));
+        verify(this.actionQueue, never()).registerProcess(any(AfterTransactionCompletionProcess.class));
+    }
+}
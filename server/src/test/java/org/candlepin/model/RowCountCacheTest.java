@@ -0,0 +1,192 @@
+/**
+ * Copyright (c) 2009 - 2018 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.model;
+
+import static org.junit.Assert.assertEquals;
+
+import org.candlepin.hibernate.TableModificationTracker;
+import org.candlepin.test.DatabaseTestFixture;
+
+import org.hibernate.Criteria;
+import org.hibernate.Session;
+import org.hibernate.criterion.Restrictions;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntSupplier;
+
+import javax.inject.Inject;
+
+
+
+/**
+ * RowCountCacheTest
+ */
+public class RowCountCacheTest extends DatabaseTestFixture {
+    @Inject private TableModificationTracker tracker;
+
+    private Session session;
+    private AtomicInteger counted;
+
+    @Before
+    @Override
+    public void init() throws Exception {
+        super.init();
+
+        for (int i = 0; i < 5; i++) {
+            this.createOwner("owner-" + i, "owner " + i);
+        }
+
+        this.session = (Session) this.getEntityManager().getDelegate();
+        this.counted = new AtomicInteger();
+    }
+
+    private Criteria ownerCriteria() {
+        return this.session.createCriteria(Owner.class);
+    }
+
+    private IntSupplier counter(final Criteria criteria) {
+        return () -> {
+            this.counted.incrementAndGet();
+            return criteria.list().size();
+        };
+    }
+
+    private int count(RowCountCache cache, Criteria criteria) {
+        return cache.getRowCount(this.session, criteria, this.counter(criteria));
+    }
+
+    @Test
+    public void testCountsAreRetained() {
+        RowCountCache cache = new RowCountCache(this.tracker, true, 10, 60000, false, 0);
+
+        assertEquals(5, this.count(cache, this.ownerCriteria()));
+        assertEquals(5, this.count(cache, this.ownerCriteria()));
+
+        assertEquals(1, this.counted.get());
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+        assertEquals(1, cache.getSize());
+    }
+
+    @Test
+    public void testCountsAreKeyedByRestrictions() {
+        RowCountCache cache = new RowCountCache(this.tracker, true, 10, 60000, false, 0);
+
+        assertEquals(1, this.count(cache, this.ownerCriteria().add(Restrictions.eq("key", "owner-1"))));
+        assertEquals(0, this.count(cache, this.ownerCriteria().add(Restrictions.eq("key", "owner-9"))));
+        assertEquals(1, this.count(cache, this.ownerCriteria().add(Restrictions.eq("key", "owner-1"))));
+
+        assertEquals(2, this.counted.get());
+        assertEquals(2, cache.getSize());
+    }
+
+    @Test
+    public void testInsertInvalidatesCount() {
+        RowCountCache cache = new RowCountCache(this.tracker, true, 10, 60000, false, 0);
+
+        assertEquals(5, this.count(cache, this.ownerCriteria()));
+        this.createOwner("owner-5", "owner 5");
+        assertEquals(6, this.count(cache, this.ownerCriteria()));
+
+        assertEquals(2, this.counted.get());
+    }
+
+    @Test
+    public void testDeleteInvalidatesCount() {
+        RowCountCache cache = new RowCountCache(this.tracker, true, 10, 60000, false, 0);
+
+        assertEquals(5, this.count(cache, this.ownerCriteria()));
+        this.ownerCurator.delete(this.ownerCurator.getByKey("owner-0"));
+        this.ownerCurator.flush();
+        assertEquals(4, this.count(cache, this.ownerCriteria()));
+
+        assertEquals(2, this.counted.get());
+    }
+
+    @Test
+    public void testUpdateInvalidatesCount() {
+        RowCountCache cache = new RowCountCache(this.tracker, true, 10, 60000, false, 0);
+
+        assertEquals(1, this.count(cache,
+            this.ownerCriteria().add(Restrictions.eq("displayName", "owner 1"))));
+
+        Owner owner = this.ownerCurator.getByKey("owner-1");
+        owner.setDisplayName("renamed owner");
+        this.ownerCurator.merge(owner);
+        this.ownerCurator.flush();
+
+        assertEquals(0, this.count(cache,
+            this.ownerCriteria().add(Restrictions.eq("displayName", "owner 1"))));
+        assertEquals(2, this.counted.get());
+    }
+
+    @Test
+    public void testUnrelatedInsertDoesNotInvalidateCount() {
+        RowCountCache cache = new RowCountCache(this.tracker, true, 10, 60000, false, 0);
+
+        assertEquals(5, this.count(cache, this.ownerCriteria()));
+        this.createProduct("test-product", "test product", this.ownerCurator.getByKey("owner-0"));
+        assertEquals(5, this.count(cache, this.ownerCriteria()));
+
+        assertEquals(1, this.counted.get());
+    }
+
+    @Test
+    public void testExpiredCountsAreRecounted() throws Exception {
+        RowCountCache cache = new RowCountCache(this.tracker, true, 10, 1, false, 0);
+
+        assertEquals(5, this.count(cache, this.ownerCriteria()));
+        Thread.sleep(10);
+        assertEquals(5, this.count(cache, this.ownerCriteria()));
+
+        assertEquals(2, this.counted.get());
+    }
+
+    @Test
+    public void testDisabledCacheAlwaysCounts() {
+        RowCountCache cache = new RowCountCache(this.tracker, false, 10, 60000, false, 0);
+
+        assertEquals(5, this.count(cache, this.ownerCriteria()));
+        assertEquals(5, this.count(cache, this.ownerCriteria()));
+
+        assertEquals(2, this.counted.get());
+        assertEquals(0, cache.getSize());
+    }
+
+    @Test
+    public void testApproximateCountsFallBackToExactCountsWithoutEstimates() {
+        // Estimates are only available on PostgreSQL
+        RowCountCache cache = new RowCountCache(this.tracker, false, 10, 60000, true, 0);
+
+        assertEquals(5, this.count(cache, this.ownerCriteria()));
+
+        assertEquals(1, this.counted.get());
+        assertEquals(0, cache.getEstimates());
+    }
+
+    @Test
+    public void testPagedListingsUseCachedCounts() {
+        RowCountCache cache = this.injector.getInstance(RowCountCache.class);
+        CandlepinQuery<Owner> query = this.ownerCurator.listAll();
+
+        assertEquals(5, query.getRowCount());
+        assertEquals(5, this.ownerCurator.listAll().getRowCount());
+
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+    }
+}
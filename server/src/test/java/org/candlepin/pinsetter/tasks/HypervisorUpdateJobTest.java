@@ -16,18 +16,23 @@ package org.candlepin.pinsetter.tasks;
 
 import static org.junit.Assert.*;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyMap;
 import static org.mockito.Matchers.anyString;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.anyBoolean;
 import static org.mockito.Mockito.*;
 
 import org.candlepin.auth.Principal;
+import org.candlepin.config.CandlepinCommonTestConfig;
+import org.candlepin.config.ConfigProperties;
 import org.candlepin.dto.api.v1.ConsumerDTO;
 import org.candlepin.model.Consumer;
 import org.candlepin.model.ConsumerCurator;
+import org.candlepin.model.ConsumerCurator.HypervisorDigest;
 import org.candlepin.model.ConsumerType;
 import org.candlepin.model.ConsumerType.ConsumerTypeEnum;
 import org.candlepin.model.ConsumerTypeCurator;
+import org.candlepin.model.GuestId;
 import org.candlepin.model.HypervisorId;
 import org.candlepin.model.JobCurator;
 import org.candlepin.model.Owner;
@@ -37,7 +42,9 @@ import org.candlepin.pinsetter.core.model.JobStatus;
 import org.candlepin.pinsetter.core.model.JobStatus.JobState;
 import org.candlepin.policy.js.compliance.ComplianceRules;
 import org.candlepin.resource.ConsumerResource;
+import org.candlepin.resource.dto.HypervisorUpdateResultUuids;
 import org.candlepin.resource.util.GuestMigration;
+import org.candlepin.resource.util.HypervisorReportCache;
 import org.candlepin.service.SubscriptionServiceAdapter;
 
 import com.google.inject.util.Providers;
@@ -54,7 +61,10 @@ import org.quartz.SchedulerException;
 import org.xnap.commons.i18n.I18n;
 import org.xnap.commons.i18n.I18nFactory;
 
+import java.util.Collections;
+import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 import java.util.Set;
 
 import javax.inject.Provider;
@@ -299,6 +309,182 @@ public class HypervisorUpdateJobTest extends BaseJobTest {
         job.execute(ctx);
     }
 
+    private String buildHypervisorJson(int hosts) {
+        StringBuilder builder = new StringBuilder("{\"hypervisors\":[");
+
+        for (int i = 0; i < hosts; ++i) {
+            if (i > 0) {
+                builder.append(',');
+            }
+
+            builder.append("{\"name\" : \"hypervisor_").append(i).append("\",")
+                .append("\"hypervisorId\" : {\"hypervisorId\" : \"uuid_").append(i).append("\"},")
+                .append("\"guestIds\" : [{\"guestId\" : \"guestId_").append(i).append("\"}]}");
+        }
+
+        return builder.append("]}").toString();
+    }
+
+    private JobExecutionContext runJob(String json, boolean streaming, int chunkSize)
+        throws JobExecutionException {
+
+        return runJob(json, null, streaming, chunkSize);
+    }
+
+    private JobExecutionContext runJob(String json, String reporterId, boolean streaming, int chunkSize)
+        throws JobExecutionException {
+
+        when(ownerCurator.getByKey(eq("joe"))).thenReturn(owner);
+        when(consumerCurator.getHostConsumersMap(eq(owner), any(HypervisorUpdateJob.HypervisorList.class)))
+            .thenAnswer(invocation -> new VirtConsumerMap());
+
+        JobDetail detail = HypervisorUpdateJob.forOwner(owner, json, true, principal, reporterId);
+        JobExecutionContext ctx = mock(JobExecutionContext.class);
+        when(ctx.getMergedJobDataMap()).thenReturn(detail.getJobDataMap());
+
+        HypervisorUpdateJob job = new HypervisorUpdateJob(ownerCurator, consumerCurator, consumerTypeCurator,
+            consumerResource, i18n, subAdapter, complianceRules);
+        injector.injectMembers(job);
+
+        CandlepinCommonTestConfig config = new CandlepinCommonTestConfig();
+        config.setProperty(ConfigProperties.HYPERVISOR_UPDATE_STREAMING_ENABLED, Boolean.toString(streaming));
+        config.setProperty(ConfigProperties.HYPERVISOR_UPDATE_CHUNK_SIZE, Integer.toString(chunkSize));
+        job.config = config;
+
+        job.execute(ctx);
+        return ctx;
+    }
+
+    private HypervisorUpdateResultUuids getResult(JobExecutionContext ctx) {
+        ArgumentCaptor<Object> captor = ArgumentCaptor.forClass(Object.class);
+        verify(ctx).setResult(captor.capture());
+
+        return (HypervisorUpdateResultUuids) captor.getValue();
+    }
+
+    private String digestDefaultHost(String reporterId) {
+        Consumer host = new Consumer();
+        host.setName("hypervisor_999");
+        host.setHypervisorId(new HypervisorId("uuid_999"));
+        host.addGuestId(new GuestId("guestId_1_999"));
+
+        return HypervisorReportCache.digestHost(host, reporterId);
+    }
+
+    private void mockStoredDigest(String digest) {
+        when(consumerCurator.getHypervisorDigests(eq(owner), any(Iterable.class))).thenReturn(
+            Collections.singletonMap("uuid_999", new HypervisorDigest("host-id", "host-uuid", digest)));
+    }
+
+    @Test
+    public void reportDigestIsRecordedForProcessedHosts() throws Exception {
+        runJob(hypervisorJson, false, 0);
+
+        ArgumentCaptor<Consumer> captor = ArgumentCaptor.forClass(Consumer.class);
+        verify(consumerCurator).create(captor.capture(), eq(false));
+        assertEquals(digestDefaultHost(null), captor.getValue().getHypervisorId().getReportDigest());
+    }
+
+    @Test
+    public void unchangedHostsAreShortCircuited() throws Exception {
+        mockStoredDigest(digestDefaultHost(null));
+
+        JobExecutionContext ctx = runJob(hypervisorJson, true, 10);
+
+        verify(consumerCurator, never()).getHostConsumersMap(any(Owner.class),
+            any(HypervisorUpdateJob.HypervisorList.class));
+        verify(consumerCurator, never()).create(any(Consumer.class), anyBoolean());
+
+        ArgumentCaptor<Map> checkins = ArgumentCaptor.forClass(Map.class);
+        verify(consumerCurator).updateLastCheckins(checkins.capture());
+        assertEquals(Collections.singleton("host-id"), checkins.getValue().keySet());
+
+        HypervisorUpdateResultUuids result = getResult(ctx);
+        assertEquals(1, result.getShortCircuited());
+        assertTrue(result.wasUnchanged("host-uuid"));
+    }
+
+    @Test
+    public void changedHostsAreFullyProcessed() throws Exception {
+        mockStoredDigest("stale");
+
+        JobExecutionContext ctx = runJob(hypervisorJson, true, 10);
+
+        verify(consumerCurator).getHostConsumersMap(eq(owner), any(HypervisorUpdateJob.HypervisorList.class));
+        verify(consumerCurator).create(any(Consumer.class), eq(false));
+        assertEquals(0, getResult(ctx).getShortCircuited());
+    }
+
+    @Test
+    public void unchangedReportIsSkippedWithoutParsing() throws Exception {
+        runJob(hypervisorJson, "reporter", true, 10);
+        mockStoredDigest(digestDefaultHost("reporter"));
+
+        JobExecutionContext ctx = runJob(hypervisorJson, "reporter", true, 10);
+
+        // Only the first report should have looked up the hosts
+        verify(consumerCurator, times(1)).getHostConsumersMap(eq(owner),
+            any(HypervisorUpdateJob.HypervisorList.class));
+        verify(consumerCurator, times(1)).updateLastCheckins(anyMap());
+
+        HypervisorUpdateResultUuids result = getResult(ctx);
+        assertEquals(1, result.getShortCircuited());
+        assertTrue(result.wasUnchanged("host-uuid"));
+    }
+
+    @Test
+    public void unchangedReportIsProcessedWhenHostsHaveChanged() throws Exception {
+        runJob(hypervisorJson, "reporter", true, 10);
+        mockStoredDigest(null);
+
+        JobExecutionContext ctx = runJob(hypervisorJson, "reporter", true, 10);
+
+        verify(consumerCurator, times(2)).getHostConsumersMap(eq(owner),
+            any(HypervisorUpdateJob.HypervisorList.class));
+        assertEquals(0, getResult(ctx).getShortCircuited());
+    }
+
+    @Test
+    public void streamingUpdateProcessesHypervisorsInChunks() throws Exception {
+        runJob(buildHypervisorJson(5), true, 2);
+
+        ArgumentCaptor<HypervisorUpdateJob.HypervisorList> captor =
+            ArgumentCaptor.forClass(HypervisorUpdateJob.HypervisorList.class);
+        verify(consumerCurator, times(3)).getHostConsumersMap(eq(owner), captor.capture());
+
+        List<HypervisorUpdateJob.HypervisorList> chunks = captor.getAllValues();
+        assertEquals(2, chunks.get(0).getHypervisors().size());
+        assertEquals(2, chunks.get(1).getHypervisors().size());
+        assertEquals(1, chunks.get(2).getHypervisors().size());
+        assertEquals("uuid_4", chunks.get(2).getHypervisors().get(0).getHypervisorId().getHypervisorId());
+
+        verify(consumerCurator, times(5)).create(any(Consumer.class), eq(false));
+        verify(consumerCurator, times(3)).flush();
+        verify(consumerCurator, times(2)).clear();
+    }
+
+    @Test
+    public void streamingUpdateIgnoresUnknownFieldsAndNullHypervisors() throws Exception {
+        String json = "{\"extra\" : {\"hypervisors\" : [1, 2]}, \"hypervisors\" : [null, " +
+            "{\"hypervisorId\" : {\"hypervisorId\" : \"uuid_1\"}, \"guestIds\" : []}], \"more\" : 1}";
+
+        runJob(json, true, 10);
+
+        verify(consumerCurator, times(1)).getHostConsumersMap(eq(owner),
+            any(HypervisorUpdateJob.HypervisorList.class));
+        verify(consumerCurator, times(1)).create(any(Consumer.class), eq(false));
+    }
+
+    @Test
+    public void nonStreamingUpdateProcessesWholeReport() throws Exception {
+        runJob(buildHypervisorJson(5), false, 2);
+
+        verify(consumerCurator, times(1)).getHostConsumersMap(eq(owner),
+            any(HypervisorUpdateJob.HypervisorList.class));
+        verify(consumerCurator, times(5)).create(any(Consumer.class), eq(false));
+        verify(consumerCurator, never()).clear();
+    }
+
     /*
      * Schedule the job to be executed later even if a similar job exists.
      */
@@ -0,0 +1,165 @@
+/**
+ * Copyright (c) 2009 - 2018 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.pki;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.security.KeyPair;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+
+
+/**
+ * KeyPairPoolTest
+ */
+public class KeyPairPoolTest {
+
+    private PKIUtility pki;
+    private KeyPairPool pool;
+
+    @Before
+    public void setUp() throws Exception {
+        this.pki = mock(PKIUtility.class);
+        when(this.pki.generateNewKeyPair()).thenAnswer(new Answer<KeyPair>() {
+            @Override
+            public KeyPair answer(InvocationOnMock invocation) {
+                return new KeyPair(mock(PublicKey.class), mock(PrivateKey.class));
+            }
+        });
+    }
+
+    @After
+    public void tearDown() {
+        if (this.pool != null) {
+            this.pool.shutdown();
+        }
+    }
+
+    private void awaitDepth(int depth) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(10);
+        while (this.pool.getDepth() < depth && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+
+        assertEquals(depth, this.pool.getDepth());
+    }
+
+    @Test
+    public void generatesInlineWhenNotStarted() throws Exception {
+        this.pool = new KeyPairPool(this.pki, true, 2, 4, 1);
+
+        assertNotNull(this.pool.take());
+        assertEquals(0, this.pool.getDepth());
+        assertEquals(0, this.pool.getHits());
+        assertEquals(1, this.pool.getMisses());
+        assertEquals(1, this.pool.getGeneratedCount());
+    }
+
+    @Test
+    public void fillsToHighWatermarkWhenStarted() throws Exception {
+        this.pool = new KeyPairPool(this.pki, true, 2, 4, 2);
+        this.pool.start();
+
+        this.awaitDepth(4);
+
+        Set<KeyPair> keyPairs = new HashSet<>();
+        keyPairs.add(this.pool.take());
+        keyPairs.add(this.pool.take());
+
+        assertEquals(2, keyPairs.size());
+        assertEquals(2, this.pool.getHits());
+        assertEquals(0, this.pool.getMisses());
+        assertTrue(this.pool.getGenerationRate() > 0);
+    }
+
+    @Test
+    public void keepsFillingAfterGenerationFailure() throws Exception {
+        AtomicBoolean failed = new AtomicBoolean();
+        when(this.pki.generateNewKeyPair()).thenAnswer(new Answer<KeyPair>() {
+            @Override
+            public KeyPair answer(InvocationOnMock invocation) {
+                if (failed.compareAndSet(false, true)) {
+                    throw new IllegalStateException("generation failed");
+                }
+
+                return new KeyPair(mock(PublicKey.class), mock(PrivateKey.class));
+            }
+        });
+
+        this.pool = new KeyPairPool(this.pki, true, 2, 4, 1);
+        this.pool.start();
+
+        this.awaitDepth(4);
+        assertTrue(failed.get());
+    }
+
+    @Test
+    public void refillsWhenDrainedBelowLowWatermark() throws Exception {
+        this.pool = new KeyPairPool(this.pki, true, 2, 4, 1);
+        this.pool.start();
+        this.awaitDepth(4);
+
+        for (int i = 0; i < 3; ++i) {
+            this.pool.take();
+        }
+
+        this.awaitDepth(4);
+        assertEquals(3, this.pool.getHits());
+    }
+
+    @Test
+    public void disabledPoolNeverPreGenerates() throws Exception {
+        this.pool = new KeyPairPool(this.pki, false, 2, 4, 1);
+        this.pool.start();
+
+        Thread.sleep(50);
+        assertEquals(0, this.pool.getDepth());
+        assertNotNull(this.pool.take());
+        assertEquals(1, this.pool.getMisses());
+    }
+
+    @Test
+    public void shutdownDiscardsPooledKeyPairs() throws Exception {
+        this.pool = new KeyPairPool(this.pki, true, 2, 4, 1);
+        this.pool.start();
+        this.awaitDepth(4);
+
+        this.pool.shutdown();
+
+        assertEquals(0, this.pool.getDepth());
+        assertNotNull(this.pool.take());
+        assertEquals(1, this.pool.getMisses());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsLowWatermarkAboveHighWatermark() {
+        new KeyPairPool(this.pki, true, 5, 4, 1);
+    }
+}
@@ -20,7 +20,11 @@ import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.mockito.Mockito.when;
 
 import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
 
+import org.candlepin.common.config.MapConfiguration;
+import org.candlepin.config.ConfigProperties;
 import org.candlepin.model.Rules;
 import org.candlepin.model.Rules.RulesSourceEnum;
 import org.candlepin.model.RulesCurator;
@@ -99,4 +103,43 @@ public class JsRunnerProviderTest {
         verify(rulesCurator, times(3)).getUpdated();
     }
 
+    @Test
+    public void pooledModeDoesNotHitRulesCuratorPerRequest() {
+        JsRunnerProvider pooled = new JsRunnerProvider(rulesCurator, cacheProvider, pooledConfig());
+        Assert.assertTrue(pooled.isPoolingEnabled());
+
+        pooled.get();
+        pooled.get();
+        pooled.get();
+
+        // Once for the default provider in setUp, once for the pooled one
+        verify(rulesCurator, times(2)).getUpdated();
+        verifyNoMoreInteractions(cacheProvider);
+        Assert.assertEquals(2, pooled.getScopePool().getHits());
+        Assert.assertEquals(1, pooled.getScopePool().getMisses());
+    }
+
+    @Test
+    public void pooledModeRecompilesWhenPolledVersionChanges() {
+        JsRunnerProvider pooled = new JsRunnerProvider(rulesCurator, cacheProvider, pooledConfig());
+        pooled.get();
+
+        Date time2 = new Date(time1.getTime() + 1000);
+        when(rulesCurator.getUpdated()).thenReturn(time2);
+        pooled.refreshRulesVersion();
+        pooled.get();
+
+        // Scopes built against the old rules must not be reused
+        Assert.assertEquals(0, pooled.getScopePool().getHits());
+        Assert.assertEquals(2, pooled.getScopePool().getMisses());
+        verify(rulesCurator, times(3)).getRules();
+    }
+
+    private MapConfiguration pooledConfig() {
+        Map<String, String> props = new HashMap<>();
+        props.put(ConfigProperties.RULES_SCOPE_POOL_ENABLED, "true");
+        props.put(ConfigProperties.RULES_SCOPE_POOL_SIZE, "4");
+
+        return new MapConfiguration(props);
+    }
 }
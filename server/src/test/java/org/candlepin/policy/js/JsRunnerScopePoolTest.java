@@ -0,0 +1,134 @@
+/**
+ * Copyright (c) 2009 - 2012 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.policy.js;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.Scriptable;
+import org.mozilla.javascript.ScriptableObject;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * JsRunnerScopePoolTest
+ */
+public class JsRunnerScopePoolTest {
+
+    private Scriptable globalScope;
+
+    @Before
+    public void setUp() {
+        Context context = Context.enter();
+        try {
+            globalScope = context.initStandardObjects(null, true);
+            ((ScriptableObject) globalScope).sealObject();
+        }
+        finally {
+            Context.exit();
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testPoolSizeMustBePositive() {
+        new JsRunnerScopePool(0);
+    }
+
+    @Test
+    public void testScopeIsReusedOnSameThread() {
+        JsRunnerScopePool pool = new JsRunnerScopePool(2);
+
+        Scriptable first = pool.acquire(globalScope, 1);
+        Scriptable second = pool.acquire(globalScope, 1);
+
+        assertSame(first, second);
+        assertEquals(1, pool.getHits());
+        assertEquals(1, pool.getMisses());
+        assertEquals(1, pool.getSize());
+    }
+
+    @Test
+    public void testReusedScopeIsCleared() {
+        JsRunnerScopePool pool = new JsRunnerScopePool(2);
+
+        Scriptable scope = pool.acquire(globalScope, 1);
+        scope.put("consumer", scope, "value");
+
+        scope = pool.acquire(globalScope, 1);
+        assertFalse(scope.has("consumer", scope));
+    }
+
+    @Test
+    public void testNewGenerationDiscardsPooledScopes() {
+        JsRunnerScopePool pool = new JsRunnerScopePool(2);
+
+        Scriptable first = pool.acquire(globalScope, 1);
+        Scriptable second = pool.acquire(globalScope, 2);
+
+        assertNotSame(first, second);
+        assertEquals(0, pool.getHits());
+        assertEquals(2, pool.getMisses());
+        assertEquals(1, pool.getSize());
+    }
+
+    @Test
+    public void testExhaustedPoolHandsOutThrowawayScopes() throws Exception {
+        final JsRunnerScopePool pool = new JsRunnerScopePool(1);
+        pool.acquire(globalScope, 1);
+
+        final AtomicReference<Scriptable> first = new AtomicReference<>();
+        final AtomicReference<Scriptable> second = new AtomicReference<>();
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                first.set(pool.acquire(globalScope, 1));
+                second.set(pool.acquire(globalScope, 1));
+            }
+        });
+        thread.start();
+        thread.join();
+
+        assertNotSame(first.get(), second.get());
+        assertEquals(0, pool.getHits());
+        assertEquals(3, pool.getMisses());
+        assertEquals(1, pool.getSize());
+    }
+
+    @Test
+    public void testSlotIsReleasedWhenThreadTerminates() throws Exception {
+        final JsRunnerScopePool pool = new JsRunnerScopePool(1);
+
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                pool.acquire(globalScope, 1);
+            }
+        });
+        thread.start();
+        thread.join();
+
+        Scriptable first = pool.acquire(globalScope, 1);
+        Scriptable second = pool.acquire(globalScope, 1);
+
+        assertSame(first, second);
+        assertEquals(1, pool.getHits());
+        assertEquals(1, pool.getSize());
+    }
+}
@@ -14,9 +14,14 @@
  */
 package org.candlepin.policy.js;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
+import org.candlepin.dto.rules.v1.OwnerDTO;
+import org.candlepin.dto.rules.v1.PoolDTO;
 import org.candlepin.jackson.ProductCachedSerializationModule;
+import org.candlepin.jackson.SerializedFragmentCache;
 import org.candlepin.model.Consumer;
 import org.candlepin.model.Entitlement;
 import org.candlepin.model.EntitlementCertificate;
@@ -34,6 +39,7 @@ import org.junit.Test;
 import org.mockito.Mockito;
 
 import java.io.InputStream;
+import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedList;
@@ -155,4 +161,61 @@ public class RulesObjectMapperTest {
         // Just need this to parse without error:
         ComplianceStatus cs = objMapper.toObject(json, ComplianceStatus.class);
     }
+
+    private List<PoolDTO> buildPoolDTOs(int count) {
+        List<PoolDTO> pools = new LinkedList<>();
+
+        for (int i = 0; i < count; ++i) {
+            Map<String, String> attributes = new HashMap<>();
+            attributes.put("multi-entitlement", "yes");
+
+            pools.add(new PoolDTO()
+                .setId("pool-" + i)
+                .setQuantity(10L)
+                .setConsumed((long) i)
+                .setProductId("product-" + i)
+                .setAttributes(attributes)
+                .setStartDate(new Date(1000L * i))
+                .setEndDate(new Date(2000L * i)));
+        }
+
+        return pools;
+    }
+
+    @Test
+    public void cachedFragmentsMatchUncachedSerialization() {
+        SerializedFragmentCache cache = new SerializedFragmentCache(true, 100, 60000);
+        RulesObjectMapper cachedMapper = new RulesObjectMapper(
+            new ProductCachedSerializationModule(Mockito.mock(ProductCurator.class), cache));
+
+        context.put("pools", this.buildPoolDTOs(5));
+        context.put("owner", new OwnerDTO().setId("owner").setDefaultServiceLevel("Premium"));
+        String expected = objMapper.toJsonString(context);
+
+        assertEquals(expected, cachedMapper.toJsonString(context));
+        assertEquals(0, cache.getHits());
+        assertEquals(6, cache.getSize());
+
+        context.put("pools", this.buildPoolDTOs(5));
+        assertEquals(expected, cachedMapper.toJsonString(context));
+        assertEquals(6, cache.getHits());
+    }
+
+    @Test
+    public void changedDTOsAreNotServedFromCache() {
+        SerializedFragmentCache cache = new SerializedFragmentCache(true, 100, 60000);
+        RulesObjectMapper cachedMapper = new RulesObjectMapper(
+            new ProductCachedSerializationModule(Mockito.mock(ProductCurator.class), cache));
+
+        List<PoolDTO> pools = this.buildPoolDTOs(1);
+        context.put("pools", pools);
+        cachedMapper.toJsonString(context);
+
+        pools.get(0).setConsumed(9L);
+        String output = cachedMapper.toJsonString(context);
+
+        assertEquals(objMapper.toJsonString(context), output);
+        assertTrue(output.contains("\"consumed\":9"));
+        assertEquals(0, cache.getHits());
+    }
 }
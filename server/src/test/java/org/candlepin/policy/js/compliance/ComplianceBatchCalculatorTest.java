@@ -0,0 +1,232 @@
+/**
+ * Copyright (c) 2009 - 2018 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.policy.js.compliance;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyBoolean;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import org.candlepin.config.CandlepinCommonTestConfig;
+import org.candlepin.config.ConfigProperties;
+import org.candlepin.model.Consumer;
+import org.candlepin.model.ConsumerCurator;
+import org.candlepin.model.ConsumerType;
+import org.candlepin.model.ConsumerType.ConsumerTypeEnum;
+import org.candlepin.model.ConsumerTypeCurator;
+import org.candlepin.model.Owner;
+import org.candlepin.test.TestUtil;
+import org.candlepin.util.WorkerPool;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+
+
+/**
+ * ComplianceBatchCalculatorTest
+ */
+public class ComplianceBatchCalculatorTest {
+
+    private CandlepinCommonTestConfig config;
+    private ComplianceRules rules;
+    private ConsumerCurator consumerCurator;
+    private ConsumerTypeCurator consumerTypeCurator;
+    private WorkerPool workerPool;
+    private ConsumerType systemType;
+    private Map<String, Consumer> consumers;
+
+    @Before
+    public void setUp() {
+        this.config = new CandlepinCommonTestConfig();
+        this.config.setProperty(ConfigProperties.COMPLIANCE_BATCH_CHUNK_SIZE, "2");
+        this.config.setProperty(ConfigProperties.COMPLIANCE_BATCH_THREADS, "4");
+
+        this.rules = mock(ComplianceRules.class);
+        this.consumerCurator = mock(ConsumerCurator.class);
+        this.consumerTypeCurator = mock(ConsumerTypeCurator.class);
+        this.workerPool = new WorkerPool(4, 100);
+        this.systemType = new ConsumerType(ConsumerTypeEnum.SYSTEM);
+        this.systemType.setId("test-ctype-" + TestUtil.randomInt());
+        this.consumers = new HashMap<>();
+
+        Owner owner = TestUtil.createOwner();
+        for (int i = 0; i < 5; ++i) {
+            Consumer consumer = new Consumer("consumer" + i, "user", owner, this.systemType);
+            consumer.setUuid("uuid" + i);
+            this.consumers.put(consumer.getUuid(), consumer);
+        }
+
+        when(this.consumerCurator.getConsumersForComplianceCheck(any(Collection.class))).thenAnswer(
+            invocation -> {
+                List<Consumer> output = new ArrayList<>();
+                for (String uuid : (Collection<String>) invocation.getArguments()[0]) {
+                    if (this.consumers.containsKey(uuid)) {
+                        output.add(this.consumers.get(uuid));
+                    }
+                }
+
+                return output;
+            });
+
+        when(this.consumerTypeCurator.getConsumerType(any(Consumer.class))).thenReturn(this.systemType);
+        when(this.rules.calculateStatus(any(Consumer.class), any(ConsumerType.class), any(Collection.class),
+            any(Date.class), anyBoolean(), anyBoolean())).thenAnswer(invocation -> {
+                Consumer consumer = (Consumer) invocation.getArguments()[0];
+                ComplianceStatus status = new ComplianceStatus((Date) invocation.getArguments()[3]);
+                status.addNonCompliantProduct(consumer.getUuid());
+
+                return status;
+            });
+    }
+
+    private ComplianceBatchCalculator buildCalculator() {
+        return new ComplianceBatchCalculator(this.rules, this.consumerCurator, this.consumerTypeCurator,
+            this.workerPool, this.config);
+    }
+
+    @Test
+    public void calculatesStatusesInChunks() {
+        Map<String, ComplianceStatus> statuses = this.buildCalculator()
+            .getStatus(Arrays.asList("uuid0", "uuid1", "uuid2", "uuid3", "uuid4").stream());
+
+        assertEquals(Arrays.asList("uuid0", "uuid1", "uuid2", "uuid3", "uuid4"),
+            new ArrayList<>(statuses.keySet()));
+
+        for (Map.Entry<String, ComplianceStatus> entry : statuses.entrySet()) {
+            assertEquals(Collections.singleton(entry.getKey()), entry.getValue().getNonCompliantProducts());
+            verify(this.rules).updateEntsOnStart(eq(this.consumers.get(entry.getKey())));
+            verify(this.rules).applyStatus(eq(this.consumers.get(entry.getKey())), eq(entry.getValue()),
+                eq(false));
+        }
+
+        verify(this.consumerCurator, times(3)).getConsumersForComplianceCheck(any(Collection.class));
+        verify(this.consumerCurator, times(3)).flushInBatches(any(Collection.class), eq(true));
+    }
+
+    @Test
+    public void ignoresUnknownAndDuplicateUuids() {
+        Map<String, ComplianceStatus> statuses = this.buildCalculator()
+            .getStatus(Arrays.asList("uuid1", "unknown", "uuid1", null, "uuid3").stream());
+
+        assertEquals(Arrays.asList("uuid1", "uuid3"), new ArrayList<>(statuses.keySet()));
+        verify(this.rules, times(2)).calculateStatus(any(Consumer.class), any(ConsumerType.class),
+            any(Collection.class), any(Date.class), anyBoolean(), anyBoolean());
+    }
+
+    @Test
+    public void calculatesSequentiallyWhenConcurrencyIsUnsupported() {
+        when(this.rules.supportsConcurrentCalculation()).thenReturn(false);
+        Set<Thread> threads = this.trackCalculationThreads();
+
+        this.buildCalculator().getStatus(this.consumers.keySet().stream());
+
+        assertEquals(Collections.singleton(Thread.currentThread()), threads);
+    }
+
+    @Test
+    public void calculatesConcurrentlyWhenSupported() {
+        when(this.rules.supportsConcurrentCalculation()).thenReturn(true);
+        Set<Thread> threads = this.trackCalculationThreads();
+
+        Map<String, ComplianceStatus> statuses = this.buildCalculator()
+            .getStatus(this.consumers.keySet().stream());
+
+        // The calling thread takes part in the calculation, alongside the worker pool
+        assertEquals(5, statuses.size());
+        threads.remove(Thread.currentThread());
+        assertFalse(threads.isEmpty());
+
+        // Statuses must still be applied on the calling thread
+        verify(this.rules, times(5)).applyStatus(any(Consumer.class), any(ComplianceStatus.class),
+            eq(false));
+    }
+
+    @Test
+    public void doesNotApplyStatusForExemptConsumers() {
+        ConsumerType manifestType = new ConsumerType(ConsumerTypeEnum.CANDLEPIN);
+        when(this.consumerTypeCurator.getConsumerType(any(Consumer.class))).thenReturn(manifestType);
+
+        Map<String, ComplianceStatus> statuses = this.buildCalculator()
+            .getStatus(Arrays.asList("uuid0", "uuid1").stream());
+
+        assertEquals(2, statuses.size());
+        verify(this.rules, never()).applyStatus(any(Consumer.class), any(ComplianceStatus.class),
+            anyBoolean());
+    }
+
+    @Test
+    public void reportsOverriddenStatusesWithoutCalculating() {
+        ComplianceStatus shared = new ComplianceStatus(null);
+
+        Map<String, ComplianceStatus> statuses = this.buildCalculator()
+            .getStatus(Arrays.asList("uuid0", "uuid1").stream(),
+                (consumer, ctype) -> "uuid0".equals(consumer.getUuid()) ? shared : null);
+
+        assertSame(shared, statuses.get("uuid0"));
+        assertNotNull(statuses.get("uuid1"));
+        verify(this.rules, never()).updateEntsOnStart(eq(this.consumers.get("uuid0")));
+        verify(this.rules, never()).applyStatus(eq(this.consumers.get("uuid0")),
+            any(ComplianceStatus.class), anyBoolean());
+        verify(this.rules, times(1)).calculateStatus(any(Consumer.class), any(ConsumerType.class),
+            any(Collection.class), any(Date.class), anyBoolean(), anyBoolean());
+    }
+
+    @Test
+    public void doesNotEvictConsumersAlreadyInTheSession() {
+        Consumer held = this.consumers.get("uuid0");
+        Set<Consumer> managed = Collections.newSetFromMap(new IdentityHashMap<>());
+        managed.add(held);
+        when(this.consumerCurator.getManagedConsumers()).thenReturn(managed);
+
+        this.buildCalculator().getStatus(Arrays.asList("uuid0", "uuid1").stream());
+
+        verify(this.consumerCurator).flushInBatches(
+            eq(Collections.singletonList(this.consumers.get("uuid1"))), eq(true));
+    }
+
+    private Set<Thread> trackCalculationThreads() {
+        Set<Thread> threads = ConcurrentHashMap.newKeySet();
+
+        doAnswer(invocation -> {
+            threads.add(Thread.currentThread());
+            return new ComplianceStatus((Date) invocation.getArguments()[3]);
+        }).when(this.rules).calculateStatus(any(Consumer.class), any(ConsumerType.class),
+            any(Collection.class), any(Date.class), anyBoolean(), anyBoolean());
+
+        return threads;
+    }
+}
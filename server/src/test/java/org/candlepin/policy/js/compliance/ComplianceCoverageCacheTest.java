@@ -0,0 +1,167 @@
+/**
+ * Copyright (c) 2009 - 2018 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.policy.js.compliance;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import org.candlepin.model.Consumer;
+import org.candlepin.model.ConsumerInstalledProduct;
+import org.candlepin.model.ConsumerType;
+import org.candlepin.model.ConsumerTypeCurator;
+import org.candlepin.model.Entitlement;
+import org.candlepin.model.Owner;
+import org.candlepin.model.Pool;
+import org.candlepin.model.Product;
+import org.candlepin.test.TestUtil;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+
+
+/**
+ * ComplianceCoverageCacheTest
+ */
+public class ComplianceCoverageCacheTest {
+
+    @Test
+    public void disabledCacheRetainsNothing() {
+        ComplianceCoverageCache cache = new ComplianceCoverageCache(false, 10);
+        cache.put("consumer", "ckey", "key", "result");
+
+        assertFalse(cache.isEnabled());
+        assertNull(cache.get("consumer", "ckey", "key"));
+        assertEquals(0, cache.getSize());
+    }
+
+    @Test
+    public void returnsResultsForMatchingKeys() {
+        ComplianceCoverageCache cache = new ComplianceCoverageCache(true, 10);
+        cache.put("consumer", "ckey", "key", "result");
+
+        assertEquals("result", cache.get("consumer", "ckey", "key"));
+        assertNull(cache.get("consumer", "ckey", "other_key"));
+        assertNull(cache.get("other_consumer", "ckey", "key"));
+        assertEquals(1, cache.getHits());
+        assertEquals(2, cache.getMisses());
+    }
+
+    @Test
+    public void consumerKeyChangeDiscardsResults() {
+        ComplianceCoverageCache cache = new ComplianceCoverageCache(true, 10);
+        cache.put("consumer", "ckey", "key1", "result1");
+        cache.put("consumer", "ckey2", "key2", "result2");
+
+        assertNull(cache.get("consumer", "ckey", "key1"));
+        assertNull(cache.get("consumer", "ckey2", "key1"));
+        assertEquals("result2", cache.get("consumer", "ckey2", "key2"));
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsedConsumers() {
+        ComplianceCoverageCache cache = new ComplianceCoverageCache(true, 2);
+        cache.put("consumer1", "ckey", "key", "result1");
+        cache.put("consumer2", "ckey", "key", "result2");
+        cache.get("consumer1", "ckey", "key");
+        cache.put("consumer3", "ckey", "key", "result3");
+
+        assertEquals(2, cache.getSize());
+        assertEquals("result1", cache.get("consumer1", "ckey", "key"));
+        assertNull(cache.get("consumer2", "ckey", "key"));
+        assertEquals("result3", cache.get("consumer3", "ckey", "key"));
+    }
+
+    @Test
+    public void invalidateDiscardsConsumerResults() {
+        ComplianceCoverageCache cache = new ComplianceCoverageCache(true, 10);
+        cache.put("consumer", "ckey", "key", "result");
+        cache.invalidate("consumer");
+
+        assertNull(cache.get("consumer", "ckey", "key"));
+    }
+
+    @Test
+    public void evaluatorOnlyRecalculatesChangedStacks() {
+        ComplianceCoverageCache cache = new ComplianceCoverageCache(true, 10);
+        ConsumerTypeCurator ctc = mock(ConsumerTypeCurator.class);
+        when(ctc.getConsumerType(any(Consumer.class)))
+            .thenReturn(new ConsumerType(ConsumerType.ConsumerTypeEnum.SYSTEM));
+
+        NativeComplianceEvaluator evaluator = new NativeComplianceEvaluator(ctc, cache);
+
+        Owner owner = TestUtil.createOwner();
+        Product installed1 = TestUtil.createProduct("installed1");
+        Product installed2 = TestUtil.createProduct("installed2");
+        Consumer consumer = TestUtil.createConsumer(owner);
+        consumer.setFact("cpu.cpu_socket(s)", "4");
+        consumer.addInstalledProduct(new ConsumerInstalledProduct(installed1));
+        consumer.addInstalledProduct(new ConsumerInstalledProduct(installed2));
+
+        Entitlement ent1 = this.createStackedEntitlement(owner, consumer, "stack1", installed1);
+        Entitlement ent2 = this.createStackedEntitlement(owner, consumer, "stack2", installed2);
+        List<Entitlement> ents = Arrays.asList(ent1, ent2);
+
+        ComplianceStatus status = evaluator.getStatus(consumer, null, ents, new Date(), false, false);
+        assertTrue(status.getPartialStacks().isEmpty());
+        assertEquals(0, cache.getHits());
+        assertEquals(2, cache.getMisses());
+
+        // Nothing changed, so both stacks should be reused
+        evaluator.getStatus(consumer, null, ents, new Date(), false, false);
+        assertEquals(2, cache.getHits());
+        assertEquals(2, cache.getMisses());
+
+        // Only the changed stack should be recalculated
+        ent2.setQuantity(1);
+        status = evaluator.getStatus(consumer, null, ents, new Date(), false, false);
+        assertEquals(3, cache.getHits());
+        assertEquals(3, cache.getMisses());
+        assertTrue(status.getPartialStacks().containsKey("stack2"));
+        assertTrue(status.getPartiallyCompliantProducts().containsKey("installed2"));
+        assertTrue(status.getCompliantProducts().containsKey("installed1"));
+
+        // Changing the consumer's facts requires recalculating everything
+        consumer.setFact("cpu.cpu_socket(s)", "2");
+        status = evaluator.getStatus(consumer, null, ents, new Date(), false, false);
+        assertEquals(3, cache.getHits());
+        assertEquals(5, cache.getMisses());
+        assertTrue(status.getPartialStacks().isEmpty());
+    }
+
+    private Entitlement createStackedEntitlement(Owner owner, Consumer consumer, String stackId,
+        Product provided) {
+
+        Product product = TestUtil.createProduct();
+        product.setAttribute(Product.Attributes.STACKING_ID, stackId);
+        product.setAttribute(Product.Attributes.SOCKETS, "2");
+
+        Pool pool = TestUtil.createPool(owner, product, Arrays.asList(provided), 10);
+        pool.setId("pool_" + TestUtil.randomInt());
+
+        Entitlement entitlement = TestUtil.createEntitlement(owner, consumer, pool, null);
+        entitlement.setQuantity(2);
+
+        return entitlement;
+    }
+}
@@ -27,6 +27,9 @@ import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import org.candlepin.audit.EventSink;
+import org.candlepin.common.config.Configuration;
+import org.candlepin.common.config.MapConfiguration;
+import org.candlepin.config.ConfigProperties;
 import org.candlepin.dto.ModelTranslator;
 import org.candlepin.dto.StandardTranslator;
 import org.candlepin.model.CandlepinQuery;
@@ -124,9 +127,12 @@ public class ComplianceRulesTest {
         when(rulesCuratorMock.getRules()).thenReturn(rules);
         when(cacheProvider.get()).thenReturn(cache);
         provider = new JsRunnerProvider(rulesCuratorMock, cacheProvider);
+
+        Configuration config = new MapConfiguration(this.getComplianceConfig());
         compliance = new ComplianceRules(provider.get(), entCurator, new StatusReasonMessageGenerator(i18n),
             eventSink, consumerCurator, consumerTypeCurator,
-            new RulesObjectMapper(new ProductCachedSerializationModule(productCurator)), translator);
+            new RulesObjectMapper(new ProductCachedSerializationModule(productCurator)), translator,
+            config, new ComplianceCoverageCache(config));
 
         owner = new Owner("test");
         owner.setId(TestUtil.randomString());
@@ -136,6 +142,17 @@ public class ComplianceRulesTest {
         activeGuestAttrs.put("active", "1");
     }
 
+    /**
+     * Fetches the configuration used to build the compliance rules. Subclasses may override this
+     * to run these tests against another compliance engine.
+     */
+    protected Map<String, String> getComplianceConfig() {
+        Map<String, String> config = new HashMap<>();
+        config.put(ConfigProperties.COMPLIANCE_ENGINE, ComplianceRules.JS_ENGINE);
+
+        return config;
+    }
+
     /*
      * Make sure additive properties coming back from the javascript do not break when
      * we deserialize.
@@ -162,7 +162,7 @@ public class ConsumerResourceCreationTest {
             null, this.ownerCurator, this.activationKeyCurator, null, this.complianceRules,
             this.deletedConsumerCurator, null, null, this.config, null, null, null, this.consumerBindUtil,
             null, null, new FactValidator(this.config, this.i18nProvider),
-            null, consumerEnricher, migrationProvider, modelTranslator);
+            null, consumerEnricher, migrationProvider, modelTranslator, null);
 
         this.system = this.initConsumerType();
         this.mockConsumerType(this.system);
@@ -73,6 +73,7 @@ import org.candlepin.model.activationkeys.ActivationKey;
 import org.candlepin.model.activationkeys.ActivationKeyCurator;
 import org.candlepin.model.dto.Subscription;
 import org.candlepin.policy.js.activationkey.ActivationKeyRules;
+import org.candlepin.policy.js.compliance.ComplianceBatchCalculator;
 import org.candlepin.policy.js.compliance.ComplianceRules;
 import org.candlepin.policy.js.compliance.ComplianceStatus;
 import org.candlepin.resource.dto.AutobindData;
@@ -92,11 +93,12 @@ import org.candlepin.test.TestUtil;
 import org.candlepin.util.ElementTransformer;
 import org.candlepin.util.FactValidator;
 import org.candlepin.util.ServiceLevelValidator;
+import org.candlepin.util.WorkerPool;
 
 import com.google.inject.util.Providers;
 
 import org.apache.commons.lang.RandomStringUtils;
-import org.hibernate.mapping.Collection;
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
@@ -116,6 +118,8 @@ import java.math.BigInteger;
 import java.security.GeneralSecurityException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashSet;
 import java.util.List;
@@ -175,6 +179,7 @@ public class ConsumerResourceTest {
     private ModelTranslator translator;
     private ConsumerResource consumerResource;
     private ConsumerResource mockedConsumerResource;
+    private WorkerPool workerPool;
 
 
     @Before
@@ -191,6 +196,7 @@ public class ConsumerResourceTest {
 
         testMigration = new GuestMigration(mockConsumerCurator);
         migrationProvider = Providers.of(testMigration);
+        workerPool = new WorkerPool(4, 100);
 
         consumerResource = new ConsumerResource(
             mockConsumerCurator,
@@ -227,11 +233,18 @@ public class ConsumerResourceTest {
             new ConsumerTypeValidator(mockConsumerTypeCurator, i18n),
             consumerEnricher,
             migrationProvider,
-            translator);
+            translator,
+            new ComplianceBatchCalculator(mockComplianceRules, mockConsumerCurator, mockConsumerTypeCurator,
+                workerPool, this.config));
 
         mockedConsumerResource = Mockito.spy(consumerResource);
     }
 
+    @After
+    public void tearDown() {
+        workerPool.shutdown();
+    }
+
     protected ConsumerType mockConsumerType(ConsumerType ctype) {
         if (ctype != null) {
             // Ensure the type has an ID
@@ -429,7 +442,7 @@ public class ConsumerResourceTest {
             mockEntitlementCertServiceAdapter, null, null, null, null, null, null,
             poolManager, null, null, null, null, null, null, null, null,
             this.config, null, null, null, consumerBindUtil,
-            null, null, this.factValidator, null, consumerEnricher, migrationProvider, translator);
+            null, null, this.factValidator, null, consumerEnricher, migrationProvider, translator, null);
 
         consumerResource.regenerateEntitlementCertificates(consumer.getUuid(), "9999", false);
     }
@@ -673,23 +686,44 @@ public class ConsumerResourceTest {
         consumers.add(c);
         consumers.add(c2);
 
-        CandlepinQuery cqmock = mock(CandlepinQuery.class);
-        when(cqmock.list()).thenReturn(consumers);
-        when(cqmock.iterator()).thenReturn(consumers.iterator());
-
         List<String> uuids = new ArrayList<>();
         uuids.add(c.getUuid());
         uuids.add(c2.getUuid());
-        when(mockConsumerCurator.findByUuids(eq(uuids))).thenReturn(cqmock);
+        when(mockConsumerCurator.getConsumersForComplianceCheck(eq(uuids))).thenReturn(consumers);
 
         ComplianceStatus status = new ComplianceStatus();
-        when(mockComplianceRules.getStatus(any(Consumer.class), any(Date.class)))
+        when(mockComplianceRules.calculateStatus(any(Consumer.class), any(ConsumerType.class),
+            any(Collection.class), any(Date.class), anyBoolean(), anyBoolean()))
             .thenReturn(status);
 
         Map<String, ComplianceStatusDTO> results = consumerResource.getComplianceStatusList(uuids);
         assertEquals(2, results.size());
         assertTrue(results.containsKey(c.getUuid()));
         assertTrue(results.containsKey(c2.getUuid()));
+
+        verify(mockComplianceRules).applyStatus(eq(c), eq(status), eq(false));
+        verify(mockComplianceRules).applyStatus(eq(c2), eq(status), eq(false));
+        verify(mockConsumerCurator).flushInBatches(eq(consumers), eq(true));
+    }
+
+    @Test
+    public void testGetComplianceStatusListForShareConsumer() {
+        Owner owner = this.createOwner();
+        ConsumerType shareType = this.mockConsumerType(new ConsumerType(ConsumerTypeEnum.SHARE));
+        Consumer share = this.createConsumer(owner, shareType);
+
+        List<String> uuids = Collections.singletonList(share.getUuid());
+        when(mockConsumerCurator.getConsumersForComplianceCheck(eq(uuids)))
+            .thenReturn(Collections.singletonList(share));
+
+        Map<String, ComplianceStatusDTO> results = consumerResource.getComplianceStatusList(uuids);
+        assertEquals(1, results.size());
+        assertNull(results.get(share.getUuid()).getDate());
+
+        verify(mockComplianceRules, never()).calculateStatus(any(Consumer.class), any(ConsumerType.class),
+            any(Collection.class), any(Date.class), anyBoolean(), anyBoolean());
+        verify(mockComplianceRules, never()).applyStatus(any(Consumer.class), any(ComplianceStatus.class),
+            anyBoolean());
     }
 
     @Test
@@ -717,7 +751,7 @@ public class ConsumerResourceTest {
         when(cqmock.list()).thenReturn(consumers);
         when(cqmock.iterator()).thenReturn(consumers.iterator());
         when(mockConsumerCurator.searchOwnerConsumers(
-            any(Owner.class), anyString(), (java.util.Collection<ConsumerType>) any(Collection.class),
+            any(Owner.class), anyString(), (Collection<ConsumerType>) any(Collection.class),
             any(List.class), any(List.class), any(List.class), any(List.class), any(List.class),
             any(List.class))).thenReturn(cqmock);
         when(cqmock.transform(any(ElementTransformer.class))).thenReturn(cqmock);
@@ -736,7 +770,7 @@ public class ConsumerResourceTest {
 
         when(mockOwnerCurator.getByKey(eq("taylorOwner"))).thenReturn(new Owner());
         when(mockConsumerCurator.searchOwnerConsumers(
-            any(Owner.class), anyString(), (java.util.Collection<ConsumerType>) any(Collection.class),
+            any(Owner.class), anyString(), (Collection<ConsumerType>) any(Collection.class),
             any(List.class), any(List.class), any(List.class), any(List.class), any(List.class),
             any(List.class))).thenReturn(cqmock);
 
@@ -758,7 +792,7 @@ public class ConsumerResourceTest {
         when(cqmock.iterator()).thenReturn(consumers.iterator());
 
         when(mockConsumerCurator.searchOwnerConsumers(
-            any(Owner.class), anyString(), (java.util.Collection<ConsumerType>) any(Collection.class),
+            any(Owner.class), anyString(), (Collection<ConsumerType>) any(Collection.class),
             any(List.class), any(List.class), any(List.class),
             any(List.class), any(List.class), any(List.class))).thenReturn(cqmock);
         when(cqmock.transform(any(ElementTransformer.class))).thenReturn(cqmock);
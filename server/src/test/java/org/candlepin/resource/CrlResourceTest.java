@@ -25,6 +25,7 @@ import org.candlepin.model.CertificateSerial;
 import org.candlepin.model.CertificateSerialCurator;
 import org.candlepin.pki.PKIUtility;
 import org.candlepin.util.CrlFileUtil;
+import org.candlepin.util.EncodedCrl;
 
 import org.junit.Before;
 import org.junit.After;
@@ -33,10 +34,21 @@ import org.junit.runner.RunWith;
 import org.mockito.Mock;
 import org.mockito.runners.MockitoJUnitRunner;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
 import java.util.LinkedList;
 import java.util.List;
 
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Request;
+import javax.ws.rs.core.Response;
+
 
 
 /**
@@ -47,17 +59,26 @@ public class CrlResourceTest {
     private CrlResource resource;
 
     private File testFile;
+    private EncodedCrl encodedCrl;
 
     @Mock private Configuration config;
     @Mock private CrlFileUtil crlFileUtil;
     @Mock private CertificateSerialCurator certSerialCurator;
     @Mock private PKIUtility pkiUtility;
+    @Mock private Request request;
+    @Mock private HttpHeaders headers;
 
     @Before
     public void init() throws Exception {
         this.testFile = File.createTempFile("test-", "crl");
 
         when(config.getString(ConfigProperties.CRL_FILE_PATH)).thenReturn(this.testFile.getAbsolutePath());
+
+        byte[] pem = "-----BEGIN X509 CRL-----\nAAECAwQF\n-----END X509 CRL-----\n"
+            .getBytes(StandardCharsets.US_ASCII);
+        this.encodedCrl = new EncodedCrl(this.testFile, 1000L, pem);
+        when(crlFileUtil.getEncodedCrl(any(File.class))).thenReturn(this.encodedCrl);
+
         this.resource = new CrlResource(
             this.config, this.crlFileUtil, this.pkiUtility, this.certSerialCurator
         );
@@ -72,7 +93,7 @@ public class CrlResourceTest {
 
     @Test
     public void testGetCurrentCrl() throws Exception {
-        Object response = this.resource.getCurrentCrl(null);
+        Object response = this.resource.getCurrentCrl(null, null, null);
 
         assertTrue(response != null);
         verify(crlFileUtil).syncCRLWithDB(any(File.class));
@@ -81,12 +102,131 @@ public class CrlResourceTest {
     @Test
     public void testGetCurrentCrlWithNoFile() throws Exception {
         this.cleanup();
-        Object response = this.resource.getCurrentCrl(null);
+        Object response = this.resource.getCurrentCrl(null, null, null);
 
         assertTrue(response != null);
         verify(crlFileUtil).syncCRLWithDB(any(File.class));
     }
 
+    @Test
+    public void testGetCurrentCrlServesCachedCrl() throws Exception {
+        when(config.getBoolean(ConfigProperties.CRL_SERVE_CACHED, false)).thenReturn(true);
+        Response response = this.resource.getCurrentCrl(null, this.request, this.headers);
+
+        assertEquals(200, response.getStatus());
+        verify(crlFileUtil, never()).syncCRLWithDB(any(File.class));
+    }
+
+    @Test
+    public void testGetCurrentCrlSetsValidators() throws Exception {
+        Response response = this.resource.getCurrentCrl(null, this.request, this.headers);
+
+        assertEquals(200, response.getStatus());
+        assertEquals(new EntityTag(this.encodedCrl.getEntityTag()), response.getEntityTag());
+        assertEquals(new Date(1000L), response.getLastModified());
+        assertEquals("bytes", response.getHeaderString("Accept-Ranges"));
+        assertArrayEquals(this.encodedCrl.getPem(), this.readEntity(response));
+    }
+
+    @Test
+    public void testGetCurrentCrlNotModified() throws Exception {
+        when(this.request.evaluatePreconditions(any(Date.class), any(EntityTag.class)))
+            .thenReturn(Response.notModified());
+
+        Response response = this.resource.getCurrentCrl(null, this.request, this.headers);
+
+        assertEquals(304, response.getStatus());
+        assertNull(response.getEntity());
+        verify(this.request).evaluatePreconditions(eq(new Date(1000L)),
+            eq(new EntityTag(this.encodedCrl.getEntityTag())));
+    }
+
+    @Test
+    public void testGetCurrentCrlAsDer() throws Exception {
+        when(this.headers.getAcceptableMediaTypes())
+            .thenReturn(Arrays.asList(MediaType.valueOf(CrlResource.PKIX_CRL), MediaType.TEXT_PLAIN_TYPE));
+
+        Response response = this.resource.getCurrentCrl(null, this.request, this.headers);
+
+        assertEquals(200, response.getStatus());
+        assertEquals(CrlResource.PKIX_CRL, response.getMediaType().toString());
+        assertEquals(new EntityTag(this.encodedCrl.getEntityTag() + "-der"), response.getEntityTag());
+        assertArrayEquals(new byte[] { 0, 1, 2, 3, 4, 5 }, this.readEntity(response));
+    }
+
+    @Test
+    public void testGetCurrentCrlDefaultsToPem() throws Exception {
+        when(this.headers.getAcceptableMediaTypes())
+            .thenReturn(Collections.singletonList(MediaType.WILDCARD_TYPE));
+
+        Response response = this.resource.getCurrentCrl(null, this.request, this.headers);
+
+        assertEquals(MediaType.TEXT_PLAIN_TYPE, response.getMediaType());
+        assertArrayEquals(this.encodedCrl.getPem(), this.readEntity(response));
+    }
+
+    @Test
+    public void testGetCurrentCrlRange() throws Exception {
+        when(this.headers.getHeaderString("Range")).thenReturn("bytes=5-10");
+
+        Response response = this.resource.getCurrentCrl(null, this.request, this.headers);
+        byte[] pem = this.encodedCrl.getPem();
+
+        assertEquals(206, response.getStatus());
+        assertEquals("bytes 5-10/" + pem.length, response.getHeaderString("Content-Range"));
+        assertArrayEquals(Arrays.copyOfRange(pem, 5, 11), this.readEntity(response));
+    }
+
+    @Test
+    public void testGetCurrentCrlSuffixRange() throws Exception {
+        when(this.headers.getHeaderString("Range")).thenReturn("bytes=-4");
+
+        Response response = this.resource.getCurrentCrl(null, this.request, this.headers);
+        byte[] pem = this.encodedCrl.getPem();
+
+        assertEquals(206, response.getStatus());
+        assertArrayEquals(Arrays.copyOfRange(pem, pem.length - 4, pem.length), this.readEntity(response));
+    }
+
+    @Test
+    public void testGetCurrentCrlUnsatisfiableRange() throws Exception {
+        int length = this.encodedCrl.getPem().length;
+        when(this.headers.getHeaderString("Range")).thenReturn("bytes=" + length + "-");
+
+        Response response = this.resource.getCurrentCrl(null, this.request, this.headers);
+
+        assertEquals(416, response.getStatus());
+        assertEquals("bytes */" + length, response.getHeaderString("Content-Range"));
+    }
+
+    @Test
+    public void testGetCurrentCrlIgnoresRangeForStaleIfRange() throws Exception {
+        when(this.headers.getHeaderString("Range")).thenReturn("bytes=5-10");
+        when(this.headers.getHeaderString("If-Range")).thenReturn("\"stale\"");
+
+        Response response = this.resource.getCurrentCrl(null, this.request, this.headers);
+
+        assertEquals(200, response.getStatus());
+        assertArrayEquals(this.encodedCrl.getPem(), this.readEntity(response));
+    }
+
+    @Test
+    public void testGetCurrentCrlIgnoresMultipleRanges() throws Exception {
+        when(this.headers.getHeaderString("Range")).thenReturn("bytes=0-1,5-10");
+
+        Response response = this.resource.getCurrentCrl(null, this.request, this.headers);
+
+        assertEquals(200, response.getStatus());
+    }
+
+    private byte[] readEntity(Response response) throws Exception {
+        ByteArrayInputStream stream = (ByteArrayInputStream) response.getEntity();
+        byte[] bytes = new byte[stream.available()];
+        stream.read(bytes);
+
+        return bytes;
+    }
+
     @Test
     @SuppressWarnings("unchecked")
     public void testUnrevokeWithArguments() throws Exception {
@@ -0,0 +1,145 @@
+/**
+ * Copyright (c) 2009 - 2018 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.resource.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+
+import org.candlepin.model.Consumer;
+import org.candlepin.model.GuestId;
+import org.candlepin.model.HypervisorId;
+import org.candlepin.pinsetter.tasks.HypervisorUpdateJob;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+
+
+
+/**
+ * HypervisorReportCacheTest
+ */
+public class HypervisorReportCacheTest {
+
+    private Consumer buildHost(String hypervisorId, String... guestIds) {
+        Consumer host = new Consumer();
+        host.setName("host");
+        host.setHypervisorId(new HypervisorId(hypervisorId));
+        host.setFact("cpu.cpu_socket(s)", "4");
+        host.setFact(Consumer.Facts.SYSTEM_UUID, "system-uuid");
+
+        for (String guestId : guestIds) {
+            host.addGuestId(new GuestId(guestId));
+        }
+
+        return host;
+    }
+
+    @Test
+    public void hostDigestIgnoresGuestOrderAndCase() {
+        String digest = HypervisorReportCache.digestHost(buildHost("host-1", "guest-1", "guest-2"), "r");
+
+        assertEquals(digest,
+            HypervisorReportCache.digestHost(buildHost("HOST-1", "GUEST-2", "guest-1"), "r"));
+    }
+
+    @Test
+    public void hostDigestIgnoresEmptyGuestIds() {
+        String digest = HypervisorReportCache.digestHost(buildHost("host-1", "guest-1"), "r");
+
+        assertEquals(digest, HypervisorReportCache.digestHost(buildHost("host-1", "guest-1", ""), "r"));
+    }
+
+    @Test
+    public void hostDigestReflectsReportedState() {
+        String digest = HypervisorReportCache.digestHost(buildHost("host-1", "guest-1"), "r");
+
+        assertNotEquals(digest, HypervisorReportCache.digestHost(buildHost("host-2", "guest-1"), "r"));
+        assertNotEquals(digest, HypervisorReportCache.digestHost(buildHost("host-1", "guest-2"), "r"));
+        assertNotEquals(digest, HypervisorReportCache.digestHost(buildHost("host-1"), "r"));
+        assertNotEquals(digest, HypervisorReportCache.digestHost(buildHost("host-1", "guest-1"), "other"));
+        assertNotEquals(digest, HypervisorReportCache.digestHost(buildHost("host-1", "guest-1"), null));
+
+        Consumer renamed = buildHost("host-1", "guest-1");
+        renamed.setName("renamed");
+        assertNotEquals(digest, HypervisorReportCache.digestHost(renamed, "r"));
+
+        Consumer factChanged = buildHost("host-1", "guest-1");
+        factChanged.setFact("cpu.cpu_socket(s)", "8");
+        assertNotEquals(digest, HypervisorReportCache.digestHost(factChanged, "r"));
+
+        Consumer guestStateChanged = buildHost("host-1");
+        GuestId guest = new GuestId("guest-1");
+        guest.setAttributes(Collections.singletonMap("active", "0"));
+        guestStateChanged.addGuestId(guest);
+        assertNotEquals(digest, HypervisorReportCache.digestHost(guestStateChanged, "r"));
+    }
+
+    @Test
+    public void reportDigestIsComputedFromUncompressedReport() {
+        String report = "{\"hypervisors\":[]}";
+
+        String digest = HypervisorReportCache.digestReport(HypervisorUpdateJob.compress(report));
+
+        assertEquals(digest, HypervisorReportCache.digestReport(HypervisorUpdateJob.compress(report)));
+        assertNotEquals(digest,
+            HypervisorReportCache.digestReport(HypervisorUpdateJob.compress(report + " ")));
+    }
+
+    @Test
+    public void reportsAreCachedPerReporter() {
+        HypervisorReportCache cache = new HypervisorReportCache(true, 10);
+        Map<String, String> hosts = Collections.singletonMap("host-1", "digest-1");
+
+        cache.put("owner", "reporter", "report-1", hosts);
+
+        assertEquals(hosts, cache.get("owner", "reporter", "report-1"));
+        assertNull(cache.get("owner", "reporter", "report-2"));
+        assertNull(cache.get("owner", "other", "report-1"));
+        assertNull(cache.get("other", "reporter", "report-1"));
+        assertEquals(1, cache.getHits());
+        assertEquals(3, cache.getMisses());
+
+        cache.remove("owner", "reporter");
+        assertNull(cache.get("owner", "reporter", "report-1"));
+    }
+
+    @Test
+    public void leastRecentlyUsedReportsAreEvicted() {
+        HypervisorReportCache cache = new HypervisorReportCache(true, 2);
+        Map<String, String> hosts = Collections.singletonMap("host-1", "digest-1");
+
+        for (String reporter : Arrays.asList("r1", "r2", "r3")) {
+            cache.put("owner", reporter, "report", hosts);
+        }
+
+        assertEquals(2, cache.getSize());
+        assertNull(cache.get("owner", "r1", "report"));
+        assertEquals(hosts, cache.get("owner", "r3", "report"));
+    }
+
+    @Test
+    public void disabledCacheRetainsNothing() {
+        HypervisorReportCache cache = new HypervisorReportCache(false, 0);
+
+        cache.put("owner", "reporter", "report", Collections.singletonMap("host-1", "digest-1"));
+
+        assertEquals(0, cache.getSize());
+        assertNull(cache.get("owner", "reporter", "report"));
+    }
+}
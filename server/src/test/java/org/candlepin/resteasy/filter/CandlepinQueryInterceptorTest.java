@@ -19,6 +19,8 @@ import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.*;
 
+import org.candlepin.common.exceptions.BadRequestException;
+import org.candlepin.common.paging.Page;
 import org.candlepin.common.paging.PageRequest;
 import org.candlepin.model.Owner;
 import org.candlepin.resteasy.JsonProvider;
@@ -45,6 +47,7 @@ import junitparams.Parameters;
 
 import java.io.IOException;
 import java.io.OutputStream;
+import java.util.ArrayList;
 import java.util.List;
 
 import javax.persistence.EntityManager;
@@ -110,6 +113,7 @@ public class CandlepinQueryInterceptorTest extends DatabaseTestFixture {
 
         // Make sure we don't leave any page request on the context to muck with other tests
         ResteasyProviderFactory.popContextData(PageRequest.class);
+        ResteasyProviderFactory.popContextData(Page.class);
     }
 
     @Test
@@ -217,4 +221,96 @@ public class CandlepinQueryInterceptorTest extends DatabaseTestFixture {
         assertSame(owner, response.getEntity());
     }
 
+    private Object[][] paramsForKeysetPaginatedContentTest() {
+        return new Object[][] {
+            new Object[] { 1, "key", PageRequest.Order.ASCENDING },
+            new Object[] { 2, "key", PageRequest.Order.DESCENDING },
+            new Object[] { 3, "created", PageRequest.Order.ASCENDING },
+            new Object[] { 5, "created", PageRequest.Order.DESCENDING },
+            new Object[] { 10, "displayName", PageRequest.Order.ASCENDING },
+        };
+    }
+
+    @Test
+    @Parameters(method = "paramsForKeysetPaginatedContentTest")
+    public void testWriteKeysetPaginatedCandlepinQueryContents(int perPage, String sortBy,
+        PageRequest.Order order) throws IOException {
+
+        boolean descending = order == PageRequest.Order.DESCENDING;
+        List<Owner> owners = this.ownerCurator.listAll()
+            .addOrder(descending ? Order.desc(sortBy) : Order.asc(sortBy))
+            .addOrder(descending ? Order.desc("id") : Order.asc("id"))
+            .list();
+
+        CandlepinQueryInterceptor cqi = new CandlepinQueryInterceptor(this.mockJsonProvider, this.emProvider);
+        List<Owner> written = new ArrayList<>();
+        String token = "";
+
+        doAnswer(invocation -> written.add((Owner) invocation.getArguments()[1]))
+            .when(this.mockObjectMapper).writeValue(eq(this.mockJsonGenerator), any(Owner.class));
+
+        while (token != null) {
+            PageRequest pageRequest = new PageRequest();
+            pageRequest.setPage(1);
+            pageRequest.setPerPage(perPage);
+            pageRequest.setSortBy(sortBy);
+            pageRequest.setOrder(order);
+            pageRequest.setPageToken(token);
+
+            ServerResponse response = new ServerResponse();
+            response.setEntity(this.ownerCurator.listAll());
+
+            ResteasyProviderFactory.pushContext(PageRequest.class, pageRequest);
+            cqi.postProcess(response);
+
+            Page page = ResteasyProviderFactory.getContextData(Page.class);
+            assertNotNull(page);
+            assertNull(page.getMaxRecords());
+            token = page.getNextPageToken();
+
+            ((StreamingOutput) response.getEntity()).write(this.mockOutputStream);
+            assertTrue(written.size() <= owners.size());
+        }
+
+        assertEquals(owners, written);
+    }
+
+    @Test(expected = BadRequestException.class)
+    public void testKeysetPagingWithMalformedToken() {
+        PageRequest pageRequest = new PageRequest();
+        pageRequest.setPage(1);
+        pageRequest.setPerPage(2);
+        pageRequest.setSortBy("key");
+        pageRequest.setPageToken("???");
+
+        CandlepinQueryInterceptor cqi = new CandlepinQueryInterceptor(this.mockJsonProvider, this.emProvider);
+
+        ServerResponse response = new ServerResponse();
+        response.setEntity(this.ownerCurator.listAll());
+
+        ResteasyProviderFactory.pushContext(PageRequest.class, pageRequest);
+        cqi.postProcess(response);
+    }
+
+    @Test
+    public void testPagingWithoutCount() {
+        PageRequest pageRequest = new PageRequest();
+        pageRequest.setPage(2);
+        pageRequest.setPerPage(2);
+        pageRequest.setSortBy("key");
+        pageRequest.setSkipCount(true);
+
+        CandlepinQueryInterceptor cqi = new CandlepinQueryInterceptor(this.mockJsonProvider, this.emProvider);
+
+        ServerResponse response = new ServerResponse();
+        response.setEntity(this.ownerCurator.listAll());
+
+        ResteasyProviderFactory.pushContext(PageRequest.class, pageRequest);
+        cqi.postProcess(response);
+
+        Page page = ResteasyProviderFactory.getContextData(Page.class);
+        assertNotNull(page);
+        assertNull(page.getMaxRecords());
+        assertSame(pageRequest, page.getPageRequest());
+    }
 }
@@ -21,6 +21,7 @@ import org.candlepin.auth.ConsumerPrincipal;
 import org.candlepin.auth.Principal;
 import org.candlepin.auth.UpdateConsumerCheckIn;
 import org.candlepin.model.Consumer;
+import org.candlepin.model.ConsumerCheckInBuffer;
 import org.candlepin.model.Owner;
 import org.candlepin.test.DatabaseTestFixture;
 
@@ -84,7 +85,7 @@ public class ConsumerCheckInFilterTest extends DatabaseTestFixture {
         ResteasyProviderFactory.pushContext(ResourceInfo.class, mockInfo);
         ResteasyProviderFactory.pushContext(Principal.class, this.principal);
 
-        interceptor = new ConsumerCheckInFilter(consumerCurator);
+        interceptor = new ConsumerCheckInFilter(injector.getInstance(ConsumerCheckInBuffer.class));
     }
 
     private void mockResourceMethod(Method method) {
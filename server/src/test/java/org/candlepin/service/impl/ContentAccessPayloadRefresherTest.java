@@ -0,0 +1,250 @@
+/**
+ * Copyright (c) 2009 - 2018 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.service.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import org.candlepin.model.Environment;
+import org.candlepin.model.Owner;
+import org.candlepin.model.OwnerEnvContentAccess;
+import org.candlepin.model.OwnerEnvContentAccessCurator;
+import org.candlepin.service.ContentAccessCertServiceAdapter;
+
+import com.google.inject.persist.UnitOfWork;
+
+import org.hibernate.action.spi.AfterTransactionCompletionProcess;
+import org.hibernate.engine.spi.ActionQueue;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityTransaction;
+
+
+
+/**
+ * ContentAccessPayloadRefresherTest
+ */
+public class ContentAccessPayloadRefresherTest {
+    private DefaultContentAccessCertServiceAdapter adapter;
+    private OwnerEnvContentAccessCurator curator;
+    private EntityManager entityManager;
+    private UnitOfWork unitOfWork;
+    private ContentAccessPayloadRefresher refresher;
+
+    private Owner owner;
+    private Environment environment;
+
+    @Before
+    public void init() {
+        this.adapter = mock(DefaultContentAccessCertServiceAdapter.class);
+        this.curator = mock(OwnerEnvContentAccessCurator.class);
+        this.entityManager = mock(EntityManager.class);
+        this.unitOfWork = mock(UnitOfWork.class);
+
+        EntityTransaction transaction = mock(EntityTransaction.class);
+        when(this.entityManager.getTransaction()).thenReturn(transaction);
+
+        this.owner = new Owner("owner", "owner");
+        this.owner.setId("owner_id");
+        this.owner.setContentAccessMode(ContentAccessCertServiceAdapter.ORG_ENV_ACCESS_MODE);
+
+        this.environment = new Environment("env_id", "env", this.owner);
+    }
+
+    @After
+    public void cleanup() {
+        if (this.refresher != null) {
+            this.refresher.shutdown();
+        }
+    }
+
+    private ContentAccessPayloadRefresher createRefresher(boolean enabled) {
+        return new ContentAccessPayloadRefresher(() -> this.adapter, this.curator, () -> this.entityManager,
+            this.unitOfWork, enabled);
+    }
+
+    @Test
+    public void testExistingPayloadIsNotRebuilt() throws Exception {
+        this.refresher = this.createRefresher(true);
+        OwnerEnvContentAccess existing = new OwnerEnvContentAccess(this.owner, this.environment, "json");
+        when(this.curator.getContentAccess("owner_id", "env_id")).thenReturn(existing);
+
+        assertSame(existing, this.refresher.getContentAccess(this.owner, this.environment));
+        verify(this.adapter, never()).createPayloadAndSignature(any(Owner.class), any(Environment.class));
+    }
+
+    @Test
+    public void testMissingPayloadIsBuiltAndStored() throws Exception {
+        this.refresher = this.createRefresher(true);
+        when(this.adapter.createPayloadAndSignature(this.owner, this.environment)).thenReturn("json");
+
+        OwnerEnvContentAccess oeca = this.refresher.getContentAccess(this.owner, this.environment);
+
+        assertEquals("json", oeca.getContentJson());
+        verify(this.curator).saveOrUpdate(oeca);
+        assertEquals(1, this.refresher.getBuildCount());
+    }
+
+    @Test
+    public void testConcurrentRequestsShareOneBuild() throws Exception {
+        this.refresher = this.createRefresher(true);
+
+        final CountDownLatch building = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+
+        when(this.adapter.createPayloadAndSignature(this.owner, this.environment)).thenAnswer(invocation -> {
+            building.countDown();
+            release.await(10, TimeUnit.SECONDS);
+            return "json";
+        });
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<OwnerEnvContentAccess> first = executor.submit(
+                () -> this.refresher.getContentAccess(this.owner, this.environment));
+
+            building.await(10, TimeUnit.SECONDS);
+
+            Future<OwnerEnvContentAccess> second = executor.submit(
+                () -> this.refresher.getContentAccess(this.owner, this.environment));
+
+            // Give the second request a chance to start waiting before the build completes
+            while (this.refresher.getSharedCount() == 0 && !second.isDone()) {
+                Thread.sleep(10);
+            }
+
+            release.countDown();
+
+            assertEquals("json", first.get(10, TimeUnit.SECONDS).getContentJson());
+            assertEquals("json", second.get(10, TimeUnit.SECONDS).getContentJson());
+        }
+        finally {
+            executor.shutdownNow();
+        }
+
+        verify(this.adapter, times(1)).createPayloadAndSignature(this.owner, this.environment);
+        verify(this.curator, times(1)).saveOrUpdate(any(OwnerEnvContentAccess.class));
+        assertEquals(1, this.refresher.getSharedCount());
+    }
+
+    @Test
+    public void testPayloadsAreDiscardedWhenNotStarted() {
+        this.refresher = this.createRefresher(true);
+
+        this.refresher.refreshOwner(this.owner);
+        this.refresher.refreshEnvironment(this.environment);
+
+        verify(this.curator).removeAllForOwner("owner_id");
+        verify(this.curator).removeAllForEnvironment("env_id");
+    }
+
+    @Test
+    public void testPayloadsAreDiscardedWhenDisabled() {
+        this.refresher = this.createRefresher(false);
+        this.refresher.start();
+
+        this.refresher.refreshOwner(this.owner);
+
+        verify(this.curator).removeAllForOwner("owner_id");
+    }
+
+    @Test
+    public void testPayloadsAreRegeneratedInBackground() throws Exception {
+        this.refresher = this.createRefresher(true);
+        this.refresher.start();
+
+        OwnerEnvContentAccess ownerPayload = new OwnerEnvContentAccess(this.owner, null, "old");
+        OwnerEnvContentAccess envPayload = new OwnerEnvContentAccess(this.owner, this.environment, "old");
+        when(this.curator.listForOwner("owner_id")).thenReturn(Arrays.asList(ownerPayload, envPayload));
+        when(this.adapter.createPayloadAndSignature(eq(this.owner), any(Environment.class)))
+            .thenReturn("new");
+
+        this.refresher.refreshOwner(this.owner);
+        this.refresher.shutdown();
+
+        verify(this.curator, never()).removeAllForOwner(any(String.class));
+        verify(this.unitOfWork).begin();
+        verify(this.unitOfWork).end();
+        verify(this.curator).merge(ownerPayload);
+        verify(this.curator).merge(envPayload);
+        assertEquals("new", ownerPayload.getContentJson());
+        assertEquals("new", envPayload.getContentJson());
+        assertEquals(2, this.refresher.getRegeneratedCount());
+    }
+
+    @Test
+    public void testPayloadsOfEntitlementModeOwnersAreRemoved() throws Exception {
+        this.refresher = this.createRefresher(true);
+        this.refresher.start();
+
+        this.owner.setContentAccessMode(ContentAccessCertServiceAdapter.ENTITLEMENT_ACCESS_MODE);
+        OwnerEnvContentAccess envPayload = new OwnerEnvContentAccess(this.owner, this.environment, "old");
+        when(this.curator.listForEnvironment("env_id")).thenReturn(Arrays.asList(envPayload));
+
+        this.refresher.refreshEnvironment(this.environment);
+        this.refresher.shutdown();
+
+        verify(this.curator).delete(envPayload);
+        verify(this.adapter, never()).createPayloadAndSignature(any(Owner.class), any(Environment.class));
+    }
+
+    @Test
+    public void testRegenerationWaitsForCommit() throws Exception {
+        this.refresher = this.createRefresher(true);
+        this.refresher.start();
+
+        when(this.entityManager.getTransaction().isActive()).thenReturn(true);
+        SessionImplementor session = mock(SessionImplementor.class);
+        ActionQueue actionQueue = mock(ActionQueue.class);
+        when(this.entityManager.unwrap(SessionImplementor.class)).thenReturn(session);
+        when(session.getActionQueue()).thenReturn(actionQueue);
+
+        final AfterTransactionCompletionProcess[] process = new AfterTransactionCompletionProcess[1];
+
+        doAnswer(invocation -> {
+            process[0] = (AfterTransactionCompletionProcess) invocation.getArguments()[0];
+            return null;
+        }).when(actionQueue).registerProcess(any(AfterTransactionCompletionProcess.class));
+
+        this.refresher.refreshOwner(this.owner);
+        verify(this.curator, never()).listForOwner(any(String.class));
+
+        // A rolled back change requires no regeneration
+        process[0].doAfterTransactionCompletion(false, session);
+        this.refresher.shutdown();
+
+        verify(this.unitOfWork, never()).begin();
+        verify(this.curator, never()).listForOwner(any(String.class));
+    }
+}
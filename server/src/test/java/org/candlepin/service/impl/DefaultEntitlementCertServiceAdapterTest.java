@@ -42,6 +42,7 @@ import org.candlepin.model.KeyPairCurator;
 import org.candlepin.model.Owner;
 import org.candlepin.model.OwnerCurator;
 import org.candlepin.model.Pool;
+import org.candlepin.model.PoolQuantity;
 import org.candlepin.model.Product;
 import org.candlepin.model.ProductContent;
 import org.candlepin.model.ProductCurator;
@@ -56,6 +57,7 @@ import org.candlepin.pki.impl.BouncyCastleProviderLoader;
 import org.candlepin.test.TestUtil;
 import org.candlepin.util.CertificateSizeException;
 import org.candlepin.util.Util;
+import org.candlepin.util.WorkerPool;
 import org.candlepin.util.X509ExtensionUtil;
 import org.candlepin.util.X509V3ExtensionUtil;
 import org.candlepin.util.X509V3ExtensionUtil.HuffNode;
@@ -81,6 +83,7 @@ import org.mockito.runners.MockitoJUnitRunner;
 import org.mockito.stubbing.Answer;
 import org.xnap.commons.i18n.I18nFactory;
 
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
@@ -91,6 +94,7 @@ import java.security.GeneralSecurityException;
 import java.security.Key;
 import java.security.KeyPair;
 import java.security.cert.CertificateExpiredException;
+import java.security.cert.CertificateFactory;
 import java.security.cert.X509Certificate;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -155,6 +159,7 @@ public class DefaultEntitlementCertServiceAdapterTest {
     @Mock private PKIUtility mockedPKI;
     @Mock private ProductCurator productCurator;
     @Mock private EnvironmentCurator mockEnvironmentCurator;
+    private WorkerPool workerPool = new WorkerPool(4, 100);
 
     private Consumer consumer;
     private Product product;
@@ -225,7 +230,8 @@ public class DefaultEntitlementCertServiceAdapterTest {
             mock(EntitlementCertificateCurator.class),
             keyPairCurator, serialCurator, ownerCurator, entCurator,
             I18nFactory.getI18n(getClass(), Locale.US, I18nFactory.FALLBACK),
-            config, productCurator, this.mockConsumerTypeCurator, this.mockEnvironmentCurator);
+            config, productCurator, this.mockConsumerTypeCurator, this.mockEnvironmentCurator,
+            this.workerPool);
 
         product = TestUtil.createProduct("12345", "a product");
         product.setAttribute(Product.Attributes.VERSION, "version");
@@ -402,7 +408,8 @@ public class DefaultEntitlementCertServiceAdapterTest {
             mock(EntitlementCertificateCurator.class),
             keyPairCurator, serialCurator, ownerCurator, entCurator,
             I18nFactory.getI18n(getClass(), Locale.US, I18nFactory.FALLBACK),
-            config, productCurator, this.mockConsumerTypeCurator, this.mockEnvironmentCurator);
+            config, productCurator, this.mockConsumerTypeCurator, this.mockEnvironmentCurator,
+            this.workerPool);
 
         X509Certificate result = certServiceAdapter.createX509Certificate(consumer, owner, pool,
             entitlement, product, new HashSet<>(),
@@ -429,7 +436,8 @@ public class DefaultEntitlementCertServiceAdapterTest {
             mock(EntitlementCertificateCurator.class),
             keyPairCurator, serialCurator, ownerCurator, entCurator,
             I18nFactory.getI18n(getClass(), Locale.US, I18nFactory.FALLBACK),
-            config, productCurator, this.mockConsumerTypeCurator, this.mockEnvironmentCurator);
+            config, productCurator, this.mockConsumerTypeCurator, this.mockEnvironmentCurator,
+            this.workerPool);
 
         // pool start date is more than an hour ago, use it
         Calendar cal = Calendar.getInstance();
@@ -870,7 +878,8 @@ public class DefaultEntitlementCertServiceAdapterTest {
             mock(EntitlementCertificateCurator.class),
             keyPairCurator, serialCurator, ownerCurator, entCurator,
             I18nFactory.getI18n(getClass(), Locale.US, I18nFactory.FALLBACK),
-            mockConfig, productCurator, this.mockConsumerTypeCurator, this.mockEnvironmentCurator);
+            mockConfig, productCurator, this.mockConsumerTypeCurator, this.mockEnvironmentCurator,
+            this.workerPool);
     }
 
     @Test
@@ -1691,6 +1700,57 @@ public class DefaultEntitlementCertServiceAdapterTest {
         assertTrue(!cert.getCert().contains("ENTITLEMENT DATA"));
     }
 
+    @Test
+    public void testGenerateMultipleEntitlementCertsConcurrently() throws Exception {
+        certServiceAdapter = new DefaultEntitlementCertServiceAdapter(
+            realPKI, extensionUtil, v3extensionUtil,
+            mock(EntitlementCertificateCurator.class),
+            keyPairCurator, serialCurator, ownerCurator, entCurator,
+            I18nFactory.getI18n(getClass(), Locale.US, I18nFactory.FALLBACK),
+            config, productCurator, this.mockConsumerTypeCurator, this.mockEnvironmentCurator,
+            this.workerPool);
+
+        when(keyPairCurator.getConsumerKeyPair(any(Consumer.class))).thenReturn(keyPair);
+        consumer.setFact("system.certificate_version", "3.3");
+
+        Map<String, PoolQuantity> poolQuantities = new HashMap<>();
+        Map<String, Entitlement> entitlements = new HashMap<>();
+        Map<String, Product> products = new HashMap<>();
+
+        for (int i = 0; i < 6; ++i) {
+            Pool pool = TestUtil.createPool(owner, product);
+            pool.setId("pool-" + i);
+
+            Entitlement ent = TestUtil.createEntitlement(owner, consumer, pool, null);
+            ent.setId("ent-" + i);
+            ent.setQuantity(1);
+
+            poolQuantities.put(pool.getId(), new PoolQuantity(pool, 1));
+            entitlements.put(pool.getId(), ent);
+            products.put(pool.getId(), product);
+        }
+
+        Map<String, EntitlementCertificate> certs = certServiceAdapter.generateEntitlementCerts(consumer,
+            poolQuantities, entitlements, products, false);
+
+        assertEquals(poolQuantities.size(), certs.size());
+        CertificateFactory factory = CertificateFactory.getInstance("X.509");
+
+        for (Map.Entry<String, EntitlementCertificate> entry : certs.entrySet()) {
+            String pem = entry.getValue().getCert();
+            assertTrue(pem.contains("-----BEGIN ENTITLEMENT DATA-----"));
+            assertTrue(pem.contains("-----BEGIN RSA SIGNATURE-----"));
+
+            X509Certificate x509 = (X509Certificate) factory.generateCertificate(
+                new ByteArrayInputStream(pem.getBytes()));
+
+            String expectedCN = "CN=" + entitlements.get(entry.getKey()).getId();
+            assertTrue(x509.getSubjectX500Principal().getName().contains(expectedCN));
+            assertNotNull(entry.getValue().getSerial());
+            assertEquals(entry.getValue().getSerial().getSerial(), x509.getSerialNumber());
+        }
+    }
+
     @Test
     public void testContentExtension() throws IOException {
         Set<Product> products = new HashSet<>();
@@ -0,0 +1,191 @@
+/**
+ * Copyright (c) 2009 - 2018 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.service.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.candlepin.common.config.MapConfiguration;
+import org.candlepin.config.ConfigProperties;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+
+
+/**
+ * SnowflakeUniqueIdGeneratorTest
+ */
+public class SnowflakeUniqueIdGeneratorTest {
+
+    /**
+     * A generator whose clock can be set by the test.
+     */
+    private static class FixedClockGenerator extends SnowflakeUniqueIdGenerator {
+        private long time;
+
+        public FixedClockGenerator(int nodeId, long time) {
+            super(nodeId);
+            this.time = time;
+        }
+
+        @Override
+        protected long currentTime() {
+            return this.time;
+        }
+    }
+
+    private static long timestampOf(long id) {
+        return id >>> (SnowflakeUniqueIdGenerator.NODE_ID_BITS + SnowflakeUniqueIdGenerator.SEQUENCE_BITS);
+    }
+
+    private static long nodeOf(long id) {
+        return (id >>> SnowflakeUniqueIdGenerator.SEQUENCE_BITS) & SnowflakeUniqueIdGenerator.MAX_NODE_ID;
+    }
+
+    @Test
+    public void idsEncodeTimestampAndNode() {
+        FixedClockGenerator generator = new FixedClockGenerator(37, 1000);
+
+        long first = generator.nextId();
+        long second = generator.nextId();
+
+        assertEquals(1000, timestampOf(first));
+        assertEquals(37, nodeOf(first));
+        assertEquals(first + 1, second);
+        assertEquals(Long.toString(second + 1), generator.generateId());
+    }
+
+    @Test
+    public void idsAreNumericAndPositive() {
+        SnowflakeUniqueIdGenerator generator =
+            new SnowflakeUniqueIdGenerator(SnowflakeUniqueIdGenerator.MAX_NODE_ID);
+
+        String id = generator.generateId();
+        assertTrue(Long.parseLong(id) > 0);
+    }
+
+    @Test
+    public void exhaustedSequenceBorrowsFromNextMillisecond() {
+        FixedClockGenerator generator = new FixedClockGenerator(1, 1000);
+
+        long previous = generator.nextId();
+        for (int i = 0; i < 5000; ++i) {
+            long next = generator.nextId();
+            assertTrue(next > previous);
+            previous = next;
+        }
+
+        assertEquals(1001, timestampOf(previous));
+        assertEquals(1, nodeOf(previous));
+    }
+
+    @Test
+    public void idsRemainMonotonicWhenClockMovesBackwards() {
+        FixedClockGenerator generator = new FixedClockGenerator(1, 1000);
+
+        long before = generator.nextId();
+        generator.time = 500;
+        long after = generator.nextId();
+
+        assertTrue(after > before);
+        assertEquals(1000, timestampOf(after));
+    }
+
+    @Test
+    public void nodesNeverGenerateTheSameId() {
+        FixedClockGenerator node1 = new FixedClockGenerator(1, 1000);
+        FixedClockGenerator node2 = new FixedClockGenerator(2, 1000);
+
+        Set<Long> ids = new HashSet<>();
+        for (int i = 0; i < 10000; ++i) {
+            assertTrue(ids.add(node1.nextId()));
+            assertTrue(ids.add(node2.nextId()));
+        }
+    }
+
+    @Test
+    public void usesConfiguredNodeId() {
+        MapConfiguration config = new MapConfiguration();
+        config.setProperty(ConfigProperties.UNIQUE_ID_NODE_ID, "42");
+
+        assertEquals(42, new SnowflakeUniqueIdGenerator(config).getNodeId());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void requiresConfiguredNodeId() {
+        new SnowflakeUniqueIdGenerator(new MapConfiguration(ConfigProperties.DEFAULT_PROPERTIES));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsOutOfRangeNodeIds() {
+        new SnowflakeUniqueIdGenerator(SnowflakeUniqueIdGenerator.MAX_NODE_ID + 1);
+    }
+
+    @Test
+    public void concurrentGenerationProducesUniqueIncreasingIds() throws Exception {
+        final SnowflakeUniqueIdGenerator generator = new SnowflakeUniqueIdGenerator(5);
+        final int threads = 8;
+        final int idsPerThread = 50000;
+        final Set<Long> ids = ConcurrentHashMap.newKeySet();
+        final CountDownLatch start = new CountDownLatch(1);
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Boolean>> results = new ArrayList<>();
+            for (int i = 0; i < threads; ++i) {
+                results.add(executor.submit(new Callable<Boolean>() {
+                    @Override
+                    public Boolean call() throws Exception {
+                        start.await();
+
+                        boolean increasing = true;
+                        long previous = -1;
+                        for (int j = 0; j < idsPerThread; ++j) {
+                            long id = generator.nextId();
+                            increasing &= id > previous;
+                            ids.add(id);
+                            previous = id;
+                        }
+
+                        return increasing;
+                    }
+                }));
+            }
+
+            start.countDown();
+            for (Future<Boolean> result : results) {
+                assertTrue(result.get());
+            }
+        }
+        finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(threads * idsPerThread, ids.size());
+        assertFalse(ids.contains(0L));
+    }
+}
@@ -29,6 +29,7 @@ import org.candlepin.config.CandlepinCommonTestConfig;
 import org.candlepin.dto.ModelTranslator;
 import org.candlepin.guice.CandlepinRequestScope;
 import org.candlepin.guice.TestPrincipalProviderSetter;
+import org.candlepin.hibernate.TableModificationTracker;
 import org.candlepin.junit.CandlepinLiquibaseResource;
 import org.candlepin.model.Cdn;
 import org.candlepin.model.CdnCurator;
@@ -50,6 +51,7 @@ import org.candlepin.model.EnvironmentContent;
 import org.candlepin.model.EnvironmentContentCurator;
 import org.candlepin.model.EnvironmentCurator;
 import org.candlepin.model.EventCurator;
+import org.candlepin.model.GuestModificationTracker;
 import org.candlepin.model.IdentityCertificateCurator;
 import org.candlepin.model.ImportRecordCurator;
 import org.candlepin.model.JobCurator;
@@ -61,6 +63,7 @@ import org.candlepin.model.OwnerProductCurator;
 import org.candlepin.model.PermissionBlueprint;
 import org.candlepin.model.Pool;
 import org.candlepin.model.PoolCurator;
+import org.candlepin.model.PoolModificationTracker;
 import org.candlepin.model.Product;
 import org.candlepin.model.ProductCertificateCurator;
 import org.candlepin.model.ProductCurator;
@@ -195,6 +198,10 @@ public class DatabaseTestFixture {
         registry.getEventListenerGroup(EventType.PRE_INSERT).appendListener(listenerProvider.get());
         registry.getEventListenerGroup(EventType.PRE_UPDATE).appendListener(listenerProvider.get());
         registry.getEventListenerGroup(EventType.PRE_DELETE).appendListener(listenerProvider.get());
+
+        inj.getInstance(TableModificationTracker.class).register(registry);
+        inj.getInstance(PoolModificationTracker.class).register(registry);
+        inj.getInstance(GuestModificationTracker.class).register(registry);
     }
 
     @Before
@@ -0,0 +1,84 @@
+/**
+ * Copyright (c) 2009 - 2018 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.util;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+
+
+/**
+ * ContentSetPayloadCacheTest
+ */
+public class ContentSetPayloadCacheTest {
+
+    @Test
+    public void keysDependOnPathsAndTheirOrder() {
+        String key = ContentSetPayloadCache.buildKey(Arrays.asList("/a/b", "/c/d"));
+
+        assertEquals(key, ContentSetPayloadCache.buildKey(Arrays.asList("/a/b", "/c/d")));
+        assertNotEquals(key, ContentSetPayloadCache.buildKey(Arrays.asList("/c/d", "/a/b")));
+        assertNotEquals(key, ContentSetPayloadCache.buildKey(Arrays.asList("/a/b/c/d")));
+        assertNotEquals(key, ContentSetPayloadCache.buildKey(Arrays.asList("/prefix/a/b", "/c/d")));
+    }
+
+    @Test
+    public void returnsCopiesOfStoredPayloads() {
+        ContentSetPayloadCache cache = new ContentSetPayloadCache(true, 10);
+        byte[] payload = new byte[] { 1, 2, 3 };
+        cache.put("key", payload);
+
+        payload[0] = 9;
+        byte[] cached = cache.get("key");
+        assertArrayEquals(new byte[] { 1, 2, 3 }, cached);
+
+        cached[1] = 9;
+        assertArrayEquals(new byte[] { 1, 2, 3 }, cache.get("key"));
+        assertNull(cache.get("other"));
+        assertEquals(2, cache.getHits());
+        assertEquals(1, cache.getMisses());
+    }
+
+    @Test
+    public void leastRecentlyUsedPayloadsAreEvicted() {
+        ContentSetPayloadCache cache = new ContentSetPayloadCache(true, 2);
+        cache.put("key1", new byte[] { 1 });
+        cache.put("key2", new byte[] { 2 });
+        cache.get("key1");
+        cache.put("key3", new byte[] { 3 });
+
+        assertEquals(2, cache.getSize());
+        assertArrayEquals(new byte[] { 1 }, cache.get("key1"));
+        assertNull(cache.get("key2"));
+        assertArrayEquals(new byte[] { 3 }, cache.get("key3"));
+    }
+
+    @Test
+    public void disabledCacheRetainsNothing() {
+        ContentSetPayloadCache cache = new ContentSetPayloadCache(false, 10);
+        cache.put("key", new byte[] { 1 });
+
+        assertFalse(cache.isEnabled());
+        assertNull(cache.get("key"));
+        assertEquals(0, cache.getSize());
+    }
+}
@@ -25,6 +25,7 @@ import org.candlepin.pki.PKIUtility;
 import com.google.inject.Guice;
 import com.google.inject.Injector;
 
+import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
 import org.bouncycastle.jce.provider.BouncyCastleProvider;
 import org.hamcrest.Description;
@@ -38,6 +39,7 @@ import org.mockito.runners.MockitoJUnitRunner;
 
 import java.io.BufferedInputStream;
 import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileReader;
@@ -215,6 +217,76 @@ public class CrlFileUtilTest {
         assertFalse(new ContainsSerials(temp).matchesSafely(unrevoke));
     }
 
+    @Test
+    public void testUnrevokingUnlistedSerialsLeavesCRLUnmodified() throws Exception {
+        Set<BigInteger> prime = new HashSet<>(Arrays.asList(
+            new BigInteger("3310271523"),
+            new BigInteger("1812052331")
+        ));
+
+        this.cfu.initializeCRLFile(temp, initialEntry);
+        this.cfu.updateCRLFile(temp, prime, null);
+        byte[] expected = FileUtils.readFileToByteArray(temp);
+
+        this.cfu.updateCRLFile(temp, null, new HashSet<>(Arrays.asList(new BigInteger("7612043321"))));
+        assertArrayEquals(expected, FileUtils.readFileToByteArray(temp));
+
+        this.cfu.updateCRLFile(temp, null, new HashSet<>(Arrays.asList(new BigInteger("3310271523"))));
+        assertThat(new HashSet<>(Arrays.asList(new BigInteger("1812052331"))), new ContainsSerials(temp));
+        assertFalse(new ContainsSerials(temp).matchesSafely(
+            new HashSet<>(Arrays.asList(new BigInteger("3310271523")))));
+    }
+
+    @Test
+    public void testCRLModifiedElsewhereIsRescanned() throws Exception {
+        Set<BigInteger> revoke = new HashSet<>(Arrays.asList(new BigInteger("5120391827")));
+
+        this.cfu.initializeCRLFile(temp, initialEntry);
+
+        // Another instance changes the file without our knowledge
+        CrlFileUtil other = new CrlFileUtil(this.certificateReader, this.pkiUtility, this.certSerialCurator);
+        other.updateCRLFile(temp, revoke, null);
+        assertThat(revoke, new ContainsSerials(temp));
+
+        this.cfu.updateCRLFile(temp, null, revoke);
+        assertFalse(new ContainsSerials(temp).matchesSafely(revoke));
+    }
+
+    @Test
+    public void testEncodedCrlIsReusedUntilFileChanges() throws Exception {
+        Set<BigInteger> revoke = new HashSet<>(Arrays.asList(new BigInteger("6150281903")));
+
+        this.cfu.initializeCRLFile(temp, initialEntry);
+        EncodedCrl initial = this.cfu.getEncodedCrl(temp);
+        assertSame(initial, this.cfu.getEncodedCrl(temp));
+        assertArrayEquals(FileUtils.readFileToByteArray(temp), initial.getPem());
+
+        this.cfu.updateCRLFile(temp, revoke, null);
+        EncodedCrl updated = this.cfu.getEncodedCrl(temp);
+        assertNotSame(initial, updated);
+        assertNotEquals(initial.getEntityTag(), updated.getEntityTag());
+        assertArrayEquals(FileUtils.readFileToByteArray(temp), updated.getPem());
+
+        X509CRL x509crl = (X509CRL) CertificateFactory.getInstance("X.509")
+            .generateCRL(new ByteArrayInputStream(updated.getDer()));
+        assertNotNull(x509crl.getRevokedCertificate(new BigInteger("6150281903")));
+    }
+
+    @Test
+    public void testEncodedCrlReflectsFileReplacedElsewhere() throws Exception {
+        Set<BigInteger> revoke = new HashSet<>(Arrays.asList(new BigInteger("7320198321")));
+
+        this.cfu.initializeCRLFile(temp, initialEntry);
+        EncodedCrl initial = this.cfu.getEncodedCrl(temp);
+
+        CrlFileUtil other = new CrlFileUtil(this.certificateReader, this.pkiUtility, this.certSerialCurator);
+        other.updateCRLFile(temp, revoke, null);
+
+        EncodedCrl current = this.cfu.getEncodedCrl(temp);
+        assertNotSame(initial, current);
+        assertArrayEquals(FileUtils.readFileToByteArray(temp), current.getPem());
+    }
+
     public class ContainsSerials extends TypeSafeMatcher<Set<BigInteger>> {
         private Set<BigInteger> serials;
 
@@ -0,0 +1,107 @@
+/**
+ * Copyright (c) 2009 - 2018 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.HashSet;
+
+
+
+/**
+ * CrlSerialIndexTest
+ */
+public class CrlSerialIndexTest {
+    private static final BigInteger LARGE = new BigInteger("123456789012345678901234567890");
+
+    private CrlSerialIndex index(long... serials) {
+        CrlSerialIndex.Builder builder = CrlSerialIndex.builder();
+        for (long serial : serials) {
+            builder.add(BigInteger.valueOf(serial));
+        }
+
+        return builder.build();
+    }
+
+    @Test
+    public void testContains() {
+        CrlSerialIndex index = this.index(30, 10, 20);
+
+        assertTrue(index.contains(BigInteger.valueOf(10)));
+        assertTrue(index.contains(BigInteger.valueOf(20)));
+        assertTrue(index.contains(BigInteger.valueOf(30)));
+        assertFalse(index.contains(BigInteger.valueOf(15)));
+        assertFalse(index.contains(null));
+    }
+
+    @Test
+    public void testDuplicatesAreIndexedOnce() {
+        assertEquals(2, this.index(5, 7, 5, 7, 5).size());
+    }
+
+    @Test
+    public void testLargeSerials() {
+        CrlSerialIndex index = CrlSerialIndex.builder()
+            .add(LARGE)
+            .add(BigInteger.valueOf(Long.MAX_VALUE))
+            .build();
+
+        assertTrue(index.contains(LARGE));
+        assertTrue(index.contains(BigInteger.valueOf(Long.MAX_VALUE)));
+        assertFalse(index.contains(LARGE.add(BigInteger.ONE)));
+        assertEquals(2, index.size());
+    }
+
+    @Test
+    public void testIndexGrowsBeyondInitialCapacity() {
+        CrlSerialIndex.Builder builder = CrlSerialIndex.builder();
+        for (long serial = 0; serial < 5000; ++serial) {
+            builder.add(BigInteger.valueOf(serial * 3));
+        }
+
+        CrlSerialIndex index = builder.build();
+
+        assertEquals(5000, index.size());
+        assertTrue(index.contains(BigInteger.valueOf(4999 * 3)));
+        assertFalse(index.contains(BigInteger.valueOf(4999 * 3 + 1)));
+    }
+
+    @Test
+    public void testUpdate() {
+        CrlSerialIndex index = this.index(1, 2, 3);
+        CrlSerialIndex updated = index.update(Arrays.asList(BigInteger.valueOf(4), LARGE),
+            new HashSet<>(Arrays.asList(BigInteger.valueOf(2), BigInteger.valueOf(9))));
+
+        assertEquals(4, updated.size());
+        assertTrue(updated.contains(BigInteger.ONE));
+        assertFalse(updated.contains(BigInteger.valueOf(2)));
+        assertTrue(updated.contains(BigInteger.valueOf(4)));
+        assertTrue(updated.contains(LARGE));
+
+        // The original index is unchanged
+        assertEquals(3, index.size());
+        assertTrue(index.contains(BigInteger.valueOf(2)));
+
+        updated = updated.update(null, new HashSet<>(Arrays.asList(LARGE)));
+        assertFalse(updated.contains(LARGE));
+        assertEquals(3, updated.size());
+    }
+}
@@ -527,6 +527,21 @@ public class UtilTest {
         assertTrue(result.contains(id));
     }
 
+    @Test
+    public void testCanonicalUuidIsSameForEitherEndianness() {
+        String uuid = "78d7e200-b7d6-4cfe-b7a9-5700e8094df3";
+        String reversed = "00E2D778-D6B7-FE4C-B7A9-5700E8094DF3";
+
+        assertEquals(reversed.toLowerCase(), Util.getCanonicalUuid(uuid));
+        assertEquals(reversed.toLowerCase(), Util.getCanonicalUuid(reversed));
+    }
+
+    @Test
+    public void testCanonicalUuidWithNonUuid() {
+        assertEquals("some_non_uuid", Util.getCanonicalUuid("Some_Non_Uuid"));
+        assertNull(Util.getCanonicalUuid(null));
+    }
+
     private interface TestClosable {
         void close();
     }
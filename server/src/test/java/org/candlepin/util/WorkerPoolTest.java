@@ -0,0 +1,126 @@
+/**
+ * Copyright (c) 2009 - 2018 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+
+
+
+/**
+ * WorkerPoolTest
+ */
+public class WorkerPoolTest {
+
+    private WorkerPool pool;
+
+    @Before
+    public void setUp() {
+        this.pool = new WorkerPool(2, 10);
+    }
+
+    @After
+    public void tearDown() {
+        this.pool.shutdown();
+    }
+
+    @Test
+    public void testResultsRetainTaskOrder() throws Exception {
+        List<Callable<Integer>> tasks = new ArrayList<>();
+        for (int i = 0; i < 25; ++i) {
+            int value = i;
+            tasks.add(() -> value);
+        }
+
+        List<Integer> expected = new ArrayList<>();
+        for (int i = 0; i < 25; ++i) {
+            expected.add(i);
+        }
+
+        assertEquals(expected, this.pool.invokeAll(tasks, 4));
+    }
+
+    @Test
+    public void testSerialParallelismRunsOnCallingThread() throws Exception {
+        Set<Thread> threads = ConcurrentHashMap.newKeySet();
+        List<Callable<Thread>> tasks = Collections.nCopies(5, () -> {
+            threads.add(Thread.currentThread());
+            return Thread.currentThread();
+        });
+
+        this.pool.invokeAll(tasks, 1);
+        assertEquals(Collections.singleton(Thread.currentThread()), threads);
+    }
+
+    @Test
+    public void testParallelTasksUseThePool() throws Exception {
+        Set<Thread> threads = ConcurrentHashMap.newKeySet();
+        List<Callable<Thread>> tasks = Collections.nCopies(10, () -> {
+            threads.add(Thread.currentThread());
+            return Thread.currentThread();
+        });
+
+        this.pool.invokeAll(tasks, 2);
+        assertTrue(threads.contains(Thread.currentThread()));
+        assertEquals(2, threads.size());
+    }
+
+    @Test
+    public void testFailuresArePropagated() throws Exception {
+        IllegalStateException failure = new IllegalStateException("failed");
+        List<Callable<Integer>> tasks = Arrays.asList(() -> 1, () -> {
+            throw failure;
+        });
+
+        try {
+            this.pool.invokeAll(tasks, 2);
+            fail("Expected ExecutionException");
+        }
+        catch (ExecutionException e) {
+            assertSame(failure, e.getCause());
+        }
+    }
+
+    @Test
+    public void testTasksRunOnCallerAfterShutdown() throws Exception {
+        this.pool.shutdown();
+
+        Set<Thread> threads = ConcurrentHashMap.newKeySet();
+        List<Callable<Integer>> tasks = Collections.nCopies(4, () -> {
+            threads.add(Thread.currentThread());
+            return 1;
+        });
+
+        assertEquals(Arrays.asList(1, 1, 1, 1), this.pool.invokeAll(tasks, 4));
+        assertEquals(Collections.singleton(Thread.currentThread()), threads);
+        assertFalse(threads.isEmpty());
+    }
+}
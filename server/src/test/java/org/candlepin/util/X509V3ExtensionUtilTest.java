@@ -27,17 +27,29 @@ import org.candlepin.model.Pool;
 import org.candlepin.model.Product;
 import org.candlepin.model.ProductContent;
 import org.candlepin.model.Owner;
+import org.candlepin.pki.X509ByteExtensionWrapper;
 import org.candlepin.test.TestUtil;
+import org.candlepin.util.X509V3ExtensionUtil.HuffCode;
+import org.candlepin.util.X509V3ExtensionUtil.HuffNode;
 import org.candlepin.util.X509V3ExtensionUtil.NodePair;
 import org.candlepin.util.X509V3ExtensionUtil.PathNode;
 
 import org.junit.Before;
 import org.junit.Test;
 
+import java.io.ByteArrayOutputStream;
+import java.math.BigInteger;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 
@@ -46,6 +58,8 @@ import java.util.Set;
  * X509V3ExtensionUtilTest
  */
 public class X509V3ExtensionUtilTest {
+    private static final int GOLDEN_CONTENT_SETS = 4;
+
     private Configuration config;
     private EntitlementCurator ec;
     private X509V3ExtensionUtil util;
@@ -97,6 +111,41 @@ public class X509V3ExtensionUtilTest {
         assertFalse(np.equals(np1));
     }
 
+    @Test
+    public void contentSetPayloadsAreReusedForIdenticalContent() throws Exception {
+        ContentSetPayloadCache cache = new ContentSetPayloadCache(true, 10);
+        util = new X509V3ExtensionUtil(config, ec, cache);
+        Product sku = new Product("sku", "SKU");
+
+        byte[] first = getContentSetPayload(sku, "/content/dist/rhel/os", "/content/dist/rhel/debug");
+        byte[] second = getContentSetPayload(sku, "/content/dist/rhel/os", "/content/dist/rhel/debug");
+        byte[] other = getContentSetPayload(sku, "/content/beta/rhel/os");
+
+        assertArrayEquals(first, second);
+        assertEquals(1, cache.getHits());
+        assertEquals(2, cache.getMisses());
+        assertEquals(new HashSet<>(Arrays.asList("/content/dist/rhel/os", "/content/dist/rhel/debug")),
+            new HashSet<>(util.hydrateContentPackage(second)));
+        assertEquals(Arrays.asList("/content/beta/rhel/os"), util.hydrateContentPackage(other));
+    }
+
+    private byte[] getContentSetPayload(Product sku, String... paths) throws Exception {
+        List<org.candlepin.model.dto.Content> contents = new ArrayList<>();
+        for (String path : paths) {
+            org.candlepin.model.dto.Content content = new org.candlepin.model.dto.Content();
+            content.setPath(path);
+            contents.add(content);
+        }
+
+        org.candlepin.model.dto.Product model = new org.candlepin.model.dto.Product();
+        model.setContent(contents);
+
+        Set<X509ByteExtensionWrapper> extensions = util.getByteExtensions(sku, Arrays.asList(model),
+            null, new HashMap<>());
+
+        return extensions.iterator().next().getValue();
+    }
+
     @Test
     public void testPrefixLogic() {
         Owner owner = new Owner("Test Corporation");
@@ -182,4 +231,194 @@ public class X509V3ExtensionUtilTest {
         assertEquals("OS", resultBrandType);
     }
 
+    @Test
+    public void makeTrieMatchesLinearScanConstruction() {
+        int[][] weightSets = {
+            { 1, 2, 3, 4, 5, 6, 7, 8, 9, 10 },
+            { 5, 5, 5, 5, 5, 5, 5 },
+            { 0, 1, 1, 2, 3, 5, 8, 13, 2, 2, 1 },
+            { 7, 3, 3, 9, 1, 1, 4, 4, 4, 12, 6, 2, 2, 2, 2 },
+        };
+
+        for (int[] weights : weightSets) {
+            List<HuffNode> nodes = new ArrayList<>();
+            List<HuffNode> legacyNodes = new ArrayList<>();
+            List<Object> members = new ArrayList<>();
+
+            for (int weight : weights) {
+                Object member = new Object();
+                members.add(member);
+                nodes.add(util.new HuffNode(member, weight));
+                legacyNodes.add(util.new HuffNode(member, weight));
+            }
+
+            HuffNode trie = util.makeTrie(nodes);
+            HuffNode legacyTrie = makeLegacyTrie(legacyNodes);
+            Map<Object, HuffCode> codes = util.buildHuffCodes(trie);
+
+            assertEquals(describeTrie(legacyTrie), describeTrie(trie));
+            for (Object member : members) {
+                String path = util.findHuffPath(legacyTrie, member);
+                assertEquals(path, util.findHuffPath(trie, member));
+                assertEquals(path, codes.get(member).toString());
+            }
+        }
+    }
+
+    @Test
+    public void nodeDictionaryMatchesStringEncoding() throws Exception {
+        List<org.candlepin.model.dto.Content> contents = new ArrayList<>();
+        for (String path : readGoldenPaths(3)) {
+            org.candlepin.model.dto.Content content = new org.candlepin.model.dto.Content();
+            content.setPath(path);
+            contents.add(content);
+        }
+
+        PathNode root = util.makePathTree(contents, util.new PathNode());
+        List<String> strings = util.orderStrings(root);
+        List<PathNode> pathNodes = new ArrayList<>(collectPathNodes(root, new LinkedHashSet<>()));
+
+        List<HuffNode> stringNodes = new ArrayList<>();
+        int weight = 1;
+        for (String string : strings) {
+            stringNodes.add(util.new HuffNode(string, weight++));
+        }
+        stringNodes.add(util.new HuffNode(X509V3ExtensionUtil.END_NODE, weight));
+
+        List<HuffNode> pathNodeNodes = new ArrayList<>();
+        weight = 0;
+        for (PathNode pathNode : pathNodes) {
+            pathNodeNodes.add(util.new HuffNode(pathNode, weight++));
+        }
+
+        HuffNode stringTrie = util.makeTrie(stringNodes);
+        HuffNode pathNodeTrie = util.makeTrie(pathNodeNodes);
+
+        assertArrayEquals(encodeLegacyNodeDictionary(stringTrie, pathNodeTrie, pathNodes),
+            util.makeNodeDictionary(stringTrie, pathNodeTrie, pathNodes));
+    }
+
+    @Test
+    public void existingContentSetPayloadsCanBeHydrated() throws Exception {
+        for (int i = 1; i <= GOLDEN_CONTENT_SETS; ++i) {
+            byte[] payload = readGoldenPayload(i);
+            List<String> expected = readGoldenPaths(i);
+
+            assertEquals(new HashSet<>(expected), new HashSet<>(util.hydrateContentPackage(payload)));
+        }
+    }
+
+    @Test
+    public void encodedContentSetsRoundTrip() throws Exception {
+        for (int i = 1; i <= GOLDEN_CONTENT_SETS; ++i) {
+            List<String> expected = readGoldenPaths(i);
+            byte[] payload = getContentSetPayload(new Product("sku", "SKU"),
+                expected.toArray(new String[expected.size()]));
+
+            assertEquals(new HashSet<>(expected), new HashSet<>(util.hydrateContentPackage(payload)));
+        }
+    }
+
+    private static byte[] readGoldenPayload(int index) throws Exception {
+        URL url = X509V3ExtensionUtilTest.class.getClassLoader()
+            .getResource("certs/v3-content/content-set-" + index + ".bin");
+
+        return Files.readAllBytes(Paths.get(url.toURI()));
+    }
+
+    private static List<String> readGoldenPaths(int index) throws Exception {
+        URL url = X509V3ExtensionUtilTest.class.getClassLoader()
+            .getResource("certs/v3-content/content-set-" + index + ".txt");
+
+        return Files.readAllLines(Paths.get(url.toURI()), StandardCharsets.UTF_8);
+    }
+
+    private static Set<PathNode> collectPathNodes(PathNode node, Set<PathNode> nodes) {
+        if (nodes.add(node)) {
+            for (NodePair child : node.getChildren()) {
+                collectPathNodes(child.getConnection(), nodes);
+            }
+        }
+
+        return nodes;
+    }
+
+    private static String describeTrie(HuffNode node) {
+        if (node == null) {
+            return "-";
+        }
+
+        return "(" + node.getWeight() + " " + describeTrie(node.getLeft()) + " " +
+            describeTrie(node.getRight()) + ")";
+    }
+
+    /*
+     * The original trie construction, which repeatedly scans the node list for the two lightest
+     * nodes. Kept here as a reference for the byte-level compatibility of the encoder.
+     */
+    private HuffNode makeLegacyTrie(List<HuffNode> nodesList) {
+        while (nodesList.size() > 1) {
+            int node1 = findLegacySmallest(-1, nodesList);
+            int node2 = findLegacySmallest(node1, nodesList);
+            HuffNode hn1 = nodesList.get(node1);
+            HuffNode hn2 = nodesList.get(node2);
+            HuffNode merged = util.new HuffNode(null, hn1.getWeight() + hn2.getWeight(), hn1, hn2);
+            nodesList.remove(hn1);
+            nodesList.remove(hn2);
+            nodesList.add(merged);
+        }
+
+        return nodesList.get(0);
+    }
+
+    private static int findLegacySmallest(int exclude, List<HuffNode> nodes) {
+        int smallest = -1;
+        for (int index = 0; index < nodes.size(); index++) {
+            if (index != exclude &&
+                (smallest == -1 || nodes.get(index).getWeight() < nodes.get(smallest).getWeight())) {
+                smallest = index;
+            }
+        }
+
+        return smallest;
+    }
+
+    /*
+     * The original node dictionary encoding, which builds each code with findHuffPath and packs
+     * the resulting bit string.
+     */
+    private byte[] encodeLegacyNodeDictionary(HuffNode stringTrie, HuffNode pathNodeTrie,
+        List<PathNode> pathNodes) {
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        int nodeSize = pathNodes.size();
+        if (nodeSize > 127) {
+            byte[] count = BigInteger.valueOf(nodeSize).toByteArray();
+            int offset = count[0] == 0 ? 1 : 0;
+            baos.write(128 + count.length - offset);
+            baos.write(count, offset, count.length - offset);
+        }
+        else {
+            baos.write(nodeSize);
+        }
+
+        StringBuilder bits = new StringBuilder();
+        String endNodeLocation = util.findHuffPath(stringTrie, X509V3ExtensionUtil.END_NODE);
+        for (PathNode pn : pathNodes) {
+            for (NodePair np : pn.getChildren()) {
+                bits.append(util.findHuffPath(stringTrie, np.getName()));
+                bits.append(util.findHuffPath(pathNodeTrie, np.getConnection()));
+            }
+            bits.append(endNodeLocation);
+        }
+
+        while (bits.length() % 8 != 0) {
+            bits.append('0');
+        }
+        for (int i = 0; i < bits.length(); i += 8) {
+            baos.write(Integer.parseInt(bits.substring(i, i + 8), 2));
+        }
+
+        return baos.toByteArray();
+    }
 }